@@ -1,11 +1,12 @@
 package com.applitools.eyes;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.apache.commons.codec.binary.Base64;
 
 /**
  * An application output (title, image, etc).
  */
-@JsonIgnoreProperties({"screenshot64"})
+@JsonIgnoreProperties({"screenshot64", "screenshotBytes"})
 public class AppOutput {
 
     /**
@@ -15,6 +16,7 @@ public class AppOutput {
     private final String domUrl;
     private final String screenshotUrl;
     private final String screenshot64;
+    private final byte[] screenshotBytes;
 
     /**
      * @param title         The title of the window.
@@ -25,18 +27,45 @@ public class AppOutput {
     public AppOutput(String title, String screenshot64, String domUrl, String screenshotUrl) {
         this.title = title;
         this.screenshot64 = screenshot64;
+        this.screenshotBytes = null;
         this.domUrl = domUrl;
         this.screenshotUrl = screenshotUrl;
     }
 
+    /**
+     * @param title           The title of the window.
+     * @param screenshotBytes The screenshot's bytes, which are sent as is (i.e., without base64 encoding them).
+     * @param domUrl          A URL to a DOM snapshot.
+     */
+    public AppOutput(String title, byte[] screenshotBytes, String domUrl) {
+        this.title = title;
+        this.screenshot64 = null;
+        this.screenshotBytes = screenshotBytes;
+        this.domUrl = domUrl;
+        this.screenshotUrl = null;
+    }
+
     public String getTitle() {
         return title;
     }
 
     public String getScreenshot64() {
+        if (screenshot64 == null && screenshotBytes != null) {
+            return Base64.encodeBase64String(screenshotBytes);
+        }
         return screenshot64;
     }
 
+    /**
+     * @return The screenshot's bytes, or {@code null} if there's no screenshot.
+     */
+    public byte[] getScreenshotBytes() {
+        if (screenshotBytes == null && screenshot64 != null) {
+            return Base64.decodeBase64(screenshot64);
+        }
+        return screenshotBytes;
+    }
+
     public String getDomUrl() {
         return domUrl;
     }
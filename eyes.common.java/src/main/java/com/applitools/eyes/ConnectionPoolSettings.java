@@ -0,0 +1,70 @@
+/*
+ * Applitools software.
+ */
+package com.applitools.eyes;
+
+import com.applitools.utils.ArgumentGuard;
+
+/***
+ * Encapsulates the settings of the pooled HTTP client used by a server connector for downloading page resources.
+ */
+public class ConnectionPoolSettings {
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+    public static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 200;
+    public static final int DEFAULT_IDLE_TIMEOUT = 1000 * 30; // 30 Seconds
+
+    private int maxConnectionsPerHost;
+    private int maxConnectionsTotal;
+    private int idleTimeout;
+    private boolean keepAlive;
+
+    /**
+     * @param maxConnectionsPerHost The maximum number of concurrent connections to a single host.
+     * @param maxConnectionsTotal   The maximum number of concurrent connections overall.
+     * @param idleTimeout           The time (milliseconds) after which an idle pooled connection is evicted.
+     * @param keepAlive             Whether connections are kept alive and reused between requests.
+     */
+    public ConnectionPoolSettings(int maxConnectionsPerHost, int maxConnectionsTotal, int idleTimeout, boolean keepAlive) {
+        ArgumentGuard.greaterThanZero(maxConnectionsPerHost, "maxConnectionsPerHost");
+        ArgumentGuard.greaterThanZero(maxConnectionsTotal, "maxConnectionsTotal");
+        ArgumentGuard.greaterThanOrEqualToZero(idleTimeout, "idleTimeout");
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.maxConnectionsTotal = maxConnectionsTotal;
+        this.idleTimeout = idleTimeout;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Defines pool settings with the default limits and keep-alive enabled.
+     */
+    public ConnectionPoolSettings() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_MAX_CONNECTIONS_TOTAL, DEFAULT_IDLE_TIMEOUT, true);
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolSettings{" +
+                "maxConnectionsPerHost=" + maxConnectionsPerHost +
+                ", maxConnectionsTotal=" + maxConnectionsTotal +
+                ", idleTimeout=" + idleTimeout +
+                ", keepAlive=" + keepAlive +
+                '}';
+    }
+}
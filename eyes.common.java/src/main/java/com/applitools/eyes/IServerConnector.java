@@ -44,6 +44,14 @@ public interface IServerConnector {
     void setProxy(AbstractProxySettings proxySettings);
     AbstractProxySettings getProxy();
 
+    /**
+     * Sets the settings of the pooled client used for downloading page resources.
+     *
+     * @param connectionPoolSettings The pool settings.
+     */
+    void setConnectionPoolSettings(ConnectionPoolSettings connectionPoolSettings);
+    ConnectionPoolSettings getConnectionPoolSettings();
+
     /**
      *
      * @return The server timeout. (Seconds).
@@ -113,6 +121,16 @@ public interface IServerConnector {
      */
     IResourceFuture downloadResource(URL uri, boolean isSecondRetry, IDownloadListener<Byte[]> listener);
 
+    /**
+     * Downloads a resource with a conditional request, using the validators (ETag/Last-Modified) of a cached copy.
+     *
+     * @param uri The URI of the resource.
+     * @param cachedResource The cached copy of the resource.
+     * @return A future which resolves to the cached copy if the resource was not modified, or to the downloaded
+     * resource otherwise.
+     */
+    IResourceFuture revalidateResource(URL uri, RGridResource cachedResource);
+
 
     /**
      * Posting the DOM snapshot to the server and returns
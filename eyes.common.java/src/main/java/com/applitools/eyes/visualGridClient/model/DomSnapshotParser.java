@@ -0,0 +1,160 @@
+package com.applitools.eyes.visualGridClient.model;
+
+import com.applitools.eyes.Logger;
+import com.applitools.utils.GeneralUtils;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the result of the processPage script in a single streaming pass.
+ * Blobs are base64-decoded straight from the parser's buffer into the content of their {@link RGridResource}, so the
+ * (usually dominant) blob values are never materialized as strings or as a generic map tree.
+ */
+public class DomSnapshotParser {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Logger logger;
+
+    private static class Blob {
+        private String url;
+        private String type;
+        private byte[] content = new byte[0];
+    }
+
+    public DomSnapshotParser(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * @param json The processPage result.
+     * @return The snapshot of the page.
+     */
+    public FrameData parse(String json) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException("DOM snapshot is not a JSON object", parser.getCurrentLocation());
+            }
+            return parseFrame(parser);
+        }
+    }
+
+    private FrameData parseFrame(JsonParser parser) throws IOException {
+        FrameData frame = new FrameData();
+        List<Blob> blobs = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (fieldName) {
+                case "url":
+                    frame.setUrl(token == JsonToken.VALUE_NULL ? null : parser.getText());
+                    break;
+                case "cdt":
+                    frame.setCdt(token == JsonToken.START_ARRAY ? objectMapper.readValue(parser, List.class) : null);
+                    break;
+                case "blobs":
+                    if (token == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            blobs.add(parseBlob(parser));
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "resourceUrls":
+                    if (token == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                            frame.getResourceUrls().add(parser.getText());
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "frames":
+                    if (token == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            frame.getFrames().add(parseFrame(parser));
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        // Blob URLs are resolved only now, since the URL of the frame may come after its blobs.
+        URL baseUrl = null;
+        try {
+            baseUrl = new URL(frame.getUrl());
+        } catch (MalformedURLException e) {
+            GeneralUtils.logExceptionStackTrace(logger, e);
+        }
+        for (Blob blob : blobs) {
+            frame.getBlobs().add(new RGridResource(resolveUrl(baseUrl, blob.url), blob.type, blob.content, logger, "parseBlobToGridResource"));
+        }
+        return frame;
+    }
+
+    private Blob parseBlob(JsonParser parser) throws IOException {
+        Blob blob = new Blob();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (fieldName) {
+                case "url":
+                    blob.url = parser.getText();
+                    break;
+                case "type":
+                    blob.type = parser.getText();
+                    break;
+                case "value":
+                    if (token == JsonToken.VALUE_STRING) {
+                        blob.content = decodeValue(parser);
+                    } else {
+                        // Non-string values (probably empty json objects) have no content.
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return blob;
+    }
+
+    private byte[] decodeValue(JsonParser parser) throws IOException {
+        // The value is read once, straight from the parser's buffer, and decoded by the lenient decoder, which also
+        // accepts values which aren't strictly valid base64 (e.g., missing padding).
+        char[] text = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        byte[] base64 = new byte[length];
+        for (int i = 0; i < length; i++) {
+            base64[i] = (byte) text[offset + i];
+        }
+        return new Base64().decode(base64);
+    }
+
+    private String resolveUrl(URL baseUrl, String url) {
+        try {
+            return new URL(baseUrl, url).toString();
+        } catch (MalformedURLException e) {
+            GeneralUtils.logExceptionStackTrace(logger, e);
+            return url;
+        }
+    }
+}
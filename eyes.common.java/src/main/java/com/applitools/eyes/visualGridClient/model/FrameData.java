@@ -0,0 +1,53 @@
+package com.applitools.eyes.visualGridClient.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The snapshot of a page (or a frame within it), as captured by the processPage script.
+ */
+public class FrameData {
+
+    private String url;
+    private List cdt;
+    private final List<RGridResource> blobs = new ArrayList<>();
+    private final List<String> resourceUrls = new ArrayList<>();
+    private final List<FrameData> frames = new ArrayList<>();
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    /**
+     * @return The DOM nodes of the page, in the generic (List/Map) form they're sent to the server in.
+     */
+    public List getCdt() {
+        return cdt;
+    }
+
+    public void setCdt(List cdt) {
+        this.cdt = cdt;
+    }
+
+    /**
+     * @return The resources whose content was captured in the page, with their URLs resolved against the page URL.
+     */
+    public List<RGridResource> getBlobs() {
+        return blobs;
+    }
+
+    /**
+     * @return The URLs of the resources to be downloaded, as they appear in the page.
+     */
+    public List<String> getResourceUrls() {
+        return resourceUrls;
+    }
+
+    public List<FrameData> getFrames() {
+        return frames;
+    }
+}
@@ -18,18 +18,47 @@ public class PutFuture implements Future {
     private Logger logger;
 
     private boolean isSentAlready = false;
-    private int retryCount = 5;
+    private boolean isDeferred = false;
+    private static final int MAX_RETRIES = 5;
 
+    /**
+     * Creates a future for an upload that is yet to be started, e.g., by a {@link RateLimiter}.
+     * Getting its result waits until {@link #setPutFuture(Future)} is called.
+     */
     public PutFuture(RGridResource resource, RunningRender runningRender, IServerConnector serverConnector, Logger logger) {
         this.resource = resource;
         this.runningRender = runningRender;
         this.serverConnector = serverConnector;
         this.logger = logger;
+        this.isDeferred = true;
     }
 
     public PutFuture(Future putFuture, RGridResource resource, RunningRender runningRender, IServerConnector serverConnector, Logger logger) {
         this(resource, runningRender, serverConnector, logger);
         this.putFuture = putFuture;
+        this.isDeferred = false;
+    }
+
+    /**
+     * Sets the future of the actual upload, once it's started.
+     * @param putFuture The future of the upload, or {@code null} if it failed to start (it's then retried on get).
+     */
+    public synchronized void setPutFuture(Future putFuture) {
+        this.putFuture = putFuture;
+        this.isDeferred = false;
+        notifyAll();
+    }
+
+    private synchronized Future awaitPutFuture(long timeoutMs) throws InterruptedException, TimeoutException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (isDeferred) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new TimeoutException("upload of " + resource.getUrl() + " was not started");
+            }
+            wait(remaining);
+        }
+        return putFuture;
     }
 
     @Override
@@ -43,50 +72,109 @@ public class PutFuture implements Future {
     }
 
     @Override
-    public boolean isDone() {
-        return false;
+    public synchronized boolean isDone() {
+        return this.isSentAlready || (this.putFuture != null && this.putFuture.isDone());
     }
 
+    /**
+     * Waits for the upload, retrying it if it fails.
+     * @return {@code true} if the resource was uploaded, or {@code false} if all the retries failed. The content of
+     * the resource is then kept, and the next call uploads it again.
+     */
     @Override
     public Boolean get() {
+        try {
+            awaitPutFuture(Long.MAX_VALUE / 2);
+        } catch (InterruptedException | TimeoutException e) {
+            GeneralUtils.logExceptionStackTrace(logger, e);
+        }
+        if (this.isSentAlready) {
+            return true;
+        }
         if (this.putFuture == null){
-            PutFuture newFuture = serverConnector.renderPutResource(runningRender, resource, null);
-            this.putFuture = newFuture.putFuture;
+            this.putFuture = startUpload();
         }
-        if (!this.isSentAlready) {
-            while (retryCount != 0) {
-                try {
+        for (int retry = 0; ; retry++) {
+            try {
+                if (this.putFuture != null) {
                     this.putFuture.get();
-                    break;
-                } catch (InterruptedException | ExecutionException e) {
-                    logger.verbose(e.getMessage() + " on hash: " + resource.getSha256());
-                    retryCount--;
-                    logger.verbose("Entering retry");
-                    try {
-                        Thread.sleep(300);
-                    } catch (InterruptedException e1) {
-                        GeneralUtils.logExceptionStackTrace(logger, e1);
-                    }
-                    PutFuture newFuture = serverConnector.renderPutResource(runningRender, resource, null);
-                    logger.log("fired retry");
-                    this.putFuture = newFuture.putFuture;
+                    onSent();
+                    return true;
                 }
+                logger.verbose("upload was not started on hash: " + resource.getSha256());
+            } catch (InterruptedException | ExecutionException e) {
+                logger.verbose(e.getMessage() + " on hash: " + resource.getSha256());
+            }
+            if (retry == MAX_RETRIES) {
+                break;
             }
+            logger.verbose("Entering retry");
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e1) {
+                GeneralUtils.logExceptionStackTrace(logger, e1);
+            }
+            this.putFuture = startUpload();
+            logger.log("fired retry");
         }
-        this.isSentAlready = true;
-        return true;
+        logger.log("failed to put resource " + resource.getUrl() + " after " + MAX_RETRIES + " retries");
+        this.putFuture = null;
+        return false;
     }
 
+    /**
+     * Waits for the upload, without retrying it (unless it wasn't started).
+     * @return {@code true} if the resource was uploaded. See {@link #get()}.
+     * @throws ExecutionException If the upload failed.
+     */
     @Override
     public Boolean get(long timeout, TimeUnit unit) throws
             InterruptedException, ExecutionException, TimeoutException {
         if (!this.isSentAlready) {
-            this.putFuture.get(timeout, unit);
+            long start = System.currentTimeMillis();
+            Future future = awaitPutFuture(unit.toMillis(timeout));
+            if (future == null) {
+                return get();
+            }
+            future.get(Math.max(0, unit.toMillis(timeout) - (System.currentTimeMillis() - start)), TimeUnit.MILLISECONDS);
         }
-        this.isSentAlready = true;
+        onSent();
         return true;
     }
 
+    /**
+     * Uploads the resource again, through the connector this future was created by, so a throttled upload is retried
+     * through the same {@link RateLimiter}.
+     * @return The future of the upload, or {@code null} if it failed to start.
+     */
+    private Future startUpload() {
+        PutFuture newFuture = serverConnector.renderPutResource(runningRender, resource, null);
+        if (newFuture == null) {
+            return null;
+        }
+        try {
+            return newFuture.awaitPutFuture(Long.MAX_VALUE / 2);
+        } catch (InterruptedException | TimeoutException e) {
+            GeneralUtils.logExceptionStackTrace(logger, e);
+            return null;
+        }
+    }
+
+    private void onSent() {
+        if (!this.isSentAlready) {
+            // The server has the resource now, so only its hash is kept.
+            this.resource = this.resource.withoutContent();
+        }
+        this.isSentAlready = true;
+    }
+
+    /**
+     * @return The future of the actual upload, or {@code null} if it's yet to be started.
+     */
+    public synchronized Future getPutFuture() {
+        return this.putFuture;
+    }
+
     public RGridResource getResource() {
         return this.resource;
     }
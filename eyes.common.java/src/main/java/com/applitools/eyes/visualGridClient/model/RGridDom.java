@@ -8,8 +8,12 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.commons.lang3.ArrayUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -19,6 +23,9 @@ public class RGridDom {
 
     public static final String CONTENT_TYPE = "x-applitools-html/cdt";
 
+    // Thread safe once configured, and expensive to create.
+    private static final ObjectMapper objectMapper = new ObjectMapper().configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true);
+
     @JsonIgnore
     private List domNodes = null;
 
@@ -41,6 +48,10 @@ public class RGridDom {
     @JsonIgnore
     private RGridResource gridResource;
 
+    // The serialized DOM, written once (along with its hash) and reused until the DOM changes.
+    @JsonIgnore
+    private byte[] content;
+
     public RGridDom() {
     }
 
@@ -54,6 +65,7 @@ public class RGridDom {
 
     public void addResource(RGridResource resource) {
         this.resources.put(resource.getUrl(), resource);
+        invalidate();
     }
 
     public List getDomNodes() {
@@ -62,6 +74,7 @@ public class RGridDom {
 
     public void setDomNodes(List domNodes) {
         this.domNodes = domNodes;
+        invalidate();
     }
 
     public Map<String, RGridResource> getResources() {
@@ -70,35 +83,60 @@ public class RGridDom {
 
     public void setResources(Map<String, RGridResource> resources) {
         this.resources = resources;
+        invalidate();
     }
 
     @JsonProperty("hash")
-    public String getSha256() throws JsonProcessingException {
-        if (this.sha256 == null) {
-            sha256 = GeneralUtils.getSha256hash(ArrayUtils.toObject(getStringObjectMap().getBytes()));
-        }
+    public synchronized String getSha256() throws JsonProcessingException {
+        serialize();
         return sha256;
     }
 
-    private String getStringObjectMap() throws JsonProcessingException {
-
-        Map<String, Object> map = new HashMap<>();
-        map.put("domNodes", this.domNodes);
-        map.put("resources", this.resources);
-
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true);
+    /**
+     * Serializes the DOM, unless it was already serialized, hashing the bytes as they're written.
+     */
+    private synchronized byte[] serialize() throws JsonProcessingException {
+        if (this.content == null) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("domNodes", this.domNodes);
+            map.put("resources", this.resources);
+
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+            try {
+                objectMapper.writeValue(new DigestOutputStream(bytes, digest), map);
+            } catch (JsonProcessingException e) {
+                throw e;
+            } catch (IOException e) {
+                // Writing to memory doesn't fail on I/O.
+                throw new IllegalStateException(e);
+            }
+            this.content = bytes.toByteArray();
+            this.sha256 = GeneralUtils.toHexString(digest.digest());
+        }
+        return this.content;
+    }
 
-        return objectMapper.writeValueAsString(map);
+    private synchronized void invalidate() {
+        this.content = null;
+        this.sha256 = null;
+        this.gridResource = null;
     }
 
     public String getHashFormat() {
         return hashFormat;
     }
 
-    public RGridResource asResource() throws JsonProcessingException {
-        gridResource =  new RGridResource(this.url, CONTENT_TYPE, getStringObjectMap().getBytes(), logger, "RGridDom - "+msg);
+    public synchronized RGridResource asResource() throws JsonProcessingException {
+        if (gridResource == null) {
+            byte[] bytes = serialize();
+            gridResource = new RGridResource(this.url, CONTENT_TYPE, bytes, this.sha256, logger);
+        }
         return gridResource;
     }
 
@@ -106,10 +144,12 @@ public class RGridDom {
         for (RGridResource gridResource : frameResourceUrlsMapping) {
             this.resources.put(gridResource.getUrl(), gridResource);
         }
+        invalidate();
     }
 
-    public void setUrl(String url) {
+    public synchronized void setUrl(String url) {
         this.url = url;
+        this.gridResource = null;
     }
 
 
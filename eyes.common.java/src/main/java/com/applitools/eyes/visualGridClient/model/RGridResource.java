@@ -27,6 +27,12 @@ public class RGridResource {
     @JsonIgnore
     private Logger logger;
 
+    @JsonIgnore
+    private String etag;
+
+    @JsonIgnore
+    private String lastModified;
+
 
     public String getUrl() {
         return url;
@@ -46,6 +52,30 @@ public class RGridResource {
         this.url = url;
     }
 
+    private RGridResource(String url, String contentType, String sha256, Logger logger) {
+        this.url = url;
+        this.contentType = contentType;
+        this.sha256 = sha256;
+        this.logger = logger;
+    }
+
+    /**
+     * Creates a resource whose content was already hashed (e.g., while it was written).
+     */
+    RGridResource(String url, String contentType, byte[] content, String sha256, Logger logger) {
+        this(url, contentType, sha256, logger);
+        this.content = content;
+    }
+
+    /**
+     * @return A copy of the resource which keeps its hash but not its content, for a resource the server already has.
+     */
+    public RGridResource withoutContent() {
+        RGridResource resource = new RGridResource(url, contentType, sha256, logger);
+        resource.setValidators(etag, lastModified);
+        return resource;
+    }
+
     public String getContentType() {
         return contentType;
     }
@@ -62,5 +92,32 @@ public class RGridResource {
     public String getSha256() {
         return sha256;
     }
+
+    /**
+     * @return The ETag validator the resource was served with, or {@code null} if there was none.
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * @return The Last-Modified validator the resource was served with, or {@code null} if there was none.
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setValidators(String etag, String lastModified) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return Whether the resource can be revalidated with a conditional request.
+     */
+    @JsonIgnore
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
 }
 
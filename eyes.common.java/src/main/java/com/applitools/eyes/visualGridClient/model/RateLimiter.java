@@ -1,87 +1,178 @@
 package com.applitools.eyes.visualGridClient.model;
 
+import com.applitools.IResourceUploadListener;
 import com.applitools.eyes.Logger;
+import com.applitools.utils.ArgumentGuard;
 import com.applitools.utils.GeneralUtils;
 
 import java.util.*;
-
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits the number of concurrent uploads, overall and per host.
+ * Jobs are started in the order they're submitted, as soon as there's a free slot for their host, and free their
+ * slot when they report completion, so no thread waits on a running upload. The queue of waiting jobs is bounded:
+ * submitting a job while it's full blocks until a job completes.
+ */
 public class RateLimiter {
-    private final Logger logger;
-    private List<PutFuture> awaitingTasks = Collections.synchronizedList(new ArrayList<PutFuture>());
-    private List<PutFuture> runningTasks = Collections.synchronizedList(new ArrayList<PutFuture>());
 
-    private int maxConcurrentTasks;
-    private final Object lock = new Object();
+    public static final int DEFAULT_MAX_QUEUED_TASKS = 500;
+
+    /**
+     * An asynchronous job (e.g., an upload) run by the limiter.
+     */
+    public interface Job {
+        /**
+         * Starts the job. Must not block until the job completes.
+         * @param listener Must be called exactly once when the job completes (successfully or not).
+         */
+        void start(IResourceUploadListener listener);
+    }
 
-    public void handle(PutFuture putFuture) {
-        synchronized (lock) {
-            awaitingTasks.add(putFuture);
-            if (!pollingThread.isAlive()) {
-                pollingThread.start();
-            }
+    private static class PendingJob {
+        private final String host;
+        private final Job job;
+
+        private PendingJob(String host, Job job) {
+            this.host = host;
+            this.job = job;
         }
     }
 
-    public boolean isSlotAvailable() {
-        return runningTasks.size() < maxConcurrentTasks;
+    private final Logger logger;
+    private final int maxConcurrentTasks;
+    private final int maxConcurrentTasksPerHost;
+    private final Semaphore queueSlots;
+    private final LinkedList<PendingJob> awaitingJobs = new LinkedList<>();
+    private final Map<String, Integer> runningTasksPerHost = new HashMap<>();
+    private int runningTasks = 0;
+    private long completedTasks = 0;
+    private long failedTasks = 0;
+
+    public RateLimiter(Logger logger, int maxConcurrentTasks) {
+        this(logger, maxConcurrentTasks, maxConcurrentTasks, DEFAULT_MAX_QUEUED_TASKS);
     }
 
-    class RateLimiterRunnable implements Runnable {
-        @Override
-        public void run() {
-            logger.verbose("enter");
-            do {
+    /**
+     * @param maxConcurrentTasks        The maximum number of jobs running at once.
+     * @param maxConcurrentTasksPerHost The maximum number of jobs running at once against the same host.
+     * @param maxQueuedTasks            The maximum number of jobs waiting to be started.
+     */
+    public RateLimiter(Logger logger, int maxConcurrentTasks, int maxConcurrentTasksPerHost, int maxQueuedTasks) {
+        ArgumentGuard.greaterThanZero(maxConcurrentTasks, "maxConcurrentTasks");
+        ArgumentGuard.greaterThanZero(maxConcurrentTasksPerHost, "maxConcurrentTasksPerHost");
+        ArgumentGuard.greaterThanZero(maxQueuedTasks, "maxQueuedTasks");
+        this.logger = logger;
+        this.maxConcurrentTasks = maxConcurrentTasks;
+        this.maxConcurrentTasksPerHost = maxConcurrentTasksPerHost;
+        this.queueSlots = new Semaphore(maxQueuedTasks);
+    }
 
-                while (!isSlotAvailable()){
-                    GeneralUtils.sleep(250);
-                }
+    /**
+     * Runs the job as soon as there's a free slot for its host. Blocks while the queue of waiting jobs is full.
+     * @param host The host the job runs against.
+     * @param job  The job to run.
+     */
+    public void submit(String host, Job job) throws InterruptedException {
+        ArgumentGuard.notNull(job, "job");
+        queueSlots.acquire();
+        synchronized (this) {
+            awaitingJobs.add(new PendingJob(host == null ? "" : host, job));
+        }
+        startAvailableJobs();
+    }
 
-                executeTask();
+    public synchronized boolean isSlotAvailable() {
+        return runningTasks < maxConcurrentTasks;
+    }
 
-                removeCompletedTasks();
+    public synchronized int getRunningCount() {
+        return runningTasks;
+    }
 
-            } while (!awaitingTasks.isEmpty() || !runningTasks.isEmpty());
-            logger.verbose("exit");
-        }
+    public synchronized int getQueuedCount() {
+        return awaitingJobs.size();
+    }
 
-        private void executeTask() {
-            logger.verbose("enter");
-            if (awaitingTasks.isEmpty()) return;
-            PutFuture putFuture;
-            synchronized (lock) {
-                putFuture = awaitingTasks.get(0);
-                logger.verbose("executing task " + putFuture);
-                runningTasks.add(putFuture);
-                awaitingTasks.remove(putFuture);
-            }
-            putFuture.get();
-            logger.verbose("exit");
-        }
+    @Override
+    public synchronized String toString() {
+        return "RateLimiter{" +
+                "running=" + runningTasks +
+                ", queued=" + awaitingJobs.size() +
+                ", completed=" + completedTasks +
+                ", failed=" + failedTasks +
+                '}';
+    }
 
-        private void removeCompletedTasks() {
-            logger.verbose("enter");
-            Iterator<PutFuture> iterator = runningTasks.iterator();
-            while (iterator.hasNext()) {
-                PutFuture future = iterator.next();
-                if (future.isDone()) {
-                    logger.verbose("removing done task " + future);
-                    iterator.remove();
+    private void startAvailableJobs() {
+        List<PendingJob> jobsToStart = new ArrayList<>();
+        synchronized (this) {
+            Iterator<PendingJob> iterator = awaitingJobs.iterator();
+            while (runningTasks < maxConcurrentTasks && iterator.hasNext()) {
+                PendingJob pendingJob = iterator.next();
+                Integer hostTasks = runningTasksPerHost.get(pendingJob.host);
+                if (hostTasks != null && hostTasks >= maxConcurrentTasksPerHost) {
+                    continue;
                 }
+                iterator.remove();
+                runningTasksPerHost.put(pendingJob.host, hostTasks == null ? 1 : hostTasks + 1);
+                runningTasks++;
+                jobsToStart.add(pendingJob);
             }
-            logger.verbose("exit");
+        }
+        // Jobs are started outside the lock, since a job may complete (and call back) while starting.
+        for (PendingJob pendingJob : jobsToStart) {
+            queueSlots.release();
+            start(pendingJob);
         }
     }
 
-    private Thread pollingThread = new Thread(new RateLimiterRunnable(), "PutThrottler");
+    private void start(final PendingJob pendingJob) {
+        IResourceUploadListener listener = new IResourceUploadListener() {
+            private boolean isCompleted = false;
 
-    public RateLimiter(Logger logger, int maxConcurrentTasks) {
-        this.logger = logger;
-        this.maxConcurrentTasks = maxConcurrentTasks;
+            @Override
+            public void onUploadComplete(boolean isUploadedSuccessfully) {
+                onJobCompleted(isUploadedSuccessfully);
+            }
+
+            @Override
+            public void onUploadFailed() {
+                onJobCompleted(false);
+            }
+
+            private void onJobCompleted(boolean isSuccessful) {
+                synchronized (this) {
+                    if (isCompleted) {
+                        return;
+                    }
+                    isCompleted = true;
+                }
+                release(pendingJob, isSuccessful);
+            }
+        };
+        try {
+            pendingJob.job.start(listener);
+        } catch (Exception e) {
+            GeneralUtils.logExceptionStackTrace(logger, e);
+            listener.onUploadFailed();
+        }
     }
 
-    public void run() {
-        logger.verbose("enter");
-        pollingThread.run();
-        logger.verbose("exit");
+    private void release(PendingJob pendingJob, boolean isSuccessful) {
+        synchronized (this) {
+            runningTasks--;
+            int hostTasks = runningTasksPerHost.get(pendingJob.host) - 1;
+            if (hostTasks == 0) {
+                runningTasksPerHost.remove(pendingJob.host);
+            } else {
+                runningTasksPerHost.put(pendingJob.host, hostTasks);
+            }
+            completedTasks++;
+            if (!isSuccessful) {
+                failedTasks++;
+            }
+        }
+        startAvailableJobs();
     }
 }
@@ -6,25 +6,21 @@ import com.applitools.ICheckSettingsInternal;
 import com.applitools.eyes.Logger;
 import com.applitools.eyes.visualGridClient.services.IEyesConnector;
 import com.applitools.eyes.visualGridClient.services.IResourceFuture;
+import com.applitools.eyes.visualGridClient.services.RenderStatusPoller;
 import com.applitools.eyes.visualGridClient.services.VisualGridManager;
 import com.applitools.eyes.visualGridClient.services.Task;
 import com.applitools.utils.GeneralUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.MapperFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.css.ECSSVersion;
 import com.helger.css.decl.*;
 import com.helger.css.reader.CSSReader;
-import org.apache.commons.codec.binary.Base64;
 
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -32,7 +28,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class RenderingTask implements Callable<RenderStatusResults>, CompletableTask {
 
     private static final int MAX_FETCH_FAILS = 62;
-    private static final int MAX_ITERATIONS = 30;
 
     private final List<RenderTaskListener> listeners = new ArrayList<>();
     private IEyesConnector eyesConnector;
@@ -41,18 +36,24 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
     private List<Task> taskList;
     private List<Task> openTaskList;
     private RenderingInfo renderingInfo;
-    private final Map<String, IResourceFuture> fetchedCacheMap;
-    private final Map<String, PutFuture> putResourceCache;
+    private final ResourceCache<IResourceFuture> fetchedCacheMap;
+    private final ResourceCache<PutFuture> putResourceCache;
+    private final ResourceCache<List<String>> cssUriCache;
+    private final ResourceDiskCache resourceDiskCache;
+    private final RenderStatusPoller renderStatusPoller;
+    private final ExecutorService resourceFetchExecutor;
+    private final ExecutorService cssParserExecutor;
     private Logger logger;
     private AtomicBoolean isTaskComplete = new AtomicBoolean(false);
     private AtomicBoolean isForcePutNeeded;
     private IDebugResourceWriter debugResourceWriter;
-    private HashMap<String, Object> result = null;
+    private FrameData result = null;
     private AtomicInteger framesLevel = new AtomicInteger();
     private RGridDom dom = null;
     private boolean isTaskStarted = false;
-    private boolean isTaskCompleted = false;
-    private boolean isTaskInException = false;
+    // Set once the renders are done, or failed, which happens on the render status poller's thread.
+    private volatile boolean isTaskCompleted = false;
+    private volatile boolean isTaskInException = false;
 
     public interface RenderTaskListener {
         void onRenderSuccess();
@@ -72,6 +73,11 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
         this.renderingInfo = renderingGridManager.getRenderingInfo();
         this.fetchedCacheMap = renderingGridManager.getCachedResources();
         this.putResourceCache = renderingGridManager.getPutResourceCache();
+        this.cssUriCache = renderingGridManager.getCssUriCache();
+        this.resourceDiskCache = renderingGridManager.getResourceDiskCache();
+        this.renderStatusPoller = renderingGridManager.getRenderStatusPoller();
+        this.resourceFetchExecutor = renderingGridManager.getResourceFetchExecutor();
+        this.cssParserExecutor = renderingGridManager.getCssParserExecutor();
         this.logger = renderingGridManager.getLogger();
         this.debugResourceWriter = debugResourceWriter;
         this.listeners.add(listener);
@@ -93,8 +99,10 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
 
         logger.verbose("step 1");
 
-        //Parse to Map
-        result = GeneralUtils.parseJsonToObject(scriptResult);
+        //Parse to FrameData
+        result = new DomSnapshotParser(logger).parse(scriptResult);
+        // The parsed snapshot holds everything needed from here on.
+        scriptResult = null;
         logger.verbose("step 2");
         //Build RenderRequests
         RenderRequest[] requests = prepareDataForRG(result);
@@ -158,17 +166,17 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
 
         } while (stillRunning);
 
+        acknowledgeResources(requests[0].getResources());
+
         Map<RunningRender, RenderRequest> mapping = mapRequestToRunningRender(runningRenders, requests);
 
         logger.verbose("step 5");
         try {
             pollRenderingStatus(mapping);
         } catch (Exception e) {
-            this.isTaskInException = true;
-            GeneralUtils.logExceptionStackTrace(logger, e);
+            onTaskFailed(e);
         }
 
-        isTaskCompleted = true;
         logger.verbose("exit");
 
         return null;
@@ -182,6 +190,20 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
         }
     }
 
+    /**
+     * Records the resources the render server accepted the request with, so following runs don't force-put them.
+     */
+    private void acknowledgeResources(Map<String, RGridResource> resources) {
+        if (resourceDiskCache == null) {
+            return;
+        }
+        for (RGridResource resource : resources.values()) {
+            if (resource != null) {
+                resourceDiskCache.acknowledge(resource.getSha256());
+            }
+        }
+    }
+
     private void forcePutAllResources(Map<String, RGridResource> resources, RunningRender runningRender) {
         RGridResource resource;
         List<PutFuture> allPuts = new ArrayList<>();
@@ -189,29 +211,38 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
             try {
                 logger.verbose("trying to get url from map - " + url);
                 IResourceFuture resourceFuture = fetchedCacheMap.get(url);
-                if (resourceFuture == null) {
-                    logger.verbose("fetchedCacheMap.get(url) == null trying dom");
-                    if (url.equals(this.dom.getUrl())) {
-                        resource = this.dom.asResource();
-                    } else {
-                        logger.log("Resource not found Exiting...");
-                        return;
-                    }
-                } else {
-                    resource = resourceFuture.get();
-                    PutFuture future = this.eyesConnector.renderPutResource(runningRender, resource);
-                    logger.verbose("locking putResourceCache");
-                    synchronized (putResourceCache) {
-                        putResourceCache.put(dom.getUrl(), future);
-                        allPuts.add(future);
-                    }
+                if (resourceFuture == null && url.equals(this.dom.getUrl())) {
+                    logger.verbose("fetchedCacheMap.get(url) == null - skipping dom");
+                    continue;
+                }
+                // The request holds its own copy of resources that were evicted from the cache.
+                resource = resourceFuture != null ? resourceFuture.get() : resources.get(url);
+                if (resource == null) {
+                    logger.log("Resource not found Exiting...");
+                    return;
+                }
+                if (resourceDiskCache != null && resourceDiskCache.isAcknowledged(resource.getSha256())) {
+                    logger.verbose("resource already acknowledged by the server - " + url);
+                    continue;
+                }
+                if (resource.getContent() == null) {
+                    logger.verbose("resource already put - " + url);
+                    continue;
+                }
+                PutFuture future = this.eyesConnector.renderPutResource(runningRender, resource);
+                logger.verbose("locking putResourceCache");
+                synchronized (putResourceCache) {
+                    putResourceCache.put(dom.getUrl(), future);
+                    allPuts.add(future);
                 }
             } catch (Exception e) {
                 GeneralUtils.logExceptionStackTrace(logger, e);
             }
         }
         for (PutFuture put : allPuts) {
-            put.get();
+            if (put.get()) {
+                onResourcePut(put);
+            }
         }
 
     }
@@ -280,11 +311,34 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
         logger.verbose("calling future.get on " + allPuts.size() + " PutFutures");
         for (PutFuture future : allPuts) {
             logger.verbose("calling future.get on " + future.toString());
-            future.get();
+            if (future.get()) {
+                onResourcePut(future);
+            } else {
+                logger.log("failed to put " + future + ", it's put again if the server requests it");
+            }
         }
         logger.verbose("exit");
     }
 
+    /**
+     * Once the server has a resource, only its hash is kept in the caches (and its content is released).
+     * CSS resources keep their content, as it's parsed again for the resources it refers to.
+     */
+    private void onResourcePut(PutFuture future) {
+        RGridResource resource = future.getResource();
+        String url = resource.getUrl();
+        putResourceCache.setWeight(url, 0);
+        String contentType = resource.getContentType();
+        if (contentType != null && contentType.contains("text/css")) {
+            return;
+        }
+        synchronized (fetchedCacheMap) {
+            if (fetchedCacheMap.containsKey(url)) {
+                fetchedCacheMap.put(url, this.eyesConnector.createResourceFuture(resource.withoutContent()));
+            }
+        }
+    }
+
     private void createPutFutures(List<PutFuture> allPuts, RunningRender runningRender, Map<String, RGridResource> resources) {
         List<String> needMoreResources = runningRender.getNeedMoreResources();
         RGridResource resource;
@@ -312,11 +366,25 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
                 }
 //
             }
+            if (resource.getContent() == null) {
+                // Only the hash was kept once the resource was put, yet the server doesn't have it anymore.
+                try {
+                    resource = this.eyesConnector.getResource(new URL(url)).get();
+                } catch (Exception e) {
+                    GeneralUtils.logExceptionStackTrace(logger, e);
+                    continue;
+                }
+            }
             logger.verbose("resource(" + resource.getUrl() + ") hash : " + resource.getSha256());
+            if (resourceDiskCache != null) {
+                // The server asked for it, so it no longer has it (if it ever did).
+                resourceDiskCache.unacknowledge(resource.getSha256());
+            }
             PutFuture future = this.eyesConnector.renderPutResource(runningRender, resource);
             if (!putResourceCache.containsKey(url)) {
                 synchronized (putResourceCache) {
                     putResourceCache.put(url, future);
+                    putResourceCache.setWeight(url, resource.getContent().length);
                     allPuts.add(future);
                 }
             }
@@ -325,7 +393,7 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
 
 }
 
-    private RenderRequest[] prepareDataForRG(HashMap<String, Object> result) throws ExecutionException, InterruptedException, JsonProcessingException {
+    private RenderRequest[] prepareDataForRG(FrameData result) throws ExecutionException, InterruptedException, JsonProcessingException {
 
         final Map<String, RGridResource> allBlobs = Collections.synchronizedMap(new HashMap<String, RGridResource>());
         Set<URL> resourceUrls = new HashSet<>();
@@ -350,9 +418,8 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
 
         //Parse allBlobs to mapping
         Map<String, RGridResource> resourceMapping = new HashMap<>();
-        for (String url : allBlobs.keySet()) {
-            resourceMapping.put(url, this.fetchedCacheMap.get(url).get());
-        }
+        // Taken from the blobs rather than from the cache, which may have evicted some of them by now.
+        resourceMapping.putAll(allBlobs);
 
         buildAllRGDoms(resourceMapping, result);
 
@@ -372,8 +439,8 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
         return asArray;
     }
 
-    private void buildAllRGDoms(Map<String, RGridResource> resourceMapping, Map<String, Object> result) {
-        String url = (String) result.get("url");
+    private void buildAllRGDoms(Map<String, RGridResource> resourceMapping, FrameData result) {
+        String url = result.getUrl();
         URL baseUrl = null;
         try {
             baseUrl = new URL(url);
@@ -381,95 +448,68 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
             GeneralUtils.logExceptionStackTrace(logger, e);
         }
         logger.verbose("baseUrl: " + baseUrl);
-        for (String key : result.keySet()) {
-            if ("frames".equals(key)) {
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> allObjects = (List) result.get(key);
-                Map<String, RGridResource> mapping = new HashMap<>();
-                for (Map<String, Object> frameObj : allObjects) {
-                    List allFramesBlobs = (List) frameObj.get("blobs");
-                    @SuppressWarnings("unchecked")
-                    List<String> allResourceUrls = (List) frameObj.get("resourceUrls");
-                    String frameUrl = (String) frameObj.get("url");
-                    URL frameUrlAsObj = null;
-                    try {
-                        frameUrlAsObj = new URL(baseUrl, frameUrl);
-                    } catch (MalformedURLException e) {
-                        GeneralUtils.logExceptionStackTrace(logger, e);
-                        continue;
-                    }
-                    for (Object blob : allFramesBlobs) {
-                        Map blobAsMap = (Map) blob;
-                        String blobUrl = (String) blobAsMap.get("url");
-                        RGridResource rGridResource = resourceMapping.get(blobUrl);
-                        mapping.put(blobUrl, rGridResource);
-
-                    }
-                    for (String resourceUrl : allResourceUrls) {
-                        RGridResource rGridResource = resourceMapping.get(resourceUrl);
-                        mapping.put(resourceUrl, rGridResource);
-                    }
-                    List cdt = (List) frameObj.get("cdt");
-                    RGridDom rGridDom = new RGridDom(cdt, mapping, frameUrlAsObj.toString(), logger, "buildAllRGDoms");
-                    try {
-                        resourceMapping.put(frameUrlAsObj.toString(), rGridDom.asResource());
-                        buildAllRGDoms(resourceMapping, frameObj);
-                    } catch (JsonProcessingException e) {
-                        GeneralUtils.logExceptionStackTrace(logger, e);
-                    }
+        Map<String, RGridResource> mapping = new HashMap<>();
+        for (FrameData frameObj : result.getFrames()) {
+            String frameUrl = frameObj.getUrl();
+            URL frameUrlAsObj = null;
+            try {
+                frameUrlAsObj = new URL(baseUrl, frameUrl);
+            } catch (MalformedURLException e) {
+                GeneralUtils.logExceptionStackTrace(logger, e);
+                continue;
+            }
+            for (RGridResource blob : frameObj.getBlobs()) {
+                String blobUrl = blob.getUrl();
+                RGridResource rGridResource = resourceMapping.get(blobUrl);
+                mapping.put(blobUrl, rGridResource);
 
-                }
             }
+            for (String resourceUrl : frameObj.getResourceUrls()) {
+                RGridResource rGridResource = resourceMapping.get(resourceUrl);
+                mapping.put(resourceUrl, rGridResource);
+            }
+            List cdt = frameObj.getCdt();
+            RGridDom rGridDom = new RGridDom(cdt, mapping, frameUrlAsObj.toString(), logger, "buildAllRGDoms");
+            try {
+                resourceMapping.put(frameUrlAsObj.toString(), rGridDom.asResource());
+                buildAllRGDoms(resourceMapping, frameObj);
+            } catch (JsonProcessingException e) {
+                GeneralUtils.logExceptionStackTrace(logger, e);
+            }
+
         }
 
     }
 
-    @SuppressWarnings("unchecked")
-    private void parseScriptResult(Map<String, Object> result, Map<String, RGridResource> allBlobs, Set<URL> resourceUrls) throws ExecutionException, InterruptedException, JsonProcessingException {
-        org.apache.commons.codec.binary.Base64 codec = new Base64();
+    private void parseScriptResult(FrameData result, Map<String, RGridResource> allBlobs, Set<URL> resourceUrls) {
         URL baseUrl = null;
         try {
-            Object url = result.get("url");
-            baseUrl = new URL((String) url);
+            baseUrl = new URL(result.getUrl());
         } catch (MalformedURLException e) {
             GeneralUtils.logExceptionStackTrace(logger, e);
         }
         logger.verbose("baseUrl: " + baseUrl);
         try {
-            for (String key : result.keySet()) {
-                Object value = result.get(key);
-                switch (key) {
-                    case "blobs":
-                        //TODO check if empty
-                        List listOfBlobs = (List) value;
-                        for (Object blob : listOfBlobs) {
-                            RGridResource resource = parseBlobToGridResource(codec, baseUrl, (Map) blob);
-                            if (!allBlobs.containsKey(resource.getUrl())) {
-                                allBlobs.put(resource.getUrl(), resource);
-                            }
-                        }
-                        break;
-
-                    case "resourceUrls":
-                        List<String> list = (List<String>) value;
-                        for (String url : list) {
-                            try {
-                                resourceUrls.add(new URL(baseUrl, url));
-                            } catch (MalformedURLException e) {
-                                GeneralUtils.logExceptionStackTrace(logger, e);
-                            }
-                        }
-                        break;
+            for (RGridResource resource : result.getBlobs()) {
+                if (!allBlobs.containsKey(resource.getUrl())) {
+                    allBlobs.put(resource.getUrl(), resource);
+                }
+            }
 
-                    case "frames":
-                        logger.verbose("handling 'frames' key (level: " + framesLevel.incrementAndGet() + ")");
-                        List<Map<String, Object>> allObjects = (List) value;
-                        for (Map<String, Object> frameObj : allObjects) {
-                            parseScriptResult(frameObj, allBlobs, resourceUrls);
-                        }
-                        logger.verbose("done handling 'frames' key (level: " + framesLevel.getAndDecrement() + ")");
-                        break;
+            for (String url : result.getResourceUrls()) {
+                try {
+                    resourceUrls.add(new URL(baseUrl, url));
+                } catch (MalformedURLException e) {
+                    GeneralUtils.logExceptionStackTrace(logger, e);
+                }
+            }
+
+            if (!result.getFrames().isEmpty()) {
+                logger.verbose("handling 'frames' key (level: " + framesLevel.incrementAndGet() + ")");
+                for (FrameData frameObj : result.getFrames()) {
+                    parseScriptResult(frameObj, allBlobs, resourceUrls);
                 }
+                logger.verbose("done handling 'frames' key (level: " + framesLevel.getAndDecrement() + ")");
             }
             int written = addBlobsToCache(allBlobs);
             logger.verbose("written " + written + " blobs to cache.");
@@ -481,11 +521,9 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
         logger.verbose("exit");
     }
 
-    private List<RenderRequest> buildRenderRequests(HashMap<String, Object> result, Map<String, RGridResource> resourceMapping) {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true);
-        String url = (String) result.get("url");
-        List cdt = (List) result.get("cdt");
+    private List<RenderRequest> buildRenderRequests(FrameData result, Map<String, RGridResource> resourceMapping) {
+        String url = result.getUrl();
+        List cdt = result.getCdt();
 
         RGridDom dom = new RGridDom(cdt, resourceMapping, url, logger, "buildRenderRequests");
 
@@ -508,38 +546,51 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
         return allRequestsForRG;
     }
 
-    private RGridResource parseBlobToGridResource(Base64 codec, URL baseUrl, Map blobAsMap) {
-        // TODO - handle non-string values (probably empty json objects)
-        String contentAsString = (String) blobAsMap.get("value");
-        byte[] content = codec.decode(contentAsString);
-        String urlAsString = (String) blobAsMap.get("url");
-        try {
-
-            URL url = new URL(baseUrl, urlAsString);
-            urlAsString = url.toString();
-        } catch (MalformedURLException e) {
-            GeneralUtils.logExceptionStackTrace(logger, e);
-
+    private void parseAndCollectCSSResources(Map<String, RGridResource> allBlobs, URL baseUrl, Set<URL> resourceUrls) {
+        synchronized (allBlobs) {
+            for (RGridResource blob : allBlobs.values()) {
+                collectCssResources(blob, baseUrl, resourceUrls);
+            }
         }
-
-        @SuppressWarnings("UnnecessaryLocalVariable")
-        RGridResource resource = new RGridResource(urlAsString, (String) blobAsMap.get("type"), content, logger, "parseBlobToGridResource");
-        return resource;
     }
 
-    private void parseAndCollectCSSResources(Map<String, RGridResource> allBlobs, URL baseUrl, Set<URL> resourceUrls) {
-        for (RGridResource blob : allBlobs.values()) {
-            String contentTypeStr = blob.getContentType();
-            String css = getCss(blob.getContent(), contentTypeStr);
-            if (css == null) continue;
-            parseCSS(css, baseUrl, resourceUrls);
+    /**
+     * Adds the URLs of the resources referenced by the given resource, if it's a style sheet.
+     * The (relative) URIs found in a style sheet are cached by the hash of its content, so identical style sheets
+     * are parsed only once.
+     */
+    private void collectCssResources(RGridResource resource, URL baseUrl, Set<URL> resourceUrls) {
+        String contentType = resource.getContentType();
+        if (contentType == null || !contentType.contains("text/css")) return;
+        String sha256 = resource.getSha256();
+        List<String> uris = sha256 == null ? null : cssUriCache.get(sha256);
+        if (uris == null) {
+            String css = getCss(resource.getContent(), contentType);
+            if (css == null) return;
+            logger.verbose("parsing css resource " + resource.getUrl());
+            uris = parseCSS(css);
+            if (sha256 != null) {
+                long weight = 0;
+                for (String uri : uris) {
+                    weight += uri.length() * 2;
+                }
+                cssUriCache.put(sha256, uris);
+                cssUriCache.setWeight(sha256, weight);
+            }
+        }
+        for (String uri : uris) {
+            try {
+                resourceUrls.add(new URL(baseUrl, uri));
+            } catch (MalformedURLException e) {
+                GeneralUtils.logExceptionStackTrace(logger, e);
+            }
         }
     }
 
     private String getCss(byte[] contentBytes, String contentTypeStr) {
         logger.log("enter");
         if (contentTypeStr == null) return null;
-        if (contentBytes.length == 0) return null;
+        if (contentBytes == null || contentBytes.length == 0) return null;
         String[] parts = contentTypeStr.split(";");
         String charset = "UTF-8";
         for (String part : parts) {
@@ -570,68 +621,59 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
         return css;
     }
 
-    private void parseCSS(String css, URL baseUrl, Set<URL> resourceUrls) {
+    private List<String> parseCSS(String css) {
         logger.verbose("enter");
+        List<String> uris = new ArrayList<>();
         final CascadingStyleSheet cascadingStyleSheet = CSSReader.readFromString(css, ECSSVersion.CSS30);
         if (cascadingStyleSheet == null) {
             logger.verbose("exit - failed to read CSS string");
-            return;
+            return uris;
         }
-        collectAllImportUris(cascadingStyleSheet, resourceUrls, baseUrl);
-        collectAllFontFaceUris(cascadingStyleSheet, resourceUrls, baseUrl);
-        collectAllBackgroundImageUris(cascadingStyleSheet, resourceUrls, baseUrl);
+        collectAllImportUris(cascadingStyleSheet, uris);
+        collectAllFontFaceUris(cascadingStyleSheet, uris);
+        collectAllBackgroundImageUris(cascadingStyleSheet, uris);
         logger.verbose("exit");
+        return uris;
     }
 
-    private void collectAllFontFaceUris(CascadingStyleSheet cascadingStyleSheet, Set<URL> allResourceUris, URL baseUrl) {
+    private void collectAllFontFaceUris(CascadingStyleSheet cascadingStyleSheet, List<String> allResourceUris) {
         logger.verbose("enter");
         ICommonsList<CSSFontFaceRule> allFontFaceRules = cascadingStyleSheet.getAllFontFaceRules();
         for (CSSFontFaceRule fontFaceRule : allFontFaceRules) {
-            getAllResourcesUrisFromDeclarations(allResourceUris, fontFaceRule, "src", baseUrl);
+            getAllResourcesUrisFromDeclarations(allResourceUris, fontFaceRule, "src");
         }
         logger.verbose("exit");
     }
 
-    private void collectAllBackgroundImageUris(CascadingStyleSheet cascadingStyleSheet, Set<URL> allResourceUris, URL baseUrl) {
+    private void collectAllBackgroundImageUris(CascadingStyleSheet cascadingStyleSheet, List<String> allResourceUris) {
         logger.verbose("enter");
         ICommonsList<CSSStyleRule> allStyleRules = cascadingStyleSheet.getAllStyleRules();
         for (CSSStyleRule styleRule : allStyleRules) {
-            getAllResourcesUrisFromDeclarations(allResourceUris, styleRule, "background", baseUrl);
-            getAllResourcesUrisFromDeclarations(allResourceUris, styleRule, "background-image", baseUrl);
+            getAllResourcesUrisFromDeclarations(allResourceUris, styleRule, "background");
+            getAllResourcesUrisFromDeclarations(allResourceUris, styleRule, "background-image");
         }
         logger.verbose("exit");
     }
 
-    private void collectAllImportUris(CascadingStyleSheet cascadingStyleSheet, Set<URL> allResourceUris, URL baseUrl) {
+    private void collectAllImportUris(CascadingStyleSheet cascadingStyleSheet, List<String> allResourceUris) {
         logger.verbose("enter");
         ICommonsList<CSSImportRule> allImportRules = cascadingStyleSheet.getAllImportRules();
         for (CSSImportRule importRule : allImportRules) {
-            String uri = importRule.getLocation().getURI();
-            try {
-                URL url = new URL(baseUrl, uri);
-                allResourceUris.add(url);
-            } catch (MalformedURLException e) {
-                GeneralUtils.logExceptionStackTrace(logger, e);
-            }
+            allResourceUris.add(importRule.getLocation().getURI());
         }
         logger.verbose("exit");
     }
 
-    private <T extends IHasCSSDeclarations<T>> void getAllResourcesUrisFromDeclarations(Set<URL> allResourceUris, IHasCSSDeclarations<T> rule, String propertyName, URL baseUrl) {
+    private <T extends IHasCSSDeclarations<T>> void getAllResourcesUrisFromDeclarations(List<String> allResourceUris, IHasCSSDeclarations<T> rule, String propertyName) {
         ICommonsList<CSSDeclaration> sourcesList = rule.getAllDeclarationsOfPropertyName(propertyName);
         for (CSSDeclaration cssDeclaration : sourcesList) {
             CSSExpression cssDeclarationExpression = cssDeclaration.getExpression();
             ICommonsList<ICSSExpressionMember> allExpressionMembers = cssDeclarationExpression.getAllMembers();
             ICommonsList<CSSExpressionMemberTermURI> allUriExpressions = allExpressionMembers.getAllInstanceOf(CSSExpressionMemberTermURI.class);
             for (CSSExpressionMemberTermURI uriExpression : allUriExpressions) {
-                try {
-                    String uri = uriExpression.getURIString();
-                    if (uri.toLowerCase().startsWith("data:")) continue;
-                    URL url = new URL(baseUrl, uri);
-                    allResourceUris.add(url);
-                } catch (MalformedURLException e) {
-                    GeneralUtils.logExceptionStackTrace(logger, e);
-                }
+                String uri = uriExpression.getURIString();
+                if (uri.toLowerCase().startsWith("data:")) continue;
+                allResourceUris.add(uri);
             }
         }
     }
@@ -665,6 +707,7 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
                     IResourceFuture resourceFuture = this.eyesConnector.createResourceFuture(blob);
                     logger.verbose("Cache write for url - " + url + " hash:(" + resourceFuture + ")");
                     this.fetchedCacheMap.put(url, resourceFuture);
+                    this.fetchedCacheMap.setWeight(url, blob.getContent().length);
                     written++;
                 }
             }
@@ -672,186 +715,248 @@ public class RenderingTask implements Callable<RenderStatusResults>, Completable
         return written;
     }
 
-    private void fetchAllResources(final Map<String, RGridResource> allBlobs, Set<URL> resourceUrls) throws ExecutionException, InterruptedException {
+    private void fetchAllResources(final Map<String, RGridResource> allBlobs, Set<URL> resourceUrls) throws InterruptedException {
         logger.verbose("enter");
-        List<IResourceFuture> allFetches = new ArrayList<>();
+        ResourceFetchPipeline pipeline = new ResourceFetchPipeline(allBlobs);
+        for (URL link : resourceUrls) {
+            pipeline.fetch(link);
+        }
+        pipeline.awaitCompletion();
+        logger.verbose("fetched " + pipeline.fetchedCount.get() + " resources, parsed " + pipeline.parsedCount.get() + " style sheets");
 
-        final Iterator<URL> iterator = resourceUrls.iterator();
-        while (iterator.hasNext()) {
-            URL link = iterator.next();
-            String url = link.toString();
-            synchronized (this.fetchedCacheMap) {
-                // If resource is already being fetched, remove it from the list, and use the future.
+        // Whatever wasn't fetched stays on the list.
+        resourceUrls.clear();
+        resourceUrls.addAll(pipeline.failedUrls);
+        logger.verbose("exit");
+    }
+
+    /**
+     * Fetches resources as a pipeline: each URL is awaited on its own (so downloads complete in any order), each
+     * fetched style sheet is parsed on the CSS parser pool as soon as it arrives, and the URLs it refers to are
+     * fetched as soon as they're found, rather than one import level at a time.
+     */
+    private class ResourceFetchPipeline {
+        private final Map<String, RGridResource> allBlobs;
+        private final Set<String> scheduledUrls = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private final Set<IResourceFuture> downloads = Collections.newSetFromMap(new ConcurrentHashMap<IResourceFuture, Boolean>());
+        private final Set<URL> failedUrls = Collections.newSetFromMap(new ConcurrentHashMap<URL, Boolean>());
+        private final AtomicInteger fetchedCount = new AtomicInteger();
+        private final AtomicInteger parsedCount = new AtomicInteger();
+        // The calling thread is a party, so the phase completes only once all fetches and parses, including the
+        // ones scheduled along the way, have completed.
+        private final Phaser phaser = new Phaser(1);
+
+        ResourceFetchPipeline(Map<String, RGridResource> allBlobs) {
+            this.allBlobs = allBlobs;
+        }
+
+        void fetch(final URL link) {
+            final String url = link.toString();
+            if (!scheduledUrls.add(url)) {
+                return;
+            }
+            final IResourceFuture future;
+            synchronized (fetchedCacheMap) {
+                // If resource is already being fetched, use the future.
                 IResourceFuture fetch = fetchedCacheMap.get(url);
                 if (fetch != null) {
                     logger.verbose("cache hit for url " + url);
-                    iterator.remove();
-                    allFetches.add(fetch);
-                    continue;
-                }
-
-                // If resource is not being fetched yet (limited guarantee)
-                IEyesConnector eyesConnector = this.taskList.get(0).getEyesConnector();
-                IResourceFuture future = eyesConnector.getResource(link);
-
-                if (!this.fetchedCacheMap.containsKey(url)) {
-                    this.fetchedCacheMap.put(url, future);
-                    allFetches.add(future);
-                    logger.verbose("this.fetchedCacheMap.put(" + url + ")");
+                    future = fetch;
                 } else {
-                    logger.verbose("this.fetchedCacheMap.containsKey(" + url + ")");
+                    IEyesConnector eyesConnector = taskList.get(0).getEyesConnector();
+                    future = getResourceFuture(eyesConnector, link, downloads);
+                    if (future != null) {
+                        fetchedCacheMap.put(url, future);
+                        logger.verbose("this.fetchedCacheMap.put(" + url + ")");
+                    }
                 }
             }
-        }
+            if (future == null) {
+                logger.verbose("no future for url " + url);
+                failedUrls.add(link);
+                return;
+            }
 
-        logger.verbose("parsing " + allFetches.size() + " fetched resources");
-        for (IResourceFuture future : allFetches) {
-            RGridResource resource;
+            phaser.register();
             try {
-                logger.verbose("trying future.get() for resource " + future.getUrl() + " ...");
-                resource = future.get(10, TimeUnit.SECONDS);
-                logger.verbose("finishing future.get() for resource " + future.getUrl() + " ...");
-            } catch (TimeoutException e) {
+                resourceFetchExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            RGridResource resource = future.get(10, TimeUnit.SECONDS);
+                            onResourceFetched(future, resource);
+                        } catch (Exception e) {
+                            GeneralUtils.logExceptionStackTrace(logger, e);
+                            failedUrls.add(link);
+                        } finally {
+                            phaser.arriveAndDeregister();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                phaser.arriveAndDeregister();
+                failedUrls.add(link);
                 GeneralUtils.logExceptionStackTrace(logger, e);
-                continue;
             }
+        }
+
+        private void onResourceFetched(IResourceFuture future, final RGridResource resource) {
+            fetchedCount.incrementAndGet();
             logger.verbose("done getting resource " + future.getUrl());
+            if (resource.getContent() != null) {
+                fetchedCacheMap.setWeight(future.getUrl(), resource.getContent().length);
+            }
+            if (resourceDiskCache != null && downloads.contains(future)) {
+                resourceDiskCache.put(resource);
+            }
             try {
-                this.debugResourceWriter.write(resource);
+                debugResourceWriter.write(resource);
             } catch (Exception e) {
                 GeneralUtils.logExceptionStackTrace(logger, e);
             }
-            logger.log("done writing to debugWriter");
-            String urlAsString = resource.getUrl();
-
-            removeUrlFromList(urlAsString, resourceUrls);
             allBlobs.put(resource.getUrl(), resource);
 
-            // FIXME - remove this
-            String contentType = resource.getContentType();
-            String css = null;
-            css = getCss(resource.getContent(), contentType);
-            logger.verbose("handling " + contentType + " resource from URL: " + urlAsString);
-            if (css == null || css.isEmpty() || !contentType.contains("text/css")) continue;
+            final String contentType = resource.getContentType();
+            if (contentType == null || !contentType.contains("text/css") || resource.getContent() == null) {
+                return;
+            }
+            phaser.register();
             try {
-                parseCSS(css, new URL(urlAsString), resourceUrls);
-            } catch (MalformedURLException e) {
+                cssParserExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            parseFetchedCss(resource);
+                        } catch (Exception e) {
+                            GeneralUtils.logExceptionStackTrace(logger, e);
+                        } finally {
+                            phaser.arriveAndDeregister();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                phaser.arriveAndDeregister();
                 GeneralUtils.logExceptionStackTrace(logger, e);
             }
-
         }
-        logger.verbose("exit");
-    }
 
-    private void removeUrlFromList(String url, Set<URL> resourceUrls) {
-        Iterator<URL> iterator = resourceUrls.iterator();
-        while (iterator.hasNext()) {
-            URL resourceUrl = iterator.next();
-            if (resourceUrl.toString().equalsIgnoreCase(url)) {
-                iterator.remove();
+        private void parseFetchedCss(RGridResource resource) throws MalformedURLException {
+            logger.verbose("handling " + resource.getContentType() + " resource from URL: " + resource.getUrl());
+            Set<URL> foundUrls = new HashSet<>();
+            collectCssResources(resource, new URL(resource.getUrl()), foundUrls);
+            parsedCount.incrementAndGet();
+            for (URL foundUrl : foundUrls) {
+                fetch(foundUrl);
             }
         }
+
+        void awaitCompletion() throws InterruptedException {
+            phaser.awaitAdvanceInterruptibly(phaser.arrive());
+        }
+    }
+
+    /**
+     * Revalidates the resource in the persistent cache with its origin (so an unchanged resource isn't downloaded
+     * again), and downloads it otherwise.
+     */
+    private IResourceFuture getResourceFuture(IEyesConnector eyesConnector, URL link, Set<IResourceFuture> downloads) {
+        IResourceFuture future;
+        String url = link.toString();
+        RGridResource cachedResource = resourceDiskCache == null ? null : resourceDiskCache.get(url);
+        if (cachedResource != null && cachedResource.hasValidators()) {
+            logger.verbose("revalidating cached url " + url);
+            future = eyesConnector.revalidateResource(link, cachedResource);
+        } else {
+            future = eyesConnector.getResource(link);
+        }
+        // Connectors which don't back downloads with futures return null.
+        if (future != null) {
+            downloads.add(future);
+        }
+        return future;
     }
 
-    private void pollRenderingStatus(Map<RunningRender, RenderRequest> runningRenders) {
+    private void pollRenderingStatus(final Map<RunningRender, RenderRequest> runningRenders) {
         logger.verbose("enter");
         List<String> ids = getRenderIds(runningRenders.keySet());
-        int numOfIterations = 0;
-
-        do {
-
-            List<RenderStatusResults> renderStatusResultsList = null;
-            try {
-                renderStatusResultsList = this.eyesConnector.renderStatusById(ids.toArray(new String[0]));
-            } catch (Exception e) {
-                GeneralUtils.logExceptionStackTrace(logger, e);
-                continue;
-            }
-            if (renderStatusResultsList == null || renderStatusResultsList.isEmpty() || renderStatusResultsList.get(0) == null) {
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {
-                    GeneralUtils.logExceptionStackTrace(logger, e);
-                }
-                continue;
-            }
-
-            sampleRenderingStatus(runningRenders, ids, renderStatusResultsList);
-
-            if (ids.size() > 0) {
+        if (ids.isEmpty()) {
+            onAllRendersDone();
+            return;
+        }
+        final AtomicInteger pendingRenders = new AtomicInteger(ids.size());
+        renderStatusPoller.poll(eyesConnector, renderingInfo, ids, new RenderStatusPoller.RenderStatusListener() {
+            @Override
+            public void onRenderStatus(String renderId, RenderStatusResults results) {
                 try {
-                    Thread.sleep(1500);
-                } catch (InterruptedException e) {
-                    GeneralUtils.logExceptionStackTrace(logger, e);
-                }
-            }
-
-            numOfIterations++;
-
-        } while (!ids.isEmpty() && numOfIterations < MAX_ITERATIONS);
-
-        for (String id : ids) {
-            for (RunningRender renderedRender : runningRenders.keySet()) {
-                if (renderedRender.getRenderId().equalsIgnoreCase(id)) {
-                    Task task = runningRenders.get(renderedRender).getTask();
-                    task.setRenderError(id);
-                    logger.verbose("removing failed render id: " + id);
-                    break;
+                    if (results == null) {
+                        setRenderError(runningRenders, renderId);
+                    } else {
+                        setRenderStatus(runningRenders, renderId, results);
+                    }
+                } catch (Exception e) {
+                    onTaskFailed(e);
+                } finally {
+                    if (pendingRenders.decrementAndGet() == 0) {
+                        onAllRendersDone();
+                    }
                 }
             }
-        }
+        });
+        logger.verbose("exit");
+    }
 
+    private void onAllRendersDone() {
         ICheckSettingsInternal rcInternal = (ICheckSettingsInternal) renderingConfiguration;
         logger.verbose("marking task as complete: " + rcInternal.getName());
         this.isTaskComplete.set(true);
+        this.isTaskCompleted = true;
         this.notifySuccessAllListeners();
-        logger.verbose("exit");
     }
 
-    private void sampleRenderingStatus(Map<RunningRender, RenderRequest> runningRenders, List<String> ids, List<RenderStatusResults> renderStatusResultsList) {
-        logger.verbose("enter - renderStatusResultsList.size: " + renderStatusResultsList.size());
+    private void onTaskFailed(Exception e) {
+        GeneralUtils.logExceptionStackTrace(logger, e);
+        this.isTaskInException = true;
+        this.isTaskCompleted = true;
+    }
 
-        for (int i = 0, j = 0; i < renderStatusResultsList.size(); i++) {
-            RenderStatusResults renderStatusResults = renderStatusResultsList.get(i);
-            if (renderStatusResults == null) {
-                continue;
+    private void setRenderError(Map<RunningRender, RenderRequest> runningRenders, String renderId) {
+        for (RunningRender renderedRender : runningRenders.keySet()) {
+            if (renderedRender.getRenderId().equalsIgnoreCase(renderId)) {
+                Task task = runningRenders.get(renderedRender).getTask();
+                task.setRenderError(renderId);
+                logger.verbose("removing failed render id: " + renderId);
+                break;
             }
+        }
+    }
 
-            RenderStatus renderStatus = renderStatusResults.getStatus();
-            boolean isRenderedStatus = renderStatus == RenderStatus.RENDERED;
-            boolean isErrorStatus = renderStatus == RenderStatus.ERROR;
-            logger.verbose("renderStatusResults - " + renderStatusResults);
-            if (isRenderedStatus || isErrorStatus) {
-
-                String removedId = ids.remove(j);
-
-                for (RunningRender renderedRender : runningRenders.keySet()) {
-                    if (renderedRender.getRenderId().equalsIgnoreCase(removedId)) {
-                        Task task = runningRenders.get(renderedRender).getTask();
-                        Iterator<Task> iterator = openTaskList.iterator();
-                        while (iterator.hasNext()) {
-                            Task openTask = iterator.next();
-                            if (openTask.getRunningTest() == task.getRunningTest()) {
-                                if (isRenderedStatus) {
-                                    logger.verbose("setting openTask " + openTask + " render result: " + renderStatusResults + " to url " + this.result.get("url"));
-                                    openTask.setRenderResult(renderStatusResults);
-                                } else {
-                                    logger.verbose("setting openTask " + openTask + " render error: " + removedId + " to url " + this.result.get("url"));
-                                    openTask.setRenderError(removedId);
-                                }
-                                iterator.remove();
+    private void setRenderStatus(Map<RunningRender, RenderRequest> runningRenders, String renderId, RenderStatusResults renderStatusResults) {
+        logger.verbose("renderStatusResults - " + renderStatusResults);
+        boolean isRenderedStatus = renderStatusResults.getStatus() == RenderStatus.RENDERED;
+        for (RunningRender renderedRender : runningRenders.keySet()) {
+            if (renderedRender.getRenderId().equalsIgnoreCase(renderId)) {
+                Task task = runningRenders.get(renderedRender).getTask();
+                synchronized (openTaskList) {
+                    Iterator<Task> iterator = openTaskList.iterator();
+                    while (iterator.hasNext()) {
+                        Task openTask = iterator.next();
+                        if (openTask.getRunningTest() == task.getRunningTest()) {
+                            if (isRenderedStatus) {
+                                logger.verbose("setting openTask " + openTask + " render result: " + renderStatusResults + " to url " + this.result.getUrl());
+                                openTask.setRenderResult(renderStatusResults);
+                            } else {
+                                logger.verbose("setting openTask " + openTask + " render error: " + renderId + " to url " + this.result.getUrl());
+                                openTask.setRenderError(renderId);
                             }
+                            iterator.remove();
                         }
-                        logger.verbose("setting task " + task + " render result: " + renderStatusResults + " to url " + this.result.get("url"));
-                        task.setRenderResult(renderStatusResults);
-                        break;
                     }
                 }
-            } else {
-                j++;
+                logger.verbose("setting task " + task + " render result: " + renderStatusResults + " to url " + this.result.getUrl());
+                task.setRenderResult(renderStatusResults);
+                break;
             }
         }
-        logger.verbose("exit");
     }
 
     public boolean getIsTaskComplete() {
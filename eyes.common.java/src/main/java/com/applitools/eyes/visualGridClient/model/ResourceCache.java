@@ -0,0 +1,169 @@
+package com.applitools.eyes.visualGridClient.model;
+
+import com.applitools.utils.ArgumentGuard;
+
+import java.util.*;
+
+/**
+ * A map of resources by URL, bounded by the total size of the resources it holds.
+ * Every entry weighs a fixed overhead plus the size of its content, which is set by {@link #setWeight(String, long)}
+ * once known (e.g., when a download completes). When the total weight exceeds the budget, the least recently used
+ * entries are evicted. Subclasses can change the eviction policy by overriding {@link #selectVictims()}.
+ * All the methods synchronize on the cache itself, so compound operations can synchronize on it as well.
+ */
+public class ResourceCache<V> extends AbstractMap<String, V> {
+
+    public static final long ENTRY_OVERHEAD = 128;
+
+    private final LinkedHashMap<String, V> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, Long> weights = new HashMap<>();
+    private final long maxWeight;
+    private long weight = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * @param maxWeight The maximum total weight (bytes) of the cached entries.
+     */
+    public ResourceCache(long maxWeight) {
+        ArgumentGuard.greaterThanZero(maxWeight, "maxWeight");
+        this.maxWeight = maxWeight;
+    }
+
+    @Override
+    public synchronized V get(Object key) {
+        V value = entries.get(key);
+        if (value == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public synchronized V put(String key, V value) {
+        V previous = entries.put(key, value);
+        updateWeight(key, 0);
+        evict(key);
+        return previous;
+    }
+
+    /**
+     * Sets the size of the content held by the entry of the given key, if there is one.
+     * @param key   The key of the entry.
+     * @param bytes The size (bytes) of the content held by the entry.
+     */
+    public synchronized void setWeight(String key, long bytes) {
+        if (entries.containsKey(key)) {
+            updateWeight(key, bytes);
+            evict(key);
+        }
+    }
+
+    @Override
+    public synchronized V remove(Object key) {
+        V value = entries.remove(key);
+        Long entryWeight = weights.remove(key);
+        if (entryWeight != null) {
+            weight -= entryWeight;
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        weights.clear();
+        weight = 0;
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return A snapshot of the entries, from the least to the most recently used.
+     */
+    @Override
+    public synchronized Set<Map.Entry<String, V>> entrySet() {
+        Set<Map.Entry<String, V>> snapshot = new LinkedHashSet<>();
+        for (Map.Entry<String, V> entry : entries.entrySet()) {
+            snapshot.add(new SimpleImmutableEntry<>(entry));
+        }
+        return Collections.unmodifiableSet(snapshot);
+    }
+
+    /**
+     * Called for every entry evicted from the cache (while holding its lock).
+     */
+    protected void onEvicted(String key, V value) {
+    }
+
+    /**
+     * @return The keys to evict, in order, when the cache is over its budget. Defaults to least recently used first.
+     */
+    protected Iterator<String> selectVictims() {
+        return new ArrayList<>(entries.keySet()).iterator();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ResourceCache{" +
+                "size=" + entries.size() +
+                ", weight=" + weight +
+                ", maxWeight=" + maxWeight +
+                ", hits=" + hitCount +
+                ", misses=" + missCount +
+                ", evictions=" + evictionCount +
+                '}';
+    }
+
+    private void updateWeight(String key, long bytes) {
+        Long previous = weights.put(key, ENTRY_OVERHEAD + bytes);
+        weight += ENTRY_OVERHEAD + bytes - (previous == null ? 0 : previous);
+    }
+
+    private void evict(String keptKey) {
+        if (weight <= maxWeight) {
+            return;
+        }
+        Iterator<String> victims = selectVictims();
+        while (weight > maxWeight && victims.hasNext()) {
+            String key = victims.next();
+            if (key.equals(keptKey) || !entries.containsKey(key)) {
+                continue;
+            }
+            V value = remove(key);
+            evictionCount++;
+            onEvicted(key, value);
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package com.applitools.eyes.visualGridClient.model;
+
+import com.applitools.eyes.Logger;
+import com.applitools.utils.ArgumentGuard;
+import com.applitools.utils.GeneralUtils;
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Persistent, content-addressed cache of downloaded resources, shared between runs.
+ * Resource contents are stored once per sha256 under {@code blobs/}, and an index maps each URL to its hash, content
+ * type and validators (ETag/Last-Modified). Cached resources are always revalidated with their origin (using a
+ * conditional request), so only resources which have validators are cached. The cache is bounded by the total size
+ * of the stored contents, evicting the least recently used URLs first.
+ * The index also records the hashes the render server already acknowledged having, so these are not uploaded again.
+ */
+public class ResourceDiskCache {
+
+    public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024; // 512MB
+
+    private static final int INDEX_MAGIC = 0x45594552;
+    private static final int INDEX_VERSION = 2;
+    private static final int MAX_ACKNOWLEDGED_HASHES = 50000;
+    private static final String INDEX_FILE_NAME = "index";
+    private static final String BLOBS_DIR_NAME = "blobs";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File directory;
+    private final File blobsDirectory;
+    private final long maxSize;
+    private final Logger logger;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, Integer> blobReferences = new HashMap<>();
+    private final LinkedHashMap<String, Boolean> acknowledgedHashes = new LinkedHashMap<String, Boolean>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_ACKNOWLEDGED_HASHES;
+        }
+    };
+    private long size = 0;
+    private boolean isDirty = false;
+
+    private static class Entry {
+        private final String sha256;
+        private final String contentType;
+        private final String etag;
+        private final String lastModified;
+        private final long size;
+
+        Entry(String sha256, String contentType, String etag, String lastModified, long size) {
+            this.sha256 = sha256;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+
+    /**
+     * @param directory The directory holding the cache. Created if it does not exist.
+     * @param maxSize   The maximum total size (bytes) of the cached contents.
+     * @param logger    Logger instance.
+     */
+    public ResourceDiskCache(File directory, long maxSize, Logger logger) {
+        ArgumentGuard.notNull(directory, "directory");
+        ArgumentGuard.greaterThanZero(maxSize, "maxSize");
+        this.directory = directory;
+        this.blobsDirectory = new File(directory, BLOBS_DIR_NAME);
+        this.maxSize = maxSize;
+        this.logger = logger;
+        if (!blobsDirectory.isDirectory() && !blobsDirectory.mkdirs()) {
+            logger.log("Failed to create resource cache directory: " + blobsDirectory);
+        }
+        loadIndex();
+    }
+
+    public ResourceDiskCache(File directory, Logger logger) {
+        this(directory, DEFAULT_MAX_SIZE, logger);
+    }
+
+    /**
+     * @param url The URL of the resource.
+     * @return The cached resource (carrying its validators), or {@code null} if the URL is not cached.
+     */
+    public RGridResource get(String url) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(url);
+        }
+        if (entry == null) {
+            return null;
+        }
+        // Read and verified outside the lock, so fetches don't wait for each other's disk reads.
+        byte[] content;
+        try {
+            content = FileUtils.readFileToByteArray(getBlobFile(entry.sha256));
+        } catch (IOException e) {
+            logger.verbose("cached content of " + url + " is missing - " + e.getMessage());
+            removeEntry(url, entry);
+            return null;
+        }
+        RGridResource resource = new RGridResource(url, entry.contentType, content, logger, "ResourceDiskCache");
+        if (!entry.sha256.equals(resource.getSha256())) {
+            logger.log("cached content of " + url + " is corrupt, dropping it");
+            removeEntry(url, entry);
+            return null;
+        }
+        resource.setValidators(entry.etag, entry.lastModified);
+        return resource;
+    }
+
+    /**
+     * Stores a resource which was just fetched (or revalidated) from its origin. Resources without validators can't
+     * be revalidated, so they aren't stored (and replace the URL's previously stored resource, if any).
+     * @param resource The resource to store.
+     */
+    public void put(RGridResource resource) {
+        String url = resource.getUrl();
+        byte[] content = resource.getContent();
+        if (url == null || content == null || content.length > maxSize) {
+            return;
+        }
+        if (!resource.hasValidators()) {
+            synchronized (this) {
+                removeEntry(url);
+            }
+            return;
+        }
+        String sha256 = resource.getSha256();
+        Entry entry = new Entry(sha256, resource.getContentType(), resource.getEtag(), resource.getLastModified(),
+                content.length);
+        if (putIfRevalidated(url, entry)) {
+            return;
+        }
+        // Written outside the lock. Blobs are content addressed, so concurrent writes of a blob write the same bytes.
+        File blobFile = getBlobFile(sha256);
+        boolean isStored;
+        synchronized (this) {
+            isStored = blobReferences.containsKey(sha256);
+        }
+        if (!isStored || !blobFile.isFile()) {
+            try {
+                writeBlob(blobFile, content);
+            } catch (IOException e) {
+                GeneralUtils.logExceptionStackTrace(logger, e);
+                return;
+            }
+        }
+        synchronized (this) {
+            if (putIfRevalidated(url, entry)) {
+                return;
+            }
+            if (!blobReferences.containsKey(sha256) && !blobFile.isFile()) {
+                // Deleted by the eviction of another URL since it was written.
+                logger.verbose("cached content of " + url + " was evicted while stored");
+                return;
+            }
+            isDirty = true;
+            removeEntry(url);
+            entries.put(url, entry);
+            addBlobReference(sha256, content.length);
+            evictIfNeeded(url);
+        }
+    }
+
+    public synchronized boolean isAcknowledged(String sha256) {
+        return acknowledgedHashes.containsKey(sha256);
+    }
+
+    /**
+     * Records that the render server has the resource with the given hash.
+     */
+    public synchronized void acknowledge(String sha256) {
+        if (acknowledgedHashes.put(sha256, Boolean.TRUE) == null) {
+            isDirty = true;
+        }
+    }
+
+    /**
+     * Records that the render server no longer has the resource with the given hash.
+     */
+    public synchronized void unacknowledge(String sha256) {
+        if (acknowledgedHashes.remove(sha256) != null) {
+            isDirty = true;
+        }
+    }
+
+    /**
+     * @return The total size (bytes) of the cached contents.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Writes the index to disk, if it was changed since it was loaded or last written.
+     */
+    public synchronized void flush() {
+        if (!isDirty) {
+            return;
+        }
+        File indexFile = new File(directory, INDEX_FILE_NAME);
+        File tempFile = new File(directory, INDEX_FILE_NAME + ".tmp");
+        try {
+            try (FileOutputStream stream = new FileOutputStream(tempFile)) {
+                stream.write(serializeIndex());
+                stream.getFD().sync();
+            }
+            if (!tempFile.renameTo(indexFile)) {
+                // Some platforms can't rename over an existing file.
+                if (!indexFile.delete() || !tempFile.renameTo(indexFile)) {
+                    logger.log("Failed to replace resource cache index " + indexFile);
+                    return;
+                }
+            }
+            isDirty = false;
+            logger.verbose("resource cache index written: " + entries.size() + " entries, " + size + " bytes, "
+                    + acknowledgedHashes.size() + " acknowledged hashes");
+        } catch (IOException e) {
+            GeneralUtils.logExceptionStackTrace(logger, e);
+        }
+    }
+
+    private File getBlobFile(String sha256) {
+        return new File(blobsDirectory, sha256);
+    }
+
+    private void writeBlob(File blobFile, byte[] content) throws IOException {
+        File tempFile = File.createTempFile("blob", ".tmp", blobsDirectory);
+        try {
+            try (FileOutputStream stream = new FileOutputStream(tempFile)) {
+                stream.write(content);
+            }
+            if (!tempFile.renameTo(blobFile) && !blobFile.isFile()) {
+                throw new IOException("Failed to store " + blobFile);
+            }
+        } finally {
+            if (tempFile.exists() && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    private void addBlobReference(String sha256, long blobSize) {
+        Integer references = blobReferences.get(sha256);
+        if (references == null) {
+            blobReferences.put(sha256, 1);
+            size += blobSize;
+        } else {
+            blobReferences.put(sha256, references + 1);
+        }
+    }
+
+    /**
+     * Updates the metadata of a URL whose content didn't change.
+     * @return Whether the URL was already stored with the same content.
+     */
+    private synchronized boolean putIfRevalidated(String url, Entry entry) {
+        Entry previousEntry = entries.get(url);
+        if (previousEntry == null || !previousEntry.sha256.equals(entry.sha256)) {
+            return false;
+        }
+        isDirty = true;
+        entries.put(url, entry);
+        return true;
+    }
+
+    /**
+     * Removes the entry of a URL, unless it was replaced since it was read.
+     */
+    private synchronized void removeEntry(String url, Entry entry) {
+        if (entries.get(url) == entry) {
+            removeEntry(url);
+        }
+    }
+
+    private void removeEntry(String url) {
+        Entry entry = entries.remove(url);
+        if (entry == null) {
+            return;
+        }
+        isDirty = true;
+        Integer references = blobReferences.get(entry.sha256);
+        if (references != null && references > 1) {
+            blobReferences.put(entry.sha256, references - 1);
+            return;
+        }
+        blobReferences.remove(entry.sha256);
+        size -= entry.size;
+        File blobFile = getBlobFile(entry.sha256);
+        if (blobFile.exists() && !blobFile.delete()) {
+            logger.verbose("failed to delete " + blobFile);
+        }
+    }
+
+    private void evictIfNeeded(String keptUrl) {
+        Iterator<String> iterator = new ArrayList<>(entries.keySet()).iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            String url = iterator.next();
+            if (!url.equals(keptUrl)) {
+                logger.verbose("evicting " + url + " from resource cache");
+                removeEntry(url);
+            }
+        }
+    }
+
+    private void loadIndex() {
+        File indexFile = new File(directory, INDEX_FILE_NAME);
+        if (!indexFile.isFile()) {
+            return;
+        }
+        // Read with a plain stream (rather than mapped), so the file isn't held open and can be replaced by flush().
+        try (DataInputStream buffer = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (buffer.readInt() != INDEX_MAGIC || buffer.readInt() != INDEX_VERSION) {
+                logger.log("Ignoring resource cache index of an unknown format: " + indexFile);
+                return;
+            }
+            int entryCount = buffer.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                String url = readString(buffer);
+                Entry entry = new Entry(readString(buffer), readString(buffer), readString(buffer), readString(buffer),
+                        buffer.readLong());
+                if (getBlobFile(entry.sha256).isFile()) {
+                    entries.put(url, entry);
+                    addBlobReference(entry.sha256, entry.size);
+                }
+            }
+            int acknowledgedCount = buffer.readInt();
+            for (int i = 0; i < acknowledgedCount; i++) {
+                acknowledgedHashes.put(readString(buffer), Boolean.TRUE);
+            }
+            logger.verbose("resource cache index loaded: " + entries.size() + " entries, " + size + " bytes, "
+                    + acknowledgedHashes.size() + " acknowledged hashes");
+        } catch (Exception e) {
+            // A truncated or corrupt index only costs a cold cache, since the contents are verified by their hash.
+            logger.log("Failed to read resource cache index: " + e);
+            entries.clear();
+            blobReferences.clear();
+            acknowledgedHashes.clear();
+            size = 0;
+        }
+    }
+
+    private byte[] serializeIndex() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * (entries.size() + 1));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(INDEX_MAGIC);
+        out.writeInt(INDEX_VERSION);
+        out.writeInt(entries.size());
+        // Written least recently used first, so the access order is restored on load.
+        for (Map.Entry<String, Entry> urlAndEntry : entries.entrySet()) {
+            Entry entry = urlAndEntry.getValue();
+            writeString(out, urlAndEntry.getKey());
+            writeString(out, entry.sha256);
+            writeString(out, entry.contentType);
+            writeString(out, entry.etag);
+            writeString(out, entry.lastModified);
+            out.writeLong(entry.size);
+        }
+        out.writeInt(acknowledgedHashes.size());
+        for (String sha256 : acknowledgedHashes.keySet()) {
+            writeString(out, sha256);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -3,7 +3,9 @@ package com.applitools.eyes.visualGridClient.model;
 import com.applitools.IResourceUploadListener;
 import com.applitools.eyes.*;
 import com.applitools.eyes.visualGridClient.services.IResourceFuture;
+import com.applitools.utils.GeneralUtils;
 
+import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.util.List;
@@ -11,6 +13,7 @@ import java.util.List;
 public class ThrottlingServerConnector implements IServerConnector {
     private IServerConnector serverConnector;
     private RateLimiter rateLimiter;
+    private volatile RenderingInfo renderingInfo;
 
     public ThrottlingServerConnector(IServerConnector serverConnector, RateLimiter rateLimiter) {
         this.serverConnector = serverConnector;
@@ -57,6 +60,16 @@ public class ThrottlingServerConnector implements IServerConnector {
         return this.serverConnector.getProxy();
     }
 
+    @Override
+    public void setConnectionPoolSettings(ConnectionPoolSettings connectionPoolSettings) {
+        this.serverConnector.setConnectionPoolSettings(connectionPoolSettings);
+    }
+
+    @Override
+    public ConnectionPoolSettings getConnectionPoolSettings() {
+        return this.serverConnector.getConnectionPoolSettings();
+    }
+
     @Override
     public int getTimeout() {
         return this.serverConnector.getTimeout();
@@ -92,6 +105,11 @@ public class ThrottlingServerConnector implements IServerConnector {
         return this.serverConnector.downloadResource(uri, isSecondRetry, listener);
     }
 
+    @Override
+    public IResourceFuture revalidateResource(URL uri, RGridResource cachedResource) {
+        return this.serverConnector.revalidateResource(uri, cachedResource);
+    }
+
     @Override
     public String postDomSnapshot(String domJson) {
         return this.serverConnector.postDomSnapshot(domJson);
@@ -113,17 +131,60 @@ public class ThrottlingServerConnector implements IServerConnector {
     }
 
     @Override
-    public PutFuture renderPutResource(RunningRender runningRender, RGridResource resource, IResourceUploadListener listener) {
-        PutFuture putFuture;
-        if (rateLimiter.isSlotAvailable()) {
-            putFuture = this.serverConnector.renderPutResource(runningRender, resource, listener);
-        } else {
-            putFuture = new PutFuture(resource, runningRender, this.serverConnector, getLogger());
+    public PutFuture renderPutResource(final RunningRender runningRender, final RGridResource resource, final IResourceUploadListener listener) {
+        // Retried through this connector, so retries are throttled as well.
+        final PutFuture putFuture = new PutFuture(resource, runningRender, this, getLogger());
+        try {
+            rateLimiter.submit(getServiceHost(), new RateLimiter.Job() {
+                @Override
+                public void start(final IResourceUploadListener limiterListener) {
+                    PutFuture startedFuture = null;
+                    try {
+                        startedFuture = serverConnector.renderPutResource(runningRender, resource, new IResourceUploadListener() {
+                            @Override
+                            public void onUploadComplete(boolean isUploadedSuccessfully) {
+                                limiterListener.onUploadComplete(isUploadedSuccessfully);
+                                if (listener != null) {
+                                    listener.onUploadComplete(isUploadedSuccessfully);
+                                }
+                            }
+
+                            @Override
+                            public void onUploadFailed() {
+                                limiterListener.onUploadFailed();
+                                if (listener != null) {
+                                    listener.onUploadFailed();
+                                }
+                            }
+                        });
+                    } finally {
+                        putFuture.setPutFuture(startedFuture == null ? null : startedFuture.getPutFuture());
+                        if (startedFuture == null) {
+                            limiterListener.onUploadFailed();
+                        }
+                    }
+                }
+            });
+        } catch (InterruptedException e) {
+            GeneralUtils.logExceptionStackTrace(getLogger(), e);
+            Thread.currentThread().interrupt();
+            putFuture.setPutFuture(null);
         }
-        rateLimiter.handle(putFuture);
         return putFuture;
     }
 
+    private String getServiceHost() {
+        RenderingInfo renderingInfo = this.renderingInfo;
+        if (renderingInfo == null || renderingInfo.getServiceUrl() == null) {
+            return "";
+        }
+        try {
+            return new URL(renderingInfo.getServiceUrl()).getHost();
+        } catch (MalformedURLException e) {
+            return renderingInfo.getServiceUrl();
+        }
+    }
+
     @Override
     public RenderStatusResults renderStatus(RunningRender runningRender) {
         return this.serverConnector.renderStatus(runningRender);
@@ -141,6 +202,7 @@ public class ThrottlingServerConnector implements IServerConnector {
 
     @Override
     public void setRenderingInfo(RenderingInfo renderInfo) {
+        this.renderingInfo = renderInfo;
         this.serverConnector.setRenderingInfo(renderInfo);
     }
 }
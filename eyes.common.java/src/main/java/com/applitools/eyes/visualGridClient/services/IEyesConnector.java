@@ -29,6 +29,8 @@ public interface IEyesConnector {
 
     IResourceFuture getResource(URL url);
 
+    IResourceFuture revalidateResource(URL url, RGridResource cachedResource);
+
     RenderingInfo getRenderingInfo();
 
     PutFuture renderPutResource(RunningRender runningRender, RGridResource resource);
@@ -27,7 +27,7 @@ public interface IRenderingEyes {
 
         void onTaskComplete(Task task, IRenderingEyes eyes);
 
-        void onRenderComplete();
+        void onRenderComplete(IRenderingEyes eyes);
     }
 
     List<RunningTest> getAllRunningTests();
@@ -0,0 +1,260 @@
+package com.applitools.eyes.visualGridClient.services;
+
+import com.applitools.eyes.Logger;
+import com.applitools.eyes.visualGridClient.model.RenderStatus;
+import com.applitools.eyes.visualGridClient.model.RenderStatusResults;
+import com.applitools.eyes.visualGridClient.model.RenderingInfo;
+import com.applitools.utils.ArgumentGuard;
+import com.applitools.utils.GeneralUtils;
+
+import java.util.*;
+
+/**
+ * Polls the status of all the running renders on a single thread.
+ * On each tick, the renders that are due are combined into a single {@code renderStatusById} call per rendering
+ * service, and the listener of each render that finished (rendered or failed) is called. Every render is polled with
+ * its own adaptive backoff: the interval between its polls grows while it's still running, so long renders cost fewer
+ * calls, and renders that are due around the same time share a call. A render is given up on after a maximum number
+ * of polls, or once it has been polled for longer than the timeout, whichever comes first.
+ */
+public class RenderStatusPoller {
+
+    public static final long DEFAULT_MIN_INTERVAL = 500;
+    public static final long DEFAULT_MAX_INTERVAL = 3000;
+    public static final int DEFAULT_MAX_POLLS = 30;
+    // As long as the fixed 1.5 second interval polling that was done before the backoff, for its 30 polls.
+    public static final long DEFAULT_TIMEOUT = 45000;
+    private static final double BACKOFF_FACTOR = 1.5;
+
+    public interface RenderStatusListener {
+        /**
+         * Called (on the poller thread) once the render is done.
+         * @param renderId The id of the render.
+         * @param results  The status of the render ({@link RenderStatus#RENDERED} or {@link RenderStatus#ERROR}),
+         *                 or {@code null} if the poller gave up on it.
+         */
+        void onRenderStatus(String renderId, RenderStatusResults results);
+    }
+
+    private static class PendingRender {
+        private final String renderId;
+        private final IEyesConnector connector;
+        private final String serviceKey;
+        private final RenderStatusListener listener;
+        private final long deadline;
+        private long interval;
+        private long nextPollTime;
+        private int polls = 0;
+
+        private PendingRender(String renderId, IEyesConnector connector, String serviceKey, RenderStatusListener listener, long interval, long timeout) {
+            this.renderId = renderId;
+            this.connector = connector;
+            this.serviceKey = serviceKey;
+            this.listener = listener;
+            this.interval = interval;
+            long now = System.currentTimeMillis();
+            this.nextPollTime = now + interval;
+            this.deadline = now + timeout;
+        }
+    }
+
+    private final Logger logger;
+    private final long minInterval;
+    private final long maxInterval;
+    private final int maxPolls;
+    private final long timeout;
+    private final List<PendingRender> pendingRenders = new ArrayList<>();
+    private Thread thread;
+    private boolean isStopped = false;
+    private long tickCount = 0;
+    private long callCount = 0;
+
+    public RenderStatusPoller(Logger logger) {
+        this(logger, DEFAULT_MIN_INTERVAL, DEFAULT_MAX_INTERVAL, DEFAULT_MAX_POLLS);
+    }
+
+    /**
+     * @param minInterval The interval (ms) before the first poll of a render.
+     * @param maxInterval The maximum interval (ms) between the polls of a render.
+     * @param maxPolls    The number of polls after which the poller gives up on a render.
+     */
+    public RenderStatusPoller(Logger logger, long minInterval, long maxInterval, int maxPolls) {
+        this(logger, minInterval, maxInterval, maxPolls, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param minInterval The interval (ms) before the first poll of a render.
+     * @param maxInterval The maximum interval (ms) between the polls of a render.
+     * @param maxPolls    The number of polls after which the poller gives up on a render.
+     * @param timeout     The time (ms) after which the poller polls a render one last time, and gives up on it.
+     */
+    public RenderStatusPoller(Logger logger, long minInterval, long maxInterval, int maxPolls, long timeout) {
+        ArgumentGuard.greaterThanZero(minInterval, "minInterval");
+        ArgumentGuard.greaterThanOrEqualToZero(maxInterval - minInterval, "maxInterval - minInterval");
+        ArgumentGuard.greaterThanZero(maxPolls, "maxPolls");
+        ArgumentGuard.greaterThanZero(timeout, "timeout");
+        this.logger = logger;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.maxPolls = maxPolls;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Starts polling the status of the given renders.
+     * @param connector     The connector to poll with.
+     * @param renderingInfo The rendering service the renders run on. Renders of the same service are polled together.
+     * @param renderIds     The ids of the renders.
+     * @param listener      Called once for each of the renders when it's done.
+     */
+    public synchronized void poll(IEyesConnector connector, RenderingInfo renderingInfo, List<String> renderIds, RenderStatusListener listener) {
+        ArgumentGuard.notNull(connector, "connector");
+        ArgumentGuard.notNull(renderIds, "renderIds");
+        ArgumentGuard.notNull(listener, "listener");
+        String serviceKey = renderingInfo == null ? String.valueOf(System.identityHashCode(connector)) :
+                renderingInfo.getServiceUrl() + " " + renderingInfo.getAccessToken();
+        for (String renderId : renderIds) {
+            pendingRenders.add(new PendingRender(renderId, connector, serviceKey, listener, minInterval, timeout));
+        }
+        if (thread == null) {
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    pollLoop();
+                }
+            }, "eyes-render-status-poller");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Stops polling. The listeners of the renders still pending are not called.
+     */
+    public synchronized void stop() {
+        isStopped = true;
+        notifyAll();
+    }
+
+    public synchronized int getPendingCount() {
+        return pendingRenders.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RenderStatusPoller{" +
+                "pending=" + pendingRenders.size() +
+                ", ticks=" + tickCount +
+                ", calls=" + callCount +
+                '}';
+    }
+
+    private void pollLoop() {
+        while (true) {
+            Map<String, List<PendingRender>> dueRenders;
+            try {
+                dueRenders = awaitDueRenders();
+            } catch (InterruptedException e) {
+                GeneralUtils.logExceptionStackTrace(logger, e);
+                return;
+            }
+            if (dueRenders == null) {
+                return;
+            }
+            for (List<PendingRender> renders : dueRenders.values()) {
+                pollRenders(renders);
+            }
+        }
+    }
+
+    /**
+     * Waits until some renders are due and takes them, grouped by service. Renders that will be due within half the
+     * minimum interval are taken as well, so they share the call.
+     * @return The renders to poll, or {@code null} if the poller was stopped.
+     */
+    private synchronized Map<String, List<PendingRender>> awaitDueRenders() throws InterruptedException {
+        while (!isStopped) {
+            long now = System.currentTimeMillis();
+            long nextPollTime = Long.MAX_VALUE;
+            for (PendingRender render : pendingRenders) {
+                nextPollTime = Math.min(nextPollTime, render.nextPollTime);
+            }
+            if (nextPollTime <= now) {
+                Map<String, List<PendingRender>> dueRenders = new LinkedHashMap<>();
+                Iterator<PendingRender> iterator = pendingRenders.iterator();
+                while (iterator.hasNext()) {
+                    PendingRender render = iterator.next();
+                    if (render.nextPollTime <= now + minInterval / 2) {
+                        iterator.remove();
+                        List<PendingRender> renders = dueRenders.get(render.serviceKey);
+                        if (renders == null) {
+                            renders = new ArrayList<>();
+                            dueRenders.put(render.serviceKey, renders);
+                        }
+                        renders.add(render);
+                    }
+                }
+                tickCount++;
+                callCount += dueRenders.size();
+                return dueRenders;
+            }
+            if (nextPollTime == Long.MAX_VALUE) {
+                wait();
+            } else {
+                wait(nextPollTime - now);
+            }
+        }
+        return null;
+    }
+
+    private void pollRenders(List<PendingRender> renders) {
+        String[] ids = new String[renders.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = renders.get(i).renderId;
+        }
+        List<RenderStatusResults> renderStatusResultsList = null;
+        try {
+            renderStatusResultsList = renders.get(0).connector.renderStatusById(ids);
+        } catch (Exception e) {
+            GeneralUtils.logExceptionStackTrace(logger, e);
+        }
+        if (renderStatusResultsList == null) {
+            logger.verbose("render status call failed for " + ids.length + " renders");
+        }
+
+        List<PendingRender> stillRunning = new ArrayList<>();
+        for (int i = 0; i < renders.size(); i++) {
+            PendingRender render = renders.get(i);
+            RenderStatusResults results = renderStatusResultsList == null || i >= renderStatusResultsList.size() ?
+                    null : renderStatusResultsList.get(i);
+            RenderStatus status = results == null ? null : results.getStatus();
+            render.polls++;
+            if (status == RenderStatus.RENDERED || status == RenderStatus.ERROR) {
+                logger.verbose("render " + render.renderId + " done after " + render.polls + " polls - " + results);
+                notifyListener(render, results);
+            } else if (render.polls >= maxPolls || System.currentTimeMillis() >= render.deadline) {
+                logger.verbose("giving up on render " + render.renderId + " after " + render.polls + " polls");
+                notifyListener(render, null);
+            } else {
+                render.interval = Math.min(maxInterval, (long) (render.interval * BACKOFF_FACTOR));
+                // The last poll is at the deadline at the latest.
+                render.nextPollTime = Math.min(System.currentTimeMillis() + render.interval, render.deadline);
+                stillRunning.add(render);
+            }
+        }
+        if (!stillRunning.isEmpty()) {
+            synchronized (this) {
+                pendingRenders.addAll(stillRunning);
+            }
+        }
+    }
+
+    private void notifyListener(PendingRender render, RenderStatusResults results) {
+        try {
+            render.listener.onRenderStatus(render.renderId, results);
+        } catch (Exception e) {
+            GeneralUtils.logExceptionStackTrace(logger, e);
+        }
+    }
+}
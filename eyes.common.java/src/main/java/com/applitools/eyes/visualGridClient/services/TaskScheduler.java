@@ -0,0 +1,171 @@
+package com.applitools.eyes.visualGridClient.services;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Event driven replacement for the periodic rescan of all eyes by the service threads.
+ * Every state change of a test (task completed, render completed, eyes opened or closed) marks the relevant
+ * eyes as ready on each queue and wakes the waiting service. A service only looks at the eyes that are ready
+ * on its queue and retires the ones that turned out to have nothing runnable, until they are signaled again.
+ */
+public class TaskScheduler {
+
+    public enum Queue {OPEN, CHECK, CLOSE, RENDER}
+
+    private final Map<Queue, ReadyQueue> queues = new EnumMap<>(Queue.class);
+    private volatile boolean isStopped = false;
+
+    public TaskScheduler() {
+        for (Queue queue : Queue.values()) {
+            queues.put(queue, new ReadyQueue());
+        }
+    }
+
+    /**
+     * Marks the given eyes as possibly having runnable tasks on all of the task queues.
+     * @param eyes The eyes whose state changed.
+     */
+    public void signal(IRenderingEyes eyes) {
+        signal(Queue.OPEN, eyes);
+        signal(Queue.CHECK, eyes);
+        signal(Queue.CLOSE, eyes);
+    }
+
+    /**
+     * Marks the given eyes as possibly having a runnable task on the given queue and wakes the service waiting on it.
+     * @param queue The queue to signal.
+     * @param eyes  The eyes whose state changed, or {@code null} if there are no eyes associated with the work (rendering).
+     */
+    public void signal(Queue queue, IRenderingEyes eyes) {
+        queues.get(queue).signal(eyes);
+    }
+
+    /**
+     * Wakes all waiting services without marking any eyes as ready.
+     */
+    public void wakeAll() {
+        for (ReadyQueue readyQueue : queues.values()) {
+            readyQueue.signal(null);
+        }
+    }
+
+    public void stop() {
+        this.isStopped = true;
+        wakeAll();
+    }
+
+    /**
+     * @return A snapshot of the eyes that are ready on the queue, each paired with the stamp of its latest signal.
+     */
+    public List<Map.Entry<IRenderingEyes, Long>> getReadyEyes(Queue queue) {
+        return new ArrayList<>(queues.get(queue).readyEyes.entrySet());
+    }
+
+    /**
+     * Removes eyes that were found to have nothing runnable from the queue, unless they were signaled again since
+     * the given stamp was read.
+     */
+    public void retire(Queue queue, Map.Entry<IRenderingEyes, Long> readyEyes) {
+        queues.get(queue).readyEyes.remove(readyEyes.getKey(), readyEyes.getValue());
+    }
+
+    /**
+     * @return The current signal generation of the queue, to be passed to {@link #awaitWork(Queue, long)}.
+     */
+    public long getGeneration(Queue queue) {
+        return queues.get(queue).generation.get();
+    }
+
+    /**
+     * Blocks until the queue is signaled after the given generation was read, or until the scheduler is stopped.
+     */
+    public void awaitWork(Queue queue, long observedGeneration) throws InterruptedException {
+        queues.get(queue).await(observedGeneration);
+    }
+
+    public void onTaskDispatched(Queue queue) {
+        queues.get(queue).dispatchedCount.incrementAndGet();
+    }
+
+    public int getQueueDepth(Queue queue) {
+        return queues.get(queue).readyEyes.size();
+    }
+
+    public long getDispatchedCount(Queue queue) {
+        return queues.get(queue).dispatchedCount.get();
+    }
+
+    public long getWaitCount(Queue queue) {
+        return queues.get(queue).waitCount.get();
+    }
+
+    public long getTotalWaitTime(Queue queue, TimeUnit unit) {
+        return unit.convert(queues.get(queue).totalWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxWaitTime(Queue queue, TimeUnit unit) {
+        return unit.convert(queues.get(queue).maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("TaskScheduler {");
+        for (Queue queue : Queue.values()) {
+            sb.append(" ").append(queue)
+                    .append(": depth=").append(getQueueDepth(queue))
+                    .append(", dispatched=").append(getDispatchedCount(queue))
+                    .append(", waits=").append(getWaitCount(queue))
+                    .append(", waitMs=").append(getTotalWaitTime(queue, TimeUnit.MILLISECONDS))
+                    .append(";");
+        }
+        return sb.append(" }").toString();
+    }
+
+    private class ReadyQueue {
+        private final ConcurrentHashMap<IRenderingEyes, Long> readyEyes = new ConcurrentHashMap<>();
+        private final AtomicLong generation = new AtomicLong();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition workAvailable = lock.newCondition();
+        private final AtomicLong dispatchedCount = new AtomicLong();
+        private final AtomicLong waitCount = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        void signal(IRenderingEyes eyes) {
+            long stamp = generation.incrementAndGet();
+            if (eyes != null) {
+                readyEyes.put(eyes, stamp);
+            }
+            lock.lock();
+            try {
+                workAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void await(long observedGeneration) throws InterruptedException {
+            long start = System.nanoTime();
+            lock.lock();
+            try {
+                while (!isStopped && generation.get() == observedGeneration) {
+                    workAvailable.await();
+                }
+            } finally {
+                lock.unlock();
+            }
+            long waited = System.nanoTime() - start;
+            waitCount.incrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            long max = maxWaitNanos.get();
+            while (waited > max && !maxWaitNanos.compareAndSet(max, waited)) {
+                max = maxWaitNanos.get();
+            }
+        }
+    }
+}
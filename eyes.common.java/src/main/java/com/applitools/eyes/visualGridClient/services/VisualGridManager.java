@@ -4,10 +4,13 @@ import com.applitools.ICheckRGSettings;
 import com.applitools.eyes.LogHandler;
 import com.applitools.eyes.Logger;
 import com.applitools.eyes.visualGridClient.model.*;
+import com.applitools.utils.ArgumentGuard;
 import com.applitools.utils.GeneralUtils;
 
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class VisualGridManager {
 
@@ -27,16 +30,28 @@ public class VisualGridManager {
     private final List<IRenderingEyes> eyesToOpenList = Collections.synchronizedList(new ArrayList<IRenderingEyes>(200));
     private final List<IRenderingEyes> eyesToCloseList = Collections.synchronizedList(new ArrayList<IRenderingEyes>(200));
     private final List<IRenderingEyes> allEyes = Collections.synchronizedList(new ArrayList<IRenderingEyes>(200));
-    private Map<String, IResourceFuture> cachedResources = Collections.synchronizedMap(new HashMap<String, IResourceFuture>());
-    private Map<String, PutFuture> putResourceCache = Collections.synchronizedMap(new HashMap<String, PutFuture>());
+    public static final long DEFAULT_RESOURCE_CACHE_MAX_BYTES = 256L * 1024 * 1024; // 256MB
+    public static final long DEFAULT_PUT_RESOURCE_CACHE_MAX_BYTES = 64L * 1024 * 1024; // 64MB
+    public static final long DEFAULT_CSS_URI_CACHE_MAX_BYTES = 16L * 1024 * 1024; // 16MB
+    public static final int MAX_CONCURRENT_RESOURCE_FETCHES = 16;
+
+    private ResourceCache<IResourceFuture> cachedResources = new ResourceCache<>(DEFAULT_RESOURCE_CACHE_MAX_BYTES);
+    private ResourceCache<PutFuture> putResourceCache = new ResourceCache<>(DEFAULT_PUT_RESOURCE_CACHE_MAX_BYTES);
+    private ResourceCache<List<String>> cssUriCache = new ResourceCache<>(DEFAULT_CSS_URI_CACHE_MAX_BYTES);
+    private ResourceDiskCache resourceDiskCache;
+    // Awaits the downloads of resources, so they're handled in the order they complete. Each await blocks its thread
+    // (the resource futures offer no completion callbacks), so the pool is bounded and further awaits are queued.
+    private final ExecutorService resourceFetchExecutor = createDaemonPool("eyes-resource-fetch",
+            MAX_CONCURRENT_RESOURCE_FETCHES, MAX_CONCURRENT_RESOURCE_FETCHES, new LinkedBlockingQueue<Runnable>());
+    // Parses the fetched style sheets (CPU bound), off the threads that await downloads.
+    private final ExecutorService cssParserExecutor = createDaemonPool("eyes-css-parser",
+            Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(), new LinkedBlockingQueue<Runnable>());
 
     private final Logger logger = new Logger();
 
     private final Object openerServiceConcurrencyLock = new Object();
-    private final Object openerServiceLock = new Object();
-    private final Object checkerServiceLock = new Object();
-    private final Object closerServiceLock = new Object();
-    private final Object renderingServiceLock = new Object();
+    private final TaskScheduler taskScheduler = new TaskScheduler();
+    private final RenderStatusPoller renderStatusPoller = new RenderStatusPoller(logger);
     private final List<RenderingTask> renderingTaskList = Collections.synchronizedList(new ArrayList<RenderingTask>());
 
     private RenderingInfo renderingInfo;
@@ -48,24 +63,24 @@ public class VisualGridManager {
     private String apiKey = DEFAULT_API_KEY;
     private boolean isDisabled;
 
-    @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
-    private FutureTask<TestResultContainer> getOrWaitForTask(Object lock, @SuppressWarnings("SpellCheckingInspection") EyesService.Tasker tasker,
+    private FutureTask<TestResultContainer> getOrWaitForTask(TaskScheduler.Queue queue, @SuppressWarnings("SpellCheckingInspection") EyesService.Tasker tasker,
                                                              String serviceName) {
-        FutureTask<TestResultContainer> nextTestToOpen = tasker.getNextTask();
-        if (nextTestToOpen == null) {
+        long generation = taskScheduler.getGeneration(queue);
+        FutureTask<TestResultContainer> nextTask = tasker.getNextTask();
+        if (nextTask == null) {
             try {
-//                logger.verbose("locking " + serviceName);
-                synchronized (lock) {
-                    lock.wait(500);
-                }
-//                logger.verbose("releasing " + serviceName);
-                nextTestToOpen = tasker.getNextTask();
-//                logger.verbose(serviceName + " tasker returned " + nextTestToOpen);
+//                logger.verbose(serviceName + " waiting for work");
+                taskScheduler.awaitWork(queue, generation);
+                nextTask = tasker.getNextTask();
+//                logger.verbose(serviceName + " tasker returned " + nextTask);
             } catch (Exception e) {
                 GeneralUtils.logExceptionStackTrace(logger, e);
             }
         }
-        return nextTestToOpen;
+        if (nextTask != null) {
+            taskScheduler.onTaskDispatched(queue);
+        }
+        return nextTask;
     }
 
     public void pauseAllService() {
@@ -163,13 +178,13 @@ public class VisualGridManager {
                 GeneralUtils.logExceptionStackTrace(logger, e);
             }
 
-            notifyAllServices();
+            taskScheduler.signal(eyes);
         }
 
         @Override
-        public void onRenderComplete() {
+        public void onRenderComplete(IRenderingEyes eyes) {
             logger.verbose("enter");
-            notifyAllServices();
+            taskScheduler.signal(eyes);
             logger.verbose("exit");
         }
 
@@ -192,6 +207,10 @@ public class VisualGridManager {
         this.closerServiceDebugLock = closerServiceDebugLock;
         this.renderServiceDebugLock = renderServiceDebugLock;
         this.rateLimiter = new RateLimiter(logger, 20);
+        String resourceCacheDir = System.getenv("APPLITOOLS_RESOURCE_CACHE_DIR");
+        if (resourceCacheDir != null && !resourceCacheDir.isEmpty()) {
+            this.resourceDiskCache = new ResourceDiskCache(new File(resourceCacheDir), logger);
+        }
         init();
         startServices();
         logger.verbose("rendering grid manager is built");
@@ -212,24 +231,124 @@ public class VisualGridManager {
         return logger;
     }
 
-    public Map<String, IResourceFuture> getCachedResources() {
+    /**
+     * @return The cache of downloaded resources by URL, which exposes its size and hit/miss/eviction counts.
+     */
+    public ResourceCache<IResourceFuture> getCachedResources() {
         return cachedResources;
     }
 
-    public Map<String, PutFuture> getPutResourceCache() {
+    /**
+     * Replaces the cache of downloaded resources, e.g., to change its budget or its eviction policy.
+     * Should be called before any check is made.
+     */
+    public void setCachedResources(ResourceCache<IResourceFuture> cachedResources) {
+        ArgumentGuard.notNull(cachedResources, "cachedResources");
+        this.cachedResources = cachedResources;
+    }
+
+    /**
+     * @return The cache of resource uploads by URL, which exposes its size and hit/miss/eviction counts.
+     */
+    public ResourceCache<PutFuture> getPutResourceCache() {
         return putResourceCache;
     }
 
+    /**
+     * Replaces the cache of resource uploads, e.g., to change its budget or its eviction policy.
+     * Should be called before any check is made.
+     */
+    public void setPutResourceCache(ResourceCache<PutFuture> putResourceCache) {
+        ArgumentGuard.notNull(putResourceCache, "putResourceCache");
+        this.putResourceCache = putResourceCache;
+    }
+
+    /**
+     * @return The URIs referenced by the style sheets parsed so far, by the sha256 of their content.
+     */
+    public ResourceCache<List<String>> getCssUriCache() {
+        return cssUriCache;
+    }
+
+    /**
+     * Replaces the cache of the URIs referenced by parsed style sheets.
+     * Should be called before any check is made.
+     */
+    public void setCssUriCache(ResourceCache<List<String>> cssUriCache) {
+        ArgumentGuard.notNull(cssUriCache, "cssUriCache");
+        this.cssUriCache = cssUriCache;
+    }
+
+    /**
+     * @return The persistent resource cache shared between runs, or {@code null} if there's none.
+     */
+    public ResourceDiskCache getResourceDiskCache() {
+        return resourceDiskCache;
+    }
+
+    /**
+     * Sets a persistent cache for the downloaded resources, so following runs can skip downloading and uploading them.
+     * Defaults to a cache in the directory given by the {@code APPLITOOLS_RESOURCE_CACHE_DIR} environment variable, if set.
+     * @param resourceDiskCache The cache to use, or {@code null} for none.
+     */
+    public void setResourceDiskCache(ResourceDiskCache resourceDiskCache) {
+        this.resourceDiskCache = resourceDiskCache;
+    }
+
+    /**
+     * @return The poller that tracks the status of the running renders of all rendering tasks.
+     */
+    public RenderStatusPoller getRenderStatusPoller() {
+        return renderStatusPoller;
+    }
+
+    /**
+     * @return The pool on which rendering tasks await their resource downloads.
+     */
+    public ExecutorService getResourceFetchExecutor() {
+        return resourceFetchExecutor;
+    }
+
+    /**
+     * @return The pool on which rendering tasks parse the style sheets they fetch.
+     */
+    public ExecutorService getCssParserExecutor() {
+        return cssParserExecutor;
+    }
+
+    private static ThreadPoolExecutor createDaemonPool(final String name, int coreSize, int maxSize, BlockingQueue<Runnable> queue) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(coreSize, maxSize, 60, TimeUnit.SECONDS, queue, new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // Idle threads die out, so the pools need no shutdown.
+        pool.allowCoreThreadTimeOut(coreSize > 0);
+        return pool;
+    }
+
     public RenderingInfo getRenderingInfo() {
         return renderingInfo;
     }
 
+    /**
+     * @return The scheduler feeding the service threads, which exposes the queue depth and wait time of each service.
+     */
+    public TaskScheduler getTaskScheduler() {
+        return taskScheduler;
+    }
+
     private void init() {
         this.eyesOpenerService = new OpenerService("eyesOpenerService", servicesGroup,
                 logger, this.concurrentOpenSessions, openerServiceConcurrencyLock, new EyesService.EyesServiceListener() {
             @Override
             public FutureTask<TestResultContainer> getNextTask(@SuppressWarnings("SpellCheckingInspection") EyesService.Tasker tasker) {
-                return getOrWaitForTask(openerServiceLock, tasker, "eyesOpenerService");
+                return getOrWaitForTask(TaskScheduler.Queue.OPEN, tasker, "eyesOpenerService");
             }
 
         }, openerServiceDebugLock, new EyesService.Tasker() {
@@ -243,7 +362,7 @@ public class VisualGridManager {
             @Override
             public FutureTask<TestResultContainer> getNextTask(@SuppressWarnings("SpellCheckingInspection") EyesService.Tasker tasker) {
 
-                return getOrWaitForTask(closerServiceLock, tasker, "eyesCloserService");
+                return getOrWaitForTask(TaskScheduler.Queue.CLOSE, tasker, "eyesCloserService");
             }
 
         }, new EyesService.Tasker() {
@@ -256,22 +375,20 @@ public class VisualGridManager {
         this.renderingGridService = new RenderingGridService("renderingGridService", servicesGroup, logger, this.concurrentOpenSessions, renderServiceDebugLock, new RenderingGridService.RGServiceListener() {
             @Override
             public RenderingTask getNextTask() {
+                long generation = taskScheduler.getGeneration(TaskScheduler.Queue.RENDER);
                 RenderingTask nextTestToRender = getNextRenderingTask();
                 if (nextTestToRender == null) {
-                    synchronized (renderingServiceLock) {
-                        try {
-                            nextTestToRender = getNextRenderingTask();
-                            if (nextTestToRender == null) {
-                                renderingServiceLock.wait(300);
-//                                logger.log("Rendering service woke up");
-                                nextTestToRender = getNextRenderingTask();
-                            }
-
-                        } catch (Exception e) {
-                            GeneralUtils.logExceptionStackTrace(logger, e);
-                        }
+                    try {
+                        taskScheduler.awaitWork(TaskScheduler.Queue.RENDER, generation);
+//                        logger.log("Rendering service woke up");
+                        nextTestToRender = getNextRenderingTask();
+                    } catch (Exception e) {
+                        GeneralUtils.logExceptionStackTrace(logger, e);
                     }
                 }
+                if (nextTestToRender != null) {
+                    taskScheduler.onTaskDispatched(TaskScheduler.Queue.RENDER);
+                }
                 return nextTestToRender;
             }
         });
@@ -280,7 +397,7 @@ public class VisualGridManager {
             @Override
             public FutureTask<TestResultContainer> getNextTask(@SuppressWarnings("SpellCheckingInspection") EyesService.Tasker tasker) {
 
-                return getOrWaitForTask(checkerServiceLock, tasker, "eyesCheckerService");
+                return getOrWaitForTask(TaskScheduler.Queue.CHECK, tasker, "eyesCheckerService");
             }
 
         }, new EyesService.Tasker() {
@@ -294,15 +411,16 @@ public class VisualGridManager {
     private FutureTask<TestResultContainer> getNextCheckTask() {
         ScoreTask bestScoreTask = null;
         int bestScore = -1;
-        synchronized (allEyes) {
-            for (IRenderingEyes eyes : allEyes) {
-                ScoreTask currentScoreTask = eyes.getBestScoreTaskForCheck();
-                if (currentScoreTask == null) continue;
-                int currentTestMark = currentScoreTask.getScore();
-                if (bestScore < currentTestMark) {
-                    bestScoreTask = currentScoreTask;
-                    bestScore = currentTestMark;
-                }
+        for (Map.Entry<IRenderingEyes, Long> readyEyes : taskScheduler.getReadyEyes(TaskScheduler.Queue.CHECK)) {
+            ScoreTask currentScoreTask = readyEyes.getKey().getBestScoreTaskForCheck();
+            if (currentScoreTask == null) {
+                taskScheduler.retire(TaskScheduler.Queue.CHECK, readyEyes);
+                continue;
+            }
+            int currentTestMark = currentScoreTask.getScore();
+            if (bestScore < currentTestMark) {
+                bestScoreTask = currentScoreTask;
+                bestScore = currentTestMark;
             }
         }
 
@@ -330,13 +448,15 @@ public class VisualGridManager {
 
     private FutureTask<TestResultContainer> getNextTestToClose() {
         RunningTest runningTest;
-        synchronized (eyesToCloseList) {
-            for (IRenderingEyes eyes : eyesToCloseList) {
-                runningTest = eyes.getNextTestToClose();
-                if (runningTest != null) {
-                    return runningTest.getNextCloseTask();
-                }
+        for (Map.Entry<IRenderingEyes, Long> readyEyes : taskScheduler.getReadyEyes(TaskScheduler.Queue.CLOSE)) {
+            IRenderingEyes eyes = readyEyes.getKey();
+            synchronized (eyesToCloseList) {
+                runningTest = eyesToCloseList.contains(eyes) ? eyes.getNextTestToClose() : null;
+            }
+            if (runningTest != null) {
+                return runningTest.getNextCloseTask();
             }
+            taskScheduler.retire(TaskScheduler.Queue.CLOSE, readyEyes);
         }
         return null;
     }
@@ -357,6 +477,7 @@ public class VisualGridManager {
         }
         logger.verbose("releasing allEyes");
         eyes.setListener(eyesListener);
+        taskScheduler.signal(eyes);
         logger.log("concurrencyLock.notify()");
     }
 
@@ -376,16 +497,30 @@ public class VisualGridManager {
         this.eyesCloserService.stopService();
         this.renderingGridService.stopService();
         this.eyesCheckerService.stopService();
+        this.taskScheduler.stop();
+        logger.verbose("scheduler on stop: " + taskScheduler);
+        this.renderStatusPoller.stop();
+        logger.verbose("render status poller on stop: " + renderStatusPoller);
+        logger.verbose("upload rate limiter on stop: " + rateLimiter);
+        logger.verbose("resource cache on stop: " + cachedResources);
+        logger.verbose("put resource cache on stop: " + putResourceCache);
+        logger.verbose("css uri cache on stop: " + cssUriCache);
+        if (resourceDiskCache != null) {
+            resourceDiskCache.flush();
+        }
         logger.verbose("exit");
     }
 
     private synchronized FutureTask<TestResultContainer> getNextTestToOpen() {
         ScoreTask bestScoreTask = null;
         int bestMark = -1;
-//        logger.verbose("looking for best test in a list of " + allEyes.size());
-        for (IRenderingEyes eyes : allEyes) {
-            ScoreTask currentTestMark = eyes.getBestScoreTaskForOpen();
-            if (currentTestMark == null) continue;
+//        logger.verbose("looking for best test in a list of " + taskScheduler.getQueueDepth(TaskScheduler.Queue.OPEN));
+        for (Map.Entry<IRenderingEyes, Long> readyEyes : taskScheduler.getReadyEyes(TaskScheduler.Queue.OPEN)) {
+            ScoreTask currentTestMark = readyEyes.getKey().getBestScoreTaskForOpen();
+            if (currentTestMark == null) {
+                taskScheduler.retire(TaskScheduler.Queue.OPEN, readyEyes);
+                continue;
+            }
             int currentScore = currentTestMark.getScore();
             if (bestMark < currentScore) {
                 bestMark = currentScore;
@@ -415,11 +550,11 @@ public class VisualGridManager {
                     this.eyesToCloseList.add(eyes);
                 }
             }
+            taskScheduler.signal(TaskScheduler.Queue.CLOSE, eyes);
         }
 
         logger.verbose("eyesToCloseList.size: " + eyesToCloseList.size());
 
-        notifyAllServices();
         List<TestResultContainer> allResults = new ArrayList<>();
         logger.verbose("trying to call future.get on " + allFutures.size() + " future lists.");
         for (Map.Entry<IRenderingEyes, List<Future<TestResultContainer>>> entry : allFutures.entrySet()) {
@@ -439,7 +574,6 @@ public class VisualGridManager {
             }
         }
         stopServices();
-        notifyAllServices();
         logger.verbose("exit");
         return new TestResultSummary(allResults);
     }
@@ -451,7 +585,7 @@ public class VisualGridManager {
                 this.eyesToCloseList.add(eyes);
             }
         }
-        notifyAllServices();
+        taskScheduler.signal(TaskScheduler.Queue.CLOSE, eyes);
     }
 
     public synchronized void check(ICheckRGSettings settings, IDebugResourceWriter debugResourceWriter, String script,
@@ -468,7 +602,6 @@ public class VisualGridManager {
             public void onRenderSuccess() {
                 logger.verbose("enter");
                 listener.onRenderSuccess();
-                notifyAllServices();
             }
 
             @Override
@@ -481,51 +614,10 @@ public class VisualGridManager {
             this.renderingTaskList.add(renderingTask);
         }
         logger.verbose("releasing renderingTaskList");
-        notifyAllServices();
+        taskScheduler.signal(TaskScheduler.Queue.RENDER, null);
 //        logger.verbose("exit");
     }
 
-    private void notifyAllServices() {
-//        logger.verbose("enter");
-        notifyOpenerService();
-        notifyCloserService();
-        notifyCheckerService();
-        notifyRenderingService();
-//        logger.verbose("exit");
-    }
-
-    private void notifyRenderingService() {
-//        logger.log("trying to notify rendering service");
-        synchronized (renderingServiceLock) {
-            renderingServiceLock.notify();
-        }
-//        logger.verbose("renderingLockFree");
-    }
-
-    private void notifyCloserService() {
-//        logger.log("trying to notify closer service");
-        synchronized (closerServiceLock) {
-            closerServiceLock.notifyAll();
-        }
-//        logger.verbose("closerLockFree");
-    }
-
-    private void notifyOpenerService() {
-//        logger.log("trying to notify opener service");
-        synchronized (openerServiceLock) {
-            openerServiceLock.notifyAll();
-//            logger.verbose("openerLockFree");
-        }
-    }
-
-    private void notifyCheckerService() {
-//        logger.log("trying to notify checker service");
-        synchronized (checkerServiceLock) {
-            checkerServiceLock.notifyAll();
-//            logger.verbose("checkerLockFree");
-        }
-    }
-
     public List<CompletableTask> getAllTasksByType(Task.TaskType type) {
         List<CompletableTask> allTasks = new ArrayList<>();
         for (IRenderingEyes eyes : allEyes) {
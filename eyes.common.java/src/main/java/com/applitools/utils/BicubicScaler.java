@@ -0,0 +1,156 @@
+/*
+ * Applitools software.
+ */
+package com.applitools.utils;
+
+/**
+ * Scales the raw pixels of {@link ImageUtils#REQUIRED_IMAGE_TYPE} images with bicubic interpolation.
+ * The interpolation coefficients are computed once per column (and row), the rows are processed in parallel bands,
+ * and the intermediate buffers are kept for consecutive scalings (e.g., the steps of an incremental scaling).
+ * Not thread safe.
+ */
+class BicubicScaler {
+
+    private static final int PIXEL_SIZE = 4;
+
+    // Rows interpolated to the (intermediate) target width.
+    private byte[] rowsBuffer;
+    // Rows and columns interpolated to the intermediate target size.
+    private byte[] columnsBuffer;
+
+    /**
+     * Scales an image. When the target is smaller than half the source, the source is first interpolated to a
+     * multiple of the target size, whose blocks are then averaged.
+     * @param source       The source pixels.
+     * @param sourceWidth  The source width.
+     * @param sourceHeight The source height.
+     * @param target       The array to write the scaled pixels to.
+     * @param targetWidth  The target width.
+     * @param targetHeight The target height.
+     */
+    void scale(final byte[] source, final int sourceWidth, final int sourceHeight,
+               final byte[] target, final int targetWidth, final int targetHeight) {
+        final int widthMultiple = Math.max(1, sourceWidth / targetWidth);
+        final int heightMultiple = Math.max(1, sourceHeight / targetHeight);
+        final int width = targetWidth * widthMultiple;
+        final int height = targetHeight * heightMultiple;
+
+        // Pass 1 - interpolate rows, from source width to the intermediate width.
+        final byte[] rows = rowsBuffer = ensureCapacity(rowsBuffer, width * sourceHeight * PIXEL_SIZE);
+        final int[] xPositions = new int[width];
+        final double[] ts = new double[width];
+        final double[] t2s = new double[width];
+        final double[] t3s = new double[width];
+        for (int j = 0; j < width; j++) {
+            double x = (double) j * (sourceWidth - 1) / width;
+            xPositions[j] = (int) Math.floor(x);
+            double t = x - xPositions[j];
+            ts[j] = t;
+            t2s[j] = t * t;
+            t3s[j] = t * t * t;
+        }
+        ParallelRows.process(sourceHeight, width * PIXEL_SIZE, new ParallelRows.RowsProcessor() {
+            @Override
+            public void process(int fromRow, int toRow) {
+                for (int i = fromRow; i < toRow; i++) {
+                    int rowPosition = i * width * PIXEL_SIZE;
+                    for (int j = 0; j < width; j++) {
+                        int xPos = xPositions[j];
+                        int sourcePosition = (i * sourceWidth + xPos) * PIXEL_SIZE;
+                        for (int k = 0; k < PIXEL_SIZE; k++) {
+                            int kPos = sourcePosition + k;
+                            int x1 = source[kPos] & 0xFF;
+                            int x2 = source[kPos + PIXEL_SIZE] & 0xFF;
+                            int x0 = (xPos > 0) ? source[kPos - PIXEL_SIZE] & 0xFF : 2 * x1 - x2;
+                            int x3 = (xPos < sourceWidth - 2) ? source[kPos + 2 * PIXEL_SIZE] & 0xFF : 2 * x2 - x1;
+                            rows[rowPosition + j * PIXEL_SIZE + k] =
+                                    (byte) interpolateCubic(x0, x1, x2, x3, ts[j], t2s[j], t3s[j]);
+                        }
+                    }
+                }
+            }
+        });
+
+        // Pass 2 - interpolate columns, from source height to the intermediate height.
+        final int multiple = widthMultiple * heightMultiple;
+        final byte[] columns = (multiple > 1) ?
+                (columnsBuffer = ensureCapacity(columnsBuffer, width * height * PIXEL_SIZE)) : target;
+        final int stride = width * PIXEL_SIZE;
+        ParallelRows.process(height, stride, new ParallelRows.RowsProcessor() {
+            @Override
+            public void process(int fromRow, int toRow) {
+                for (int i = fromRow; i < toRow; i++) {
+                    double y = (double) i * (sourceHeight - 1) / height;
+                    int yPos = (int) Math.floor(y);
+                    double t = y - yPos;
+                    double t2 = t * t;
+                    double t3 = t * t * t;
+                    int rowsPosition = yPos * stride;
+                    int columnsPosition = i * stride;
+                    boolean hasPrevious = yPos > 0;
+                    boolean hasNextNext = yPos < sourceHeight - 2;
+                    for (int k = 0; k < stride; k++) {
+                        int kPos = rowsPosition + k;
+                        int y1 = rows[kPos] & 0xFF;
+                        int y2 = rows[kPos + stride] & 0xFF;
+                        int y0 = hasPrevious ? rows[kPos - stride] & 0xFF : 2 * y1 - y2;
+                        int y3 = hasNextNext ? rows[kPos + 2 * stride] & 0xFF : 2 * y2 - y1;
+                        columns[columnsPosition + k] = (byte) interpolateCubic(y0, y1, y2, y3, t, t2, t3);
+                    }
+                }
+            }
+        });
+
+        if (multiple == 1) {
+            return;
+        }
+
+        // Pass 3 - average blocks of the intermediate size into the target.
+        ParallelRows.process(targetHeight, stride * heightMultiple, new ParallelRows.RowsProcessor() {
+            @Override
+            public void process(int fromRow, int toRow) {
+                for (int i = fromRow; i < toRow; i++) {
+                    for (int j = 0; j < targetWidth; j++) {
+                        int c0 = 0;
+                        int c1 = 0;
+                        int c2 = 0;
+                        int c3 = 0;
+                        for (int y = 0; y < heightMultiple; y++) {
+                            int rowPosition = ((i * heightMultiple + y) * width + j * widthMultiple) * PIXEL_SIZE;
+                            for (int x = 0; x < widthMultiple; x++) {
+                                int xyPos = rowPosition + x * PIXEL_SIZE;
+                                c0 += columns[xyPos] & 0xFF;
+                                c1 += columns[xyPos + 1] & 0xFF;
+                                c2 += columns[xyPos + 2] & 0xFF;
+                                c3 += columns[xyPos + 3] & 0xFF;
+                            }
+                        }
+
+                        int pos = (i * targetWidth + j) * PIXEL_SIZE;
+                        target[pos] = (byte) (c0 / multiple);
+                        target[pos + 1] = (byte) (c1 / multiple);
+                        target[pos + 2] = (byte) (c2 / multiple);
+                        target[pos + 3] = (byte) (c3 / multiple);
+                    }
+                }
+            }
+        });
+    }
+
+    private static int interpolateCubic(int x0, int x1, int x2, int x3, double t, double t2, double t3) {
+        if (x0 == x1 && x1 == x2 && x2 == x3) {
+            // Flat areas (common in screenshots) interpolate to the same value.
+            return x1;
+        }
+        int a0 = x3 - x2 - x0 + x1;
+        int a1 = x0 - x1 - a0;
+        int a2 = x2 - x0;
+        double value = (a0 * t3) + (a1 * t2) + (a2 * t) + (x1);
+        // Same as clamping with Math.min/max, without their NaN and signed zero handling.
+        return value <= 0 ? 0 : (value >= 255 ? 255 : (int) value);
+    }
+
+    private static byte[] ensureCapacity(byte[] buffer, int length) {
+        return (buffer != null && buffer.length >= length) ? buffer : new byte[length];
+    }
+}
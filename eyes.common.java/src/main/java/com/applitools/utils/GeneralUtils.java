@@ -22,6 +22,8 @@ import java.util.zip.GZIPOutputStream;
  */
 public class GeneralUtils {
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     @SuppressWarnings({"SpellCheckingInspection", "unused"})
     private static final String DATE_FORMAT_ISO8601_FOR_OUTPUT =
             "yyyy-MM-dd'T'HH:mm:ss'Z'";
@@ -33,6 +35,9 @@ public class GeneralUtils {
     private static final String DATE_FORMAT_RFC1123 =
             "E, dd MMM yyyy HH:mm:ss 'GMT'";
 
+    // Thread safe once configured, and expensive to create.
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
     private GeneralUtils() {
     }
 
@@ -268,8 +273,7 @@ public class GeneralUtils {
 
     public static <T> T parseJsonToObject(String executeScripString) throws IOException {
         T executeScriptMap;
-        ObjectMapper mapper = new ObjectMapper();
-        executeScriptMap = mapper.readValue(executeScripString, new TypeReference<T>() {
+        executeScriptMap = jsonMapper.readValue(executeScripString, new TypeReference<T>() {
         });
         return executeScriptMap;
     }
@@ -280,24 +284,25 @@ public class GeneralUtils {
     }
 
     public static String getSha256hash(byte[] content) {
-        byte[] buffer = new byte[8192];
-        int count;
-        MessageDigest digest;
         try {
-            digest = MessageDigest.getInstance("SHA-256");
-            BufferedInputStream bis = new BufferedInputStream(new ByteArrayInputStream(content));
-            while ((count = bis.read(buffer)) > 0) {
-                digest.update(buffer, 0, count);
-            }
-            bis.close();
-            StringBuilder sb = new StringBuilder();
-            for (byte b : digest.digest()) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException | IOException e) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(content);
+            return toHexString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
             e.printStackTrace();
         }
         return null;
     }
+
+    /**
+     * @return The given bytes as a lower case hex string (e.g., of a digest).
+     */
+    public static String toHexString(byte[] bytes) {
+        char[] hexChars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hexChars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hexChars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(hexChars);
+    }
 }
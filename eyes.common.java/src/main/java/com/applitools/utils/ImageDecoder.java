@@ -0,0 +1,126 @@
+/*
+ * Applitools software.
+ */
+package com.applitools.utils;
+
+import com.applitools.eyes.EyesException;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Decodes images (e.g., screenshots) straight into {@link ImageUtils#REQUIRED_IMAGE_TYPE} images, instead of
+ * decoding them into whatever type the reader picks and then copying them into the required type. Only RGB and RGBA
+ * PNGs are decoded straight into the required type; other images are read and then normalized.
+ * The image readers are kept for reuse, so a decoder should be kept by code which decodes repeatedly.
+ * Not thread safe.
+ */
+public class ImageDecoder {
+
+    // The bands of RGB images, as read into the (R, G, B, A) bands of an ABGR image.
+    private static final int[] RGB_BANDS = {0, 1, 2};
+
+    private final Map<String, ImageReader> readers = new HashMap<>();
+
+    /**
+     * @param imageBytes The encoded image.
+     * @return The decoded image.
+     * @throws EyesException If the image could not be decoded.
+     */
+    public BufferedImage decode(byte[] imageBytes) {
+        ArgumentGuard.notNull(imageBytes, "imageBytes");
+        return decode(new ByteArrayInputStream(imageBytes));
+    }
+
+    /**
+     * @param stream The stream of the encoded image. Not closed by the decoder.
+     * @return The decoded image.
+     * @throws EyesException If the image could not be decoded.
+     */
+    public BufferedImage decode(InputStream stream) {
+        ArgumentGuard.notNull(stream, "stream");
+        // A memory cache, as opposed to ImageIO's default (file) cache.
+        ImageInputStream imageStream = new MemoryCacheImageInputStream(stream);
+        try {
+            ImageReader reader = getReader(imageStream);
+            reader.setInput(imageStream, true, true);
+            try {
+                return read(reader);
+            } finally {
+                reader.setInput(null);
+            }
+        } catch (IOException e) {
+            throw new EyesException("Failed to create buffered image!", e);
+        } finally {
+            try {
+                imageStream.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Releases the image readers.
+     */
+    public void dispose() {
+        for (ImageReader reader : readers.values()) {
+            reader.dispose();
+        }
+        readers.clear();
+    }
+
+    private BufferedImage read(ImageReader reader) throws IOException {
+        // Only the PNG reader is known to support reading into destination bands (e.g., the JPEG reader fails).
+        boolean isPng = "png".equalsIgnoreCase(reader.getFormatName());
+        ImageTypeSpecifier rawType = isPng ? reader.getRawImageType(0) : null;
+        int bands = rawType != null ? rawType.getSampleModel().getNumBands() : 0;
+        boolean isByteRgb = rawType != null && rawType.getSampleModel().getDataType() == DataBuffer.TYPE_BYTE &&
+                rawType.getColorModel().getPixelSize() == bands * 8 && (bands == 3 || bands == 4);
+        if (!isByteRgb) {
+            // E.g., paletted or gray PNGs, or other formats.
+            return ImageUtils.normalizeImageType(reader.read(0));
+        }
+
+        BufferedImage image = new BufferedImage(reader.getWidth(0), reader.getHeight(0), ImageUtils.REQUIRED_IMAGE_TYPE);
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setDestination(image);
+        if (bands == 3) {
+            // The alpha band isn't read, so it's made opaque up front.
+            Arrays.fill(((DataBufferByte) image.getRaster().getDataBuffer()).getData(), (byte) 0xFF);
+            param.setDestinationBands(RGB_BANDS);
+        }
+        reader.read(0, param);
+        return image;
+    }
+
+    private ImageReader getReader(ImageInputStream imageStream) throws IOException {
+        Iterator<ImageReader> candidates = ImageIO.getImageReaders(imageStream);
+        if (!candidates.hasNext()) {
+            throw new IOException("Unsupported image format");
+        }
+        ImageReader candidate = candidates.next();
+        String format = candidate.getFormatName();
+        ImageReader reader = readers.get(format);
+        if (reader == null) {
+            reader = candidate;
+            readers.put(format, reader);
+        } else {
+            candidate.dispose();
+        }
+        return reader;
+    }
+}
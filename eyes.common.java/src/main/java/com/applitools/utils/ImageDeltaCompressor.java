@@ -3,11 +3,9 @@
  */
 package com.applitools.utils;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.io.*;
-import java.util.Arrays;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
@@ -16,9 +14,12 @@ import java.util.zip.DeflaterOutputStream;
  */
 public class ImageDeltaCompressor {
 
+    public static final int DEFAULT_BLOCK_SIZE = 10;
+    public static final int DEFAULT_DEFLATE_LEVEL = Deflater.BEST_COMPRESSION;
+
     private static final byte[] PREAMBLE;
     private static final byte COMPRESS_BY_RAW_BLOCKS_FORMAT = 3;
-
+    private static final int CHANNELS_COUNT = 3;
     // Init the preamble (needs to be in a static init block since we must
     // handle encoding exception).
     static {
@@ -35,115 +36,108 @@ public class ImageDeltaCompressor {
     }
 
     /**
-     * Encapsulates a result for the CompareAndCopyBlockChannelData function.
+     * Compares the blocks of ranges of block rows, recording for each block
+     * which of its channels differ between the source and the target.
      */
-    private static class CompareAndCopyBlockChannelDataResult {
-        private boolean isIdentical;
-        private byte[] buffer;
-
-        /**
-         *
-         * @param isIdentical Whether or not the target block was identical to
-         *                    the source block.
-         * @param buffer The target block's pixel values for a specific channel.
-         */
-        public CompareAndCopyBlockChannelDataResult(boolean isIdentical,
-                byte[] buffer) {
-            this.isIdentical = isIdentical;
-            this.buffer = buffer;
-        }
+    private static class BlocksComparison
+            implements ParallelRows.RowsProcessor {
+        private final byte[] sourcePixels;
+        private final byte[] targetPixels;
+        private final int width;
+        private final int height;
+        private final int pixelLength;
+        private final int blockSize;
+        private final int blockColumnsCount;
+        private final byte[] changedChannels;
 
         /**
-         * @return Whether or not the target block was identical to the
-         * source block.
+         * @param changedChannels Receives, for each block (by block number),
+         *                        a bit per channel which isn't identical.
          */
-        public boolean getIsIdentical() {
-            return isIdentical;
+        BlocksComparison(byte[] sourcePixels, byte[] targetPixels, int width,
+                int height, int pixelLength, int blockSize,
+                int blockColumnsCount, byte[] changedChannels) {
+            this.sourcePixels = sourcePixels;
+            this.targetPixels = targetPixels;
+            this.width = width;
+            this.height = height;
+            this.pixelLength = pixelLength;
+            this.blockSize = blockSize;
+            this.blockColumnsCount = blockColumnsCount;
+            this.changedChannels = changedChannels;
         }
 
-        /**
-         * @return The target block's pixel values for a specific channel.
-         */
-        public byte[] getBuffer() {
-            return buffer;
+        @Override
+        public void process(int fromBlockRow, int toBlockRow) {
+            int stride = width * pixelLength;
+            // The index of the first (blue) channel's byte in a pixel.
+            int firstChannel = (pixelLength == 4) ? 1 : 0;
+            for (int blockRow = fromBlockRow; blockRow < toBlockRow;
+                    ++blockRow) {
+                int actualBlockHeight =
+                        Math.min(height - (blockRow * blockSize), blockSize);
+                for (int blockColumn = 0; blockColumn < blockColumnsCount;
+                        ++blockColumn) {
+                    int actualBlockWidth = Math.min(
+                            width - (blockColumn * blockSize), blockSize);
+                    int rowLength = actualBlockWidth * pixelLength;
+                    // The bits which differ, accumulated per channel without
+                    // branching on each byte.
+                    int blueDiff = 0, greenDiff = 0, redDiff = 0;
+                    for (int h = 0; h < actualBlockHeight; ++h) {
+                        int offset = (((blockSize * blockRow) + h) * stride)
+                                + (blockSize * blockColumn * pixelLength)
+                                + firstChannel;
+                        int end = offset + rowLength;
+                        for (int i = offset; i < end; i += pixelLength) {
+                            blueDiff |= sourcePixels[i] ^ targetPixels[i];
+                            greenDiff |= sourcePixels[i + 1]
+                                    ^ targetPixels[i + 1];
+                            redDiff |= sourcePixels[i + 2]
+                                    ^ targetPixels[i + 2];
+                        }
+                    }
+                    changedChannels[blockRow * blockColumnsCount
+                            + blockColumn] = (byte) ((blueDiff != 0 ? 1 : 0)
+                            | (greenDiff != 0 ? 2 : 0)
+                            | (redDiff != 0 ? 4 : 0));
+                }
+            }
         }
     }
 
     /**
-     * Computes the width and height of the image model contained in the block
-     * at the input column and row.
-     * @param imageSize The image size in pixels.
-     * @param blockSize The block size for which we would like to compute the
-     *                  image model width and height.
-     * @param blockColumn The block column index
-     * @param blockRow The block row index
-     * @return The width and height of the image model contained in the block.
-     */
-    private static Dimension getActualBlockSize(Dimension imageSize,
-            int blockSize, int blockColumn, int blockRow) {
-        int actualWidth = Math.min(imageSize.width - (blockColumn * blockSize),
-                blockSize);
-        int actualHeight = Math.min(imageSize.height - (blockRow * blockSize),
-                                blockSize);
-
-        return new Dimension(actualWidth, actualHeight);
-    }
-
-    /**
-     * Compares a block of pixels between the source and target images.
-     * @param sourcePixels The pixels of the source block.
-     * @param targetPixels The pixels of the target block
-     * @param imageSize The image size in pixels.
+     * Copies a block's bytes of a specific channel.
+     * @param pixels The pixels of the image.
+     * @param width The image width in pixels.
+     * @param height The image height in pixels.
      * @param pixelLength Bytes per pixel. Since pixel might include alpha.
      * @param blockSize The block size in pixels.
-     * @param blockColumn The column index of the block to compare.
-     * @param blockRow The row index of the block to compare.
-     * @param channel The channel for which we compare the blocks
-     * @return Whether the source and target blocks are identical,
-     * and a copy of the target block's channel bytes.
+     * @param blockColumn The column index of the block to copy.
+     * @param blockRow The row index of the block to copy.
+     * @param channelIndex The index of the channel's byte in a pixel.
+     * @param buffer The buffer to copy into.
+     * @return The number of bytes copied (might be less than
+     * blockSize*blockSize).
      */
-    @SuppressWarnings("SpellCheckingInspection")
-    private static CompareAndCopyBlockChannelDataResult
-            CompareAndCopyBlockChannelData(
-                byte[] sourcePixels, byte[] targetPixels,
-                Dimension imageSize, int pixelLength, int blockSize,
-            int blockColumn, int blockRow, int channel) {
-
-        boolean isIdentical = true; // initial default
-
-        // Getting the actual amount of model in the block we wish to copy
-        Dimension actualBlockSize =
-                getActualBlockSize(imageSize, blockSize, blockColumn, blockRow);
-
-        int actualBlockHeight = actualBlockSize.height;
-        int actualBlockWidth = actualBlockSize.width;
-
-        int stride = imageSize.width * pixelLength;
-
-        // The number of bytes actually contained in the block for the
-        // current channel (might be less than blockSize*blockSize)
-        byte[] channelBytes = new byte[actualBlockHeight*actualBlockWidth];
-        int channelBytesOffset = 0;
-
-        // Actually comparing and copying the pixels
-        byte sourceByte, targetByte;
+    private static int copyBlockChannelData(byte[] pixels, int width,
+            int height, int pixelLength, int blockSize, int blockColumn,
+            int blockRow, int channelIndex, byte[] buffer) {
+        int actualBlockWidth =
+                Math.min(width - (blockColumn * blockSize), blockSize);
+        int actualBlockHeight =
+                Math.min(height - (blockRow * blockSize), blockSize);
+        int stride = width * pixelLength;
+        int length = 0;
         for (int h = 0; h < actualBlockHeight; ++h) {
             int offset = (((blockSize * blockRow) + h) * stride) +
-                    (blockSize * blockColumn * pixelLength) + channel;
+                    (blockSize * blockColumn * pixelLength) + channelIndex;
             for (int w = 0; w < actualBlockWidth; ++w) {
-                sourceByte = sourcePixels[offset];
-                targetByte = targetPixels[offset];
-                if (sourceByte != targetByte) {
-                    isIdentical = false;
-                }
-
-                channelBytes[channelBytesOffset++] = targetByte;
+                buffer[length++] = pixels[offset];
                 offset += pixelLength;
             }
         }
-
-        return new CompareAndCopyBlockChannelDataResult(isIdentical,
-                channelBytes);
+        return length;
     }
 
     /**
@@ -164,12 +158,52 @@ public class ImageDeltaCompressor {
             byte[] targetEncoded, BufferedImage source, int blockSize)
                 throws IOException {
 
+        byte[] compressed = compressByRawBlocks(target, source, blockSize,
+                targetEncoded.length);
+        return compressed != null ? compressed : targetEncoded;
+    }
+
+    /**
+     * See {@link #compressByRawBlocks(BufferedImage, BufferedImage, int, long, int)}.
+     * {@code deflateLevel} defaults to {@link #DEFAULT_DEFLATE_LEVEL}.
+     */
+    public static byte[] compressByRawBlocks(BufferedImage target,
+            BufferedImage source, int blockSize, long maxLength)
+                throws IOException {
+        return compressByRawBlocks(target, source, blockSize, maxLength,
+                DEFAULT_DEFLATE_LEVEL);
+    }
+
+    /**
+     * Compresses a target image based on a difference from a source image,
+     * without requiring the encoded target up front (so it only has to be
+     * encoded if the delta doesn't pay off).
+     * The blocks are compared in a single pass over the pixels (in parallel
+     * for large images), and only the differing blocks are then copied.
+     *
+     * @param target The image we want to compress. (type is TYPE_4BYTE_ABGR)
+     * @param source The baseline image by which a compression will be
+     *               performed. (type is TYPE_4BYTE_ABGR)
+     * @param blockSize How many pixels per block.
+     * @param maxLength The maximal number of bytes the compression result
+     *                  may take.
+     * @param deflateLevel The deflate level the blocks are compressed with.
+     * @return The compression result, or {@code null} if there's no source,
+     * the images are in different sizes or the compressed bytes count is
+     * greater than {@code maxLength}.
+     * @throws java.io.IOException If there was a problem reading/writing
+     * from/to the streams which are created during the process.
+     */
+    public static byte[] compressByRawBlocks(BufferedImage target,
+            BufferedImage source, int blockSize, long maxLength,
+            int deflateLevel) throws IOException {
+
         // If there's no image to compare to, or the images are in different
-        // sizes, we simply return the encoded target.
+        // sizes, there's nothing to compress by.
         if (source == null
                 || (source.getWidth() != target.getWidth())
                 || (source.getHeight() != target.getHeight())) {
-            return targetEncoded;
+            return null;
         }
 
         // IMPORTANT: Notice that the pixel bytes are (A)BGR!
@@ -181,14 +215,21 @@ public class ImageDeltaCompressor {
         // The number of bytes comprising a pixel (depends if there's an
         // Alpha channel).
         int pixelLength = (target.getAlphaRaster() != null) ? 4 : 3;
-        Dimension imageSize = new Dimension(target.getWidth(),
-                                            target.getHeight());
+        int width = target.getWidth();
+        int height = target.getHeight();
 
         // Calculating how many block columns and rows we've got.
-        int blockColumnsCount = (target.getWidth() / blockSize)
-                + ((target.getWidth() % blockSize) == 0 ? 0 : 1);
-        int blockRowsCount = (target.getHeight() / blockSize)
-                + ((target.getHeight() % blockSize) == 0 ? 0 : 1);
+        int blockColumnsCount = (width / blockSize)
+                + ((width % blockSize) == 0 ? 0 : 1);
+        int blockRowsCount = (height / blockSize)
+                + ((height % blockSize) == 0 ? 0 : 1);
+
+        // Finding the changed channels of all blocks at once.
+        byte[] changedChannels = new byte[blockColumnsCount * blockRowsCount];
+        ParallelRows.process(blockRowsCount, blockSize * width * pixelLength,
+                new BlocksComparison(sourcePixels, targetPixels, width, height,
+                        pixelLength, blockSize, blockColumnsCount,
+                        changedChannels));
 
         // We'll use a stream for the compression.
         ByteArrayOutputStream resultStream = new ByteArrayOutputStream();
@@ -198,63 +239,62 @@ public class ImageDeltaCompressor {
         DataOutputStream resultDataOutputStream =
                 new DataOutputStream(resultCountingStream);
         // This will be used for doing actual model compression
+        Deflater deflater = new Deflater(deflateLevel, true);
         DeflaterOutputStream compressed =
-                new DeflaterOutputStream(resultCountingStream,
-                        new Deflater(Deflater.BEST_COMPRESSION,true));
-
-        DataOutputStream compressedDos = new DataOutputStream(compressed);
-
-        // Writing the header
-        resultStream.write(PREAMBLE, 0, PREAMBLE.length);
-        resultStream.write(COMPRESS_BY_RAW_BLOCKS_FORMAT);
-        // since we don't have a source ID, we write 0 length (Big endian).
-        resultDataOutputStream.writeShort(0);
-
-        // Writing the block size (Big endian)
-        resultDataOutputStream.writeShort(blockSize);
-
-        CompareAndCopyBlockChannelDataResult compareResult;
-        for (int channel = 0; channel < 3; ++channel) {
-
-            // The image is RGB, so all that's left is to skip the Alpha
-            // channel if there is one.
-            int actualChannelIndex = (pixelLength == 4) ? channel + 1 : channel;
+                new DeflaterOutputStream(resultCountingStream, deflater);
 
-            int blockNumber = 0;
-            for (int blockRow = 0; blockRow < blockRowsCount; ++blockRow) {
-                for (int blockColumn = 0; blockColumn < blockColumnsCount;
-                        ++blockColumn) {
-
-                    compareResult = CompareAndCopyBlockChannelData
-                            (sourcePixels, targetPixels, imageSize,
-                                    pixelLength, blockSize, blockColumn,
-                                    blockRow, actualChannelIndex);
-
-                    if (!compareResult.getIsIdentical()) {
-                        compressed.write(channel);
-                        compressedDos.writeInt(blockNumber); // Big endian
-                        byte[] channelBytes = compareResult.getBuffer();
-                        compressed.write(channelBytes, 0, channelBytes.length);
+        // Buffered, so the deflater isn't fed a few bytes at a time.
+        DataOutputStream compressedDos = new DataOutputStream(
+                new BufferedOutputStream(compressed));
 
-                        // If the number of bytes already written is greater
-                        // then the number of bytes for the uncompressed
-                        // target, we just return the uncompressed target.
-                        if (resultCountingStream.getBytesCount()
-                            > targetEncoded.length) {
-                            compressedDos.close();
-                            return Arrays.copyOf(targetEncoded,
-                                                    targetEncoded.length);
-                        }
+        try {
+            // Writing the header
+            resultStream.write(PREAMBLE, 0, PREAMBLE.length);
+            resultStream.write(COMPRESS_BY_RAW_BLOCKS_FORMAT);
+            // since we don't have a source ID, we write 0 length (Big endian).
+            resultDataOutputStream.writeShort(0);
+
+            // Writing the block size (Big endian)
+            resultDataOutputStream.writeShort(blockSize);
+
+            byte[] channelBytes = new byte[blockSize * blockSize];
+            for (int channel = 0; channel < CHANNELS_COUNT; ++channel) {
+
+                // The image is RGB, so all that's left is to skip the Alpha
+                // channel if there is one.
+                int actualChannelIndex =
+                        (pixelLength == 4) ? channel + 1 : channel;
+                int channelBit = 1 << channel;
+
+                for (int blockNumber = 0; blockNumber < changedChannels.length;
+                        ++blockNumber) {
+                    if ((changedChannels[blockNumber] & channelBit) == 0) {
+                        continue;
                     }
 
-                    ++blockNumber;
+                    int length = copyBlockChannelData(targetPixels, width,
+                            height, pixelLength, blockSize,
+                            blockNumber % blockColumnsCount,
+                            blockNumber / blockColumnsCount,
+                            actualChannelIndex, channelBytes);
+                    compressedDos.write(channel);
+                    compressedDos.writeInt(blockNumber); // Big endian
+                    compressedDos.write(channelBytes, 0, length);
+
+                    // If the number of bytes already written is greater
+                    // than the maximal length, the delta doesn't pay off.
+                    if (resultCountingStream.getBytesCount() > maxLength) {
+                        return null;
+                    }
                 }
             }
+            compressedDos.close(); // flushing + closing the compression.
+        } finally {
+            deflater.end();
         }
-        compressedDos.close(); // flushing + closing the compression.
 
-        if (resultCountingStream.getBytesCount() > targetEncoded.length) {
-            return targetEncoded;
+        if (resultStream.size() > maxLength) {
+            return null;
         }
 
         return resultStream.toByteArray();
@@ -274,6 +314,7 @@ public class ImageDeltaCompressor {
      */
     public static byte[] compressByRawBlocks(BufferedImage target,
             byte[] targetEncoded, BufferedImage source) throws IOException {
-        return compressByRawBlocks(target, targetEncoded, source, 10);
+        return compressByRawBlocks(target, targetEncoded, source,
+                DEFAULT_BLOCK_SIZE);
     }
 }
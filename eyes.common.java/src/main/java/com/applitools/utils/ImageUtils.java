@@ -9,15 +9,14 @@ import org.imgscalr.Scalr;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBuffer;
-import java.awt.image.DataBufferByte;
-import java.awt.image.Raster;
-import java.io.ByteArrayInputStream;
+import java.awt.image.*;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class ImageUtils {
 
@@ -152,18 +151,13 @@ public class ImageUtils {
      */
     public static BufferedImage imageFromBytes(byte[] imageBytes) throws
             EyesException {
-        BufferedImage image;
+        // Decoded straight into the required type.
+        ImageDecoder decoder = new ImageDecoder();
         try {
-            ByteArrayInputStream screenshotStream =
-                    new ByteArrayInputStream(imageBytes);
-            image = ImageIO.read(screenshotStream);
-            screenshotStream.close();
-            // Make sure the image is of the correct type
-            image = normalizeImageType(image);
-        } catch (IOException e) {
-            throw new EyesException("Failed to create buffered image!", e);
+            return decoder.decode(imageBytes);
+        } finally {
+            decoder.dispose();
         }
-        return image;
     }
 
     /**
@@ -178,14 +172,53 @@ public class ImageUtils {
         ArgumentGuard.notNull(image, "image");
 
         // Get the clipped region as a BufferedImage.
-        BufferedImage imagePart = image.getSubimage(
-                region.getLeft(), region.getTop(), region.getWidth(),
-                region.getHeight());
-        // IMPORTANT We copy the image this way because just using getSubImage
-        // created a later problem (maybe an actual Java bug): the pixels
-        // weren't what they were supposed to be.
-        byte[] imagePartBytes = encodeAsPng(imagePart);
-        return imageFromBytes(imagePartBytes);
+        BufferedImage imagePart = getImagePartView(image, region);
+        // IMPORTANT We copy the image because just using getSubImage created a later problem: the sub image shares
+        // the buffer of the original image at an offset, so code which reads the buffer directly gets the wrong
+        // pixels. The copy has a buffer of its own, laid out as any new image of the required type.
+        WritableRaster sourceRaster = imagePart.getRaster();
+        if (imagePart.getType() != REQUIRED_IMAGE_TYPE ||
+                !(sourceRaster.getSampleModel() instanceof PixelInterleavedSampleModel) ||
+                !(sourceRaster.getDataBuffer() instanceof DataBufferByte)) {
+            return copyImageWithType(imagePart, REQUIRED_IMAGE_TYPE);
+        }
+
+        BufferedImage result = new BufferedImage(imagePart.getWidth(), imagePart.getHeight(), REQUIRED_IMAGE_TYPE);
+        PixelInterleavedSampleModel sourceModel = (PixelInterleavedSampleModel) sourceRaster.getSampleModel();
+        PixelInterleavedSampleModel targetModel = (PixelInterleavedSampleModel) result.getRaster().getSampleModel();
+        if (sourceModel.getPixelStride() != targetModel.getPixelStride() ||
+                !Arrays.equals(sourceModel.getBandOffsets(), targetModel.getBandOffsets())) {
+            return copyImageWithType(imagePart, REQUIRED_IMAGE_TYPE);
+        }
+
+        DataBufferByte sourceBuffer = (DataBufferByte) sourceRaster.getDataBuffer();
+        byte[] source = sourceBuffer.getData();
+        byte[] target = ((DataBufferByte) result.getRaster().getDataBuffer()).getData();
+        int rowLength = imagePart.getWidth() * targetModel.getPixelStride();
+        int sourceStride = sourceModel.getScanlineStride();
+        int sourceOffset = sourceBuffer.getOffset() +
+                (sourceRaster.getMinY() - sourceRaster.getSampleModelTranslateY()) * sourceStride +
+                (sourceRaster.getMinX() - sourceRaster.getSampleModelTranslateX()) * sourceModel.getPixelStride();
+        for (int y = 0; y < imagePart.getHeight(); y++) {
+            System.arraycopy(source, sourceOffset + y * sourceStride, target, y * rowLength, rowLength);
+        }
+        return result;
+    }
+
+    /**
+     * Get the part of the image given by region, without copying it.
+     * The returned image shares the pixels of the original image (changes to either are visible in both), and its
+     * buffer is the buffer of the original image, so it must only be accessed through its raster or its methods
+     * (as opposed to reading its data buffer directly). Use {@link #getImagePart(BufferedImage, Region)} otherwise.
+     *
+     * @param image The image from which to get the part.
+     * @param region The region of the image to get.
+     * @return A view of the part of the image.
+     */
+    public static BufferedImage getImagePartView(BufferedImage image,
+                                                 Region region) {
+        ArgumentGuard.notNull(image, "image");
+        return image.getSubimage(region.getLeft(), region.getTop(), region.getWidth(), region.getHeight());
     }
 
     /**
@@ -328,117 +361,16 @@ public class ImageUtils {
         return normalizeImageType(resizedImage);
     }
 
-    private static int interpolateCubic(int x0, int x1, int x2, int x3, double t) {
-        int a0 = x3 - x2 - x0 + x1;
-        int a1 = x0 - x1 - a0;
-        int a2 = x2 - x0;
-        return (int) Math.max(0, Math.min(255, (a0 * (t * t * t)) + (a1 * (t * t)) + (a2 * t) + (x1)));
-    }
-
     private static BufferedImage scaleImageBicubic(BufferedImage srcImage, int targetWidth, int targetHeight) {
-
-        normalizeImageType(srcImage);
-
-        DataBuffer bufSrc = srcImage.getRaster().getDataBuffer();
-        DataBuffer bufDst = new DataBufferByte(targetWidth * targetHeight * 4);
-
-        int wSrc = srcImage.getWidth();
-        int hSrc = srcImage.getHeight();
-
-        // when dst smaller than src/2, interpolate first to a multiple between 0.5 and 1.0 src, then sum squares
-        int wM = (int) Math.max(1, Math.floor(wSrc / targetWidth));
-        int wDst2 = targetWidth * wM;
-        int hM = (int) Math.max(1, Math.floor(hSrc / targetHeight));
-        int hDst2 = targetHeight * hM;
-
-        int i, j, k, xPos, yPos, kPos, buf1Pos, buf2Pos;
-        double x, y, t;
-
-        // Pass 1 - interpolate rows
-        // buf1 has width of dst2 and height of src
-        DataBuffer buf1 = new DataBufferByte(wDst2 * hSrc * 4);
-        for (i = 0; i < hSrc; i++) {
-            for (j = 0; j < wDst2; j++) {
-                x = (double) j * (wSrc - 1) / wDst2;
-                xPos = (int) Math.floor(x);
-                t = x - xPos;
-                int srcPos = (i * wSrc + xPos) * 4;
-
-                buf1Pos = (i * wDst2 + j) * 4;
-                for (k = 0; k < 4; k++) {
-                    kPos = srcPos + k;
-                    int x0 = (xPos > 0) ? bufSrc.getElem(kPos - 4) : 2 * bufSrc.getElem(kPos) - bufSrc.getElem(kPos + 4);
-                    int x1 = bufSrc.getElem(kPos);
-                    int x2 = bufSrc.getElem(kPos + 4);
-                    int x3 = (xPos < wSrc - 2) ? bufSrc.getElem(kPos + 8) : 2 * bufSrc.getElem(kPos + 4) - bufSrc.getElem(kPos);
-                    buf1.setElem(buf1Pos + k, interpolateCubic(x0, x1, x2, x3, t));
-                }
-            }
-        }
-
-        // Pass 2 - interpolate columns
-        // buf2 has width and height of dst2
-        DataBuffer buf2 = new DataBufferByte(wDst2 * hDst2 * 4);
-        for (i = 0; i < hDst2; i++) {
-            for (j = 0; j < wDst2; j++) {
-                y = (double) i * (hSrc - 1) / hDst2;
-                yPos = (int) Math.floor(y);
-                t = y - yPos;
-                buf1Pos = (yPos * wDst2 + j) * 4;
-                buf2Pos = (i * wDst2 + j) * 4;
-                for (k = 0; k < 4; k++) {
-                    kPos = buf1Pos + k;
-                    int y0 = (yPos > 0) ? buf1.getElem(kPos - wDst2 * 4) : 2 * buf1.getElem(kPos) - buf1.getElem(kPos + wDst2 * 4);
-                    int y1 = buf1.getElem(kPos);
-                    int y2 = buf1.getElem(kPos + wDst2 * 4);
-                    int y3 = (yPos < hSrc - 2) ? buf1.getElem(kPos + wDst2 * 8) : 2 * buf1.getElem(kPos + wDst2 * 4) - buf1.getElem(kPos);
-                    //noinspection SuspiciousNameCombination
-                    buf2.setElem(buf2Pos + k, interpolateCubic(y0, y1, y2, y3, t));
-                }
-            }
-        }
-
-        // Pass 3 - scale to dst
-        int m = wM * hM;
-        if (m > 1) {
-            for (i = 0; i < targetHeight; i++) {
-                for (j = 0; j < targetWidth; j++) {
-                    int r = 0;
-                    int g = 0;
-                    int b = 0;
-                    int a = 0;
-                    for (y = 0; y < hM; y++) {
-                        yPos = (int) (i * hM + y);
-                        for (x = 0; x < wM; x++) {
-                            xPos = (int) (j * wM + x);
-                            int xyPos = (yPos * wDst2 + xPos) * 4;
-                            r += buf2.getElem(xyPos);
-                            g += buf2.getElem(xyPos + 1);
-                            b += buf2.getElem(xyPos + 2);
-                            a += buf2.getElem(xyPos + 3);
-                        }
-                    }
-
-                    int pos = (i * targetWidth + j) * 4;
-                    bufDst.setElem(pos, Math.round(r / m));
-                    bufDst.setElem(pos + 1, Math.round(g / m));
-                    bufDst.setElem(pos + 2, Math.round(b / m));
-                    bufDst.setElem(pos + 3, Math.round(a / m));
-                }
-            }
-        } else {
-            bufDst = buf2;
-        }
-
-        BufferedImage dstImage = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_4BYTE_ABGR);
-        dstImage.setData(Raster.createRaster(dstImage.getSampleModel(), bufDst, null));
+        srcImage = getPackedImage(srcImage);
+        BufferedImage dstImage = new BufferedImage(targetWidth, targetHeight, REQUIRED_IMAGE_TYPE);
+        new BicubicScaler().scale(getPixels(srcImage), srcImage.getWidth(), srcImage.getHeight(),
+                getPixels(dstImage), targetWidth, targetHeight);
         return dstImage;
     }
 
     private static BufferedImage scaleImageIncrementally(BufferedImage src, int targetWidth, int targetHeight) {
-        boolean hasReassignedSrc = false;
-
-        src = normalizeImageType(src);
+        src = getPackedImage(normalizeImageType(src));
 
         int currentWidth = src.getWidth();
         int currentHeight = src.getHeight();
@@ -446,6 +378,7 @@ public class ImageUtils {
         // For ultra quality should use 7
         int fraction = 2;
 
+        List<Dimension> steps = new ArrayList<>();
         do {
             int prevCurrentWidth = currentWidth;
             int prevCurrentHeight = currentHeight;
@@ -472,26 +405,91 @@ public class ImageUtils {
             if (prevCurrentWidth == currentWidth && prevCurrentHeight == currentHeight)
                 break;
 
-            // Render the incremental scaled image.
-            BufferedImage incrementalImage = scaleImageBicubic(src, currentWidth, currentHeight);
+            steps.add(new Dimension(currentWidth, currentHeight));
+        } while (currentWidth != targetWidth || currentHeight != targetHeight);
 
-            // Before re-assigning our interim (partially scaled) incrementalImage to be the new src image before we iterate around
-            // again to process it down further, we want to flush() the previous src image IF (and only IF) it was one of our own temporary
-            // BufferedImages created during this incremental down-sampling cycle. If it wasn't one of ours, then it was the original
-            // caller-supplied BufferedImage in which case we don't want to flush() it and just leave it alone.
-            if (hasReassignedSrc)
-                src.flush();
+        if (steps.isEmpty()) {
+            return src;
+        }
 
-            // Now treat our incremental partially scaled image as the src image
-            // and cycle through our loop again to do another incremental scaling of it (if necessary).
-            src = incrementalImage;
+        // The interim (partially scaled) images are only kept as pixels, alternating between two buffers (each step
+        // reads the previous one), and the scaler reuses its own buffers between the steps.
+        BicubicScaler scaler = new BicubicScaler();
+        byte[][] interimBuffers = new byte[2][];
+        byte[] current = getPixels(src);
+        Dimension currentSize = new Dimension(src.getWidth(), src.getHeight());
+        BufferedImage result = null;
+        for (int i = 0; i < steps.size(); i++) {
+            Dimension step = steps.get(i);
+            byte[] next;
+            if (i == steps.size() - 1) {
+                result = new BufferedImage(step.width, step.height, REQUIRED_IMAGE_TYPE);
+                next = getPixels(result);
+            } else {
+                int length = step.width * step.height * 4;
+                if (interimBuffers[i % 2] == null || interimBuffers[i % 2].length < length) {
+                    interimBuffers[i % 2] = new byte[length];
+                }
+                next = interimBuffers[i % 2];
+            }
+            scaler.scale(current, currentSize.width, currentSize.height, next, step.width, step.height);
+            current = next;
+            currentSize = step;
+        }
 
-            // Keep track of us re-assigning the original caller-supplied source image with one of our interim BufferedImages
-            // so we know when to explicitly flush the interim "src" on the next cycle through.
-            hasReassignedSrc = true;
-        } while (currentWidth != targetWidth || currentHeight != targetHeight);
+        return result;
+    }
+
+    /**
+     * Hashes each row of an image, so images can be compared (e.g., consecutive screenshots) by their row hashes.
+     * Images of different widths have different row hashes.
+     *
+     * @param image The image to hash.
+     * @return The hash of each row, by row index.
+     */
+    public static long[] getRowHashes(BufferedImage image) {
+        ArgumentGuard.notNull(image, "image");
+        final BufferedImage packedImage = getPackedImage(normalizeImageType(image));
+        final byte[] pixels = getPixels(packedImage);
+        final int rowLength = packedImage.getWidth() * 4;
+        final long[] rowHashes = new long[packedImage.getHeight()];
+        ParallelRows.process(rowHashes.length, rowLength, new ParallelRows.RowsProcessor() {
+            @Override
+            public void process(int fromRow, int toRow) {
+                for (int row = fromRow; row < toRow; row++) {
+                    long hash = rowLength;
+                    int end = (row + 1) * rowLength;
+                    // A pixel at a time, which is 4 times shorter a chain of multiplications than a byte at a time.
+                    for (int i = row * rowLength; i < end; i += 4) {
+                        int pixel = (pixels[i] & 0xFF) | (pixels[i + 1] & 0xFF) << 8 |
+                                (pixels[i + 2] & 0xFF) << 16 | (pixels[i + 3] & 0xFF) << 24;
+                        hash = hash * 0x100000001B3L + pixel;
+                    }
+                    rowHashes[row] = hash;
+                }
+            }
+        });
+        return rowHashes;
+    }
+
+    /**
+     * @return The image, if its pixels are laid out in its buffer as in any new {@link #REQUIRED_IMAGE_TYPE} image
+     * (as opposed to, e.g., sub images), or such a copy of it.
+     */
+    static BufferedImage getPackedImage(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        if (image.getType() == REQUIRED_IMAGE_TYPE && raster.getSampleModel() instanceof PixelInterleavedSampleModel &&
+                ((PixelInterleavedSampleModel) raster.getSampleModel()).getScanlineStride() == image.getWidth() * 4 &&
+                raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0 &&
+                raster.getDataBuffer().getOffset() == 0 &&
+                Arrays.equals(((PixelInterleavedSampleModel) raster.getSampleModel()).getBandOffsets(), new int[]{3, 2, 1, 0})) {
+            return image;
+        }
+        return getImagePart(image, new Region(0, 0, image.getWidth(), image.getHeight()));
+    }
 
-        return src;
+    private static byte[] getPixels(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
     }
 
     /**
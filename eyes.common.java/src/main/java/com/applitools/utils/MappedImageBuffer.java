@@ -0,0 +1,190 @@
+/*
+ * Applitools software.
+ */
+package com.applitools.utils;
+
+import com.applitools.eyes.EyesException;
+import com.applitools.eyes.Region;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An image canvas whose pixels are kept off the heap, in a memory mapped temporary file.
+ * Used for stitching very large images, to reduce the peak heap usage: the parts are drawn into the canvas as they're
+ * captured, so the untrimmed canvas is never allocated on the heap. The final (trimmed) image still is, by
+ * {@link #toImage(Region)}. Pixels are stored as in a {@link ImageUtils#REQUIRED_IMAGE_TYPE} image, row after row.
+ * The buffer must be closed, which unmaps and deletes the backing file.
+ */
+public class MappedImageBuffer implements Closeable {
+
+    private static final int PIXEL_SIZE = 4;
+
+    private final int width;
+    private final int height;
+    private final int rowsPerBand;
+    private final MappedByteBuffer[] bands;
+    private final File file;
+    private RandomAccessFile randomAccessFile;
+    private boolean closed;
+
+    /**
+     * @param width  The width of the canvas.
+     * @param height The height of the canvas.
+     * @throws EyesException If the backing file could not be created.
+     */
+    public MappedImageBuffer(int width, int height) {
+        ArgumentGuard.greaterThanZero(width, "width");
+        ArgumentGuard.greaterThanZero(height, "height");
+        this.width = width;
+        this.height = height;
+        // A single mapping is limited to 2GB, so the rows are split between as many mappings as needed.
+        this.rowsPerBand = Math.max(1, Integer.MAX_VALUE / getRowSize());
+        this.bands = new MappedByteBuffer[(height + rowsPerBand - 1) / rowsPerBand];
+        try {
+            this.file = File.createTempFile("eyes-stitch-", ".raw");
+            this.randomAccessFile = new RandomAccessFile(file, "rw");
+            FileChannel channel = randomAccessFile.getChannel();
+            for (int i = 0; i < bands.length; i++) {
+                long start = (long) i * rowsPerBand * getRowSize();
+                long size = (long) Math.min(rowsPerBand, height - i * rowsPerBand) * getRowSize();
+                bands[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+            }
+        } catch (IOException e) {
+            close();
+            throw new EyesException("Failed to create image buffer", e);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Draws an image into the canvas. Parts of the image outside the canvas are ignored.
+     * @param image The image to draw.
+     * @param x     The left of the image in the canvas.
+     * @param y     The top of the image in the canvas.
+     */
+    public void drawImage(BufferedImage image, int x, int y) {
+        ArgumentGuard.notNull(image, "image");
+        Region region = new Region(x, y, image.getWidth(), image.getHeight());
+        region.intersect(new Region(0, 0, width, height));
+        if (region.isSizeEmpty()) {
+            return;
+        }
+        BufferedImage part = ImageUtils.getImagePart(image,
+                new Region(region.getLeft() - x, region.getTop() - y, region.getWidth(), region.getHeight()));
+        byte[] pixels = ((DataBufferByte) part.getRaster().getDataBuffer()).getData();
+        int partRowSize = part.getWidth() * PIXEL_SIZE;
+        for (int row = 0; row < part.getHeight(); row++) {
+            MappedByteBuffer band = getBand(region.getTop() + row);
+            band.position(getPosition(region.getLeft(), region.getTop() + row));
+            band.put(pixels, row * partRowSize, partRowSize);
+        }
+    }
+
+    /**
+     * Copies a region of the canvas into a new image.
+     * @param region The region to copy.
+     * @return A new {@link ImageUtils#REQUIRED_IMAGE_TYPE} image.
+     */
+    public BufferedImage toImage(Region region) {
+        ArgumentGuard.notNull(region, "region");
+        ArgumentGuard.isValidState(region.getLeft() >= 0 && region.getTop() >= 0 &&
+                region.getLeft() + region.getWidth() <= width && region.getTop() + region.getHeight() <= height, "region is outside of the buffer");
+        BufferedImage image = new BufferedImage(region.getWidth(), region.getHeight(), ImageUtils.REQUIRED_IMAGE_TYPE);
+        WritableRaster raster = image.getRaster();
+        byte[] pixels = ((DataBufferByte) raster.getDataBuffer()).getData();
+        int imageRowSize = ((PixelInterleavedSampleModel) raster.getSampleModel()).getScanlineStride();
+        for (int row = 0; row < region.getHeight(); row++) {
+            MappedByteBuffer band = getBand(region.getTop() + row);
+            band.position(getPosition(region.getLeft(), region.getTop() + row));
+            band.get(pixels, row * imageRowSize, region.getWidth() * PIXEL_SIZE);
+        }
+        return image;
+    }
+
+    /**
+     * Unmaps and deletes the backing file. The buffer can't be used afterwards.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (int i = 0; i < bands.length; i++) {
+            if (bands[i] != null) {
+                unmap(bands[i]);
+                bands[i] = null;
+            }
+        }
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException ignored) {
+            }
+            randomAccessFile = null;
+        }
+        if (file != null && !file.delete()) {
+            // Couldn't be unmapped (the mapping is then released when garbage collected), so it's deleted on exit.
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Releases a mapping right away, rather than when the buffer is garbage collected (until when, e.g., the file
+     * can't be deleted on Windows). There's no public API for it, so it's done through the JDK internals, and left to
+     * the garbage collector if they aren't accessible.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                // Java 9 and above.
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // Java 8 and below.
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (Exception ignored) {
+        }
+    }
+
+    private MappedByteBuffer getBand(int y) {
+        // Accessing an unmapped buffer crashes the JVM.
+        ArgumentGuard.isValidState(!closed, "image buffer is closed");
+        return bands[y / rowsPerBand];
+    }
+
+    private int getRowSize() {
+        return width * PIXEL_SIZE;
+    }
+
+    private int getPosition(int x, int y) {
+        return (y % rowsPerBand) * getRowSize() + x * PIXEL_SIZE;
+    }
+}
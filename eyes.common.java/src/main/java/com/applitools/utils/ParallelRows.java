@@ -0,0 +1,85 @@
+/*
+ * Applitools software.
+ */
+package com.applitools.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs row by row image processing in bands of rows, in parallel on a shared fork-join pool.
+ * Small images are processed on the calling thread.
+ */
+final class ParallelRows {
+
+    // The least amount of bytes processed by a band.
+    private static final int MIN_BAND_SIZE = 256 * 1024;
+
+    private static volatile ForkJoinPool pool;
+
+    /**
+     * Processes a band of rows.
+     */
+    interface RowsProcessor {
+        /**
+         * @param fromRow The first row to process.
+         * @param toRow   The row after the last row to process.
+         */
+        void process(int fromRow, int toRow);
+    }
+
+    private static class RowsTask extends RecursiveAction {
+        private final RowsProcessor processor;
+        private final int fromRow;
+        private final int toRow;
+        private final int rowsPerBand;
+
+        RowsTask(RowsProcessor processor, int fromRow, int toRow, int rowsPerBand) {
+            this.processor = processor;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.rowsPerBand = rowsPerBand;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= rowsPerBand) {
+                processor.process(fromRow, toRow);
+                return;
+            }
+            int middle = (fromRow + toRow) >>> 1;
+            invokeAll(new RowsTask(processor, fromRow, middle, rowsPerBand),
+                    new RowsTask(processor, middle, toRow, rowsPerBand));
+        }
+    }
+
+    private ParallelRows() {
+    }
+
+    /**
+     * Processes all rows, returning once they're all processed.
+     * @param rowCount  The number of rows.
+     * @param rowSize   The (approximate) number of bytes processed per row.
+     * @param processor The processor of the rows.
+     */
+    static void process(int rowCount, int rowSize, RowsProcessor processor) {
+        int rowsPerBand = Math.max(1, MIN_BAND_SIZE / Math.max(1, rowSize));
+        if (rowCount <= rowsPerBand) {
+            processor.process(0, rowCount);
+            return;
+        }
+        getPool().invoke(new RowsTask(processor, 0, rowCount, rowsPerBand));
+    }
+
+    private static ForkJoinPool getPool() {
+        if (pool == null) {
+            synchronized (ParallelRows.class) {
+                if (pool == null) {
+                    // Fork-join worker threads are daemons.
+                    pool = new ForkJoinPool();
+                }
+            }
+        }
+        return pool;
+    }
+}
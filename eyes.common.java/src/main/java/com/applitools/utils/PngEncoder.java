@@ -0,0 +1,341 @@
+/*
+ * Applitools software.
+ */
+package com.applitools.utils;
+
+import com.applitools.eyes.EyesException;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes screenshots as (8 bit RGBA) PNG, straight from the pixels of {@link ImageUtils#REQUIRED_IMAGE_TYPE} images.
+ * The image is split into bands of rows which are filtered and deflated in parallel, each band primed with the end of
+ * the previous one (so the compression ratio is close to that of a single stream), and the compressed bands are
+ * concatenated into a single zlib stream.
+ */
+public class PngEncoder {
+
+    public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final int MIN_BAND_SIZE = 512 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    // Deflate can't compress better than 1032:1.
+    private static final int MAX_DEFLATE_RATIO = 1032;
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final byte FILTER_SUB = 1;
+    private static final byte FILTER_UP = 2;
+
+    private static volatile ExecutorService sharedExecutor;
+
+    private final int compressionLevel;
+    private final ExecutorService executor;
+
+    public PngEncoder() {
+        this(DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * @param compressionLevel The deflate level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}.
+     */
+    public PngEncoder(int compressionLevel) {
+        this(compressionLevel, null);
+    }
+
+    /**
+     * @param compressionLevel The deflate level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}.
+     * @param executor         The executor to compress the bands on, or {@code null} for a shared pool the size of
+     *                         the number of processors.
+     */
+    public PngEncoder(int compressionLevel, ExecutorService executor) {
+        ArgumentGuard.isValidState(compressionLevel >= Deflater.BEST_SPEED && compressionLevel <= Deflater.BEST_COMPRESSION,
+                "compressionLevel must be between " + Deflater.BEST_SPEED + " and " + Deflater.BEST_COMPRESSION);
+        this.compressionLevel = compressionLevel;
+        this.executor = executor;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * @return A lower bound on the size of the PNG encoding of an image of the given size, whatever its content.
+     */
+    public static long getMinimumEncodedLength(int width, int height) {
+        long filteredLength = (long) height * (1 + (long) width * 4);
+        return filteredLength / MAX_DEFLATE_RATIO;
+    }
+
+    /**
+     * Encodes the given image as PNG.
+     * @param image The image to encode. Images of other types than {@link ImageUtils#REQUIRED_IMAGE_TYPE} are
+     *              converted first.
+     * @return The PNG bytes representation of the image.
+     */
+    public byte[] encode(BufferedImage image) {
+        ArgumentGuard.notNull(image, "image");
+        image = ImageUtils.getPackedImage(image);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        final WritableRaster raster = image.getRaster();
+        final byte[] pixels = ((DataBufferByte) raster.getDataBuffer()).getData();
+        final int rowLength = width * 4;
+        final int filteredRowLength = rowLength + 1;
+        final int rowsPerBand = Math.max(1, MIN_BAND_SIZE / filteredRowLength);
+        int bandCount = (height + rowsPerBand - 1) / rowsPerBand;
+
+        try {
+            // Filtering.
+            final byte[][] filteredBands = new byte[bandCount][];
+            List<Callable<Void>> filterTasks = new ArrayList<>(bandCount);
+            for (int band = 0; band < bandCount; band++) {
+                final int bandIndex = band;
+                filterTasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        filteredBands[bandIndex] = filterRows(pixels, rowLength, bandIndex * rowsPerBand,
+                                Math.min(rowsPerBand, raster.getHeight() - bandIndex * rowsPerBand));
+                        return null;
+                    }
+                });
+            }
+            runAll(filterTasks);
+
+            // Deflating, each band primed with the end of the previous one.
+            final byte[][] deflatedBands = new byte[bandCount][];
+            List<Callable<Void>> deflateTasks = new ArrayList<>(bandCount);
+            for (int band = 0; band < bandCount; band++) {
+                final int bandIndex = band;
+                final boolean isLast = band == bandCount - 1;
+                deflateTasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        deflatedBands[bandIndex] = deflate(filteredBands[bandIndex],
+                                bandIndex == 0 ? null : filteredBands[bandIndex - 1], isLast);
+                        return null;
+                    }
+                });
+            }
+            runAll(deflateTasks);
+
+            Adler32 adler32 = new Adler32();
+            for (byte[] filteredBand : filteredBands) {
+                adler32.update(filteredBand, 0, filteredBand.length);
+            }
+
+            ByteArrayOutputStream result = new ByteArrayOutputStream(getLength(deflatedBands) + 1024);
+            DataOutputStream out = new DataOutputStream(result);
+            out.write(SIGNATURE);
+            writeHeader(out, width, height);
+            // The zlib header (deflate, 32K window, no dictionary) leads the image data.
+            byte[] zlibHeader = {0x78, (byte) 0xda};
+            writeChunk(out, "IDAT", zlibHeader);
+            for (byte[] deflatedBand : deflatedBands) {
+                writeChunk(out, "IDAT", deflatedBand);
+            }
+            long checksum = adler32.getValue();
+            writeChunk(out, "IDAT", new byte[]{(byte) (checksum >>> 24), (byte) (checksum >>> 16), (byte) (checksum >>> 8), (byte) checksum});
+            writeChunk(out, "IEND", new byte[0]);
+            out.flush();
+            return result.toByteArray();
+        } catch (IOException e) {
+            throw new EyesException("Failed to encode image", e);
+        }
+    }
+
+    /**
+     * Filters the rows, each with either the "sub" or the "up" filter (whichever leaves smaller residuals), and
+     * converts them from ABGR to RGBA. Since both filters only subtract bytes of the same channel, the residuals are
+     * computed on the ABGR pixels and only their order is changed.
+     */
+    private static byte[] filterRows(byte[] pixels, int rowLength, int firstRow, int rowCount) {
+        byte[] filtered = new byte[rowCount * (rowLength + 1)];
+        for (int i = 0; i < rowCount; i++) {
+            int row = firstRow + i;
+            int rowOffset = row * rowLength;
+            int offset = i * (rowLength + 1);
+            if (row == 0) {
+                filtered[offset] = FILTER_SUB;
+                filterRow(pixels, rowOffset, 4, rowLength, filtered, offset + 1);
+                continue;
+            }
+            int previousRowOffset = rowOffset - rowLength;
+            if (isSameRow(pixels, rowOffset, previousRowOffset, rowLength)) {
+                // Common in screenshots; the "up" residuals are all zeros.
+                filtered[offset] = FILTER_UP;
+                continue;
+            }
+            long subSum = 0;
+            long upSum = 0;
+            for (int j = 0; j < rowLength; j++) {
+                int sub = (byte) (pixels[rowOffset + j] - (j < 4 ? 0 : pixels[rowOffset + j - 4]));
+                int up = (byte) (pixels[rowOffset + j] - pixels[previousRowOffset + j]);
+                subSum += sub < 0 ? -sub : sub;
+                upSum += up < 0 ? -up : up;
+            }
+            if (upSum < subSum) {
+                filtered[offset] = FILTER_UP;
+                filterRow(pixels, rowOffset, rowLength, rowLength, filtered, offset + 1);
+            } else {
+                filtered[offset] = FILTER_SUB;
+                filterRow(pixels, rowOffset, 4, rowLength, filtered, offset + 1);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Writes the residuals of each byte of the row from the byte {@code distance} bytes before it, in RGBA order.
+     */
+    private static void filterRow(byte[] pixels, int rowOffset, int distance, int rowLength, byte[] filtered, int offset) {
+        int start = 0;
+        if (distance == 4) {
+            // The first pixel has no pixel to its left.
+            filtered[offset] = pixels[rowOffset + 3];
+            filtered[offset + 1] = pixels[rowOffset + 2];
+            filtered[offset + 2] = pixels[rowOffset + 1];
+            filtered[offset + 3] = pixels[rowOffset];
+            start = 4;
+        }
+        for (int j = start; j < rowLength; j += 4) {
+            int current = rowOffset + j;
+            int reference = current - distance;
+            filtered[offset + j] = (byte) (pixels[current + 3] - pixels[reference + 3]);
+            filtered[offset + j + 1] = (byte) (pixels[current + 2] - pixels[reference + 2]);
+            filtered[offset + j + 2] = (byte) (pixels[current + 1] - pixels[reference + 1]);
+            filtered[offset + j + 3] = (byte) (pixels[current] - pixels[reference]);
+        }
+    }
+
+    private static boolean isSameRow(byte[] pixels, int rowOffset, int otherRowOffset, int rowLength) {
+        for (int j = 0; j < rowLength; j++) {
+            if (pixels[rowOffset + j] != pixels[otherRowOffset + j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Deflates a band into raw deflate blocks. All but the last band end with a sync flush (so they end on a byte
+     * boundary and the bands can be concatenated), and the last one finishes the stream.
+     */
+    private byte[] deflate(byte[] data, byte[] previousData, boolean isLast) {
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            if (previousData != null) {
+                int dictionaryLength = Math.min(DICTIONARY_SIZE, previousData.length);
+                deflater.setDictionary(previousData, previousData.length - dictionaryLength, dictionaryLength);
+            }
+            deflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            if (isLast) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    out.write(buffer, 0, count);
+                }
+            } else {
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    out.write(buffer, 0, count);
+                } while (count == buffer.length || !deflater.needsInput());
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void runAll(List<Callable<Void>> tasks) throws IOException {
+        if (tasks.size() == 1) {
+            try {
+                tasks.get(0).call();
+                return;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+        try {
+            for (Future<Void> future : getExecutor().invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private ExecutorService getExecutor() {
+        if (executor != null) {
+            return executor;
+        }
+        if (sharedExecutor == null) {
+            synchronized (PngEncoder.class) {
+                if (sharedExecutor == null) {
+                    int threads = Runtime.getRuntime().availableProcessors();
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger threadNumber = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "eyes-png-encoder-" + threadNumber.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    pool.allowCoreThreadTimeOut(true);
+                    sharedExecutor = pool;
+                }
+            }
+        }
+        return sharedExecutor;
+    }
+
+    private static void writeHeader(DataOutputStream out, int width, int height) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream headerOut = new DataOutputStream(header);
+        headerOut.writeInt(width);
+        headerOut.writeInt(height);
+        headerOut.writeByte(8); // Bit depth.
+        headerOut.writeByte(6); // Color type: RGBA.
+        headerOut.writeByte(0); // Compression method: deflate.
+        headerOut.writeByte(0); // Filter method: adaptive.
+        headerOut.writeByte(0); // Interlace method: none.
+        writeChunk(out, "IHDR", header.toByteArray());
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static int getLength(byte[][] arrays) {
+        int length = 0;
+        for (byte[] array : arrays) {
+            length += array.length;
+        }
+        return length;
+    }
+}
@@ -23,6 +23,7 @@ public class ResourceFuture implements IResourceFuture {
     private Logger logger;
     private IServerConnector serverConnector;
     private RGridResource rgResource;
+    private RGridResource cachedResource;
     private int retryCount = 3;
 
     public ResourceFuture(Future<Response> future, String url, Logger logger, IServerConnector serverConnector) {
@@ -32,6 +33,15 @@ public class ResourceFuture implements IResourceFuture {
         this.serverConnector = serverConnector;
     }
 
+    /**
+     * @param cachedResource The cached copy the request was conditioned on, returned if the server replies that the
+     *                       resource was not modified.
+     */
+    public ResourceFuture(Future<Response> future, String url, Logger logger, IServerConnector serverConnector, RGridResource cachedResource) {
+        this(future, url, logger, serverConnector);
+        this.cachedResource = cachedResource;
+    }
+
     public ResourceFuture(RGridResource rgResource, Logger logger, IServerConnector serverConnector) {
         this.url = rgResource.getUrl();
         this.rgResource = rgResource;
@@ -60,10 +70,15 @@ public class ResourceFuture implements IResourceFuture {
         while (this.rgResource == null && retryCount > 0) {
             try {
                 Response response = future.get();
+                if (isNotModified(response)) {
+                    rgResource = cachedResource;
+                    break;
+                }
                 logger.verbose("response: " + response);
                 ByteArrayOutputStream outputStream = downloadFile(response);
                 String contentType = Utils.getResponseContentType(response);
                 rgResource = new RGridResource(url, contentType, outputStream.toByteArray(), logger, "ResourceFuture");
+                rgResource.setValidators(Utils.getResponseEtag(response), Utils.getResponseLastModified(response));
                 break;
             } catch (InterruptedException | ExecutionException e) {
                 retryCount--;
@@ -85,13 +100,22 @@ public class ResourceFuture implements IResourceFuture {
     public RGridResource get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
         if (this.rgResource == null) {
             Response response = future.get(timeout, unit);
+            if (isNotModified(response)) {
+                rgResource = cachedResource;
+                return rgResource;
+            }
             ByteArrayOutputStream outputStream = downloadFile(response);
             String contentType = Utils.getResponseContentType(response);
             rgResource = new RGridResource(url, contentType, outputStream.toByteArray(), logger, "resourceFuture");
+            rgResource.setValidators(Utils.getResponseEtag(response), Utils.getResponseLastModified(response));
         }
         return rgResource;
     }
 
+    private boolean isNotModified(Response response) {
+        return cachedResource != null && response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode();
+    }
+
     private ByteArrayOutputStream downloadFile(Response response) {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
         InputStream inputStream = response.readEntity(InputStream.class);
@@ -104,6 +128,13 @@ public class ResourceFuture implements IResourceFuture {
             }
         } catch (IOException e) {
             GeneralUtils.logExceptionStackTrace(logger, e);
+        } finally {
+            // Releasing the connection back to the download pool.
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                GeneralUtils.logExceptionStackTrace(logger, e);
+            }
         }
         return outputStream;
     }
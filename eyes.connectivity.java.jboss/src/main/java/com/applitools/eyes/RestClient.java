@@ -16,11 +16,15 @@ import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
 import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient4Engine;
 
 import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -41,6 +45,9 @@ public class RestClient {
 
     private AbstractProxySettings abstractProxySettings;
     private int timeout; // seconds
+    private ConnectionPoolSettings connectionPoolSettings = new ConnectionPoolSettings();
+    private ResteasyClient downloadClient;
+    private long lastIdleEviction;
 
     protected Logger logger;
     protected Client restClient;
@@ -111,6 +118,30 @@ public class RestClient {
         return client;
     }
 
+    /**
+     * Builds the long-lived client used for downloading page resources. Unlike the client used for the Eyes server,
+     * it keeps a pool of connections (and TLS sessions) per host which is shared by all of the downloads.
+     * @param timeout Connect/Read timeout in milliseconds. 0 equals infinity.
+     * @param connectionPoolSettings The settings of the connection pool.
+     */
+    private static ResteasyClient buildDownloadClient(int timeout, ConnectionPoolSettings connectionPoolSettings) {
+        return new ResteasyClientBuilder()
+                .establishConnectionTimeout(timeout, TimeUnit.MILLISECONDS)
+                .socketTimeout(timeout, TimeUnit.MILLISECONDS)
+                .connectionPoolSize(connectionPoolSettings.getMaxConnectionsTotal())
+                .maxPooledPerRoute(connectionPoolSettings.getMaxConnectionsPerHost())
+                // The default executor runs only 10 requests at a time, the pool size is the limit we want.
+                .asyncExecutor(Executors.newCachedThreadPool(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "eyes-resource-download");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }))
+                .build();
+    }
+
     /***
      * @param logger    Logger instance.
      * @param serverUrl The URI of the rest server.
@@ -187,6 +218,49 @@ public class RestClient {
         endPoint = restClient.target(serverUrl);
     }
 
+    /**
+     * Sets the settings of the connection pool used for downloading page resources.
+     * Should be called before any download is started, since in-flight downloads keep using the previous pool.
+     * @param connectionPoolSettings The pool settings.
+     */
+    public synchronized void setConnectionPoolSettings(ConnectionPoolSettings connectionPoolSettings) {
+        ArgumentGuard.notNull(connectionPoolSettings, "connectionPoolSettings");
+        this.connectionPoolSettings = connectionPoolSettings;
+        this.downloadClient = null;
+    }
+
+    public ConnectionPoolSettings getConnectionPoolSettings() {
+        return connectionPoolSettings;
+    }
+
+    /**
+     * @param url The URL of the resource to download.
+     * @return A request for the given URL, sent through the pooled download client.
+     */
+    @SuppressWarnings("deprecation")
+    protected synchronized Invocation.Builder getDownloadRequest(String url) {
+        if (downloadClient == null) {
+            downloadClient = buildDownloadClient(timeout, connectionPoolSettings);
+            lastIdleEviction = System.currentTimeMillis();
+        }
+
+        // Evicting idle connections as part of the normal download flow, rather than on a dedicated thread.
+        long now = System.currentTimeMillis();
+        int idleTimeout = connectionPoolSettings.getIdleTimeout();
+        if (now - lastIdleEviction >= idleTimeout / 2) {
+            ApacheHttpClient4Engine engine = (ApacheHttpClient4Engine) downloadClient.httpEngine();
+            engine.getHttpClient().getConnectionManager().closeExpiredConnections();
+            engine.getHttpClient().getConnectionManager().closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+            lastIdleEviction = now;
+        }
+
+        Invocation.Builder request = downloadClient.target(url).request(MediaType.WILDCARD);
+        if (!connectionPoolSettings.isKeepAlive()) {
+            request.header("Connection", "close");
+        }
+        return request;
+    }
+
     /**
      *
      * @return The timeout for web requests (in seconds).
@@ -19,4 +19,12 @@ public class Utils {
         }
         return contentType;
     }
+
+    public static String getResponseEtag(Response response) {
+        return response.getHeaderString("ETag");
+    }
+
+    public static String getResponseLastModified(Response response) {
+        return response.getHeaderString("Last-Modified");
+    }
 }
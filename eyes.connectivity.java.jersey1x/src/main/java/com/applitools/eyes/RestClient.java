@@ -3,17 +3,21 @@ package com.applitools.eyes;
 import com.applitools.utils.ArgumentGuard;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.jersey.api.client.AsyncWebResource;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.client.apache4.ApacheHttpClient4;
 import com.sun.jersey.client.apache4.config.ApacheHttpClient4Config;
 import com.sun.jersey.client.apache4.config.DefaultApacheHttpClient4Config;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriBuilder;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides common rest client functionality.
@@ -30,6 +34,10 @@ public class RestClient {
 
     private AbstractProxySettings abstractProxySettings;
     private int timeout; // seconds
+    private ConnectionPoolSettings connectionPoolSettings = new ConnectionPoolSettings();
+    private Client downloadClient;
+    private ThreadSafeClientConnManager downloadConnectionManager;
+    private long lastIdleEviction;
 
     protected Logger logger;
     protected Client restClient;
@@ -80,6 +88,21 @@ public class RestClient {
         }
     }
 
+    /**
+     * Builds the long-lived client used for downloading page resources. Unlike the client used for the Eyes server,
+     * it keeps a pool of connections (and TLS sessions) per host which is shared by all of the downloads.
+     *
+     * @param timeout           Connect/Read timeout in milliseconds. 0 equals infinity.
+     * @param connectionManager The connection pool to be used by the client.
+     */
+    private static Client buildDownloadClient(int timeout, ThreadSafeClientConnManager connectionManager) {
+        ApacheHttpClient4Config cc = new DefaultApacheHttpClient4Config();
+        cc.getProperties().put(ApacheHttpClient4Config.PROPERTY_CONNECT_TIMEOUT, timeout);
+        cc.getProperties().put(ApacheHttpClient4Config.PROPERTY_READ_TIMEOUT, timeout);
+        cc.getProperties().put(ApacheHttpClient4Config.PROPERTY_CONNECTION_MANAGER, connectionManager);
+        return ApacheHttpClient4.create(cc);
+    }
+
     /***
      * @param logger    Logger instance.
      * @param serverUrl The URI of the rest server.
@@ -157,6 +180,52 @@ public class RestClient {
         endPoint = restClient.resource(serverUrl);
     }
 
+    /**
+     * Sets the settings of the connection pool used for downloading page resources.
+     * Should be called before any download is started, since in-flight downloads keep using the previous pool.
+     *
+     * @param connectionPoolSettings The pool settings.
+     */
+    public synchronized void setConnectionPoolSettings(ConnectionPoolSettings connectionPoolSettings) {
+        ArgumentGuard.notNull(connectionPoolSettings, "connectionPoolSettings");
+        this.connectionPoolSettings = connectionPoolSettings;
+        this.downloadClient = null;
+        this.downloadConnectionManager = null;
+    }
+
+    public ConnectionPoolSettings getConnectionPoolSettings() {
+        return connectionPoolSettings;
+    }
+
+    /**
+     * @param url The URL of the resource to download.
+     * @return A request for the given URL, sent through the pooled download client.
+     */
+    protected synchronized AsyncWebResource.Builder getDownloadRequest(String url) {
+        if (downloadClient == null) {
+            downloadConnectionManager = new ThreadSafeClientConnManager();
+            downloadConnectionManager.setMaxTotal(connectionPoolSettings.getMaxConnectionsTotal());
+            downloadConnectionManager.setDefaultMaxPerRoute(connectionPoolSettings.getMaxConnectionsPerHost());
+            downloadClient = buildDownloadClient(timeout, downloadConnectionManager);
+            lastIdleEviction = System.currentTimeMillis();
+        }
+
+        // Evicting idle connections as part of the normal download flow, rather than on a dedicated thread.
+        long now = System.currentTimeMillis();
+        int idleTimeout = connectionPoolSettings.getIdleTimeout();
+        if (now - lastIdleEviction >= idleTimeout / 2) {
+            downloadConnectionManager.closeExpiredConnections();
+            downloadConnectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+            lastIdleEviction = now;
+        }
+
+        AsyncWebResource.Builder request = downloadClient.asyncResource(url).accept(MediaType.WILDCARD);
+        if (!connectionPoolSettings.isKeepAlive()) {
+            request = request.header("Connection", "close");
+        }
+        return request;
+    }
+
     /**
      * @return The timeout for web requests (in seconds).
      */
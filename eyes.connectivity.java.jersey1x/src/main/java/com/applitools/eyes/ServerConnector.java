@@ -11,7 +11,6 @@ import com.applitools.utils.GeneralUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.sun.jersey.api.client.AsyncWebResource;
-import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.async.TypeListener;
@@ -20,7 +19,7 @@ import org.apache.commons.lang3.ArrayUtils;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
-import javax.xml.bind.DatatypeConverter;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.*;
 import java.net.URI;
 import java.net.URL;
@@ -35,7 +34,6 @@ public class ServerConnector extends RestClient
 
     private static final int TIMEOUT = 1000 * 60 * 5; // 5 Minutes
     private static final String API_PATH = "/api/sessions/running";
-    private static final String DEFAULT_CHARSET_NAME = "UTF-8";
 
     private String apiKey = null;
     private RenderingInfo renderingInfo;
@@ -274,7 +272,6 @@ public class ServerConnector extends RestClient
         ClientResponse response;
         List<Integer> validStatusCodes;
         MatchResult result;
-        String jsonData;
 
         // since we rather not add an empty "tag" param
         WebResource runningSessionsEndpoint =
@@ -283,49 +280,33 @@ public class ServerConnector extends RestClient
         // Serializing model into JSON (we'll treat it as binary later).
         // IMPORTANT This serializes everything EXCEPT for the screenshot (which
         // we'll add later).
+        final byte[] jsonBytes;
         try {
-            jsonData = jsonMapper.writeValueAsString(matchData);
+            jsonBytes = jsonMapper.writeValueAsBytes(matchData);
         } catch (IOException e) {
             throw new EyesException("Failed to serialize model for matchWindow!",
                     e);
         }
 
-        // Convert the JSON to binary.
-        byte[] jsonBytes;
-        ByteArrayOutputStream jsonToBytesConverter = new ByteArrayOutputStream();
-        try {
-            jsonToBytesConverter.write(
-                    jsonData.getBytes(DEFAULT_CHARSET_NAME));
-            jsonToBytesConverter.flush();
-            jsonBytes = jsonToBytesConverter.toByteArray();
-        } catch (IOException e) {
-            throw new EyesException("Failed create binary model from JSON!", e);
-        }
-
         // Getting the screenshot's bytes (notice this can be either
         // compressed/uncompressed form).
-        byte[] screenshot = DatatypeConverter.parseBase64Binary(
-                matchData.getAppOutput().getScreenshot64());
-
-        // Ok, let's create the request model
-        ByteArrayOutputStream requestOutputStream = new ByteArrayOutputStream();
-        DataOutputStream requestDos = new DataOutputStream(requestOutputStream);
-        byte[] requestData;
-        try {
-            requestDos.writeInt(jsonBytes.length);
-            requestDos.flush();
-            requestOutputStream.write(jsonBytes);
-            requestOutputStream.write(screenshot);
-            requestOutputStream.flush();
-
-            // Ok, get the model bytes
-            requestData = requestOutputStream.toByteArray();
-
-            // Release the streams
-            requestDos.close();
-        } catch (IOException e) {
-            throw new EyesException("Failed send check window request!", e);
-        }
+        final byte[] screenshot = matchData.getAppOutput().getScreenshotBytes();
+
+        // The request model (the JSON's length, the JSON and the screenshot)
+        // is written straight to the request, rather than copied into a
+        // buffer of its own.
+        StreamingOutput requestData = new StreamingOutput() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                DataOutputStream requestDos = new DataOutputStream(outputStream);
+                requestDos.writeInt(jsonBytes.length);
+                requestDos.write(jsonBytes);
+                if (screenshot != null) {
+                    requestDos.write(screenshot);
+                }
+                requestDos.flush();
+            }
+        };
 
         // Sending the request
         response = runningSessionsEndpoint.queryParam("apiKey", getApiKey()).
@@ -347,9 +328,7 @@ public class ServerConnector extends RestClient
     @Override
     public void downloadString(URL uri, boolean isSecondRetry, final IDownloadListener<String> listener) {
 
-        AsyncWebResource target = Client.create().asyncResource(uri.toString());
-
-        AsyncWebResource.Builder request = target.accept(MediaType.WILDCARD);
+        AsyncWebResource.Builder request = getDownloadRequest(uri.toString());
 
         request.get(new TypeListener<ClientResponse>(ClientResponse.class) {
 
@@ -379,6 +358,11 @@ public class ServerConnector extends RestClient
                     logger.verbose("Failed to parse request(status= " + status + ") = " + clientResponse.getEntity(String.class));
                     listener.onDownloadFailed();
 
+                } finally {
+                    // Releasing the connection back to the download pool.
+                    if (clientResponse != null) {
+                        clientResponse.close();
+                    }
                 }
             }
 
@@ -387,9 +371,7 @@ public class ServerConnector extends RestClient
 
     @Override
     public IResourceFuture downloadResource(URL uri, boolean isSecondRetry, final IDownloadListener<Byte[]> listener) {
-        AsyncWebResource target = Client.create().asyncResource(uri.toString());
-
-        AsyncWebResource.Builder request = target.accept(MediaType.WILDCARD);
+        AsyncWebResource.Builder request = getDownloadRequest(uri.toString());
 
         request.get(new TypeListener<ClientResponse>(ClientResponse.class) {
 
@@ -415,6 +397,11 @@ public class ServerConnector extends RestClient
                     logger.verbose("Failed to parse request(status= " + status + ") = " + (clientResponse != null ? clientResponse.getEntity(String.class) : null));
                     listener.onDownloadFailed();
 
+                } finally {
+                    // Releasing the connection back to the download pool.
+                    if (clientResponse != null) {
+                        clientResponse.close();
+                    }
                 }
             }
 
@@ -422,6 +409,13 @@ public class ServerConnector extends RestClient
         return null;
     }
 
+    @Override
+    public IResourceFuture revalidateResource(URL uri, RGridResource cachedResource) {
+        // Resource downloads are not backed by futures in this connector (and a download without a listener would
+        // have no one to report to), so there is nothing to revalidate with.
+        return null;
+    }
+
 
     @Override
     public String postDomSnapshot(String domJson) {
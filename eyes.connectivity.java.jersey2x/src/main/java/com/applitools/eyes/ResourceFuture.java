@@ -20,6 +20,7 @@ public class ResourceFuture implements IResourceFuture {
     private Logger logger;
     private IServerConnector serverConnector;
     private RGridResource rgResource;
+    private RGridResource cachedResource;
     private int retryCount = 3;
 
     public ResourceFuture(Future<Response> future, String url, Logger logger, IServerConnector serverConnector) {
@@ -29,6 +30,15 @@ public class ResourceFuture implements IResourceFuture {
         this.serverConnector = serverConnector;
     }
 
+    /**
+     * @param cachedResource The cached copy the request was conditioned on, returned if the server replies that the
+     *                       resource was not modified.
+     */
+    public ResourceFuture(Future<Response> future, String url, Logger logger, IServerConnector serverConnector, RGridResource cachedResource) {
+        this(future, url, logger, serverConnector);
+        this.cachedResource = cachedResource;
+    }
+
     public ResourceFuture(RGridResource rgResource, Logger logger, IServerConnector serverConnector) {
         this.url = rgResource.getUrl();
         this.rgResource = rgResource;
@@ -66,6 +76,10 @@ public class ResourceFuture implements IResourceFuture {
             try {
                 Response response = this.future.get(15, TimeUnit.SECONDS);
                 logger.verbose("response: " + response);
+                if (isNotModified(response)) {
+                    rgResource = cachedResource;
+                    break;
+                }
                 ByteArrayOutputStream outputStream = downloadFile(response);
                 String contentType = Utils.getResponseContentType(response);
                 String contentEncoding = Utils.getResponseContentEncoding(response);
@@ -74,6 +88,7 @@ public class ResourceFuture implements IResourceFuture {
                     content = GeneralUtils.getUnGzipByteArrayOutputStream(content);
                 }
                 rgResource = new RGridResource(url, contentType, content, logger, "ResourceFuture");
+                rgResource.setValidators(Utils.getResponseEtag(response), Utils.getResponseLastModified(response));
                 break;
             } catch (Exception e) {
                 retryCount--;
@@ -94,6 +109,10 @@ public class ResourceFuture implements IResourceFuture {
     public RGridResource get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
         if (this.rgResource == null) {
             Response response = future.get(timeout, unit);
+            if (isNotModified(response)) {
+                rgResource = cachedResource;
+                return rgResource;
+            }
             ByteArrayOutputStream outputStream = downloadFile(response);
             byte[] content = outputStream.toByteArray();
             String contentType = Utils.getResponseContentType(response);
@@ -110,10 +129,15 @@ public class ResourceFuture implements IResourceFuture {
                 logger.log("content is empty");
             }
             rgResource = new RGridResource(url, contentType, content, logger, "ResourceFuture");
+            rgResource.setValidators(Utils.getResponseEtag(response), Utils.getResponseLastModified(response));
         }
         return rgResource;
     }
 
+    private boolean isNotModified(Response response) {
+        return cachedResource != null && response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode();
+    }
+
     private ByteArrayOutputStream downloadFile(Response response) {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
         InputStream inputStream = response.readEntity(InputStream.class);
@@ -126,6 +150,13 @@ public class ResourceFuture implements IResourceFuture {
             }
         } catch (IOException e) {
             GeneralUtils.logExceptionStackTrace(logger, e);
+        } finally {
+            // Releasing the connection back to the download pool.
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                GeneralUtils.logExceptionStackTrace(logger, e);
+            }
         }
         return outputStream;
     }
@@ -3,6 +3,8 @@ package com.applitools.eyes;
 import com.applitools.utils.ArgumentGuard;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
 import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.client.ClientProperties;
@@ -10,11 +12,14 @@ import org.glassfish.jersey.client.RequestEntityProcessing;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides common rest client functionality.
@@ -31,6 +36,10 @@ public class RestClient {
 
     private AbstractProxySettings abstractProxySettings;
     private int timeout; // seconds
+    private ConnectionPoolSettings connectionPoolSettings = new ConnectionPoolSettings();
+    private Client downloadClient;
+    private PoolingHttpClientConnectionManager downloadConnectionManager;
+    private long lastIdleEviction;
 
     protected Logger logger;
     protected Client restClient;
@@ -77,6 +86,21 @@ public class RestClient {
         return ClientBuilder.newBuilder().withConfig(cc).build();
     }
 
+    /**
+     * Builds the long-lived client used for downloading page resources. Unlike the client used for the Eyes server,
+     * it keeps a pool of connections (and TLS sessions) per host which is shared by all of the downloads.
+     * @param timeout Connect/Read timeout in milliseconds. 0 equals infinity.
+     * @param connectionManager The connection pool to be used by the client.
+     */
+    private static Client buildDownloadClient(int timeout, PoolingHttpClientConnectionManager connectionManager) {
+        ClientConfig cc = new ClientConfig();
+        cc.property(ClientProperties.CONNECT_TIMEOUT, timeout);
+        cc.property(ClientProperties.READ_TIMEOUT, timeout);
+        cc.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+        cc.connectorProvider(new ApacheConnectorProvider());
+        return ClientBuilder.newBuilder().withConfig(cc).build();
+    }
+
     /***
      * @param logger    Logger instance.
      * @param serverUrl The URI of the rest server.
@@ -153,6 +177,51 @@ public class RestClient {
         endPoint = restClient.target(serverUrl);
     }
 
+    /**
+     * Sets the settings of the connection pool used for downloading page resources.
+     * Should be called before any download is started, since in-flight downloads keep using the previous pool.
+     * @param connectionPoolSettings The pool settings.
+     */
+    public synchronized void setConnectionPoolSettings(ConnectionPoolSettings connectionPoolSettings) {
+        ArgumentGuard.notNull(connectionPoolSettings, "connectionPoolSettings");
+        this.connectionPoolSettings = connectionPoolSettings;
+        this.downloadClient = null;
+        this.downloadConnectionManager = null;
+    }
+
+    public ConnectionPoolSettings getConnectionPoolSettings() {
+        return connectionPoolSettings;
+    }
+
+    /**
+     * @param url The URL of the resource to download.
+     * @return A request for the given URL, sent through the pooled download client.
+     */
+    protected synchronized Invocation.Builder getDownloadRequest(String url) {
+        if (downloadClient == null) {
+            downloadConnectionManager = new PoolingHttpClientConnectionManager();
+            downloadConnectionManager.setMaxTotal(connectionPoolSettings.getMaxConnectionsTotal());
+            downloadConnectionManager.setDefaultMaxPerRoute(connectionPoolSettings.getMaxConnectionsPerHost());
+            downloadClient = buildDownloadClient(timeout, downloadConnectionManager);
+            lastIdleEviction = System.currentTimeMillis();
+        }
+
+        // Evicting idle connections as part of the normal download flow, rather than on a dedicated thread.
+        long now = System.currentTimeMillis();
+        int idleTimeout = connectionPoolSettings.getIdleTimeout();
+        if (now - lastIdleEviction >= idleTimeout / 2) {
+            downloadConnectionManager.closeExpiredConnections();
+            downloadConnectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+            lastIdleEviction = now;
+        }
+
+        Invocation.Builder request = downloadClient.target(url).request(MediaType.WILDCARD);
+        if (!connectionPoolSettings.isKeepAlive()) {
+            request.header("Connection", "close");
+        }
+        return request;
+    }
+
     /**
      *
      * @return The timeout for web requests (in seconds).
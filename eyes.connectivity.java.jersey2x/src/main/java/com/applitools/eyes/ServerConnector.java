@@ -13,7 +13,6 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import org.apache.commons.codec.binary.Base64;
 import org.glassfish.jersey.client.ClientProperties;
 import org.glassfish.jersey.message.GZipEncoder;
 
@@ -21,13 +20,17 @@ import javax.ws.rs.HttpMethod;
 import javax.ws.rs.client.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import java.io.ByteArrayOutputStream;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -271,7 +274,6 @@ public class ServerConnector extends RestClient
         Response response;
         List<Integer> validStatusCodes;
         MatchResult result;
-        String jsonData;
 
         // since we rather not add an empty "tag" param
         WebTarget runningSessionsEndpoint =
@@ -280,51 +282,33 @@ public class ServerConnector extends RestClient
         // Serializing model into JSON (we'll treat it as binary later).
         // IMPORTANT This serializes everything EXCEPT for the screenshot (which
         // we'll add later).
+        final byte[] jsonBytes;
         try {
-            jsonData = jsonMapper.writeValueAsString(matchData);
+            jsonBytes = jsonMapper.writeValueAsBytes(matchData);
         } catch (IOException e) {
             throw new EyesException("Failed to serialize model for matchWindow!",
                     e);
         }
 
-        // Convert the JSON to binary.
-        byte[] jsonBytes;
-        ByteArrayOutputStream jsonToBytesConverter = new ByteArrayOutputStream();
-        try {
-            jsonToBytesConverter.write(
-                    jsonData.getBytes(DEFAULT_CHARSET_NAME));
-            jsonToBytesConverter.flush();
-            jsonBytes = jsonToBytesConverter.toByteArray();
-        } catch (IOException e) {
-            throw new EyesException("Failed create binary model from JSON!", e);
-        }
-
         // Getting the screenshot's bytes (notice this can be either
         // compressed/uncompressed form).
-        byte[] screenshot = Base64.decodeBase64(
-                matchData.getAppOutput().getScreenshot64());
+        final byte[] screenshot = matchData.getAppOutput().getScreenshotBytes();
 
-        // Ok, let's create the request model
-        ByteArrayOutputStream requestOutputStream = new ByteArrayOutputStream();
-        DataOutputStream requestDos = new DataOutputStream(requestOutputStream);
-        byte[] requestData;
-        try {
-            requestDos.writeInt(jsonBytes.length);
-            requestDos.flush();
-            requestOutputStream.write(jsonBytes);
-            if (screenshot != null) {
-                requestOutputStream.write(screenshot);
+        // The request model (the JSON's length, the JSON and the screenshot)
+        // is written straight to the request, rather than copied into a
+        // buffer of its own.
+        StreamingOutput requestData = new StreamingOutput() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                DataOutputStream requestDos = new DataOutputStream(outputStream);
+                requestDos.writeInt(jsonBytes.length);
+                requestDos.write(jsonBytes);
+                if (screenshot != null) {
+                    requestDos.write(screenshot);
+                }
+                requestDos.flush();
             }
-            requestOutputStream.flush();
-
-            // Ok, get the model bytes
-            requestData = requestOutputStream.toByteArray();
-
-            // Release the streams
-            requestDos.close();
-        } catch (IOException e) {
-            throw new EyesException("Failed send check window request!", e);
-        }
+        };
 
         // Sending the request
         Invocation.Builder request = runningSessionsEndpoint.queryParam("apiKey", getApiKey()).
@@ -346,11 +330,7 @@ public class ServerConnector extends RestClient
     @Override
     public void downloadString(final URL uri, final boolean isSecondRetry, final IDownloadListener<String> listener) {
 
-        Client client = ClientBuilder.newBuilder().build();
-
-        WebTarget target = client.target(uri.toString());
-
-        Invocation.Builder request = target.request(MediaType.WILDCARD);
+        Invocation.Builder request = getDownloadRequest(uri.toString());
 
         logger.verbose("Firing async GET");
 
@@ -375,16 +355,54 @@ public class ServerConnector extends RestClient
     }
 
     @Override
-    public IResourceFuture downloadResource(final URL url, final boolean isSecondRetry, final IDownloadListener<Byte[]> listener) {
-        Client client = ClientBuilder.newBuilder().build();
+    public IResourceFuture downloadResource(URL url, boolean isSecondRetry, IDownloadListener<Byte[]> listener) {
+        Invocation.Builder request = getDownloadRequest(url.toString());
+        Future<Response> future = sendDownloadRequest(request, url, isSecondRetry, listener);
+
+        @SuppressWarnings("UnnecessaryLocalVariable")
+        IResourceFuture newFuture = new ResourceFuture(future, url.toString(), logger, this);
+        return newFuture;
+    }
 
-        WebTarget target = client.target(url.toString());
+    @Override
+    public IResourceFuture revalidateResource(URL url, RGridResource cachedResource) {
+        Invocation.Builder request = getDownloadRequest(url.toString());
+        if (cachedResource.getEtag() != null) {
+            request.header("If-None-Match", cachedResource.getEtag());
+        }
+        if (cachedResource.getLastModified() != null) {
+            request.header("If-Modified-Since", cachedResource.getLastModified());
+        }
+        Future<Response> future = sendDownloadRequest(request, url, true, null);
+        return new ResourceFuture(future, url.toString(), logger, this, cachedResource);
+    }
 
-        Invocation.Builder request = target.request(MediaType.WILDCARD);
+    private Future<Response> sendDownloadRequest(Invocation.Builder request, final URL url, final boolean isSecondRetry,
+                                                 final IDownloadListener<Byte[]> listener) {
+        // The response is only handed over once its entity is buffered, so a pooled connection is never held by a
+        // download nobody is reading yet (which could starve the pool while the reader waits for another download).
+        final Response[] bufferedResponse = new Response[1];
+        final Throwable[] downloadError = new Throwable[1];
+        final FutureTask<Response> future = new FutureTask<>(new Callable<Response>() {
+            @Override
+            public Response call() throws Exception {
+                if (downloadError[0] != null) {
+                    throw new ExecutionException(downloadError[0]);
+                }
+                return bufferedResponse[0];
+            }
+        });
 
-        Future<Response> future = request.async().get(new InvocationCallback<Response>() {
+        request.async().get(new InvocationCallback<Response>() {
             @Override
             public void completed(Response response) {
+                try {
+                    response.bufferEntity();
+                    bufferedResponse[0] = response;
+                } catch (Throwable e) {
+                    downloadError[0] = e;
+                }
+                future.run();
 
                 if (null != listener) {
                     listener.onDownloadComplete(null, null);
@@ -393,6 +411,8 @@ public class ServerConnector extends RestClient
 
             @Override
             public void failed(Throwable throwable) {
+                downloadError[0] = throwable;
+                future.run();
                 GeneralUtils.logExceptionStackTrace(logger, throwable);
                 if (!isSecondRetry) {
                     logger.verbose("Entering retry");
@@ -403,9 +423,7 @@ public class ServerConnector extends RestClient
             }
         });
 
-        @SuppressWarnings("UnnecessaryLocalVariable")
-        IResourceFuture newFuture = new ResourceFuture(future, url.toString(), logger, this);
-        return newFuture;
+        return future;
     }
 
     @Override
@@ -565,7 +583,25 @@ public class ServerConnector extends RestClient
         Invocation.Builder request = target.request(contentType);
         request.header("X-Auth-Token", renderingInfo.getAccessToken());
         Entity entity = Entity.entity(content, contentType);
-        final Future<Response> future = request.async().put(entity);
+        final Future<Response> future;
+        if (listener == null) {
+            future = request.async().put(entity);
+        } else {
+            future = request.async().put(entity, new InvocationCallback<Response>() {
+                @Override
+                public void completed(Response response) {
+                    int status = response.getStatus();
+                    response.close();
+                    listener.onUploadComplete(status == Response.Status.OK.getStatusCode());
+                }
+
+                @Override
+                public void failed(Throwable throwable) {
+                    logger.verbose("failed putting resource " + resource.getSha256() + " - " + throwable.getMessage());
+                    listener.onUploadFailed();
+                }
+            });
+        }
         logger.log("future created.");
         return new PutFuture(future, resource, runningRender, this, logger);
     }
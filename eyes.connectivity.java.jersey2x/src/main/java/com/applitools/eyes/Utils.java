@@ -15,6 +15,14 @@ public class Utils {
         return getHeaderString(response, "Content-Encoding");
     }
 
+    public static String getResponseEtag(Response response) {
+        return getHeaderString(response, "ETag");
+    }
+
+    public static String getResponseLastModified(Response response) {
+        return getHeaderString(response, "Last-Modified");
+    }
+
     private static String getHeaderString(Response response, String header) {
         MultivaluedMap<String, Object> headers = response.getHeaders();
         String contentType = null;
@@ -3,12 +3,21 @@ package com.applitools.eyes.images;
 import com.applitools.eyes.LogHandler;
 import com.applitools.eyes.Logger;
 import com.applitools.eyes.Region;
+import com.applitools.utils.GeneralUtils;
+import com.applitools.utils.ImageDecoder;
 import com.applitools.utils.ImageUtils;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Random;
 
 public class TestImageUtils {
 
@@ -70,4 +79,119 @@ public class TestImageUtils {
         Assert.assertEquals(cropped.getHeight(), 500, "heights differ");
         Assert.assertTrue(testLogHandler.contains("[LOG    ] {} com.applitools.utils.ImageUtils.cropImage(): WARNING - requested cropped area results in zero-size image! Cropped not performed. Returning original image."));
     }
+
+    @Test
+    public void TestGetImagePart_SameAsPngRoundTrip() {
+        BufferedImage image = createNoiseImage(400, 300, BufferedImage.TYPE_4BYTE_ABGR);
+        Region region = new Region(35, 20, 300, 250);
+        assertSamePixels(ImageUtils.getImagePart(image, region), getImagePartThroughPng(image, region));
+
+        // A part of a part, whose buffer is the buffer of the original image at an offset.
+        BufferedImage view = ImageUtils.getImagePartView(image, new Region(10, 10, 380, 280));
+        Region viewRegion = new Region(5, 7, 200, 100);
+        BufferedImage part = ImageUtils.getImagePart(view, viewRegion);
+        assertSamePixels(part, getImagePartThroughPng(view, viewRegion));
+        Assert.assertEquals(((DataBufferByte) part.getRaster().getDataBuffer()).getData().length, 200 * 100 * 4);
+
+        BufferedImage rgbImage = createNoiseImage(400, 300, BufferedImage.TYPE_INT_RGB);
+        assertSamePixels(ImageUtils.getImagePart(rgbImage, region), getImagePartThroughPng(rgbImage, region));
+    }
+
+    @Test
+    public void TestGetImagePartView_SharesPixels() {
+        BufferedImage image = createNoiseImage(1200, 4000, BufferedImage.TYPE_4BYTE_ABGR);
+        Region region = new Region(0, 500, 1200, 3000);
+        BufferedImage view = ImageUtils.getImagePartView(image, region);
+        BufferedImage part = ImageUtils.getImagePart(image, region);
+        assertSamePixels(view, part);
+
+        // The view is backed by the original image, the part is a copy.
+        image.setRGB(10, 510, ~image.getRGB(10, 510));
+        Assert.assertEquals(view.getRGB(10, 10), image.getRGB(10, 510));
+        Assert.assertNotEquals(part.getRGB(10, 10), image.getRGB(10, 510));
+    }
+
+    @Test
+    public void TestScaleImage_MatchesGolden() {
+        // The hashes of the pixels produced by the original (DataBuffer based) bicubic scaler.
+        BufferedImage image = ImageUtils.imageFromFile("resources/minions-800x500.jpg");
+        assertPixelsHash(ImageUtils.scaleImage(image, 1.5), 1200, 750,
+                "324eab34e4e547faa84beb8fb50648630bf5d16adcd30ea29ccb91e11c031b8f");
+        assertPixelsHash(ImageUtils.scaleImage(image, 0.5), 400, 250,
+                "e849ad2aa0b43fdd825ef2962a0d8d8671407a851e096b0d52fcfd9014ec54ec");
+        assertPixelsHash(ImageUtils.resizeImage(image, 230, 97), 230, 97,
+                "8fb4a2606a6af0260fd8b10da11a8b00ab9d9a1d81f8f3212308f972156b54eb");
+        // Wider but less than half as high, so it's interpolated to twice the height and averaged.
+        assertPixelsHash(ImageUtils.resizeImage(image, 900, 200), 900, 200,
+                "32ca6c7ad141d10eea4b87bee1639eea94fd3b38b0bec0f515337eb84bd778ac");
+
+        BufferedImage noise = createNoiseImage(333, 211, BufferedImage.TYPE_4BYTE_ABGR);
+        assertPixelsHash(ImageUtils.scaleImage(noise, 0.37), 124, 79,
+                "2b9db52259de00f693482d6bd2cd7ed12e107ebbff5643eba18105a3e75e1448");
+        assertPixelsHash(ImageUtils.scaleImage(noise, 2.2), 733, 465,
+                "44ca8c14c943f2ed9e956a703cfc73a71cc2fe3d05e9a1b064f5c71868723b84");
+        assertPixelsHash(ImageUtils.resizeImage(noise, 100, 300), 100, 300,
+                "f844319c24b1f119b3ae29e0fdde78344ff59729b7fe6231cf2f7617bab1a6f9");
+    }
+
+    @Test
+    public void TestScaleImage_SubImage() {
+        BufferedImage image = createNoiseImage(400, 300, BufferedImage.TYPE_4BYTE_ABGR);
+        Region region = new Region(30, 40, 200, 150);
+        BufferedImage view = ImageUtils.getImagePartView(image, region);
+        BufferedImage part = ImageUtils.getImagePart(image, region);
+        assertSamePixels(ImageUtils.scaleImage(view, 0.5), ImageUtils.scaleImage(part, 0.5));
+        assertSamePixels(ImageUtils.scaleImage(view, 1.5), ImageUtils.scaleImage(part, 1.5));
+    }
+
+    @Test
+    public void TestImageDecoder_SameAsImageIO() throws Exception {
+        ImageDecoder decoder = new ImageDecoder();
+        int[] types = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_INDEXED};
+        for (int type : types) {
+            byte[] png = encodeWithImageIO(createNoiseImage(300, 200, type));
+            BufferedImage expected = ImageUtils.normalizeImageType(ImageIO.read(new ByteArrayInputStream(png)));
+            assertSamePixels(decoder.decode(png), expected);
+        }
+        BufferedImage jpeg = ImageUtils.imageFromFile("resources/minions-800x500.jpg");
+        byte[] encodedJpeg = Files.readAllBytes(new File("resources/minions-800x500.jpg").toPath());
+        assertSamePixels(ImageUtils.imageFromBytes(encodedJpeg), jpeg);
+    }
+
+    private BufferedImage getImagePartThroughPng(BufferedImage image, Region region) {
+        BufferedImage imagePart = image.getSubimage(region.getLeft(), region.getTop(), region.getWidth(), region.getHeight());
+        return ImageUtils.imageFromBytes(ImageUtils.encodeAsPng(imagePart));
+    }
+
+    private byte[] encodeWithImageIO(BufferedImage image) throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", stream);
+        return stream.toByteArray();
+    }
+
+    private BufferedImage createNoiseImage(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt() | 0xff000000);
+            }
+        }
+        return image;
+    }
+
+    private void assertPixelsHash(BufferedImage image, int width, int height, String sha256) {
+        Assert.assertEquals(image.getWidth(), width, "widths differ");
+        Assert.assertEquals(image.getHeight(), height, "heights differ");
+        Assert.assertEquals(GeneralUtils.getSha256hash(((DataBufferByte) image.getRaster().getDataBuffer()).getData()),
+                sha256, "pixels differ");
+    }
+
+    private void assertSamePixels(BufferedImage actual, BufferedImage expected) {
+        Assert.assertEquals(actual.getType(), expected.getType(), "types differ");
+        Assert.assertEquals(actual.getWidth(), expected.getWidth(), "widths differ");
+        Assert.assertEquals(actual.getHeight(), expected.getHeight(), "heights differ");
+        Assert.assertEquals(actual.getRGB(0, 0, actual.getWidth(), actual.getHeight(), null, 0, actual.getWidth()),
+                expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0, expected.getWidth()), "pixels differ");
+    }
 }
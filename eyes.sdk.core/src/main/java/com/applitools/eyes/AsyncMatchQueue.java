@@ -0,0 +1,221 @@
+/*
+ * Applitools SDK for Selenium integration.
+ */
+package com.applitools.eyes;
+
+import com.applitools.utils.ArgumentGuard;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Matches windows on background threads, so checks don't wait for their screenshots to be compressed, uploaded and
+ * matched. Matches are prepared concurrently, but sent to the server in the order they were added (i.e., the order of
+ * the test's steps). Only a few matches may be pending at a time, so only a few screenshots are held in memory.
+ */
+class AsyncMatchQueue {
+
+    private static final int MATCH_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final int MAX_PENDING_MATCHES = 3;
+
+    // The match threads are shared by all sessions. Matches only wait for matches added before them, which are
+    // queued before them, so sessions can't deadlock each other.
+    private static volatile ExecutorService matchExecutor;
+
+    /**
+     * A match whose result was received.
+     */
+    static class CompletedMatch {
+        private final String tag;
+        private final MatchResult result;
+
+        CompletedMatch(String tag, MatchResult result) {
+            this.tag = tag;
+            this.result = result;
+        }
+
+        String getTag() {
+            return tag;
+        }
+
+        MatchResult getResult() {
+            return result;
+        }
+    }
+
+    private static class PendingMatch {
+        private final String tag;
+        private final Future<MatchResult> result;
+
+        PendingMatch(String tag, Future<MatchResult> result) {
+            this.tag = tag;
+            this.result = result;
+        }
+    }
+
+    private final Logger logger;
+    private final IServerConnector serverConnector;
+    private final RunningSession runningSession;
+    private final Deque<PendingMatch> pendingMatches = new ArrayDeque<>();
+    private final List<CompletedMatch> completedMatches = new ArrayList<>();
+    private volatile boolean aborted;
+    private Future<MatchResult> lastMatch;
+
+    /**
+     * @param logger          A logger instance.
+     * @param serverConnector Our gateway to the agent
+     * @param runningSession  The running session in which the windows are matched.
+     */
+    AsyncMatchQueue(Logger logger, IServerConnector serverConnector, RunningSession runningSession) {
+        ArgumentGuard.notNull(serverConnector, "serverConnector");
+        ArgumentGuard.notNull(runningSession, "runningSession");
+
+        this.logger = logger;
+        this.serverConnector = serverConnector;
+        this.runningSession = runningSession;
+    }
+
+    /**
+     * Adds a match. Blocks while too many matches are pending.
+     * @param tag          The tag of the match.
+     * @param prepareMatch Prepares the match data (e.g., compresses the screenshot). Called on a match thread.
+     * @throws EyesException If a previously added match failed.
+     */
+    void add(String tag, final Callable<MatchWindowData> prepareMatch) {
+        final Future<MatchResult> previousMatch = lastMatch;
+        lastMatch = getMatchExecutor().submit(new Callable<MatchResult>() {
+            @Override
+            public MatchResult call() throws Exception {
+                if (aborted) {
+                    throw new CancellationException();
+                }
+                MatchWindowData data = prepareMatch.call();
+
+                // The server expects the steps in order.
+                if (previousMatch != null) {
+                    previousMatch.get();
+                }
+                if (aborted) {
+                    throw new CancellationException();
+                }
+                return serverConnector.matchWindow(runningSession, data);
+            }
+        });
+        pendingMatches.add(new PendingMatch(tag, lastMatch));
+        while (pendingMatches.size() > MAX_PENDING_MATCHES) {
+            completeMatch(pendingMatches.poll());
+        }
+    }
+
+    /**
+     * @return The matches completed since the last call, in the order they were added. Doesn't wait for matches.
+     * @throws EyesException If a match failed.
+     */
+    List<CompletedMatch> pollCompleted() {
+        while (!pendingMatches.isEmpty() && pendingMatches.peek().result.isDone()) {
+            completeMatch(pendingMatches.poll());
+        }
+        return takeCompleted();
+    }
+
+    /**
+     * Waits for all the added matches.
+     * @return The matches completed since the last call, in the order they were added.
+     * @throws EyesException If a match failed.
+     */
+    List<CompletedMatch> join() {
+        logger.verbose(String.format("Waiting for %d pending matches...", pendingMatches.size()));
+        while (!pendingMatches.isEmpty()) {
+            completeMatch(pendingMatches.poll());
+        }
+        return takeCompleted();
+    }
+
+    /**
+     * Waits for all the added matches before the session is stopped. If a match failed, the session can't be
+     * completed, so the remaining matches are stopped and the session is aborted before the failure is thrown.
+     * @return The matches completed since the last call, in the order they were added.
+     * @throws EyesException If a match failed.
+     */
+    List<CompletedMatch> joinOrAbortSession() {
+        try {
+            return join();
+        } catch (RuntimeException e) {
+            logger.log("Failed to complete pending matches, aborting server session: " + e.getMessage());
+            abort();
+            try {
+                serverConnector.stopSession(runningSession, true, false);
+            } catch (EyesException ex) {
+                logger.log("Failed to abort server session: " + ex.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops the matches which weren't sent yet, and waits for the ones being sent.
+     */
+    void abort() {
+        aborted = true;
+        while (!pendingMatches.isEmpty()) {
+            try {
+                pendingMatches.poll().result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | CancellationException ignored) {
+            }
+        }
+        completedMatches.clear();
+    }
+
+    private List<CompletedMatch> takeCompleted() {
+        List<CompletedMatch> completed = new ArrayList<>(completedMatches);
+        completedMatches.clear();
+        return completed;
+    }
+
+    private void completeMatch(PendingMatch match) {
+        try {
+            completedMatches.add(new CompletedMatch(match.tag, match.result.get()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EyesException("Interrupted while waiting for match results!", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new EyesException("Failed to match window!", cause);
+        }
+    }
+
+    private static ExecutorService getMatchExecutor() {
+        if (matchExecutor == null) {
+            synchronized (AsyncMatchQueue.class) {
+                if (matchExecutor == null) {
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(MATCH_THREADS, MATCH_THREADS, 60,
+                            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger threadNumber = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "eyes-match-" + threadNumber.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    pool.allowCoreThreadTimeOut(true);
+                    matchExecutor = pool;
+                }
+            }
+        }
+        return matchExecutor;
+    }
+}
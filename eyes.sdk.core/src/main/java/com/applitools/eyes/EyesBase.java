@@ -24,7 +24,6 @@ import com.applitools.eyes.triggers.MouseAction;
 import com.applitools.eyes.triggers.MouseTrigger;
 import com.applitools.eyes.triggers.TextTrigger;
 import com.applitools.utils.*;
-import org.apache.commons.codec.binary.Base64;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
@@ -34,6 +33,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.Callable;
 
 /**
  * Applitools Eyes Base for Java API .
@@ -82,6 +82,9 @@ public abstract class EyesBase {
     protected DebugScreenshotsProvider debugScreenshotsProvider;
     private boolean isViewportSizeSet;
     private int stitchingOverlap = 50;
+    private PngEncoder screenshotEncoder = new PngEncoder();
+    private boolean isAsyncChecks;
+    private AsyncMatchQueue asyncMatchQueue;
 
     private final SessionEventHandlers sessionEventHandlers = new SessionEventHandlers();
     private int validationId;
@@ -725,6 +728,40 @@ public abstract class EyesBase {
         this.stitchingOverlap = pixels;
     }
 
+    /**
+     * Returns the deflate level screenshots are PNG encoded with.
+     */
+    public int getScreenshotCompressionLevel() {
+        return screenshotEncoder.getCompressionLevel();
+    }
+
+    /**
+     * Sets the deflate level screenshots are PNG encoded with.
+     * @param level The level, from 1 (fastest) to 9 (smallest). Defaults to
+     *              {@link PngEncoder#DEFAULT_COMPRESSION_LEVEL}.
+     */
+    public void setScreenshotCompressionLevel(int level) {
+        this.screenshotEncoder = new PngEncoder(level);
+    }
+
+    /**
+     * @return Whether checks are matched in the background.
+     */
+    public boolean getAsyncChecks() {
+        return isAsyncChecks;
+    }
+
+    /**
+     * Sets whether checks are matched in the background. If set, checks only capture the screenshot, while it is
+     * compressed, uploaded and matched in the background. Mismatches are then reported by later checks or by
+     * {@link #close(boolean)}, which waits for all pending matches. Checks with an explicit match timeout are still
+     * retried until a match is found (or the timeout expires), and only after all pending matches complete.
+     * @param isAsyncChecks Whether checks are matched in the background. Defaults to {@code false}.
+     */
+    public void setAsyncChecks(boolean isAsyncChecks) {
+        this.isAsyncChecks = isAsyncChecks;
+    }
+
     /**
      * See {@link #close(boolean)}.
      * {@code throwEx} defaults to {@code true}.
@@ -763,6 +800,12 @@ public abstract class EyesBase {
                 return new TestResults();
             }
 
+            if (asyncMatchQueue != null) {
+                // Failed tests are reported by the test results (below), even if failures are reported immediately.
+                // If a match failed, the session is aborted, and the failure is thrown.
+                reportMatches(asyncMatchQueue.joinOrAbortSession(), false);
+            }
+
             boolean isNewSession = runningSession.getIsNewSession();
             String sessionResultsUrl = runningSession.getUrl();
 
@@ -808,6 +851,7 @@ public abstract class EyesBase {
         } finally {
             // Making sure that we reset the running session even if an
             // exception was thrown during close.
+            abortPendingMatches();
             runningSession = null;
 //            logger.getLogHandler().close();
         }
@@ -912,6 +956,7 @@ public abstract class EyesBase {
                 return null;
             }
 
+            abortPendingMatches();
             logger.verbose("Aborting server session...");
             try {
                 // When aborting we do not save the test.
@@ -1150,13 +1195,28 @@ public abstract class EyesBase {
 
         ensureRunningSession();
 
+        boolean isAsyncCheck = isAsyncCheck(checkSettings);
+        if (isAsyncCheck) {
+            // Mismatches of background matches are reported as soon as they're known.
+            if (asyncMatchQueue != null) {
+                reportMatches(asyncMatchQueue.pollCompleted(), true);
+            }
+        } else {
+            // Matches are sent in order, so a check which waits for its match waits for the pending matches first.
+            waitForPendingMatches();
+        }
+
         beforeMatchWindow();
 
-        result = matchWindow(regionProvider, tag, ignoreMismatch, checkSettings);
+        if (isAsyncCheck) {
+            result = matchWindowAsync(regionProvider, tag, ignoreMismatch, checkSettings);
+        } else {
+            result = matchWindow(regionProvider, tag, ignoreMismatch, checkSettings);
+        }
 
         afterMatchWindow();
 
-        logger.verbose("MatchWindow Done!");
+        logger.verbose(isAsyncCheck ? "MatchWindow queued!" : "MatchWindow Done!");
 
         if (!ignoreMismatch) {
             clearUserInputs();
@@ -1186,7 +1246,7 @@ public abstract class EyesBase {
     private MatchResult matchWindow(RegionProvider regionProvider, String tag, boolean ignoreMismatch,
                                     ICheckSettings checkSettings) {
         MatchResult result;
-        ICheckSettingsInternal checkSettingsInternal = (checkSettings instanceof ICheckSettingsInternal) ? (ICheckSettingsInternal) checkSettings : null;
+        ICheckSettingsInternal checkSettingsInternal = getCheckSettingsWithDefaults(checkSettings);
 
         // Update retry timeout if it wasn't specified.
         int retryTimeout = -1;
@@ -1194,6 +1254,134 @@ public abstract class EyesBase {
             retryTimeout = checkSettingsInternal.getTimeout();
         }
 
+        Region region = regionProvider.getRegion();
+        logger.verbose("params: ([" + region + "], " + tag + ", " + retryTimeout + ")");
+
+        result = matchWindowTask.matchWindow(
+                getUserInputs(), region, tag, shouldMatchWindowRunOnceOnTimeout, ignoreMismatch,
+                checkSettingsInternal, retryTimeout);
+
+        return result;
+    }
+
+    /**
+     * Captures the window and queues its match, without waiting for it.
+     * @return A result which is as expected, since the actual result isn't known yet.
+     */
+    private MatchResult matchWindowAsync(RegionProvider regionProvider, final String tag,
+                                         final boolean ignoreMismatch, ICheckSettings checkSettings) {
+        ICheckSettingsInternal checkSettingsInternal = getCheckSettingsWithDefaults(checkSettings);
+
+        Region region = regionProvider.getRegion();
+        logger.verbose("params: ([" + region + "], " + tag + ", async)");
+
+        final Trigger[] userInputs = getUserInputs();
+        // Whatever requires the application is done here, and the rest in the background.
+        final CapturedAppOutput capturedOutput = captureAppOutput(region);
+        final ImageMatchSettings imageMatchSettings =
+                matchWindowTask.createImageMatchSettings(checkSettingsInternal, capturedOutput.screenshot);
+        // The agent setup describes the eyes' current state.
+        final String agentSetupJson = matchWindowTask.getAgentSetupJson();
+        final EyesScreenshot compressionSource = matchWindowTask.getLastScreenshot();
+        if (!ignoreMismatch) {
+            matchWindowTask.updateLastScreenshot(capturedOutput.screenshot, region);
+        }
+
+        asyncMatchQueue.add(tag, new Callable<MatchWindowData>() {
+            @Override
+            public MatchWindowData call() {
+                AppOutputWithScreenshot appOutput = completeAppOutput(capturedOutput, compressionSource);
+                return matchWindowTask.createMatchWindowData(userInputs, appOutput, tag, ignoreMismatch,
+                        imageMatchSettings, agentSetupJson);
+            }
+        });
+
+        MatchResult result = new MatchResult();
+        result.setAsExpected(true);
+        result.setScreenshot(capturedOutput.screenshot);
+        return result;
+    }
+
+    /**
+     * Queues the match of a screenshot which was already captured (e.g., a part of a screenshot which is matched in
+     * several parts) as the next step, without waiting for it. The screenshot is encoded and matched on the match
+     * threads, so the screenshots of consecutive steps are encoded in parallel while the previous steps are matched.
+     * The result is reported by {@link #waitForPendingMatches()}.
+     * @param tag                The tag of the step.
+     * @param screenshot         The screenshot to match.
+     * @param imageMatchSettings The match settings of the step.
+     */
+    protected void matchScreenshotAsync(final String tag, final EyesScreenshot screenshot,
+                                        final ImageMatchSettings imageMatchSettings) {
+        ArgumentGuard.isValidState(getIsOpen(), "Eyes not open");
+        ArgumentGuard.notNull(screenshot, "screenshot");
+
+        ensureRunningSession();
+
+        final String agentSetupJson = matchWindowTask.getAgentSetupJson();
+        // Compressed like the screenshots of single checks, by the screenshot of the previous step.
+        final EyesScreenshot compressionSource = matchWindowTask.getLastScreenshot();
+        matchWindowTask.updateLastScreenshot(screenshot, Region.EMPTY);
+        asyncMatchQueue.add(tag, new Callable<MatchWindowData>() {
+            @Override
+            public MatchWindowData call() {
+                AppOutput appOutput = new AppOutput(tag, compressScreenshot(screenshot, compressionSource), null);
+                return matchWindowTask.createMatchWindowData(new Trigger[0],
+                        new AppOutputWithScreenshot(appOutput, screenshot), tag, false, imageMatchSettings,
+                        agentSetupJson);
+            }
+        });
+    }
+
+    /**
+     * @return Whether a check is matched in the background, i.e., if checks are asynchronous and the check doesn't
+     * request a match timeout.
+     */
+    private boolean isAsyncCheck(ICheckSettings checkSettings) {
+        if (!isAsyncChecks) {
+            return false;
+        }
+        return !(checkSettings instanceof ICheckSettingsInternal) ||
+                ((ICheckSettingsInternal) checkSettings).getTimeout() < 0;
+    }
+
+    /**
+     * Waits for the pending background matches (if any), and reports their mismatches. Should be called before
+     * matching outside of {@link #checkWindowBase}, since matches are sent in order.
+     * @return A result which is as expected only if all the pending matches were as expected.
+     * @throws TestFailedException Thrown if a mismatch is found and immediate failure reports are enabled.
+     */
+    protected MatchResult waitForPendingMatches() {
+        MatchResult result = new MatchResult();
+        result.setAsExpected(true);
+        if (asyncMatchQueue != null) {
+            result.setAsExpected(reportMatches(asyncMatchQueue.join(), true));
+        }
+        return result;
+    }
+
+    /**
+     * @return Whether all the matches were as expected.
+     */
+    private boolean reportMatches(List<AsyncMatchQueue.CompletedMatch> completedMatches, boolean mayFailImmediately) {
+        boolean asExpected = true;
+        for (AsyncMatchQueue.CompletedMatch completedMatch : completedMatches) {
+            validateResult(completedMatch.getTag(), completedMatch.getResult(), mayFailImmediately);
+            asExpected &= completedMatch.getResult().getAsExpected();
+        }
+        return asExpected;
+    }
+
+    private void abortPendingMatches() {
+        if (asyncMatchQueue != null) {
+            asyncMatchQueue.abort();
+            asyncMatchQueue = null;
+        }
+    }
+
+    private ICheckSettingsInternal getCheckSettingsWithDefaults(ICheckSettings checkSettings) {
+        ICheckSettingsInternal checkSettingsInternal = (checkSettings instanceof ICheckSettingsInternal) ? (ICheckSettingsInternal) checkSettings : null;
+
         ImageMatchSettings defaultMatchSettings = getDefaultMatchSettings();
 
         // Set defaults if necessary
@@ -1208,15 +1396,7 @@ public abstract class EyesBase {
 
             checkSettingsInternal = (ICheckSettingsInternal) checkSettings;
         }
-
-        Region region = regionProvider.getRegion();
-        logger.verbose("params: ([" + region + "], " + tag + ", " + retryTimeout + ")");
-
-        result = matchWindowTask.matchWindow(
-                getUserInputs(), region, tag, shouldMatchWindowRunOnceOnTimeout, ignoreMismatch,
-                checkSettingsInternal, retryTimeout);
-
-        return result;
+        return checkSettingsInternal;
     }
 
     private String tryPostDomSnapshot(String domJson) {
@@ -1227,6 +1407,10 @@ public abstract class EyesBase {
     }
 
     private void validateResult(String tag, MatchResult result) {
+        validateResult(tag, result, true);
+    }
+
+    private void validateResult(String tag, MatchResult result, boolean mayFailImmediately) {
         if (result.getAsExpected()) {
             return;
         }
@@ -1237,7 +1421,7 @@ public abstract class EyesBase {
             logger.log(String.format("Mismatch! (%s)", tag));
         }
 
-        if (getFailureReports() == FailureReports.IMMEDIATE) {
+        if (mayFailImmediately && getFailureReports() == FailureReports.IMMEDIATE) {
             throw new TestFailedException(String.format(
                     "Mismatch found in '%s' of '%s'",
                     sessionStartInfo.getScenarioIdOrName(),
@@ -1453,6 +1637,9 @@ public abstract class EyesBase {
                     }
                 }
         );
+        // Created even if checks aren't asynchronous, since the parts of multi-target checks are always matched in
+        // the background (see matchScreenshotAsync). Its threads are shared and only started when used.
+        asyncMatchQueue = new AsyncMatchQueue(logger, serverConnector, runningSession);
     }
 
     private void validateApiKey() {
@@ -1737,14 +1924,64 @@ public abstract class EyesBase {
         return screenshot.getSubScreenshot(region, false);
     }
 
+    /**
+     * The parts of an application output which are captured from the application.
+     */
+    private static class CapturedAppOutput {
+        private final EyesScreenshot screenshot;
+        private final String title;
+        private final String domJson;
+
+        CapturedAppOutput(EyesScreenshot screenshot, String title, String domJson) {
+            this.screenshot = screenshot;
+            this.title = title;
+            this.domJson = domJson;
+        }
+    }
+
+    /**
+     * An application output which is completed (i.e., its screenshot compressed and its DOM posted) only once it's
+     * used, so a captured output which isn't matched (e.g., a retry whose screenshot didn't change) doesn't pay for it.
+     */
+    private class DeferredAppOutputWithScreenshot extends AppOutputWithScreenshot {
+        private final CapturedAppOutput capturedOutput;
+        private final EyesScreenshot lastScreenshot;
+        private AppOutput appOutput;
+
+        DeferredAppOutputWithScreenshot(CapturedAppOutput capturedOutput, EyesScreenshot lastScreenshot) {
+            super(null, capturedOutput.screenshot);
+            this.capturedOutput = capturedOutput;
+            this.lastScreenshot = lastScreenshot;
+        }
+
+        @Override
+        public AppOutput getAppOutput() {
+            if (appOutput == null) {
+                appOutput = completeAppOutput(capturedOutput, lastScreenshot).getAppOutput();
+            }
+            return appOutput;
+        }
+    }
+
     /**
      * @param region         The region of the screenshot which will be set in the application output.
      * @param lastScreenshot Previous application screenshot (used for compression) or {@code null} if not available.
-     * @return The updated app output and screenshot.
+     * @return The updated app output and screenshot. The app output is completed once it's first used.
      */
     private AppOutputWithScreenshot getAppOutputWithScreenshot(
             Region region, EyesScreenshot lastScreenshot, ICheckSettingsInternal checkSettingsInternal) {
 
+        AppOutputWithScreenshot result = new DeferredAppOutputWithScreenshot(captureAppOutput(region), lastScreenshot);
+        logger.verbose("Done!");
+        return result;
+    }
+
+    /**
+     * Captures the parts of the application output which require the application.
+     * @param region The region of the screenshot which will be set in the application output.
+     * @return The captured output.
+     */
+    private CapturedAppOutput captureAppOutput(Region region) {
         logger.verbose("getting screenshot...");
         // Getting the screenshot (abstract function implemented by each SDK).
         EyesScreenshot screenshot = getScreenshot();
@@ -1756,59 +1993,87 @@ public abstract class EyesBase {
             debugScreenshotsProvider.save(screenshot.getImage(), "SUB_SCREENSHOT");
         }
 
-        logger.verbose("Compressing screenshot...");
-        String compressResult = compressScreenshot64(screenshot, lastScreenshot);
-        logger.verbose("Done! Getting title...");
+        logger.verbose("Getting title...");
         String title = getTitle();
         logger.verbose("Done!");
 
         //DOM SNAPSHOT
-        String domJsonUrl = null;
+        String domJson = null;
         try {
             if (isSendDom()) {
-                String domJson = tryCaptureDom();
-
-                if (domJson != null) {
-                    long start = System.currentTimeMillis();
-                    domJsonUrl = tryPostDomSnapshot(domJson);
-                    logger.verbose("Send JSON to SERVER in " + (System.currentTimeMillis() - start) / 1000);
-                }
+                domJson = tryCaptureDom();
             }
         } catch (Exception e) {
             GeneralUtils.logExceptionStackTrace(logger, e);
         }
-        AppOutputWithScreenshot result = new AppOutputWithScreenshot(new AppOutput(title, compressResult, domJsonUrl, null), screenshot);
+        return new CapturedAppOutput(screenshot, title, domJson);
+    }
+
+    /**
+     * Compresses the captured screenshot and posts the captured DOM. Doesn't require the application.
+     * @param capturedOutput The captured output.
+     * @param lastScreenshot Previous application screenshot (used for compression) or {@code null} if not available.
+     * @return The app output and screenshot.
+     */
+    private AppOutputWithScreenshot completeAppOutput(CapturedAppOutput capturedOutput, EyesScreenshot lastScreenshot) {
+        logger.verbose("Compressing screenshot...");
+        byte[] compressResult = compressScreenshot(capturedOutput.screenshot, lastScreenshot);
         logger.verbose("Done!");
-        return result;
+
+        String domJsonUrl = null;
+        try {
+            if (capturedOutput.domJson != null) {
+                long start = System.currentTimeMillis();
+                domJsonUrl = tryPostDomSnapshot(capturedOutput.domJson);
+                logger.verbose("Send JSON to SERVER in " + (System.currentTimeMillis() - start) / 1000);
+            }
+        } catch (Exception e) {
+            GeneralUtils.logExceptionStackTrace(logger, e);
+        }
+        return new AppOutputWithScreenshot(
+                new AppOutput(capturedOutput.title, compressResult, domJsonUrl), capturedOutput.screenshot);
     }
 
     /**
      * Compresses a given screenshot.
      * @param screenshot     The screenshot to compress.
      * @param lastScreenshot The previous screenshot, or null.
-     * @return A base64 encoded compressed screenshot.
+     * @return The compressed screenshot.
      */
-    private String compressScreenshot64(EyesScreenshot screenshot,
+    private byte[] compressScreenshot(EyesScreenshot screenshot,
                                         EyesScreenshot lastScreenshot) {
 
         ArgumentGuard.notNull(screenshot, "screenshot");
 
         BufferedImage screenshotImage = screenshot.getImage();
-        byte[] uncompressed = ImageUtils.encodeAsPng(screenshotImage);
-
         BufferedImage source = (lastScreenshot != null) ?
                 lastScreenshot.getImage() : null;
 
-        // Compressing the screenshot
+        // Compressing the screenshot. The delta is bounded by the raw pixels
+        // size, and if it's smaller than any PNG encoding could possibly be,
+        // the screenshot doesn't have to be encoded at all.
         byte[] compressedScreenshot;
         try {
+            long rawLength = (long) screenshotImage.getWidth() *
+                    screenshotImage.getHeight() * 4;
             compressedScreenshot = ImageDeltaCompressor.compressByRawBlocks(
-                    screenshotImage, uncompressed, source);
+                    screenshotImage, source,
+                    ImageDeltaCompressor.DEFAULT_BLOCK_SIZE, rawLength);
         } catch (IOException e) {
             throw new EyesException("Failed to compress screenshot!", e);
         }
 
-        return Base64.encodeBase64String(compressedScreenshot);
+        if (compressedScreenshot == null ||
+                compressedScreenshot.length >= PngEncoder.getMinimumEncodedLength(
+                        screenshotImage.getWidth(), screenshotImage.getHeight())) {
+            byte[] uncompressed = screenshotEncoder.encode(screenshotImage);
+            if (compressedScreenshot == null ||
+                    compressedScreenshot.length > uncompressed.length) {
+                compressedScreenshot = uncompressed;
+            }
+        }
+
+        return compressedScreenshot;
     }
 
     public void log(String message) {
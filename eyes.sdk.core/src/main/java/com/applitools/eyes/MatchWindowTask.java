@@ -10,16 +10,20 @@ import com.applitools.eyes.fluent.GetRegion;
 import com.applitools.eyes.fluent.ICheckSettingsInternal;
 import com.applitools.utils.ArgumentGuard;
 import com.applitools.utils.GeneralUtils;
+import com.applitools.utils.ImageUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class MatchWindowTask {
 
     private static final int MATCH_INTERVAL = 500; // Milliseconds
+    // Retrying stops once the window stays the same for this many consecutive attempts.
+    private static final int SETTLED_ATTEMPTS = 2;
     private EyesScreenshot lastScreenshot = null;
     private Region lastScreenshotBounds;
     private int defaultRetryTimeout;
@@ -92,19 +96,40 @@ public class MatchWindowTask {
                                      String tag, boolean ignoreMismatch,
                                      ImageMatchSettings imageMatchSettings) {
 
-        String agentSetupStr = "";
-        if (eyes != null) {
-            Object agentSetup = eyes.getAgentSetup();
-            ObjectMapper jsonMapper = new ObjectMapper();
-            try {
-                agentSetupStr = jsonMapper.writeValueAsString(agentSetup);
-            } catch (JsonProcessingException e) {
-                GeneralUtils.logExceptionStackTrace(logger, e);
-            }
-        }
+        MatchWindowData data = createMatchWindowData(userInputs, appOutput, tag, ignoreMismatch, imageMatchSettings);
+
+        // Perform match.
+        return serverConnector.matchWindow(runningSession, data);
+    }
 
+    /**
+     * Creates the match model.
+     * @param userInputs         The user inputs related to the current appOutput.
+     * @param appOutput          The application output to be matched.
+     * @param tag                Optional tag to be associated with the match (can be {@code null}).
+     * @param ignoreMismatch     Whether to instruct the server to ignore the match attempt in case of a mismatch.
+     * @param imageMatchSettings The settings to use.
+     * @return The match model.
+     */
+    public MatchWindowData createMatchWindowData(Trigger[] userInputs,
+                                                 AppOutputWithScreenshot appOutput,
+                                                 String tag, boolean ignoreMismatch,
+                                                 ImageMatchSettings imageMatchSettings) {
+        return createMatchWindowData(userInputs, appOutput, tag, ignoreMismatch, imageMatchSettings,
+                getAgentSetupJson());
+    }
+
+    /**
+     * See {@link #createMatchWindowData(Trigger[], AppOutputWithScreenshot, String, boolean, ImageMatchSettings)}.
+     * @param agentSetupStr The agent setup, as returned by {@link #getAgentSetupJson()}.
+     */
+    MatchWindowData createMatchWindowData(Trigger[] userInputs,
+                                          AppOutputWithScreenshot appOutput,
+                                          String tag, boolean ignoreMismatch,
+                                          ImageMatchSettings imageMatchSettings,
+                                          String agentSetupStr) {
         // Prepare match model.
-        MatchWindowData data = new MatchWindowData(
+        return new MatchWindowData(
                 userInputs,
                 appOutput.getAppOutput(),
                 tag,
@@ -113,9 +138,23 @@ public class MatchWindowTask {
                         false, false, false,
                         imageMatchSettings),
                 agentSetupStr);
+    }
 
-        // Perform match.
-        return serverConnector.matchWindow(runningSession, data);
+    /**
+     * @return The agent setup of the eyes, serialized for the match model.
+     */
+    String getAgentSetupJson() {
+        String agentSetupStr = "";
+        if (eyes != null) {
+            Object agentSetup = eyes.getAgentSetup();
+            ObjectMapper jsonMapper = new ObjectMapper();
+            try {
+                agentSetupStr = jsonMapper.writeValueAsString(agentSetup);
+            } catch (JsonProcessingException e) {
+                GeneralUtils.logExceptionStackTrace(logger, e);
+            }
+        }
+        return agentSetupStr;
     }
 
     /**
@@ -253,6 +292,9 @@ public class MatchWindowTask {
         long start = System.currentTimeMillis();
 
         EyesScreenshot screenshot = null;
+        // The row hashes of the previous attempt's screenshot, and for how many attempts they didn't change.
+        long[] lastRowHashes = null;
+        int unchangedAttempts = 0;
 
         long retry = System.currentTimeMillis() - start;
 
@@ -262,11 +304,26 @@ public class MatchWindowTask {
             // Wait before trying again.
             GeneralUtils.sleep(MATCH_INTERVAL);
 
-            screenshot = tryTakeScreenshot(userInputs, region, tag, true, checkSettingsInternal);
+            AppOutputWithScreenshot appOutput = appOutputProvider.getAppOutput(region, lastScreenshot, checkSettingsInternal);
+            long[] rowHashes = ImageUtils.getRowHashes(appOutput.getScreenshot().getImage());
+            if (lastRowHashes != null && Arrays.equals(rowHashes, lastRowHashes)) {
+                // The window is the same as it was on the previous attempt, so it would be matched the same.
+                ++unchangedAttempts;
+                logger.verbose(String.format("Screenshot unchanged (%d attempts), skipping match.", unchangedAttempts));
+                if (unchangedAttempts >= SETTLED_ATTEMPTS) {
+                    logger.verbose("Window settled, no more retries.");
+                    break;
+                }
+            } else {
+                unchangedAttempts = 0;
+                screenshot = appOutput.getScreenshot();
+                matchResult = matchAppOutput(userInputs, appOutput, tag, true, checkSettingsInternal);
 
-            if (matchResult.getAsExpected()) {
-                break;
+                if (matchResult.getAsExpected()) {
+                    break;
+                }
             }
+            lastRowHashes = rowHashes;
 
             retry = System.currentTimeMillis() - start;
         }
@@ -281,10 +338,31 @@ public class MatchWindowTask {
     private EyesScreenshot tryTakeScreenshot(Trigger[] userInputs, Region region, String tag,
                                              boolean ignoreMismatch, ICheckSettingsInternal checkSettingsInternal) {
         AppOutputWithScreenshot appOutput = appOutputProvider.getAppOutput(region, lastScreenshot, checkSettingsInternal);
-        EyesScreenshot screenshot = appOutput.getScreenshot();
-        ImageMatchSettings matchSettings = createImageMatchSettings(checkSettingsInternal, screenshot);
-        matchResult = performMatch(userInputs, appOutput, tag, ignoreMismatch, matchSettings);
-        return screenshot;
+        matchResult = matchAppOutput(userInputs, appOutput, tag, ignoreMismatch, checkSettingsInternal);
+        return appOutput.getScreenshot();
+    }
+
+    private MatchResult matchAppOutput(Trigger[] userInputs, AppOutputWithScreenshot appOutput, String tag,
+                                       boolean ignoreMismatch, ICheckSettingsInternal checkSettingsInternal) {
+        ImageMatchSettings matchSettings = createImageMatchSettings(checkSettingsInternal, appOutput.getScreenshot());
+        return performMatch(userInputs, appOutput, tag, ignoreMismatch, matchSettings);
+    }
+
+    /**
+     * @return The screenshot of the last match which wasn't ignored, which the next screenshot is compressed by.
+     */
+    EyesScreenshot getLastScreenshot() {
+        return lastScreenshot;
+    }
+
+    /**
+     * Updates the last screenshot and bounds for a match performed apart from this task (e.g., in the background).
+     * @param screenshot The screenshot of the match.
+     * @param region     The region the screenshot was captured for.
+     */
+    void updateLastScreenshot(EyesScreenshot screenshot, Region region) {
+        updateLastScreenshot(screenshot);
+        updateBounds(region);
     }
 
     private void updateLastScreenshot(EyesScreenshot screenshot) {
@@ -0,0 +1,12 @@
+package com.applitools.eyes.capture;
+
+/**
+ * An image provider which can also provide the image as retrieved (e.g., PNG bytes), so that decoding it can be done
+ * apart from retrieving it (e.g., on another thread).
+ */
+public interface EncodedImageProvider extends ImageProvider {
+    /**
+     * @return The encoded image.
+     */
+    byte[] getEncodedImage();
+}
@@ -25,7 +25,8 @@ public class FileDebugScreenshotsProvider extends DebugScreenshotsProvider {
         ImageUtils.saveImage(logger, image, filename);
     }
 
-    private String getFormattedTimeStamp(){
+    // Synchronized, since parts of stitched screenshots are saved from the stitching threads.
+    private synchronized String getFormattedTimeStamp(){
         return dateFormat.format(Calendar.getInstance().getTime());
     }
 }
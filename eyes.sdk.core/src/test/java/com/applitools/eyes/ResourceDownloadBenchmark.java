@@ -0,0 +1,135 @@
+package com.applitools.eyes;
+
+import com.applitools.eyes.visualGridClient.model.RGridResource;
+import com.applitools.eyes.visualGridClient.services.IResourceFuture;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-benchmark of fetching the resources of a page with a few hundred resources from a local stub server,
+ * through the pooled download client vs. a new client per resource.
+ * It's in the "benchmark" group, and only runs when the "benchmark" system property is set, e.g.:
+ * mvn test -pl eyes.sdk.core -Dtest=ResourceDownloadBenchmark -Dbenchmark=true
+ */
+@Test(groups = "benchmark")
+public class ResourceDownloadBenchmark {
+
+    private static final int RESOURCE_COUNT = 300;
+    private static final int RESOURCE_SIZE = 8 * 1024;
+
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeClass(alwaysRun = true)
+    public void startStubServer() throws IOException {
+        if (!Boolean.getBoolean("benchmark")) {
+            throw new SkipException("benchmarks run only with -Dbenchmark=true");
+        }
+        final byte[] body = new byte[RESOURCE_SIZE];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("Content-Type", "text/plain");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/resource";
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopStubServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    public void testPooledDownloadThroughput() throws Exception {
+        ServerConnector serverConnector = new ServerConnector(new Logger(), URI.create("http://127.0.0.1"));
+
+        // Warm up.
+        fetchAll(serverConnector, 20);
+
+        long start = System.nanoTime();
+        int fetched = fetchAll(serverConnector, RESOURCE_COUNT);
+        long pooledNanos = System.nanoTime() - start;
+        Assert.assertEquals(fetched, RESOURCE_COUNT);
+
+        start = System.nanoTime();
+        fetched = fetchAllWithClientPerResource(RESOURCE_COUNT);
+        long clientPerResourceNanos = System.nanoTime() - start;
+        Assert.assertEquals(fetched, RESOURCE_COUNT);
+
+        System.out.println(String.format("Fetched %d resources: pooled client %.1f resources/sec, client per resource %.1f resources/sec",
+                RESOURCE_COUNT, throughput(pooledNanos), throughput(clientPerResourceNanos)));
+    }
+
+    private int fetchAll(ServerConnector serverConnector, int count) throws Exception {
+        List<IResourceFuture> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            futures.add(serverConnector.downloadResource(new URL(baseUrl + i + ".txt"), false, null));
+        }
+        int fetched = 0;
+        for (IResourceFuture future : futures) {
+            RGridResource resource = future.get(30, TimeUnit.SECONDS);
+            if (resource.getContent().length == RESOURCE_SIZE) {
+                fetched++;
+            }
+        }
+        return fetched;
+    }
+
+    private int fetchAllWithClientPerResource(int count) throws Exception {
+        List<Future<Response>> futures = new ArrayList<>(count);
+        List<Client> clients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Client client = ClientBuilder.newBuilder().build();
+            clients.add(client);
+            futures.add(client.target(baseUrl + i + ".txt").request(MediaType.WILDCARD).async().get());
+        }
+        int fetched = 0;
+        for (Future<Response> future : futures) {
+            byte[] content = future.get(30, TimeUnit.SECONDS).readEntity(byte[].class);
+            if (content.length == RESOURCE_SIZE) {
+                fetched++;
+            }
+        }
+        for (Client client : clients) {
+            client.close();
+        }
+        return fetched;
+    }
+
+    private static double throughput(long nanos) {
+        return RESOURCE_COUNT / (nanos / 1e9);
+    }
+}
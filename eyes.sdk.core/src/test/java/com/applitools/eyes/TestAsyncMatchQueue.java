@@ -0,0 +1,133 @@
+package com.applitools.eyes;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+public class TestAsyncMatchQueue {
+
+    @Test
+    public void testMatchesAreSentInOrder() throws Exception {
+        List<String> matchedTags = Collections.synchronizedList(new ArrayList<String>());
+        AsyncMatchQueue queue = new AsyncMatchQueue(new Logger(), createConnector(matchedTags), new RunningSession());
+        int matchCount = 8;
+        List<String> tags = new ArrayList<>();
+        for (int i = 0; i < matchCount; i++) {
+            String tag = (i % 3 == 0) ? "mismatch-" + i : "match-" + i;
+            tags.add(tag);
+            // Earlier matches take longer to prepare, so they'd be sent last if they weren't ordered.
+            queue.add(tag, prepareMatch(tag, (matchCount - i) * 20));
+        }
+
+        List<AsyncMatchQueue.CompletedMatch> completedMatches = new ArrayList<>();
+        completedMatches.addAll(queue.pollCompleted());
+        completedMatches.addAll(queue.join());
+
+        Assert.assertEquals(matchedTags, tags);
+        Assert.assertEquals(completedMatches.size(), matchCount);
+        for (int i = 0; i < matchCount; i++) {
+            AsyncMatchQueue.CompletedMatch completedMatch = completedMatches.get(i);
+            Assert.assertEquals(completedMatch.getTag(), tags.get(i));
+            Assert.assertEquals(completedMatch.getResult().getAsExpected(), !tags.get(i).startsWith("mismatch"));
+        }
+        Assert.assertTrue(queue.join().isEmpty());
+    }
+
+    @Test
+    public void testFailedMatchIsThrownOnJoin() {
+        List<String> matchedTags = Collections.synchronizedList(new ArrayList<String>());
+        AsyncMatchQueue queue = new AsyncMatchQueue(new Logger(), createConnector(matchedTags), new RunningSession());
+        queue.add("first", prepareMatch("first", 0));
+        queue.add("failed", new Callable<MatchWindowData>() {
+            @Override
+            public MatchWindowData call() {
+                throw new EyesException("Failed to compress screenshot!");
+            }
+        });
+        try {
+            queue.join();
+            Assert.fail("The failure wasn't thrown.");
+        } catch (EyesException e) {
+            Assert.assertEquals(e.getMessage(), "Failed to compress screenshot!");
+        }
+        Assert.assertEquals(matchedTags, Collections.singletonList("first"));
+    }
+
+    @Test
+    public void testSessionIsAbortedWhenMatchFails() {
+        List<String> matchedTags = Collections.synchronizedList(new ArrayList<String>());
+        final List<Boolean> stoppedSessions = new ArrayList<>();
+        final IServerConnector matchConnector = createConnector(matchedTags);
+        IServerConnector connector = (IServerConnector) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{IServerConnector.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("stopSession")) {
+                    stoppedSessions.add((Boolean) args[1]);
+                    return new TestResults();
+                }
+                if (((MatchWindowData) args[1]).getTag().equals("failed")) {
+                    throw new EyesException("Failed to match window!");
+                }
+                return method.invoke(matchConnector, args);
+            }
+        });
+        AsyncMatchQueue queue = new AsyncMatchQueue(new Logger(), connector, new RunningSession());
+        queue.add("first", prepareMatch("first", 0));
+        queue.add("failed", prepareMatch("failed", 0));
+        queue.add("last", prepareMatch("last", 0));
+        try {
+            queue.joinOrAbortSession();
+            Assert.fail("The failure wasn't thrown.");
+        } catch (EyesException e) {
+            Assert.assertEquals(e.getMessage(), "Failed to match window!");
+        }
+        // Aborted (i.e., stopped without saving).
+        Assert.assertEquals(stoppedSessions, Collections.singletonList(true));
+        Assert.assertEquals(matchedTags, Collections.singletonList("first"));
+    }
+
+    @Test
+    public void testAbortStopsPendingMatches() {
+        List<String> matchedTags = Collections.synchronizedList(new ArrayList<String>());
+        AsyncMatchQueue queue = new AsyncMatchQueue(new Logger(), createConnector(matchedTags), new RunningSession());
+        queue.add("slow", prepareMatch("slow", 200));
+        queue.add("aborted", prepareMatch("aborted", 0));
+        queue.abort();
+        Assert.assertFalse(matchedTags.contains("aborted"));
+        Assert.assertTrue(queue.join().isEmpty());
+    }
+
+    private Callable<MatchWindowData> prepareMatch(final String tag, final long preparationTime) {
+        return new Callable<MatchWindowData>() {
+            @Override
+            public MatchWindowData call() throws Exception {
+                Thread.sleep(preparationTime);
+                return new MatchWindowData(new Trigger[0], new AppOutput(tag, null, null, null), tag, false,
+                        null, "");
+            }
+        };
+    }
+
+    private IServerConnector createConnector(final List<String> matchedTags) {
+        return (IServerConnector) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{IServerConnector.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (!method.getName().equals("matchWindow")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                String tag = ((MatchWindowData) args[1]).getTag();
+                matchedTags.add(tag);
+                MatchResult result = new MatchResult();
+                result.setAsExpected(!tag.startsWith("mismatch"));
+                return result;
+            }
+        });
+    }
+}
@@ -0,0 +1,117 @@
+package com.applitools.eyes;
+
+import com.applitools.eyes.visualGridClient.model.DomSnapshotParser;
+import com.applitools.eyes.visualGridClient.model.FrameData;
+import com.applitools.eyes.visualGridClient.model.RGridResource;
+import com.applitools.utils.GeneralUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.binary.Base64;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+public class TestDomSnapshotParser {
+
+    private final Logger logger = new Logger();
+
+    @Test
+    public void testParseSnapshot() throws Exception {
+        Map<String, Object> frame = createFrame("http://a.com/frame.html", 2, 100);
+        Map<String, Object> page = createFrame("http://a.com/index.html", 3, 100);
+        page.put("frames", Collections.singletonList(frame));
+        page.put("scriptVersion", "1.2.3");
+        ((List<Object>) page.get("blobs")).add(createBlob("relative.css", "text/css", new byte[]{1, 2}));
+        Map<String, Object> emptyBlob = new HashMap<>();
+        emptyBlob.put("url", "http://a.com/empty");
+        emptyBlob.put("type", "text/plain");
+        emptyBlob.put("value", new HashMap<>());
+        ((List<Object>) page.get("blobs")).add(emptyBlob);
+        String json = new ObjectMapper().writeValueAsString(page);
+
+        FrameData result = new DomSnapshotParser(logger).parse(json);
+
+        Assert.assertEquals(result.getUrl(), "http://a.com/index.html");
+        Assert.assertEquals(result.getCdt(), page.get("cdt"));
+        Assert.assertEquals(result.getResourceUrls(), page.get("resourceUrls"));
+        Assert.assertEquals(result.getBlobs().size(), 5);
+        assertBlobs(result.getBlobs().subList(0, 3), (List<Map<String, Object>>) page.get("blobs"));
+        RGridResource relative = result.getBlobs().get(3);
+        Assert.assertEquals(relative.getUrl(), "http://a.com/relative.css");
+        Assert.assertEquals(relative.getContent(), new byte[]{1, 2});
+        Assert.assertEquals(result.getBlobs().get(4).getContent().length, 0);
+
+        Assert.assertEquals(result.getFrames().size(), 1);
+        FrameData frameData = result.getFrames().get(0);
+        Assert.assertEquals(frameData.getUrl(), "http://a.com/frame.html");
+        Assert.assertEquals(frameData.getCdt(), frame.get("cdt"));
+        assertBlobs(frameData.getBlobs(), (List<Map<String, Object>>) frame.get("blobs"));
+        Assert.assertTrue(frameData.getFrames().isEmpty());
+    }
+
+    @Test
+    public void testParseUnpaddedBlob() throws Exception {
+        String json = "{\"url\":\"http://a.com/index.html\",\"blobs\":[" +
+                "{\"url\":\"http://a.com/a.bin\",\"type\":\"application/octet-stream\",\"value\":\"AQIDBA\"}]}";
+
+        FrameData result = new DomSnapshotParser(logger).parse(json);
+
+        Assert.assertEquals(result.getBlobs().size(), 1);
+        Assert.assertEquals(result.getBlobs().get(0).getContent(), new byte[]{1, 2, 3, 4});
+    }
+
+    @Test
+    public void testMatchesGenericParsing() throws Exception {
+        Map<String, Object> page = createFrame("http://a.com/index.html", 40, 100 * 1024);
+        String json = new ObjectMapper().writeValueAsString(page);
+
+        FrameData result = new DomSnapshotParser(logger).parse(json);
+
+        Map<String, Object> generic = GeneralUtils.parseJsonToObject(json);
+        Assert.assertEquals(result.getBlobs().size(), ((List) generic.get("blobs")).size());
+        assertBlobs(result.getBlobs(), (List<Map<String, Object>>) generic.get("blobs"));
+    }
+
+    private void assertBlobs(List<RGridResource> actual, List<Map<String, Object>> expected) {
+        for (int i = 0; i < actual.size(); i++) {
+            Map<String, Object> blob = expected.get(i);
+            Assert.assertEquals(actual.get(i).getUrl(), blob.get("url"));
+            Assert.assertEquals(actual.get(i).getContentType(), blob.get("type"));
+            Assert.assertEquals(actual.get(i).getContent(), Base64.decodeBase64((String) blob.get("value")));
+        }
+    }
+
+    private Map<String, Object> createFrame(String url, int blobCount, int blobSize) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        List<Object> cdt = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Map<String, Object> node = new LinkedHashMap<>();
+            node.put("nodeType", 1);
+            node.put("nodeName", "DIV");
+            node.put("attributes", Arrays.asList("class", "item-" + i));
+            node.put("childNodeIndexes", Arrays.asList(i + 1, i + 2));
+            cdt.add(node);
+        }
+        List<Object> blobs = new ArrayList<>();
+        Random random = new Random(blobCount);
+        for (int i = 0; i < blobCount; i++) {
+            byte[] content = new byte[blobSize];
+            random.nextBytes(content);
+            blobs.add(createBlob(url + "/image" + i + ".png", "image/png", content));
+        }
+        frame.put("cdt", cdt);
+        frame.put("blobs", blobs);
+        frame.put("url", url);
+        frame.put("resourceUrls", Arrays.asList("http://a.com/font.woff", "style.css"));
+        frame.put("frames", new ArrayList<>());
+        return frame;
+    }
+
+    private Map<String, Object> createBlob(String url, String type, byte[] content) {
+        Map<String, Object> blob = new LinkedHashMap<>();
+        blob.put("url", url);
+        blob.put("type", type);
+        blob.put("value", Base64.encodeBase64String(content));
+        return blob;
+    }
+}
@@ -0,0 +1,121 @@
+package com.applitools.eyes;
+
+import com.applitools.utils.ImageDeltaCompressor;
+import com.applitools.utils.ImageUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+public class TestImageDeltaCompressor {
+
+    private static final int PREAMBLE_LENGTH = "applitools".length() + 1;
+
+    @Test
+    public void testDeltaRestoresTarget() throws Exception {
+        BufferedImage source = loadScreenshot();
+        BufferedImage target = ImageUtils.copyImageWithType(source, ImageUtils.REQUIRED_IMAGE_TYPE);
+        Graphics2D graphics = target.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(100, 200, 33, 17);
+        graphics.setColor(new Color(0, 0, 200));
+        graphics.drawString("changed", 500, 1345);
+        graphics.dispose();
+        // A change in the last (partial) block column.
+        target.setRGB(target.getWidth() - 1, 7, 0xff00ff00);
+
+        for (int level = 1; level <= 9; level += 8) {
+            byte[] delta = ImageDeltaCompressor.compressByRawBlocks(target, source,
+                    ImageDeltaCompressor.DEFAULT_BLOCK_SIZE, Long.MAX_VALUE, level);
+            Assert.assertNotNull(delta);
+            assertSamePixels(applyDelta(source, delta), target);
+        }
+    }
+
+    @Test
+    public void testIdenticalImages() throws Exception {
+        BufferedImage source = loadScreenshot();
+        byte[] delta = ImageDeltaCompressor.compressByRawBlocks(source, source,
+                ImageDeltaCompressor.DEFAULT_BLOCK_SIZE, Long.MAX_VALUE);
+        Assert.assertNotNull(delta);
+        Assert.assertTrue(delta.length < 32);
+    }
+
+    @Test
+    public void testLargeScreenshotPair() throws Exception {
+        // A full page screenshot made of the screenshot repeated, with a change on every repetition.
+        BufferedImage screenshot = loadScreenshot();
+        int repetitions = 8;
+        BufferedImage source = new BufferedImage(screenshot.getWidth(), screenshot.getHeight() * repetitions,
+                ImageUtils.REQUIRED_IMAGE_TYPE);
+        Graphics2D graphics = source.createGraphics();
+        for (int i = 0; i < repetitions; i++) {
+            graphics.drawImage(screenshot, 0, i * screenshot.getHeight(), null);
+        }
+        graphics.dispose();
+        BufferedImage target = ImageUtils.copyImageWithType(source, ImageUtils.REQUIRED_IMAGE_TYPE);
+        graphics = target.createGraphics();
+        graphics.setColor(Color.MAGENTA);
+        for (int i = 0; i < repetitions; i++) {
+            graphics.fillRect(50 + i * 100, i * screenshot.getHeight() + 300, 80, 40);
+        }
+        graphics.dispose();
+
+        byte[] delta = ImageDeltaCompressor.compressByRawBlocks(target, source,
+                ImageDeltaCompressor.DEFAULT_BLOCK_SIZE, Long.MAX_VALUE);
+        Assert.assertNotNull(delta);
+        assertSamePixels(applyDelta(source, delta), target);
+    }
+
+    private BufferedImage loadScreenshot() throws Exception {
+        BufferedImage image = ImageIO.read(getClass().getResourceAsStream("/compression-source.png"));
+        return ImageUtils.normalizeImageType(image);
+    }
+
+    /**
+     * Decodes a raw blocks delta by copying the channels of the blocks it holds onto a copy of the source.
+     */
+    private BufferedImage applyDelta(BufferedImage source, byte[] delta) throws Exception {
+        BufferedImage result = ImageUtils.copyImageWithType(source, ImageUtils.REQUIRED_IMAGE_TYPE);
+        byte[] pixels = ((DataBufferByte) result.getRaster().getDataBuffer()).getData();
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(delta, PREAMBLE_LENGTH, 4));
+        Assert.assertEquals(delta[PREAMBLE_LENGTH - 1], 3);
+        Assert.assertEquals(header.readShort(), 0);
+        int blockSize = header.readShort();
+        int blockColumns = (result.getWidth() + blockSize - 1) / blockSize;
+        DataInputStream blocks = new DataInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(delta, PREAMBLE_LENGTH + 4, delta.length - PREAMBLE_LENGTH - 4), new Inflater(true)));
+        while (true) {
+            int channel;
+            try {
+                channel = blocks.readUnsignedByte();
+            } catch (EOFException e) {
+                break;
+            }
+            int blockNumber = blocks.readInt();
+            int left = (blockNumber % blockColumns) * blockSize;
+            int top = (blockNumber / blockColumns) * blockSize;
+            for (int y = top; y < Math.min(top + blockSize, result.getHeight()); y++) {
+                for (int x = left; x < Math.min(left + blockSize, result.getWidth()); x++) {
+                    pixels[(y * result.getWidth() + x) * 4 + channel + 1] = blocks.readByte();
+                }
+            }
+        }
+        return result;
+    }
+
+    private void assertSamePixels(BufferedImage actual, BufferedImage expected) {
+        Assert.assertEquals(actual.getWidth(), expected.getWidth());
+        Assert.assertEquals(actual.getHeight(), expected.getHeight());
+        Assert.assertEquals(actual.getRGB(0, 0, actual.getWidth(), actual.getHeight(), null, 0, actual.getWidth()),
+                expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0, expected.getWidth()));
+    }
+}
@@ -0,0 +1,80 @@
+package com.applitools.eyes;
+
+import com.applitools.utils.ImageUtils;
+import com.applitools.utils.MappedImageBuffer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class TestMappedImageBuffer {
+
+    @Test
+    public void testStitchedLikeOnHeap() {
+        int width = 300;
+        int height = 1000;
+        BufferedImage expected = new BufferedImage(width, height, ImageUtils.REQUIRED_IMAGE_TYPE);
+        try (MappedImageBuffer buffer = new MappedImageBuffer(width, height)) {
+            // Overlapping parts, the last of which exceeds the canvas.
+            for (int top = 0; top < height; top += 180) {
+                BufferedImage part = createNoiseImage(width, 250, top);
+                expected.getRaster().setRect(0, top, part.getRaster());
+                buffer.drawImage(part, 0, top);
+            }
+
+            Region trimmed = new Region(0, 0, width, 900);
+            BufferedImage actual = buffer.toImage(trimmed);
+            assertSamePixels(actual, ImageUtils.getImagePart(expected, trimmed));
+        }
+    }
+
+    @Test
+    public void testPartsAreClipped() {
+        try (MappedImageBuffer buffer = new MappedImageBuffer(100, 100)) {
+            BufferedImage part = createNoiseImage(80, 80, 1);
+            buffer.drawImage(part, 50, 60);
+            BufferedImage actual = buffer.toImage(new Region(50, 60, 50, 40));
+            assertSamePixels(actual, ImageUtils.getImagePart(part, new Region(0, 0, 50, 40)));
+        }
+    }
+
+    @Test
+    public void testCloseDeletesBackingFile() {
+        File tempDir = new File(System.getProperty("java.io.tmpdir"));
+        Set<String> before = new HashSet<>(Arrays.asList(tempDir.list()));
+        MappedImageBuffer buffer = new MappedImageBuffer(100, 100);
+        buffer.drawImage(createNoiseImage(10, 10, 1), 0, 0);
+        buffer.close();
+        for (String name : tempDir.list()) {
+            Assert.assertFalse(name.startsWith("eyes-stitch-") && !before.contains(name), name + " wasn't deleted");
+        }
+        try {
+            buffer.toImage(new Region(0, 0, 10, 10));
+            Assert.fail("closed buffer was accessed");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    private BufferedImage createNoiseImage(int width, int height, int seed) {
+        BufferedImage image = new BufferedImage(width, height, ImageUtils.REQUIRED_IMAGE_TYPE);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt() | 0xff000000);
+            }
+        }
+        return image;
+    }
+
+    private void assertSamePixels(BufferedImage actual, BufferedImage expected) {
+        Assert.assertEquals(actual.getWidth(), expected.getWidth());
+        Assert.assertEquals(actual.getHeight(), expected.getHeight());
+        Assert.assertEquals(actual.getRGB(0, 0, actual.getWidth(), actual.getHeight(), null, 0, actual.getWidth()),
+                expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0, expected.getWidth()));
+    }
+}
@@ -0,0 +1,131 @@
+package com.applitools.eyes;
+
+import com.applitools.eyes.capture.AppOutputProvider;
+import com.applitools.eyes.capture.AppOutputWithScreenshot;
+import com.applitools.eyes.fluent.ICheckSettingsInternal;
+import com.applitools.utils.ImageUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestMatchWindowTask {
+
+    @Test
+    public void testUnchangedScreenshotsAreNotMatched() {
+        // The window changes on the second attempt, and then settles.
+        final List<BufferedImage> screenshots = new ArrayList<>();
+        screenshots.add(createScreenshot(Color.RED));
+        screenshots.add(createScreenshot(Color.BLUE));
+        final AtomicInteger captures = new AtomicInteger();
+        final AtomicInteger completions = new AtomicInteger();
+        AppOutputProvider appOutputProvider = new AppOutputProvider() {
+            @Override
+            public AppOutputWithScreenshot getAppOutput(Region region, EyesScreenshot lastScreenshot,
+                                                        ICheckSettingsInternal checkSettingsInternal) {
+                int capture = captures.getAndIncrement();
+                // A new image on every capture, as when captured from the browser.
+                BufferedImage image = ImageUtils.copyImageWithType(
+                        screenshots.get(Math.min(capture, screenshots.size() - 1)), ImageUtils.REQUIRED_IMAGE_TYPE);
+                // Completed (i.e., compressed) only when used, as the outputs provided by the eyes.
+                return new AppOutputWithScreenshot(null, createEyesScreenshot(image)) {
+                    @Override
+                    public AppOutput getAppOutput() {
+                        completions.incrementAndGet();
+                        return new AppOutput("title", null, null, null);
+                    }
+                };
+            }
+        };
+        AtomicInteger matches = new AtomicInteger();
+        MatchWindowTask task = new MatchWindowTask(new Logger(), createConnector(matches), new RunningSession(),
+                5000, null, appOutputProvider);
+
+        long start = System.currentTimeMillis();
+        MatchResult result = task.matchWindow(new Trigger[0], Region.EMPTY, "tag", false, false, null, -1);
+        long elapsed = System.currentTimeMillis() - start;
+
+        Assert.assertFalse(result.getAsExpected());
+        // Both screenshots, and the final match once the window settled.
+        Assert.assertEquals(matches.get(), 3);
+        Assert.assertEquals(captures.get(), 5);
+        // The unchanged screenshots aren't completed.
+        Assert.assertEquals(completions.get(), 3);
+        Assert.assertTrue(elapsed < 5000, "Retried until the timeout: " + elapsed + " ms");
+    }
+
+    @Test
+    public void testRowHashes() {
+        BufferedImage image = createScreenshot(Color.RED);
+        long[] rowHashes = ImageUtils.getRowHashes(image);
+        Assert.assertEquals(rowHashes.length, image.getHeight());
+
+        BufferedImage changed = ImageUtils.copyImageWithType(image, ImageUtils.REQUIRED_IMAGE_TYPE);
+        changed.setRGB(5, 17, 0xff123456);
+        long[] changedRowHashes = ImageUtils.getRowHashes(changed);
+        for (int row = 0; row < rowHashes.length; row++) {
+            Assert.assertEquals(changedRowHashes[row] != rowHashes[row], row == 17, "Row " + row);
+        }
+
+        // Sub images are hashed by their own pixels.
+        Region part = new Region(10, 20, 30, 40);
+        Assert.assertEquals(ImageUtils.getRowHashes(ImageUtils.getImagePartView(image, part)),
+                ImageUtils.getRowHashes(ImageUtils.getImagePart(image, part)));
+    }
+
+    private BufferedImage createScreenshot(Color color) {
+        BufferedImage image = new BufferedImage(200, 150, ImageUtils.REQUIRED_IMAGE_TYPE);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        graphics.setColor(color);
+        graphics.fillRect(40, 30, 100, 50);
+        graphics.dispose();
+        return image;
+    }
+
+    private EyesScreenshot createEyesScreenshot(BufferedImage image) {
+        return new EyesScreenshot(new Logger(), image) {
+            @Override
+            public EyesScreenshot getSubScreenshot(Region region, boolean throwIfClipped) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Location convertLocation(Location location, CoordinatesType from, CoordinatesType to) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Location getLocationInScreenshot(Location location, CoordinatesType coordinatesType) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Region getIntersectedRegion(Region region, CoordinatesType coordinatesType) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private IServerConnector createConnector(final AtomicInteger matches) {
+        return (IServerConnector) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{IServerConnector.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (!method.getName().equals("matchWindow")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                matches.incrementAndGet();
+                // The window never matches.
+                return new MatchResult();
+            }
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package com.applitools.eyes;
+
+import com.applitools.utils.ImageDeltaCompressor;
+import com.applitools.utils.ImageUtils;
+import com.applitools.utils.PngEncoder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+public class TestPngEncoder {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        // Large enough to be split into several bands.
+        BufferedImage image = createScreenshotLikeImage(800, 1500);
+        for (int level = 1; level <= 9; level += 4) {
+            assertSamePixels(decode(new PngEncoder(level).encode(image)), image);
+        }
+        BufferedImage small = createScreenshotLikeImage(3, 2);
+        assertSamePixels(decode(new PngEncoder().encode(small)), small);
+    }
+
+    @Test
+    public void testOtherImageTypes() throws Exception {
+        BufferedImage image = createScreenshotLikeImage(300, 200);
+        BufferedImage rgb = ImageUtils.copyImageWithType(image, BufferedImage.TYPE_INT_RGB);
+        assertSamePixels(decode(new PngEncoder().encode(rgb)), rgb);
+        BufferedImage view = image.getSubimage(10, 20, 100, 50);
+        assertSamePixels(decode(new PngEncoder().encode(view)), view);
+    }
+
+    @Test
+    public void testMinimumEncodedLength() {
+        BufferedImage blank = new BufferedImage(1920, 2000, ImageUtils.REQUIRED_IMAGE_TYPE);
+        Assert.assertTrue(new PngEncoder(9).encode(blank).length > PngEncoder.getMinimumEncodedLength(1920, 2000));
+    }
+
+    @Test
+    public void testBoundedDelta() throws Exception {
+        BufferedImage source = createScreenshotLikeImage(200, 200);
+        BufferedImage target = ImageUtils.copyImageWithType(source, ImageUtils.REQUIRED_IMAGE_TYPE);
+        target.setRGB(5, 5, 0xff123456);
+        byte[] delta = ImageDeltaCompressor.compressByRawBlocks(target, source, 10, Long.MAX_VALUE);
+        Assert.assertNotNull(delta);
+        Assert.assertNull(ImageDeltaCompressor.compressByRawBlocks(target, source, 10, delta.length - 1));
+        Assert.assertNull(ImageDeltaCompressor.compressByRawBlocks(target, null, 10, Long.MAX_VALUE));
+    }
+
+    private BufferedImage createScreenshotLikeImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, ImageUtils.REQUIRED_IMAGE_TYPE);
+        Graphics2D graphics = image.createGraphics();
+        Random random = new Random(width * 31 + height);
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        for (int y = 0; y < height; y += 40) {
+            graphics.setColor(new Color(random.nextInt(0xffffff)));
+            graphics.fillRect(random.nextInt(Math.max(1, width / 2)), y, random.nextInt(width) + 1, 30);
+            graphics.setColor(Color.BLACK);
+            graphics.drawString("Row " + y + " " + random.nextLong(), 5, y + 20);
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    private BufferedImage decode(byte[] bytes) throws Exception {
+        return ImageIO.read(new ByteArrayInputStream(bytes));
+    }
+
+    private void assertSamePixels(BufferedImage actual, BufferedImage expected) {
+        Assert.assertEquals(actual.getWidth(), expected.getWidth());
+        Assert.assertEquals(actual.getHeight(), expected.getHeight());
+        Assert.assertEquals(actual.getRGB(0, 0, actual.getWidth(), actual.getHeight(), null, 0, actual.getWidth()),
+                expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0, expected.getWidth()));
+    }
+}
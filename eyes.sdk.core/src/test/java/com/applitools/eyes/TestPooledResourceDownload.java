@@ -0,0 +1,86 @@
+package com.applitools.eyes;
+
+import com.applitools.eyes.visualGridClient.model.RGridResource;
+import com.applitools.eyes.visualGridClient.services.IResourceFuture;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the resources of a page with a few hundred resources from a local stub server through the pooled
+ * download client.
+ */
+public class TestPooledResourceDownload {
+
+    private static final int RESOURCE_COUNT = 300;
+    private static final int RESOURCE_SIZE = 8 * 1024;
+
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeClass
+    public void startStubServer() throws IOException {
+        final byte[] body = new byte[RESOURCE_SIZE];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("Content-Type", "text/plain");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/resource";
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopStubServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testPooledDownloadsFetchAllResources() throws Exception {
+        ServerConnector serverConnector = new ServerConnector(new Logger(), URI.create("http://127.0.0.1"));
+        Assert.assertEquals(fetchAll(serverConnector, RESOURCE_COUNT), RESOURCE_COUNT);
+        // The pooled client is reused across batches.
+        Assert.assertEquals(fetchAll(serverConnector, RESOURCE_COUNT), RESOURCE_COUNT);
+    }
+
+    private int fetchAll(ServerConnector serverConnector, int count) throws Exception {
+        List<IResourceFuture> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            futures.add(serverConnector.downloadResource(new URL(baseUrl + i + ".txt"), false, null));
+        }
+        int fetched = 0;
+        for (IResourceFuture future : futures) {
+            RGridResource resource = future.get(30, TimeUnit.SECONDS);
+            if (resource.getContent().length == RESOURCE_SIZE) {
+                fetched++;
+            }
+        }
+        return fetched;
+    }
+}
@@ -0,0 +1,54 @@
+package com.applitools.eyes;
+
+import com.applitools.eyes.visualGridClient.model.RGridDom;
+import com.applitools.eyes.visualGridClient.model.RGridResource;
+import com.applitools.utils.GeneralUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+public class TestRGridDom {
+
+    private final Logger logger = new Logger();
+
+    @Test
+    public void testSerializedOnce() throws Exception {
+        RGridDom dom = createDom();
+        RGridResource resource = dom.asResource();
+        Assert.assertSame(dom.asResource(), resource);
+        Assert.assertEquals(dom.getSha256(), resource.getSha256());
+        Assert.assertEquals(resource.getSha256(), GeneralUtils.getSha256hash(resource.getContent()));
+        Assert.assertEquals(resource.getContentType(), RGridDom.CONTENT_TYPE);
+        Assert.assertEquals(resource.getUrl(), "http://a.com");
+    }
+
+    @Test
+    public void testChangesAreSerialized() throws Exception {
+        RGridDom dom = createDom();
+        String sha256 = dom.getSha256();
+        RGridResource resource = dom.asResource();
+        Assert.assertEquals(createDom().getSha256(), sha256);
+
+        dom.addResource(new RGridResource("http://a.com/b.css", "text/css", new byte[]{3}, logger, "test"));
+
+        Assert.assertNotEquals(dom.getSha256(), sha256);
+        Assert.assertNotSame(dom.asResource(), resource);
+        Assert.assertEquals(dom.asResource().getSha256(), dom.getSha256());
+    }
+
+    @Test
+    public void testSha256hash() {
+        Assert.assertEquals(GeneralUtils.getSha256hash("abc".getBytes()),
+                "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+
+    private RGridDom createDom() {
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("nodeType", 1);
+        node.put("nodeName", "DIV");
+        Map<String, RGridResource> resources = new HashMap<>();
+        resources.put("http://a.com/a.png", new RGridResource("http://a.com/a.png", "image/png", new byte[]{1, 2}, logger, "test"));
+        return new RGridDom(Collections.singletonList(node), resources, "http://a.com", logger, "test");
+    }
+}
@@ -0,0 +1,186 @@
+package com.applitools.eyes;
+
+import com.applitools.IResourceUploadListener;
+import com.applitools.eyes.visualGridClient.model.PutFuture;
+import com.applitools.eyes.visualGridClient.model.RGridResource;
+import com.applitools.eyes.visualGridClient.model.RateLimiter;
+import com.applitools.eyes.visualGridClient.model.RunningRender;
+import com.applitools.eyes.visualGridClient.model.ThrottlingServerConnector;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestRateLimiter {
+
+    private static final int JOB_DURATION = 50;
+
+    private final ScheduledExecutorService uploads = Executors.newScheduledThreadPool(8);
+
+    @AfterClass
+    public void tearDown() {
+        uploads.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrencyLimits() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(new Logger(), 6, 4, 100);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final ConcurrentHashMap<String, AtomicInteger> runningPerHost = new ConcurrentHashMap<>();
+        final AtomicInteger maxRunningPerHost = new AtomicInteger();
+        int jobCount = 40;
+        final CountDownLatch latch = new CountDownLatch(jobCount);
+        for (int i = 0; i < jobCount; i++) {
+            final String host = i % 4 == 0 ? "b.com" : "a.com";
+            runningPerHost.putIfAbsent(host, new AtomicInteger());
+            rateLimiter.submit(host, new RateLimiter.Job() {
+                @Override
+                public void start(final IResourceUploadListener listener) {
+                    updateMax(maxRunning, running.incrementAndGet());
+                    updateMax(maxRunningPerHost, runningPerHost.get(host).incrementAndGet());
+                    uploads.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            running.decrementAndGet();
+                            runningPerHost.get(host).decrementAndGet();
+                            listener.onUploadComplete(true);
+                            latch.countDown();
+                        }
+                    }, JOB_DURATION, TimeUnit.MILLISECONDS);
+                }
+            });
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(maxRunning.get(), 6);
+        Assert.assertEquals(maxRunningPerHost.get(), 4);
+        Assert.assertEquals(rateLimiter.getRunningCount(), 0);
+        Assert.assertEquals(rateLimiter.getQueuedCount(), 0);
+    }
+
+    @Test
+    public void testSubmitBlocksWhenQueueIsFull() throws Exception {
+        final RateLimiter rateLimiter = new RateLimiter(new Logger(), 1, 1, 1);
+        final IResourceUploadListener[] firstListener = new IResourceUploadListener[1];
+        final RateLimiter.Job job = new RateLimiter.Job() {
+            @Override
+            public void start(IResourceUploadListener listener) {
+                if (firstListener[0] == null) {
+                    firstListener[0] = listener;
+                }
+            }
+        };
+        rateLimiter.submit("a.com", job); // running
+        rateLimiter.submit("a.com", job); // queued
+        final CountDownLatch submitted = new CountDownLatch(1);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rateLimiter.submit("a.com", job);
+                    submitted.countDown();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        thread.start();
+
+        Assert.assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+        firstListener[0].onUploadComplete(true);
+        Assert.assertTrue(submitted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPutRetriesAreThrottled() throws Exception {
+        AtomicInteger submits = new AtomicInteger();
+        AtomicInteger puts = new AtomicInteger();
+        // The first upload fails, the retry succeeds.
+        ThrottlingServerConnector connector = new ThrottlingServerConnector(createPutConnector(puts, 1),
+                createCountingRateLimiter(submits));
+        RGridResource resource = new RGridResource("http://a.com/a.css", "text/css", new byte[]{1}, new Logger(), "test");
+
+        PutFuture putFuture = connector.renderPutResource(new RunningRender(), resource, null);
+
+        Assert.assertTrue(putFuture.get());
+        Assert.assertEquals(puts.get(), 2);
+        Assert.assertEquals(submits.get(), 2);
+        Assert.assertNull(putFuture.getResource().getContent());
+    }
+
+    @Test
+    public void testFailedPutKeepsContent() throws Exception {
+        AtomicInteger submits = new AtomicInteger();
+        AtomicInteger puts = new AtomicInteger();
+        RateLimiter rateLimiter = createCountingRateLimiter(submits);
+        ThrottlingServerConnector connector = new ThrottlingServerConnector(createPutConnector(puts, Integer.MAX_VALUE),
+                rateLimiter);
+        RGridResource resource = new RGridResource("http://a.com/a.css", "text/css", new byte[]{1}, new Logger(), "test");
+
+        PutFuture putFuture = connector.renderPutResource(new RunningRender(), resource, null);
+
+        Assert.assertFalse(putFuture.get());
+        Assert.assertFalse(putFuture.isDone());
+        // The first upload and its 5 retries.
+        Assert.assertEquals(puts.get(), 6);
+        Assert.assertEquals(submits.get(), 6);
+        Assert.assertEquals(rateLimiter.getRunningCount(), 0);
+        Assert.assertEquals(putFuture.getResource().getContent(), new byte[]{1});
+    }
+
+    private RateLimiter createCountingRateLimiter(final AtomicInteger submits) {
+        return new RateLimiter(new Logger(), 1) {
+            @Override
+            public void submit(String host, Job job) throws InterruptedException {
+                submits.incrementAndGet();
+                super.submit(host, job);
+            }
+        };
+    }
+
+    /**
+     * @return A connector whose uploads fail the given number of times, and then succeed.
+     */
+    private IServerConnector createPutConnector(final AtomicInteger puts, final int failures) {
+        return (IServerConnector) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{IServerConnector.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                            case "getLogger":
+                                return new Logger();
+                            case "renderPutResource":
+                                final boolean isSuccessful = puts.incrementAndGet() > failures;
+                                FutureTask<Object> future = new FutureTask<>(new Callable<Object>() {
+                                    @Override
+                                    public Object call() throws Exception {
+                                        if (!isSuccessful) {
+                                            throw new Exception("upload failed");
+                                        }
+                                        return null;
+                                    }
+                                });
+                                future.run();
+                                IResourceUploadListener listener = (IResourceUploadListener) args[2];
+                                if (listener != null) {
+                                    listener.onUploadComplete(isSuccessful);
+                                }
+                                return new PutFuture(future, (RGridResource) args[1], (RunningRender) args[0], (IServerConnector) proxy, new Logger());
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    }
+                });
+    }
+
+    private void updateMax(AtomicInteger max, int value) {
+        int current;
+        while ((current = max.get()) < value && !max.compareAndSet(current, value)) {
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.applitools.eyes;
+
+import com.applitools.eyes.visualGridClient.model.RenderStatus;
+import com.applitools.eyes.visualGridClient.model.RenderStatusResults;
+import com.applitools.eyes.visualGridClient.model.RenderingInfo;
+import com.applitools.eyes.visualGridClient.services.IEyesConnector;
+import com.applitools.eyes.visualGridClient.services.RenderStatusPoller;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestRenderStatusPoller {
+
+    private final RenderingInfo renderingInfo = new RenderingInfo("http://render.com", "token", "http://results.com");
+
+    @Test
+    public void testRendersArePolledTogether() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        // Every render is done on its third poll.
+        IEyesConnector connector = createConnector(calls, 3);
+        RenderStatusPoller poller = new RenderStatusPoller(new Logger(), 50, 200, 10);
+        int renderCount = 20;
+        final CountDownLatch latch = new CountDownLatch(renderCount);
+        final Map<String, RenderStatusResults> results = new ConcurrentHashMap<>();
+        RenderStatusPoller.RenderStatusListener listener = new RenderStatusPoller.RenderStatusListener() {
+            @Override
+            public void onRenderStatus(String renderId, RenderStatusResults renderStatusResults) {
+                results.put(renderId, renderStatusResults);
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < renderCount; i += 2) {
+            poller.poll(connector, renderingInfo, Arrays.asList("render" + i, "render" + (i + 1)), listener);
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        poller.stop();
+        Assert.assertEquals(results.size(), renderCount);
+        for (RenderStatusResults renderStatusResults : results.values()) {
+            Assert.assertEquals(renderStatusResults.getStatus(), RenderStatus.RENDERED);
+        }
+        Assert.assertTrue(calls.get() < renderCount * 3, "calls: " + calls.get());
+        Assert.assertEquals(poller.getPendingCount(), 0);
+    }
+
+    @Test
+    public void testGivesUpAfterMaxPolls() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        IEyesConnector connector = createConnector(calls, Integer.MAX_VALUE);
+        RenderStatusPoller poller = new RenderStatusPoller(new Logger(), 10, 20, 3);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<RenderStatusResults> results = new ArrayList<>();
+        poller.poll(connector, renderingInfo, Collections.singletonList("render"), new RenderStatusPoller.RenderStatusListener() {
+            @Override
+            public void onRenderStatus(String renderId, RenderStatusResults renderStatusResults) {
+                results.add(renderStatusResults);
+                latch.countDown();
+            }
+        });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        poller.stop();
+        Assert.assertEquals(results, Collections.singletonList(null));
+        Assert.assertEquals(calls.get(), 3);
+    }
+
+    @Test
+    public void testGivesUpAfterTimeout() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        IEyesConnector connector = createConnector(calls, Integer.MAX_VALUE);
+        RenderStatusPoller poller = new RenderStatusPoller(new Logger(), 10, 20, Integer.MAX_VALUE, 300);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<RenderStatusResults> results = new ArrayList<>();
+        poller.poll(connector, renderingInfo, Collections.singletonList("render"), new RenderStatusPoller.RenderStatusListener() {
+            @Override
+            public void onRenderStatus(String renderId, RenderStatusResults renderStatusResults) {
+                results.add(renderStatusResults);
+                latch.countDown();
+            }
+        });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        poller.stop();
+        Assert.assertEquals(results, Collections.singletonList(null));
+        Assert.assertEquals(poller.getPendingCount(), 0);
+    }
+
+    private IEyesConnector createConnector(final AtomicInteger calls, final int pollsToRender) {
+        final Map<String, Integer> polls = new HashMap<>();
+        return (IEyesConnector) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{IEyesConnector.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (!method.getName().equals("renderStatusById")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                calls.incrementAndGet();
+                List<RenderStatusResults> results = new ArrayList<>();
+                for (String renderId : (String[]) args[0]) {
+                    Integer count = polls.get(renderId);
+                    count = count == null ? 1 : count + 1;
+                    polls.put(renderId, count);
+                    RenderStatusResults renderStatusResults = new RenderStatusResults();
+                    renderStatusResults.setStatus(count >= pollsToRender ? RenderStatus.RENDERED : RenderStatus.RENDERING);
+                    results.add(renderStatusResults);
+                }
+                return results;
+            }
+        });
+    }
+}
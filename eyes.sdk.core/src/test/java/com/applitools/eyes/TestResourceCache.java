@@ -0,0 +1,78 @@
+package com.applitools.eyes;
+
+import com.applitools.eyes.visualGridClient.model.RGridResource;
+import com.applitools.eyes.visualGridClient.model.ResourceCache;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestResourceCache {
+
+    private static final long OVERHEAD = ResourceCache.ENTRY_OVERHEAD;
+
+    @Test
+    public void testWeightAccounting() {
+        ResourceCache<String> cache = new ResourceCache<>(10000);
+        cache.put("a", "a");
+        Assert.assertEquals(cache.getWeight(), OVERHEAD);
+        cache.setWeight("a", 1000);
+        Assert.assertEquals(cache.getWeight(), OVERHEAD + 1000);
+        cache.setWeight("missing", 1000);
+        Assert.assertEquals(cache.getWeight(), OVERHEAD + 1000);
+        cache.put("a", "a2");
+        Assert.assertEquals(cache.getWeight(), OVERHEAD);
+        cache.remove("a");
+        Assert.assertEquals(cache.getWeight(), 0);
+        Assert.assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        ResourceCache<String> cache = new ResourceCache<>(3 * (OVERHEAD + 100));
+        for (String key : new String[]{"a", "b", "c"}) {
+            cache.put(key, key);
+            cache.setWeight(key, 100);
+        }
+        Assert.assertEquals(cache.get("a"), "a");
+
+        cache.put("d", "d");
+        cache.setWeight("d", 100);
+
+        Assert.assertFalse(cache.containsKey("b"));
+        Assert.assertTrue(cache.containsKey("a"));
+        Assert.assertTrue(cache.containsKey("c"));
+        Assert.assertTrue(cache.containsKey("d"));
+        Assert.assertEquals(cache.getEvictionCount(), 1);
+        Assert.assertEquals(cache.getWeight(), 3 * (OVERHEAD + 100));
+    }
+
+    @Test
+    public void testOversizedEntryIsKept() {
+        ResourceCache<String> cache = new ResourceCache<>(1000);
+        cache.put("a", "a");
+        cache.put("b", "b");
+        cache.setWeight("b", 5000);
+        Assert.assertFalse(cache.containsKey("a"));
+        Assert.assertTrue(cache.containsKey("b"));
+    }
+
+    @Test
+    public void testHitAndMissCounts() {
+        ResourceCache<String> cache = new ResourceCache<>(1000);
+        cache.put("a", "a");
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        Assert.assertEquals(cache.getHitCount(), 2);
+        Assert.assertEquals(cache.getMissCount(), 1);
+    }
+
+    @Test
+    public void testResourceWithoutContentKeepsHash() {
+        RGridResource resource = new RGridResource("http://a.com/a.png", "image/png", new byte[]{1, 2, 3}, new Logger(), "test");
+        RGridResource hashOnly = resource.withoutContent();
+        Assert.assertNull(hashOnly.getContent());
+        Assert.assertEquals(hashOnly.getSha256(), resource.getSha256());
+        Assert.assertEquals(hashOnly.getUrl(), resource.getUrl());
+        Assert.assertEquals(hashOnly.getContentType(), resource.getContentType());
+    }
+}
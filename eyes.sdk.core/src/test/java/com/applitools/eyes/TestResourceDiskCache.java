@@ -0,0 +1,154 @@
+package com.applitools.eyes;
+
+import com.applitools.eyes.visualGridClient.model.RGridResource;
+import com.applitools.eyes.visualGridClient.model.ResourceDiskCache;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class TestResourceDiskCache {
+
+    private final Logger logger = new Logger();
+    private File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("eyes-resource-cache").toFile();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testResourcesSurviveReload() {
+        ResourceDiskCache cache = new ResourceDiskCache(directory, logger);
+        RGridResource resource = createResource("http://a.com/style.css", 100);
+        resource.setValidators("\"v1\"", "Tue, 01 Jan 2019 00:00:00 GMT");
+        cache.put(resource);
+        cache.acknowledge(resource.getSha256());
+        cache.flush();
+
+        ResourceDiskCache reloaded = new ResourceDiskCache(directory, logger);
+        RGridResource cached = reloaded.get("http://a.com/style.css");
+        Assert.assertNotNull(cached);
+        Assert.assertEquals(cached.getContent(), resource.getContent());
+        Assert.assertEquals(cached.getContentType(), "text/css");
+        Assert.assertEquals(cached.getEtag(), "\"v1\"");
+        Assert.assertEquals(cached.getLastModified(), "Tue, 01 Jan 2019 00:00:00 GMT");
+        Assert.assertTrue(reloaded.isAcknowledged(resource.getSha256()));
+        Assert.assertNull(reloaded.get("http://a.com/other.css"));
+    }
+
+    @Test
+    public void testSameContentIsStoredOnce() {
+        ResourceDiskCache cache = new ResourceDiskCache(directory, logger);
+        cache.put(createResource("http://a.com/font.woff", 100));
+        cache.put(createResource("http://b.com/font.woff", 100));
+        Assert.assertEquals(cache.getEntryCount(), 2);
+        Assert.assertEquals(cache.getSize(), 100);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        ResourceDiskCache cache = new ResourceDiskCache(directory, 250, logger);
+        cache.put(createResource("http://a.com/1", 100));
+        cache.put(createResource("http://a.com/2", 101));
+        Assert.assertNotNull(cache.get("http://a.com/1"));
+        cache.put(createResource("http://a.com/3", 102));
+
+        Assert.assertNotNull(cache.get("http://a.com/1"));
+        Assert.assertNull(cache.get("http://a.com/2"));
+        Assert.assertNotNull(cache.get("http://a.com/3"));
+        Assert.assertEquals(cache.getSize(), 202);
+    }
+
+    @Test
+    public void testUnacknowledged() {
+        ResourceDiskCache cache = new ResourceDiskCache(directory, logger);
+        RGridResource resource = createResource("http://a.com/image.png", 10);
+        cache.put(resource);
+        cache.acknowledge(resource.getSha256());
+        cache.unacknowledge(resource.getSha256());
+        Assert.assertNotNull(cache.get("http://a.com/image.png"));
+        Assert.assertFalse(cache.isAcknowledged(resource.getSha256()));
+    }
+
+    @Test
+    public void testResourcesWithoutValidatorsAreNotCached() {
+        ResourceDiskCache cache = new ResourceDiskCache(directory, logger);
+        cache.put(createResource("http://a.com/script.js", 10));
+        RGridResource changed = new RGridResource("http://a.com/script.js", "text/javascript", new byte[]{1, 2, 3},
+                logger, "TestResourceDiskCache");
+        cache.put(changed);
+
+        // The resource can't be revalidated, so it's downloaded again rather than served from the cache.
+        Assert.assertNull(cache.get("http://a.com/script.js"));
+        Assert.assertEquals(cache.getEntryCount(), 0);
+        Assert.assertEquals(cache.getSize(), 0);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final ResourceDiskCache cache = new ResourceDiskCache(directory, 2000, logger);
+        final List<Throwable> failures = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int seed = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            // URLs are shared by the threads, and so are contents, so blobs are shared too.
+                            int size = 10 + (i * 7 + seed) % 40;
+                            String url = "http://a.com/" + ((i + seed) % 30);
+                            cache.put(createResource(url, size));
+                            RGridResource cached = cache.get(url);
+                            if (cached != null) {
+                                Assert.assertEquals(cached.getContent(), createResource(url, cached.getContent().length).getContent());
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(failures, Collections.emptyList());
+        Assert.assertTrue(cache.getSize() <= 2000);
+        // Whatever is indexed has its content (or it would be dropped when read).
+        int entryCount = cache.getEntryCount();
+        for (int i = 0; i < 30; i++) {
+            cache.get("http://a.com/" + i);
+        }
+        Assert.assertEquals(cache.getEntryCount(), entryCount);
+    }
+
+    private RGridResource createResource(String url, int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (size + i);
+        }
+        RGridResource resource = new RGridResource(url, "text/css", content, logger, "TestResourceDiskCache");
+        resource.setValidators("\"" + size + "\"", null);
+        return resource;
+    }
+}
@@ -0,0 +1,137 @@
+package com.applitools.eyes;
+
+import com.applitools.eyes.visualGridClient.services.IRenderingEyes;
+import com.applitools.eyes.visualGridClient.services.TaskScheduler;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TestTaskScheduler {
+
+    @Test
+    public void testWakesOnSubmit() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler();
+        CountDownLatch woken = startWaiter(scheduler, TaskScheduler.Queue.OPEN);
+        Assert.assertFalse(woken.await(200, TimeUnit.MILLISECONDS));
+
+        // Opening eyes signals all of the task queues.
+        IRenderingEyes eyes = createEyes();
+        scheduler.signal(eyes);
+
+        Assert.assertTrue(woken.await(5, TimeUnit.SECONDS));
+        for (TaskScheduler.Queue queue : new TaskScheduler.Queue[]{TaskScheduler.Queue.OPEN, TaskScheduler.Queue.CHECK, TaskScheduler.Queue.CLOSE}) {
+            Assert.assertEquals(scheduler.getReadyEyes(queue).size(), 1);
+            Assert.assertSame(scheduler.getReadyEyes(queue).get(0).getKey(), eyes);
+        }
+        Assert.assertEquals(scheduler.getQueueDepth(TaskScheduler.Queue.RENDER), 0);
+    }
+
+    @Test
+    public void testWakesOnCompletion() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler();
+        CountDownLatch woken = startWaiter(scheduler, TaskScheduler.Queue.RENDER);
+        Assert.assertFalse(woken.await(200, TimeUnit.MILLISECONDS));
+
+        // A completed render (or a new rendering task) has no eyes, it only wakes the service.
+        scheduler.signal(TaskScheduler.Queue.RENDER, null);
+
+        Assert.assertTrue(woken.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(scheduler.getQueueDepth(TaskScheduler.Queue.RENDER), 0);
+
+        // A completion signaled after the service read the generation, but before it waited, isn't lost.
+        long generation = scheduler.getGeneration(TaskScheduler.Queue.CHECK);
+        scheduler.signal(TaskScheduler.Queue.CHECK, createEyes());
+        scheduler.awaitWork(TaskScheduler.Queue.CHECK, generation);
+        Assert.assertEquals(scheduler.getQueueDepth(TaskScheduler.Queue.CHECK), 1);
+    }
+
+    @Test
+    public void testStopWakesAllQueues() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler();
+        CountDownLatch openWoken = startWaiter(scheduler, TaskScheduler.Queue.OPEN);
+        CountDownLatch renderWoken = startWaiter(scheduler, TaskScheduler.Queue.RENDER);
+
+        scheduler.stop();
+
+        Assert.assertTrue(openWoken.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(renderWoken.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRetireKeepsEyesSignaledAgain() {
+        TaskScheduler scheduler = new TaskScheduler();
+        IRenderingEyes first = createEyes();
+        IRenderingEyes second = createEyes();
+        scheduler.signal(TaskScheduler.Queue.CHECK, first);
+        scheduler.signal(TaskScheduler.Queue.CHECK, second);
+
+        List<Map.Entry<IRenderingEyes, Long>> readyEyes = scheduler.getReadyEyes(TaskScheduler.Queue.CHECK);
+        Assert.assertEquals(readyEyes.size(), 2);
+        Map.Entry<IRenderingEyes, Long> firstEntry = getEntry(readyEyes, first);
+        Map.Entry<IRenderingEyes, Long> secondEntry = getEntry(readyEyes, second);
+        // Signals are stamped in the order they were made.
+        Assert.assertTrue(firstEntry.getValue() < secondEntry.getValue());
+
+        // The first eyes are signaled again while the service finds nothing runnable in them.
+        scheduler.signal(TaskScheduler.Queue.CHECK, first);
+        scheduler.retire(TaskScheduler.Queue.CHECK, firstEntry);
+        scheduler.retire(TaskScheduler.Queue.CHECK, secondEntry);
+
+        readyEyes = scheduler.getReadyEyes(TaskScheduler.Queue.CHECK);
+        Assert.assertEquals(readyEyes.size(), 1);
+        Assert.assertSame(readyEyes.get(0).getKey(), first);
+        Assert.assertTrue(readyEyes.get(0).getValue() > secondEntry.getValue());
+    }
+
+    private CountDownLatch startWaiter(final TaskScheduler scheduler, final TaskScheduler.Queue queue) {
+        final long generation = scheduler.getGeneration(queue);
+        final CountDownLatch woken = new CountDownLatch(1);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    scheduler.awaitWork(queue, generation);
+                    woken.countDown();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return woken;
+    }
+
+    private Map.Entry<IRenderingEyes, Long> getEntry(List<Map.Entry<IRenderingEyes, Long>> readyEyes, IRenderingEyes eyes) {
+        for (Map.Entry<IRenderingEyes, Long> entry : readyEyes) {
+            if (entry.getKey() == eyes) {
+                return entry;
+            }
+        }
+        throw new AssertionError("eyes aren't ready");
+    }
+
+    private IRenderingEyes createEyes() {
+        return (IRenderingEyes) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{IRenderingEyes.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "eyes@" + System.identityHashCode(proxy);
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        });
+    }
+}
@@ -82,7 +82,7 @@ public class Eyes implements IRenderingEyes, IEyes {
         @Override
         public void onRenderComplete() {
             logger.verbose("enter");
-            Eyes.this.listener.onRenderComplete();
+            Eyes.this.listener.onRenderComplete(Eyes.this);
             logger.verbose("exit");
         }
     };
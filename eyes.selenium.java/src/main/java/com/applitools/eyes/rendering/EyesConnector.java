@@ -20,7 +20,7 @@ class EyesConnector extends EyesBase implements IEyesConnector {
 
     public EyesConnector(RenderBrowserInfo browserInfo, RateLimiter rateLimiter) {
         this.browserInfo = browserInfo;
-        //this.setServerConnector(new ThrottlingServerConnector(this.serverConnector, rateLimiter));
+        this.setServerConnector(new ThrottlingServerConnector(this.serverConnector, rateLimiter));
     }
 
     /**
@@ -39,6 +39,11 @@ class EyesConnector extends EyesBase implements IEyesConnector {
         return this.serverConnector.downloadResource(url, true, null);
     }
 
+    @Override
+    public IResourceFuture revalidateResource(URL url, RGridResource cachedResource) {
+        return this.serverConnector.revalidateResource(url, cachedResource);
+    }
+
     @Override
     public PutFuture renderPutResource(RunningRender runningRender, RGridResource resource) {
         return this.serverConnector.renderPutResource(runningRender, resource, null);
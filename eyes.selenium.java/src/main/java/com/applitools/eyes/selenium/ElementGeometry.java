@@ -0,0 +1,128 @@
+package com.applitools.eyes.selenium;
+
+import com.applitools.eyes.CoordinatesType;
+import com.applitools.eyes.Location;
+import com.applitools.eyes.RectangleSize;
+import com.applitools.eyes.Region;
+
+/**
+ * A snapshot of an element's geometry: its location and size, scroll position and size, client size, border widths
+ * and overflow, all read by a single script.
+ */
+public class ElementGeometry {
+
+    private final Location location;
+    private final RectangleSize size;
+    private final Location scrollPosition;
+    private final RectangleSize scrollSize;
+    private final RectangleSize clientSize;
+    private final Borders borders;
+    private final String overflow;
+    private final String display;
+
+    public ElementGeometry(Location location, RectangleSize size, Location scrollPosition, RectangleSize scrollSize,
+                           RectangleSize clientSize, Borders borders, String overflow, String display) {
+        this.location = location;
+        this.size = size;
+        this.scrollPosition = scrollPosition;
+        this.scrollSize = scrollSize;
+        this.clientSize = clientSize;
+        this.borders = borders;
+        this.overflow = overflow;
+        this.display = display;
+    }
+
+    /**
+     * @return The location of the element, relative to its frame's document (as {@code WebElement#getLocation()}).
+     */
+    public Location getLocation() {
+        return location;
+    }
+
+    /**
+     * @return The size of the element, including its borders (as {@code WebElement#getSize()}).
+     */
+    public RectangleSize getSize() {
+        return size;
+    }
+
+    /**
+     * @return The bounds of the element, clipped to the document's top left corner.
+     */
+    public Region getBounds() {
+        int left = location.getX();
+        int top = location.getY();
+        int width = size.getWidth();
+        int height = size.getHeight();
+
+        if (left < 0) {
+            width = Math.max(0, width + left);
+            left = 0;
+        }
+
+        if (top < 0) {
+            height = Math.max(0, height + top);
+            top = 0;
+        }
+
+        return new Region(left, top, width, height, CoordinatesType.CONTEXT_RELATIVE);
+    }
+
+    /**
+     * @return The scrollLeft and scrollTop of the element.
+     */
+    public Location getScrollPosition() {
+        return scrollPosition;
+    }
+
+    /**
+     * @return The scrollWidth and scrollHeight of the element.
+     */
+    public RectangleSize getScrollSize() {
+        return scrollSize;
+    }
+
+    /**
+     * @return The clientWidth and clientHeight of the element.
+     */
+    public RectangleSize getClientSize() {
+        return clientSize;
+    }
+
+    /**
+     * @return The computed border widths of the element.
+     */
+    public Borders getBorders() {
+        return borders;
+    }
+
+    /**
+     * @return The overflow set in the element's style.
+     */
+    public String getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * @return The computed display style of the element.
+     */
+    public String getDisplay() {
+        return display;
+    }
+
+    /**
+     * @param scrollPosition The new scroll position of the element.
+     * @return The same geometry, after the element was scrolled to the given position.
+     */
+    public ElementGeometry withScrollPosition(Location scrollPosition) {
+        return new ElementGeometry(location, size, scrollPosition, scrollSize, clientSize, borders, overflow, display);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("location: %s, size: %s, scroll position: %s, scroll size: %s, client size: %s, " +
+                        "borders: (%d, %d, %d, %d), overflow: %s, display: %s", location, size, scrollPosition,
+                scrollSize, clientSize, borders.getLeft(), borders.getTop(), borders.getRight(), borders.getBottom(),
+                overflow, display);
+    }
+}
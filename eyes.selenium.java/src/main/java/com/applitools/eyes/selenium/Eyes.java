@@ -5,7 +5,6 @@ package com.applitools.eyes.selenium;
 
 import com.applitools.ICheckSettings;
 import com.applitools.eyes.*;
-import com.applitools.eyes.capture.AppOutputWithScreenshot;
 import com.applitools.eyes.capture.EyesScreenshotFactory;
 import com.applitools.eyes.capture.ImageProvider;
 import com.applitools.eyes.diagnostics.TimedAppOutput;
@@ -323,6 +322,8 @@ public class Eyes extends EyesBase implements IEyes {
         }
 
         initDriver(driver);
+        // The page state is kept per test.
+        this.driver.invalidatePageState();
 
         screenshotFactory = new EyesWebDriverScreenshotFactory(logger, this.driver);
 
@@ -374,11 +375,22 @@ public class Eyes extends EyesBase implements IEyes {
 
     public WebElement getScrollRootElement() {
         if (this.scrollRootElement == null) {
-            this.scrollRootElement = driver.findElement(By.tagName("html"));
+            this.scrollRootElement = driver.getHtmlElement();
         }
         return this.scrollRootElement;
     }
 
+    /**
+     * Clears the page state which is kept between the checks of a test (e.g., the page's html element). The state
+     * is cleared automatically when the page navigates or the viewport is resized, so this is only needed if the
+     * page changed otherwise (e.g., its html element was replaced).
+     */
+    public void invalidatePageState() {
+        if (driver != null) {
+            driver.invalidatePageState();
+        }
+    }
+
     private PositionProvider createPositionProvider() {
         return createPositionProvider(this.scrollRootElement);
     }
@@ -667,6 +679,10 @@ public class Eyes extends EyesBase implements IEyes {
             return;
         }
 
+        if (!EyesSeleniumUtils.isMobileDevice(driver)) {
+            logger.verbose("URL: " + driver.validatePageState());
+        }
+
         boolean originalForceFPS = getConfig().getForceFullPageScreenshot();
 
         if (checkSettings.length > 1) {
@@ -706,7 +722,7 @@ public class Eyes extends EyesBase implements IEyes {
             //check(settings);
         }
 
-        this.scrollRootElement = driver.findElement(By.tagName("html"));
+        this.scrollRootElement = driver.getHtmlElement();
         this.currentFramePositionProvider = null;
         setPositionProvider(createPositionProvider());
 
@@ -720,6 +736,9 @@ public class Eyes extends EyesBase implements IEyes {
 
         if (getRegions.size() == 0) return;
 
+        // The regions are matched here, after any matches still pending.
+        waitForPendingMatches();
+
         this.originalFC = driver.getFrameChain().clone();
 
         FrameChain originalFC = tryHideScrollbars();
@@ -749,6 +768,10 @@ public class Eyes extends EyesBase implements IEyes {
 
         tryRestoreScrollbars(originalFC);
         ((EyesTargetLocator) driver.switchTo()).frames(this.originalFC);
+
+        // The regions' screenshots are encoded and matched in the background, and their mismatches reported here.
+        MatchResult result = waitForPendingMatches();
+        logger.verbose("matchResult.asExcepted: " + result.getAsExpected());
     }
 
     private List<EyesScreenshot> getSubScreenshots(EyesWebDriverScreenshot screenshot, GetRegion getRegion) {
@@ -770,13 +793,9 @@ public class Eyes extends EyesBase implements IEyes {
 
             debugScreenshotsProvider.save(subScreenshot.getImage(), String.format("subscreenshot_%s", name));
 
+            // The match settings are created here, since they might require the driver (e.g., for regions by element).
             ImageMatchSettings ims = mwt.createImageMatchSettings(checkSettingsInternal, subScreenshot);
-            AppOutput appOutput = new AppOutput(name, ImageUtils.base64FromImage(subScreenshot.getImage()), null, null);
-            AppOutputWithScreenshot appOutputWithScreenshot = new AppOutputWithScreenshot(appOutput, subScreenshot);
-            MatchResult matchResult = mwt.performMatch(
-                    new Trigger[0], appOutputWithScreenshot, name, false, ims);
-
-            logger.verbose("matchResult.asExcepted: " + matchResult.getAsExpected());
+            matchScreenshotAsync(name, subScreenshot, ims);
         }
     }
 
@@ -874,7 +893,7 @@ public class Eyes extends EyesBase implements IEyes {
                 scrollRootElement = frame.getScrollRootElement();
             }
             if (scrollRootElement == null) {
-                scrollRootElement = driver.findElement(By.tagName("html"));
+                scrollRootElement = driver.getHtmlElement();
             }
             PositionProvider positionProvider = new ScrollPositionProvider(logger, jsExecutor, scrollRootElement);
 
@@ -908,6 +927,12 @@ public class Eyes extends EyesBase implements IEyes {
 
         logger.verbose(String.format("check(\"%s\", checkSettings) - begin", name));
 
+        // The page might have changed since the last check.
+        driver.invalidateElementGeometry();
+        if (!EyesSeleniumUtils.isMobileDevice(driver)) {
+            logger.verbose("URL: " + driver.validatePageState());
+        }
+
         this.stitchContent = checkSettingsInternal.getStitchContent();
         final Region targetRegion = checkSettingsInternal.getTargetRegion();
         this.scrollRootElement = this.getScrollRootElement(seleniumCheckTarget);
@@ -918,10 +943,6 @@ public class Eyes extends EyesBase implements IEyes {
 
         ValidationInfo validationInfo = this.fireValidationWillStartEvent(name);
 
-        if (!EyesSeleniumUtils.isMobileDevice(driver)) {
-            logger.verbose("URL: " + driver.getCurrentUrl());
-        }
-
         int switchedToFrameCount = this.switchToFrame(seleniumCheckTarget);
 
         MatchResult result = null;
@@ -966,7 +987,7 @@ public class Eyes extends EyesBase implements IEyes {
                     // required to prevent cut line on the last stitched part of the page on some browsers (like firefox).
                     switchTo.defaultContent();
                     originalFC = tryHideScrollbars();
-                    currentFramePositionProvider = createPositionProvider(driver.findElement(By.tagName("html")));
+                    currentFramePositionProvider = createPositionProvider(driver.getHtmlElement());
                 }
                 result = this.checkWindowBase(NullRegionProvider.INSTANCE, name, false, checkSettings);
                 if (!EyesSeleniumUtils.isMobileDevice(driver)) {
@@ -1123,11 +1144,11 @@ public class Eyes extends EyesBase implements IEyes {
         logger.verbose("scrollRootElement_: " + scrollRootElement);
         FrameChain originalFC = driver.getFrameChain().clone();
         FrameChain fc = driver.getFrameChain().clone();
+        EyesTargetLocator switchTo = (EyesTargetLocator) driver.switchTo();
         driver.executeScript("window.scrollTo(0,0);");
         while (fc.size() > 0) {
             logger.verbose("fc.Count: " + fc.size());
-            //driver.getRemoteWebDriver().switchTo().parentFrame();
-            EyesTargetLocator.parentFrame(logger, driver.getRemoteWebDriver().switchTo(), fc);
+            switchTo.parentFrames(1);
             driver.executeScript("window.scrollTo(0,0);");
             Frame prevFrame = fc.pop();
             Frame frame = fc.peek();
@@ -1141,7 +1162,7 @@ public class Eyes extends EyesBase implements IEyes {
                     scrollRootElement = frame.getScrollRootElement();
                 }
                 if (scrollRootElement == null) {
-                    scrollRootElement = driver.findElement(By.tagName("html"));
+                    scrollRootElement = driver.getHtmlElement();
                 }
             }
             logger.verbose("scrollRootElement: " + scrollRootElement);
@@ -1152,7 +1173,7 @@ public class Eyes extends EyesBase implements IEyes {
             Region reg = new Region(Location.ZERO, prevFrame.getInnerSize());
             effectiveViewport.intersect(reg);
         }
-        ((EyesTargetLocator) driver.switchTo()).frames(originalFC);
+        switchTo.frames(originalFC);
         return originalFC;
     }
 
@@ -1189,7 +1210,7 @@ public class Eyes extends EyesBase implements IEyes {
             WebElement scrollRootElement;
             if (originalFC.size() > 0 && !element.equals(originalFC.peek().getReference())) {
                 switchTo.frames(originalFC);
-                scrollRootElement = driver.findElement(By.tagName("html"));
+                scrollRootElement = driver.getHtmlElement();
             } else {
                 scrollRootElement = this.scrollRootElement;
             }
@@ -1233,9 +1254,16 @@ public class Eyes extends EyesBase implements IEyes {
         MatchResult result = checkWindowBase(new RegionProvider() {
             @Override
             public Region getRegion() {
-                Point p = targetElement.getLocation();
-                Dimension d = targetElement.getSize();
-                return new Region(p.getX(), p.getY(), d.getWidth(), d.getHeight(), CoordinatesType.CONTEXT_RELATIVE);
+                if (EyesSeleniumUtils.isMobileDevice(driver)) {
+                    // Native contexts don't run scripts.
+                    Point p = targetElement.getLocation();
+                    Dimension d = targetElement.getSize();
+                    return new Region(p.getX(), p.getY(), d.getWidth(), d.getHeight(), CoordinatesType.CONTEXT_RELATIVE);
+                }
+                EyesRemoteWebElement eyesElement = (targetElement instanceof EyesRemoteWebElement) ?
+                        (EyesRemoteWebElement) targetElement : new EyesRemoteWebElement(logger, driver, targetElement);
+                ElementGeometry geometry = eyesElement.getGeometry();
+                return new Region(geometry.getLocation(), geometry.getSize(), CoordinatesType.CONTEXT_RELATIVE);
             }
         }, name, false, checkSettings);
         logger.verbose("Done! trying to scroll back to original position.");
@@ -1271,6 +1299,10 @@ public class Eyes extends EyesBase implements IEyes {
 
         logger.verbose(String.format("checkRegion([%s], %d, '%s')", region, matchTimeout, tag));
 
+        if (!EyesSeleniumUtils.isMobileDevice(driver)) {
+            driver.validatePageState();
+        }
+
         super.checkWindowBase(
                 new RegionProvider() {
                     public Region getRegion() {
@@ -1734,7 +1766,7 @@ public class Eyes extends EyesBase implements IEyes {
     }
 
     private ScaleProviderFactory getScaleProviderFactory() {
-        WebElement element = driver.findElement(By.tagName("html"));
+        WebElement element = driver.getHtmlElement();
         RectangleSize entireSize = EyesSeleniumUtils.getEntireElementSize(logger, jsExecutor, element);
         return new ContextBasedScaleProviderFactory(logger, entireSize,
                 viewportSizeHandler.get(), devicePixelRatio, false,
@@ -1749,7 +1781,7 @@ public class Eyes extends EyesBase implements IEyes {
             scrollRootElement = currentFrame.getScrollRootElement();
         }
         if (scrollRootElement == null && !EyesSeleniumUtils.isMobileDevice(this.driver)) {
-            scrollRootElement = driver.findElement(By.tagName("html"));
+            scrollRootElement = driver.getHtmlElement();
         }
         return scrollRootElement;
     }
@@ -1765,10 +1797,10 @@ public class Eyes extends EyesBase implements IEyes {
 
             checkFrameOrElement = true;
 
-            logger.verbose("Getting screenshot as base64..");
-            String screenshot64 = driver.getScreenshotAs(OutputType.BASE64);
+            logger.verbose("Getting screenshot as bytes..");
+            byte[] screenshotBytes = driver.getScreenshotAs(OutputType.BYTES);
             logger.verbose("Done! Creating image object...");
-            BufferedImage screenshotImage = ImageUtils.imageFromBase64(screenshot64);
+            BufferedImage screenshotImage = ImageUtils.imageFromBytes(screenshotBytes);
 
             // FIXME - Scaling should be handled in a single place instead
             ScaleProvider scaleProvider = updateScalingParams().getScaleProvider(screenshotImage.getWidth());
@@ -2002,21 +2034,24 @@ public class Eyes extends EyesBase implements IEyes {
 
         String originalOverflow = null;
 
-        Point pl = eyesElement.getLocation();
+        // All of the element's metrics are read by a single script.
+        ElementGeometry geometry = eyesElement.getGeometry();
+        Location pl = geometry.getLocation();
         MatchResult result;
         try {
             checkFrameOrElement = true;
 
-            String displayStyle = eyesElement.getComputedStyle("display");
+            String displayStyle = geometry.getDisplay();
 
             if (getConfig().getHideScrollbars()) {
-                originalOverflow = eyesElement.getOverflow();
+                originalOverflow = geometry.getOverflow();
                 eyesElement.setOverflow("hidden");
+                // Hiding the scrollbars changes the client size.
+                geometry = eyesElement.getGeometry();
             }
 
-            SizeAndBorders sizeAndBorders = eyesElement.getSizeAndBorders();
-            Borders borderWidths = sizeAndBorders.getBorders();
-            RectangleSize elementSize = sizeAndBorders.getSize();
+            Borders borderWidths = geometry.getBorders();
+            RectangleSize elementSize = geometry.getClientSize();
 
             if (!displayStyle.equals("inline") &&
                     elementSize.getHeight() <= effectiveViewport.getHeight() &&
@@ -2257,6 +2292,7 @@ public class Eyes extends EyesBase implements IEyes {
 
             try {
                 EyesSeleniumUtils.setViewportSize(logger, driver, size);
+                driver.invalidatePageState();
                 effectiveViewport = new Region(Location.ZERO, size);
             } catch (EyesException e1) {
                 // Just in case the user catches this error
@@ -2337,25 +2373,25 @@ public class Eyes extends EyesBase implements IEyes {
             return;
         }
         if (getConfig().getHideScrollbars() || (getConfig().getStitchMode() == StitchMode.CSS && stitchContent)) {
-            ((EyesTargetLocator) driver.switchTo()).frames(frameChain);
+            EyesTargetLocator switchTo = (EyesTargetLocator) driver.switchTo();
+            switchTo.frames(frameChain);
             FrameChain originalFC = frameChain.clone();
             FrameChain fc = frameChain.clone();
             if (fc.size() > 0) {
                 while (fc.size() > 0) {
                     Frame frame = fc.pop();
                     frame.returnToOriginalOverflow(driver);
-                    EyesTargetLocator.parentFrame(logger, driver.getRemoteWebDriver().switchTo(), fc);
+                    switchTo.parentFrames(1);
                 }
             } else {
                 logger.verbose("returning overflow of element to its original value: " + scrollRootElement);
                 EyesSeleniumUtils.setOverflow(driver, originalOverflow, scrollRootElement);
             }
-            ((EyesTargetLocator) driver.switchTo()).frames(originalFC);
+            switchTo.frames(originalFC);
             logger.verbose("done restoring scrollbars.");
         } else {
             logger.verbose("no need to restore scrollbars.");
         }
-        driver.getFrameChain().clear();
     }
 
     @Override
@@ -2425,7 +2461,7 @@ public class Eyes extends EyesBase implements IEyes {
 
             BufferedImage entireFrameOrElement;
             if (elementPositionProvider == null) {
-                WebElement scrollRootElement = driver.findElement(By.tagName("html"));
+                WebElement scrollRootElement = driver.getHtmlElement();
                 PositionProvider elemPositionProvider = this.getElementPositionProvider(scrollRootElement);
                 entireFrameOrElement = algo.getStitchedRegion(regionToCheck, null, elemPositionProvider);
             } else {
@@ -2453,14 +2489,14 @@ public class Eyes extends EyesBase implements IEyes {
             } else {
                 eyesScrollRootElement = new EyesRemoteWebElement(logger, driver, scrollRootElement);
             }
-            Point location = eyesScrollRootElement.getLocation();
-            SizeAndBorders sizeAndBorders = eyesScrollRootElement.getSizeAndBorders();
+            ElementGeometry geometry = eyesScrollRootElement.getGeometry();
+            Location location = geometry.getLocation();
 
             Region region = new Region(
-                    location.getX() + sizeAndBorders.getBorders().getLeft(),
-                    location.getY() + sizeAndBorders.getBorders().getTop(),
-                    sizeAndBorders.getSize().getWidth(),
-                    sizeAndBorders.getSize().getHeight());
+                    location.getX() + geometry.getBorders().getLeft(),
+                    location.getY() + geometry.getBorders().getTop(),
+                    geometry.getClientSize().getWidth(),
+                    geometry.getClientSize().getHeight());
             ////////////
 
             BufferedImage fullPageImage = algo.getStitchedRegion(region, null, positionProviderHandler.get());
@@ -2607,12 +2643,13 @@ public class Eyes extends EyesBase implements IEyes {
         WebElement scrollRootElement = null;
         if (!EyesSeleniumUtils.isMobileDevice(driver)) {
             if (scrollRootElementContainer == null) {
-                scrollRootElement = driver.findElement(By.tagName("html"));
+                scrollRootElement = driver.getHtmlElement();
             } else {
                 scrollRootElement = scrollRootElementContainer.getScrollRootElement();
                 if (scrollRootElement == null) {
                     By scrollRootSelector = scrollRootElementContainer.getScrollRootSelector();
-                    scrollRootElement = driver.findElement(scrollRootSelector != null ? scrollRootSelector : By.tagName("html"));
+                    scrollRootElement = scrollRootSelector != null ?
+                            driver.findElement(scrollRootSelector) : driver.getHtmlElement();
                 }
             }
         }
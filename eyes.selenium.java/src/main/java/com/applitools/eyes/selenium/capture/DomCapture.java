@@ -7,9 +7,11 @@ import com.applitools.eyes.Logger;
 import com.applitools.eyes.positioning.PositionProvider;
 import com.applitools.eyes.selenium.Eyes;
 import com.applitools.utils.GeneralUtils;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.MapperFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.css.ECSSVersion;
 import com.helger.css.decl.CSSImportRule;
@@ -22,19 +24,31 @@ import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.Phaser;
-
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Captures the DOM of the window, including the DOM and the CSS of its frames.
+ * The frames are captured one after the other (the driver only runs one command at a time), and each frame's JSON
+ * is streamed into the output as it is, with the frames' DOM and CSS spliced in. The CSS of all of the frames is
+ * downloaded concurrently, within a time budget per capture.
+ */
 public class DomCapture {
 
+    // The time to wait for the CSS of all of the frames, from the start of the capture.
+    private static final int CSS_TIMEOUT_MS = 30 * 1000;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
     private static String CAPTURE_FRAME_SCRIPT;
 
     private static String CAPTURE_CSSOM_SCRIPT;
-    private final Phaser treePhaser = new Phaser(1); // Phaser for syncing all callbacks on a single Frame
-    private final Phaser mainPhaser = new Phaser(1); // Phaser for syncing all Frames
 
 
     static {
@@ -47,9 +61,9 @@ public class DomCapture {
     }
 
 
-    private static IServerConnector mServerConnector = null;
-    private WebDriver driver;
+    private final IServerConnector mServerConnector;
     private final Logger logger;
+    private WebDriver driver;
 
     public DomCapture(Eyes eyes) {
         mServerConnector = eyes.getServerConnector();
@@ -57,34 +71,54 @@ public class DomCapture {
     }
 
     public String getFullWindowDom(WebDriver driver, PositionProvider positionProvider) {
-        this.driver = driver;
-        Location initialPosition = positionProvider.getCurrentPosition();
-        positionProvider.setPosition(Location.ZERO);
-        Map dom = GetWindowDom();
-        positionProvider.setPosition(initialPosition);
+        StringWriter writer = new StringWriter();
         try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true);
-            String json = objectMapper.writeValueAsString(dom);
-            return json;
-        } catch (JsonProcessingException e) {
+            writeFullWindowDom(driver, positionProvider, writer);
+            return writer.toString();
+        } catch (Exception e) {
             GeneralUtils.logExceptionStackTrace(logger, e);
         }
         return "";
     }
 
-    public Map<String, Object> GetWindowDom() {
+    /**
+     * Captures the DOM of the window and writes its JSON.
+     * @param driver           The driver of the window.
+     * @param positionProvider The position provider of the window, which is scrolled to the top during the capture.
+     * @param out              The writer to write the JSON to.
+     * @throws IOException If writing failed.
+     */
+    public void writeFullWindowDom(WebDriver driver, PositionProvider positionProvider, Writer out)
+            throws IOException {
+        this.driver = driver;
+        long startTime = System.currentTimeMillis();
+        long deadline = startTime + CSS_TIMEOUT_MS;
 
-        Map argsObj = initMapDom();
+        Location initialPosition = positionProvider.getCurrentPosition();
+        positionProvider.setPosition(Location.ZERO);
+        CapturedDom capturedDom = new CapturedDom();
+        try {
+            URL baseUrl = new URL(driver.getCurrentUrl());
+            String frameJson = captureFrameJson();
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(capturedDom.json)) {
+                writeFrame(frameJson, baseUrl, generator, capturedDom);
+            }
+        } finally {
+            positionProvider.setPosition(initialPosition);
+        }
+        long framesTime = System.currentTimeMillis();
 
-        Map<String, Object> result = getFrameDom(argsObj);
+        int styleSheetCount = capturedDom.writeTo(out, deadline);
+        long endTime = System.currentTimeMillis();
 
-        return result;
+        logger.verbose(String.format("DOM capture timings - frames: %d ms (%d frames), CSS: %d ms (%d style sheets)" +
+                        ", total: %d ms", framesTime - startTime, capturedDom.frameCount, endTime - framesTime,
+                styleSheetCount, endTime - startTime));
     }
 
-    private Map initMapDom() {
+    private Map<String, Object> initMapDom() {
 
-        Map argsObj = new HashMap();
+        Map<String, Object> argsObj = new HashMap<>();
         argsObj.put("styleProps", new String[]{
                 "background-color",
                 "background-image",
@@ -112,217 +146,271 @@ public class DomCapture {
         return argsObj;
     }
 
-    private Map<String, Object> getFrameDom(Map<String, Object> argsObj) {
-        logger.verbose("Trying to get DOM from driver");
-        long startingTime = System.currentTimeMillis();
-        String executeScripString = (String) ((JavascriptExecutor) driver).executeScript(CAPTURE_FRAME_SCRIPT, argsObj);
-
-        logger.verbose("Finished capturing DOM in - " + (System.currentTimeMillis() - startingTime));
-        startingTime = System.currentTimeMillis();
-
-        final Map<String, Object> executeScriptMap;
-        try {
-            executeScriptMap = GeneralUtils.parseJsonToObject(executeScripString);
-
-        } catch (IOException e) {
-            GeneralUtils.logExceptionStackTrace(logger, e);
-            return null;
-
+    /**
+     * The JSON of the captured frames, and the CSS to splice into it.
+     */
+    private class CapturedDom {
+        private final StringWriter json = new StringWriter();
+        private final List<Integer> cssOffsets = new ArrayList<>();
+        private final List<FrameCss> frameCss = new ArrayList<>();
+        private int frameCount;
+
+        void addCss(int offset, FrameCss css) {
+            cssOffsets.add(offset);
+            frameCss.add(css);
         }
 
-        logger.verbose("Finished converting DOM map in - " + (System.currentTimeMillis() - startingTime));
-        startingTime = System.currentTimeMillis();
-
-        try {
-            traverseDomTree(driver, argsObj, executeScriptMap, -1, new URL(driver.getCurrentUrl()));
-        } catch (MalformedURLException e) {
-            GeneralUtils.logExceptionStackTrace(logger, e);
+        /**
+         * Writes the JSON, with the CSS of each frame. Waits for the CSS until the deadline.
+         * @return The number of style sheets written.
+         */
+        int writeTo(Writer out, long deadline) throws IOException {
+            StringBuffer buffer = json.getBuffer();
+            int styleSheetCount = 0;
+            int position = 0;
+            for (int i = 0; i < cssOffsets.size(); i++) {
+                int offset = cssOffsets.get(i);
+                out.append(buffer, position, offset);
+                position = offset;
+
+                FrameCss css = frameCss.get(i);
+                String cssString = css.get(deadline);
+                styleSheetCount += css.getStyleSheetCount();
+                out.write('"');
+                out.write(JsonStringEncoder.getInstance().quoteAsString(cssString));
+                out.write('"');
+            }
+            out.append(buffer, position, buffer.length());
+            out.flush();
+            return styleSheetCount;
         }
-
-        mainPhaser.arriveAndAwaitAdvance();
-
-        logger.verbose("Finished going over DOM CSS in - " + (System.currentTimeMillis() - startingTime));
-
-        return executeScriptMap;
     }
 
-    private Stack<Integer> frameIndices = new Stack<>();
-
-
-    private void traverseDomTree(WebDriver mDriver, Map<String, Object> argsObj, final Map<String, Object> domTree
-            , int frameIndex, URL baseUrl) {
-
-        logger.verbose("DomCapture.traverseDomTree  baseUrl - " + baseUrl);
-
-        Map<String, Object> dom = null;
-
-
-        Object tagNameObj = domTree.get("tagName");
-
-        boolean frameHasContent = true;
-
-        if (null == tagNameObj) return;
-
-        if (frameIndex > -1) {
-
-            //Try switching - if frame index is valid
-            try {
-                mDriver.switchTo().frame(frameIndex);
-
-                frameIndices.push(0);
+    private String captureFrameJson() {
+        long startTime = System.currentTimeMillis();
+        String json = (String) ((JavascriptExecutor) driver).executeScript(CAPTURE_FRAME_SCRIPT, initMapDom());
+        logger.verbose("Finished capturing frame DOM in - " + (System.currentTimeMillis() - startTime));
+        return json;
+    }
 
-            } catch (Exception e) {
-                GeneralUtils.logExceptionStackTrace(logger, e);
-                mDriver.switchTo().parentFrame();
+    /**
+     * Writes the captured JSON of the current frame.
+     */
+    private void writeFrame(String frameJson, URL baseUrl, JsonGenerator generator, CapturedDom capturedDom)
+            throws IOException {
+        capturedDom.frameCount++;
+        try (JsonParser parser = JSON_FACTORY.createParser(frameJson)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                generator.writeNull();
                 return;
             }
+            writeNode(parser, generator, baseUrl, new int[1], capturedDom);
+        }
+    }
 
-            String srcUrl = null;
-
-            Object childNodes = domTree.get("childNodes");
-            List childNodesAsMap = null;
-            if (childNodes != null) {
-                childNodesAsMap = (List) childNodes;
-            }
-
-            if (childNodesAsMap == null || childNodesAsMap.isEmpty()) {
-
-                String json = (String) ((JavascriptExecutor) mDriver).executeScript(CAPTURE_FRAME_SCRIPT, argsObj);
-
-                try {
-                    dom = GeneralUtils.parseJsonToObject(json);
-                } catch (IOException e) {
-                    GeneralUtils.logExceptionStackTrace(logger, e);
+    /**
+     * Copies a node (an object) from the parser, including its children.
+     * The capture script writes the tag name of a node before its other fields (in particular, its child nodes).
+     * @param frameIndex The index of the next frame in the current frame.
+     */
+    private void writeNode(JsonParser parser, JsonGenerator generator, URL baseUrl, int[] frameIndex,
+                           CapturedDom capturedDom) throws IOException {
+        generator.writeStartObject();
+        String tagName = null;
+        String src = null;
+        FrameCss css = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            boolean isFrame = "IFRAME".equalsIgnoreCase(tagName) || "FRAME".equalsIgnoreCase(tagName);
+            if (fieldName.equals("tagName")) {
+                parser.nextToken();
+                tagName = parser.getText();
+                generator.writeStringField(fieldName, tagName);
+                if ("HTML".equalsIgnoreCase(tagName)) {
+                    // The frame's CSS is downloaded while the rest of the frame is captured.
+                    css = captureFrameCss(baseUrl);
                 }
-
-                if (dom != null) {
-
-                    frameHasContent = false;
-
-                    domTree.put("childNodes", new Object[]{dom});
-
-                    Object attrsNodeObj = domTree.get("attributes");
-                    if (null != attrsNodeObj) {
-                        Map<String, Object> attrsNode = (Map<String, Object>) attrsNodeObj;
-
-                        Object srcUrlObj = attrsNode.get("src");
-                        if (null != srcUrlObj) {
-                            srcUrl = (String) srcUrlObj;
-                        }
-                    }
-
-                    if (srcUrl == null) {
-                        logger.log("WARNING! IFRAME WITH NO SRC");
-                    } else {
-                        try {
-                            URL urlHref = new URL(baseUrl, srcUrl);
-                            traverseDomTree(mDriver, argsObj, dom, -1, urlHref);
-
-                        } catch (MalformedURLException e) {
-                            GeneralUtils.logExceptionStackTrace(logger, e);
-                        }
-                    }
+            } else if (fieldName.equals("attributes") && isFrame) {
+                generator.writeFieldName(fieldName);
+                src = copyAttributes(parser, generator);
+            } else if (fieldName.equals("childNodes")) {
+                generator.writeFieldName(fieldName);
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    generator.copyCurrentStructure(parser);
+                } else if (isFrame) {
+                    writeFrameChildNodes(parser, generator, baseUrl, src, frameIndex[0]++, capturedDom);
+                } else {
+                    writeChildNodes(parser, parser.nextToken(), generator, baseUrl, frameIndex, capturedDom);
                 }
+            } else {
+                generator.copyCurrentStructure(parser);
             }
-            frameIndices.pop();
-            mDriver.switchTo().parentFrame();
         }
 
-        if (frameHasContent) {
-            String tagName = (String) tagNameObj;
-            boolean isHTML = tagName.equalsIgnoreCase("HTML");
+        if (css != null) {
+            // The CSS is written once it is downloaded.
+            generator.writeFieldName("css");
+            generator.writeRawValue("");
+            generator.flush();
+            capturedDom.addCss(capturedDom.json.getBuffer().length(), css);
+        }
+        generator.writeEndObject();
+    }
 
-            if (isHTML) {
-                mainPhaser.register();
-                getFrameBundledCss(baseUrl, new IDownloadListener<String>() {
-                    @Override
-                    public void onDownloadComplete(String downloadedString, String contentType) {
-                        domTree.put("css", downloadedString);
-                        logger.verbose("Putting css in " + " - CSS = " + downloadedString);
-                        mainPhaser.arriveAndDeregister();
-                    }
+    /**
+     * Copies the child nodes array, whose first token was read.
+     */
+    private void writeChildNodes(JsonParser parser, JsonToken token, JsonGenerator generator, URL baseUrl,
+                                 int[] frameIndex, CapturedDom capturedDom) throws IOException {
+        generator.writeStartArray();
+        while (token != null && token != JsonToken.END_ARRAY) {
+            if (token == JsonToken.START_OBJECT) {
+                writeNode(parser, generator, baseUrl, frameIndex, capturedDom);
+            } else {
+                generator.copyCurrentStructure(parser);
+            }
+            token = parser.nextToken();
+        }
+        generator.writeEndArray();
+    }
 
-                    @Override
-                    public void onDownloadFailed() {
-                        logger.verbose("mainPhaser.arriveAndDeregister()");
-                        mainPhaser.arriveAndDeregister();
+    /**
+     * Writes the child nodes of a frame element. Frames whose content couldn't be captured with their parent (e.g.,
+     * cross origin frames) are captured from within the frame.
+     */
+    private void writeFrameChildNodes(JsonParser parser, JsonGenerator generator, URL baseUrl, String src,
+                                      int index, CapturedDom capturedDom) throws IOException {
+        try {
+            driver.switchTo().frame(index);
+        } catch (Exception e) {
+            GeneralUtils.logExceptionStackTrace(logger, e);
+            writeChildNodes(parser, parser.nextToken(), generator, baseUrl, new int[1], capturedDom);
+            return;
+        }
 
-                    }
-                });
-                logger.verbose("Finish getFrameBundledCss(baseUrl)");
+        try {
+            URL frameUrl = baseUrl;
+            if (src == null) {
+                logger.log("WARNING! IFRAME WITH NO SRC");
+            } else {
+                try {
+                    frameUrl = new URL(baseUrl, src);
+                } catch (MalformedURLException e) {
+                    GeneralUtils.logExceptionStackTrace(logger, e);
+                }
             }
 
-            loop(mDriver, argsObj, domTree, baseUrl);
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.END_ARRAY) {
+                String frameJson = captureFrameJson();
+                generator.writeStartArray();
+                if (frameJson != null) {
+                    writeFrame(frameJson, frameUrl, generator, capturedDom);
+                }
+                generator.writeEndArray();
+            } else {
+                // The content was captured with the parent, but its frames and CSS are captured from within it.
+                capturedDom.frameCount++;
+                writeChildNodes(parser, token, generator, frameUrl, new int[1], capturedDom);
+            }
+        } finally {
+            driver.switchTo().parentFrame();
         }
-
     }
 
-    private void loop(WebDriver mDriver, Map<String, Object> argsObj, Map<String, Object> domTree, URL baseUrl) {
-        logger.verbose("DomCapture.loop");
-        Object childNodesObj = domTree.get("childNodes");
-        int index = -1;
-        if (frameIndices.size() > 0) {
-            index = frameIndices.peek();
+    /**
+     * Copies the attributes object.
+     * @return The src attribute, or {@code null}.
+     */
+    private String copyAttributes(JsonParser parser, JsonGenerator generator) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            generator.copyCurrentStructure(parser);
+            return null;
         }
-        if (!(childNodesObj instanceof List)) {
-            return;
+        String src = null;
+        generator.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if (name.equals("src") && parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+                src = parser.getText();
+            }
+            generator.writeFieldName(name);
+            generator.copyCurrentStructure(parser);
         }
-        List childNodes = (List) childNodesObj;
-        for (Object node : childNodes) {
-            if (node instanceof Map) {
-                final Map<String, Object> domSubTree = (Map<String, Object>) node;
-
-                logger.verbose("Current DOM subtree hash : " + domSubTree.hashCode());
+        generator.writeEndObject();
+        return src;
+    }
 
-                Object tagNameObj = domSubTree.get("tagName");
+    /**
+     * The CSS of a frame, downloaded in the background.
+     */
+    private class FrameCss {
+        private final Phaser phaser = new Phaser(1); // The frame itself, and each pending download.
+        private final CssTreeNode root = new CssTreeNode(phaser);
+        private int styleSheetCount;
 
-                String tagName = (String) tagNameObj;
-                boolean isIframe = tagName.equalsIgnoreCase("IFRAME");
+        int getStyleSheetCount() {
+            return styleSheetCount;
+        }
 
-                if (isIframe) {
-                    if (frameIndices.size() > 0) {
-                        frameIndices.pop();
-                    } else {
-                        logger.verbose("frameIndices size is 0");
-                    }
-                    frameIndices.push(index + 1);
-                    traverseDomTree(mDriver, argsObj, domSubTree, index, baseUrl);
-                    index++;
-                } else {
-                    Object childSubNodesObj = domSubTree.get("childNodes");
-                    if (childSubNodesObj == null || (childSubNodesObj instanceof List) && ((List) childSubNodesObj).isEmpty()) {
-                        continue;
-                    }
-                    traverseDomTree(mDriver, argsObj, domSubTree, -1, baseUrl);
-                }
+        /**
+         * @param deadline The time to stop waiting for the downloads.
+         * @return The CSS of the frame, or an empty string if it wasn't downloaded by the deadline.
+         */
+        String get(long deadline) {
+            int phase = phaser.arrive();
+            try {
+                phaser.awaitAdvanceInterruptibly(phase, Math.max(0, deadline - System.currentTimeMillis()),
+                        TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "";
+            } catch (TimeoutException e) {
+                logger.log(String.format("WARNING! CSS of %s wasn't downloaded in time (%d missing)", root.baseUrl,
+                        phaser.getUnarrivedParties()));
+                return "";
             }
+            return root.calcCss();
         }
-        logger.verbose("DomCapture.loop - finish");
     }
 
+    private FrameCss captureFrameCss(URL baseUrl) {
+        logger.verbose("DomCapture.captureFrameCss  baseUrl - " + baseUrl);
+        FrameCss css = new FrameCss();
+        css.root.setBaseUrl(baseUrl);
+        try {
+            getFrameBundledCss(css);
+        } catch (Exception e) {
+            GeneralUtils.logExceptionStackTrace(logger, e);
+        }
+        return css;
+    }
 
-    private void getFrameBundledCss(final URL baseUrl, IDownloadListener listener) {
-        String baseUrlStr = baseUrl.toString();
+    private void getFrameBundledCss(FrameCss css) {
+        CssTreeNode root = css.root;
+        String baseUrlStr = root.baseUrl.toString();
         URI uri = URI.create(baseUrlStr);
         if (!uri.isAbsolute()) {
             logger.log("WARNING! Base URL is not an absolute URL!");
             logger.log("uri: " + uri);
         }
-        CssTreeNode root = new CssTreeNode();
-        root.setBaseUrl(baseUrl);
 
+        @SuppressWarnings("unchecked")
         List<String> result = (List<String>) ((JavascriptExecutor) driver).executeScript(CAPTURE_CSSOM_SCRIPT);
+        css.styleSheetCount = result.size();
+        // The style sheets are kept in the document's order.
         final List<CssTreeNode> nodes = new ArrayList<>();
         for (String item : result) {
             String kind = item.substring(0, 5);
             //Value can be either css style or link to a css file
             String value = item.substring(5);
+            final CssTreeNode cssTreeNode = new CssTreeNode(css.phaser);
+            cssTreeNode.setBaseUrl(root.baseUrl);
             if (kind.equalsIgnoreCase("text:")) {
-                parseCSS(root, value);
-                root.downloadNodeCss();
+                parseCSS(cssTreeNode, value);
+                cssTreeNode.downloadNodeCss();
             } else {
-                final CssTreeNode cssTreeNode = new CssTreeNode();
-                cssTreeNode.setBaseUrl(root.baseUrl);
                 cssTreeNode.setUrlPostfix(value);
                 downloadCss(cssTreeNode, new IDownloadListener<String>() {
                     @Override
@@ -342,16 +430,16 @@ public class DomCapture {
                         logger.verbose("DomCapture.onDownloadFailed");
                     }
                 });
-                nodes.add(cssTreeNode);
             }
+            nodes.add(cssTreeNode);
         }
         root.setDecedents(nodes);
-        treePhaser.arriveAndAwaitAdvance();
-        listener.onDownloadComplete(root.calcCss(), "String");
     }
 
     class CssTreeNode {
 
+        final Phaser phaser;
+
         URL baseUrl;
 
         URL urlPostfix;
@@ -361,6 +449,10 @@ public class DomCapture {
         ICommonsList<CSSImportRule> allImportRules;
         ICommonsList<CSSStyleRule> styleRules;
 
+        CssTreeNode(Phaser phaser) {
+            this.phaser = phaser;
+        }
+
         public void setDecedents(List<CssTreeNode> decedents) {
             this.decedents = decedents;
         }
@@ -391,7 +483,7 @@ public class DomCapture {
 
                 for (CSSImportRule importRule : allImportRules) {
                     final CssTreeNode cssTreeNode;
-                    cssTreeNode = new CssTreeNode();
+                    cssTreeNode = new CssTreeNode(phaser);
                     cssTreeNode.setBaseUrl(this.baseUrl);
                     String uri = importRule.getLocation().getURI();
                     cssTreeNode.setUrlPostfix(uri);
@@ -440,7 +532,10 @@ public class DomCapture {
     }
 
     private void downloadCss(final CssTreeNode node, final IDownloadListener<String> listener) {
-        treePhaser.register();
+        if (node.urlPostfix == null) {
+            return;
+        }
+        node.phaser.register();
         logger.verbose("Given URL to download: " + node.urlPostfix);
         mServerConnector.downloadString(node.urlPostfix, false, new IDownloadListener<String>() {
             @Override
@@ -452,18 +547,18 @@ public class DomCapture {
                 } catch (Exception e) {
                     GeneralUtils.logExceptionStackTrace(logger, e);
                 } finally {
-                    treePhaser.arriveAndDeregister();
-                    logger.verbose("treePhaser.arriveAndDeregister(); " + node.urlPostfix);
-                    logger.verbose("current missing - " + treePhaser.getUnarrivedParties());
+                    node.phaser.arriveAndDeregister();
+                    logger.verbose("phaser.arriveAndDeregister(); " + node.urlPostfix);
+                    logger.verbose("current missing - " + node.phaser.getUnarrivedParties());
                 }
             }
 
             @Override
             public void onDownloadFailed() {
-                treePhaser.arriveAndDeregister();
+                node.phaser.arriveAndDeregister();
                 logger.verbose("Download Failed");
-                logger.verbose("treePhaser.arriveAndDeregister(); " + node.urlPostfix);
-                logger.verbose("current missing  - " + treePhaser.getUnarrivedParties());
+                logger.verbose("phaser.arriveAndDeregister(); " + node.urlPostfix);
+                logger.verbose("current missing  - " + node.phaser.getUnarrivedParties());
             }
         });
     }
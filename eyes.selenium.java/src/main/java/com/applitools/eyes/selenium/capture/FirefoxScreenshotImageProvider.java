@@ -10,7 +10,7 @@ import com.applitools.eyes.selenium.frames.Frame;
 import com.applitools.eyes.selenium.frames.FrameChain;
 import com.applitools.eyes.selenium.wrappers.EyesTargetLocator;
 import com.applitools.eyes.selenium.wrappers.EyesWebDriver;
-import com.applitools.utils.ImageUtils;
+import com.applitools.utils.ImageDecoder;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
 
@@ -27,6 +27,7 @@ public class FirefoxScreenshotImageProvider implements ImageProvider {
     private final Eyes eyes;
     private final Logger logger;
     private final TakesScreenshot tsInstance;
+    private final ImageDecoder imageDecoder = new ImageDecoder();
 
     public FirefoxScreenshotImageProvider(Eyes eyes, Logger logger, TakesScreenshot tsInstance) {
         this.eyes = eyes;
@@ -42,11 +43,11 @@ public class FirefoxScreenshotImageProvider implements ImageProvider {
         logger.verbose("Switching temporarily to default content.");
         eyesWebDriver.switchTo().defaultContent();
 
-        logger.verbose("Getting screenshot as base64.");
-        String screenshot64 = tsInstance.getScreenshotAs(OutputType.BASE64);
-        logger.verbose("Done getting base64! Creating BufferedImage...");
+        logger.verbose("Getting screenshot as bytes.");
+        byte[] screenshotBytes = tsInstance.getScreenshotAs(OutputType.BYTES);
+        logger.verbose("Done getting bytes! Creating BufferedImage...");
 
-        BufferedImage image = ImageUtils.imageFromBase64(screenshot64);
+        BufferedImage image = imageDecoder.decode(screenshotBytes);
         eyes.getDebugScreenshotsProvider().save(image, "FIREFOX");
 
         logger.verbose("Done. Switching back to original frame.");
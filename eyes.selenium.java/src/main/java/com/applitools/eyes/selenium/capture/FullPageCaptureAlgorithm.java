@@ -1,6 +1,7 @@
 package com.applitools.eyes.selenium.capture;
 
 import com.applitools.eyes.*;
+import com.applitools.eyes.capture.EncodedImageProvider;
 import com.applitools.eyes.capture.EyesScreenshotFactory;
 import com.applitools.eyes.capture.ImageProvider;
 import com.applitools.eyes.debug.DebugScreenshotsProvider;
@@ -12,13 +13,36 @@ import com.applitools.eyes.selenium.positioning.NullRegionPositionCompensation;
 import com.applitools.eyes.selenium.positioning.RegionPositionCompensation;
 import com.applitools.utils.ArgumentGuard;
 import com.applitools.utils.GeneralUtils;
+import com.applitools.utils.ImageDecoder;
 import com.applitools.utils.ImageUtils;
+import com.applitools.utils.MappedImageBuffer;
 
 import java.awt.image.BufferedImage;
-import java.awt.image.Raster;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FullPageCaptureAlgorithm {
     private static final int MIN_SCREENSHOT_PART_HEIGHT = 10;
+    /**
+     * Stitched images larger than this (bytes) are stitched off the heap. See {@link MappedImageBuffer}.
+     */
+    public static final long DEFAULT_TILED_STITCHING_THRESHOLD = 64L * 1024 * 1024; // 64MB
+
+    private static final int STITCHING_THREADS = Runtime.getRuntime().availableProcessors();
+    // Captured parts waiting to be (or being) stitched. One more than the threads, so a part is always ready.
+    private static final int MAX_PENDING_PARTS = STITCHING_THREADS + 1;
+    // Image decoders aren't thread safe, so each stitching thread keeps its own.
+    private static final ThreadLocal<ImageDecoder> DECODERS = new ThreadLocal<ImageDecoder>() {
+        @Override
+        protected ImageDecoder initialValue() {
+            return new ImageDecoder();
+        }
+    };
+    // The stitching threads are shared by all captures. Parts only wait for parts added before them, which are queued
+    // before them, so captures can't deadlock each other.
+    private static volatile ExecutorService stitchingExecutor;
 
     private final Logger logger;
     private final RegionPositionCompensation regionPositionCompensation;
@@ -30,6 +54,7 @@ public class FullPageCaptureAlgorithm {
     private final CutProvider cutProvider;
     private final int stitchingOverlap;
     private final ImageProvider imageProvider;
+    private long tiledStitchingThreshold = DEFAULT_TILED_STITCHING_THRESHOLD;
 
     public FullPageCaptureAlgorithm(Logger logger, RegionPositionCompensation regionPositionCompensation,
                                     int waitBeforeScreenshots, DebugScreenshotsProvider debugScreenshotsProvider,
@@ -55,6 +80,19 @@ public class FullPageCaptureAlgorithm {
                         : new NullRegionPositionCompensation();
     }
 
+    /**
+     * @param tiledStitchingThreshold The size (bytes) above which stitched images are stitched off the heap, so only
+     *                                the final image is allocated on the heap. {@code 0} to always stitch off the heap.
+     */
+    public void setTiledStitchingThreshold(long tiledStitchingThreshold) {
+        ArgumentGuard.greaterThanOrEqualToZero(tiledStitchingThreshold, "tiledStitchingThreshold");
+        this.tiledStitchingThreshold = tiledStitchingThreshold;
+    }
+
+    public long getTiledStitchingThreshold() {
+        return tiledStitchingThreshold;
+    }
+
     private void saveDebugScreenshotPart(BufferedImage image, Region region, String name) {
 
         String suffix = String.format("part-%s-%d_%d_%dx%d",
@@ -152,102 +190,282 @@ public class FullPageCaptureAlgorithm {
         // take screenshot for each one).
         Iterable<Region> imageParts = fullArea.getSubRegions(partImageSize);
 
-        logger.verbose("Creating stitchedImage container.");
-        //Notice stitchedImage uses the same type of image as the screenshots.
-        BufferedImage stitchedImage = new BufferedImage(
-                fullArea.getWidth(), fullArea.getHeight(), image.getType());
-
-        logger.verbose("Done! Adding initial screenshot..");
-        // Starting with the screenshot we already captured at (0,0).
-        Raster initialPart = image.getData();
-        logger.verbose(String.format("Initial part:(0,0)[%d x %d]",
-                initialPart.getWidth(), initialPart.getHeight()));
-        stitchedImage.getRaster().setRect(0, 0, initialPart);
-        logger.verbose("Done!");
-
-        lastSuccessfulLocation = new Location(0, 0);
-        lastSuccessfulPartSize = new RectangleSize(initialPart.getWidth(), initialPart.getHeight());
-
-        // Take screenshot and stitch for each screenshot part.
-        logger.verbose("Getting the rest of the image parts...");
-        BufferedImage partImage = null;
-        for (Region partRegion : imageParts) {
-            // Skipping screenshot for 0,0 (already taken)
-//            if (partRegion.getLeft() == 0 && partRegion.getTop() == 0) {
-//                continue;
-//            }
-            logger.verbose(String.format("Taking screenshot for %s", partRegion));
-
-            // Scroll to the part's top/left
-            Location originPosition = positionProvider.setPosition(partRegion.getLocation());
-            Location targetPosition = originPosition.offset(-fullArea.getLeft(), -fullArea.getTop());
-            logger.verbose(String.format("Origin Position is set to %s", originPosition));
-            logger.verbose(String.format("Target Position is %s", targetPosition));
-
-            // Actually taking the screenshot.
-            logger.verbose("Getting image...");
-            partImage = imageProvider.getImage();
-            debugScreenshotsProvider.save(partImage,
-                    "original-scrolled-" + positionProvider.getCurrentPosition().toStringForFilename());
+        // Very large images are stitched into a buffer off the heap, and only the final (trimmed) image is copied to
+        // the heap, since the screenshot, the encoder and the compressor all take an image. Otherwise, the parts are
+        // stitched into an image the size of the entire area.
+        long stitchedImageBytes = (long) fullArea.getWidth() * fullArea.getHeight() * 4;
+        BufferedImage stitchedImage = null;
+        MappedImageBuffer stitchedBuffer = null;
+        if (stitchedImageBytes > tiledStitchingThreshold) {
+            logger.verbose("Creating off-heap stitchedImage buffer (" + stitchedImageBytes + " bytes).");
+            stitchedBuffer = new MappedImageBuffer(fullArea.getWidth(), fullArea.getHeight());
+        } else {
+            logger.verbose("Creating stitchedImage container.");
+            //Notice stitchedImage uses the same type of image as the screenshots.
+            stitchedImage = new BufferedImage(
+                    fullArea.getWidth(), fullArea.getHeight(), image.getType());
+        }
+
+        PartsStitcher partsStitcher = null;
+        try {
+            logger.verbose("Done! Adding initial screenshot..");
+            // Starting with the screenshot we already captured at (0,0).
+            logger.verbose(String.format("Initial part:(0,0)[%d x %d]",
+                    image.getWidth(), image.getHeight()));
+            stitchPart(stitchedImage, stitchedBuffer, image, 0, 0);
+            logger.verbose("Done!");
+
+            lastSuccessfulLocation = new Location(0, 0);
+            lastSuccessfulPartSize = new RectangleSize(image.getWidth(), image.getHeight());
+            // Not needed anymore, and as large as a part.
+            image = null;
+
+            // Take screenshot for each screenshot part. Only scrolling and capturing is done here, while the parts
+            // are decoded, cut, cropped, scaled and stitched by the stitching threads.
+            logger.verbose("Getting the rest of the image parts...");
+            partsStitcher = new PartsStitcher(stitchedImage, stitchedBuffer, scaledCutProvider, regionInScreenshot,
+                    pixelRatio);
+            for (Region partRegion : imageParts) {
+                // Skipping screenshot for 0,0 (already taken)
+//                if (partRegion.getLeft() == 0 && partRegion.getTop() == 0) {
+//                    continue;
+//                }
+                logger.verbose(String.format("Taking screenshot for %s", partRegion));
+
+                // Scroll to the part's top/left
+                Location originPosition = positionProvider.setPosition(partRegion.getLocation());
+                Location targetPosition = originPosition.offset(-fullArea.getLeft(), -fullArea.getTop());
+                logger.verbose(String.format("Origin Position is set to %s", originPosition));
+                logger.verbose(String.format("Target Position is %s", targetPosition));
+                String positionName = positionProvider.getCurrentPosition().toStringForFilename();
+
+                // Actually taking the screenshot.
+                logger.verbose("Getting image...");
+                if (imageProvider instanceof EncodedImageProvider) {
+                    byte[] partBytes = ((EncodedImageProvider) imageProvider).getEncodedImage();
+                    partsStitcher.add(partBytes, null, partRegion, targetPosition, positionName);
+                } else {
+                    partsStitcher.add(null, imageProvider.getImage(), partRegion, targetPosition, positionName);
+                }
+
+                lastSuccessfulLocation = originPosition;
+            }
+
+            RectangleSize lastPartSize = partsStitcher.join();
+            if (lastPartSize != null) {
+                lastSuccessfulPartSize = lastPartSize;
+            }
+
+            logger.verbose("Stitching done!");
+            positionProvider.restoreState(originalStitchedState);
+            originProvider.restoreState(originalPosition);
+
+            // If the actual image size is smaller than the extracted size, we crop the image.
+            int actualImageWidth = lastSuccessfulLocation.getX() + lastSuccessfulPartSize.getWidth();
+            int actualImageHeight = lastSuccessfulLocation.getY() + lastSuccessfulPartSize.getHeight();
+            logger.verbose("Extracted entire size: " + fullArea.getSize());
+            logger.verbose("Actual stitched size: " + actualImageWidth + "x" + actualImageHeight);
+
+            Region trimmedRegion = new Region(0, 0,
+                    Math.min(actualImageWidth, fullArea.getWidth()),
+                    Math.min(actualImageHeight, fullArea.getHeight()));
+            if (stitchedBuffer != null) {
+                logger.verbose("Copying the stitched image to the heap...");
+                stitchedImage = stitchedBuffer.toImage(trimmedRegion);
+                logger.verbose("Done!");
+            } else {
+                debugScreenshotsProvider.save(stitchedImage, "_stitched_before_trim");
+
+                if (actualImageWidth < stitchedImage.getWidth() || actualImageHeight < stitchedImage.getHeight()) {
+                    logger.verbose("Trimming unnecessary margins...");
+                    stitchedImage = ImageUtils.getImagePart(stitchedImage, trimmedRegion);
+                    logger.verbose("Done!");
+                }
+            }
+        } finally {
+            if (partsStitcher != null) {
+                // Makes sure no part is still being stitched (e.g., when capturing failed).
+                partsStitcher.abort();
+            }
+            if (stitchedBuffer != null) {
+                stitchedBuffer.close();
+            }
+        }
+
+        debugScreenshotsProvider.save(stitchedImage, "stitched");
+        return stitchedImage;
+    }
+
+    /**
+     * Copies a part into the stitched image, or into the off-heap buffer if there is one.
+     */
+    private void stitchPart(BufferedImage stitchedImage, MappedImageBuffer stitchedBuffer, BufferedImage partImage, int x, int y) {
+        if (stitchedBuffer != null) {
+            stitchedBuffer.drawImage(partImage, x, y);
+        } else {
+            // The part's own raster, rather than "getData" which copies it.
+            stitchedImage.getRaster().setRect(x, y, partImage.getRaster());
+        }
+    }
+
+    /**
+     * Processes (decodes, cuts, crops and scales) and stitches the screenshot parts on the stitching threads, while
+     * the next parts are captured. Parts are processed concurrently but stitched in the order they were added, so
+     * overlapping parts are stitched the same as when stitched one after the other.
+     */
+    private class PartsStitcher {
+        private final BufferedImage stitchedImage;
+        private final MappedImageBuffer stitchedBuffer;
+        private final CutProvider scaledCutProvider;
+        private final Region regionInScreenshot;
+        private final double pixelRatio;
+        private final ExecutorService executor = getStitchingExecutor();
+        // The parts which were added but not joined yet, in the order they were added.
+        private final Deque<Future<RectangleSize>> pendingParts = new ArrayDeque<>();
+        private volatile boolean aborted;
+        private Future<RectangleSize> lastPart;
+        private RectangleSize lastPartSize;
+
+        PartsStitcher(BufferedImage stitchedImage, MappedImageBuffer stitchedBuffer, CutProvider scaledCutProvider,
+                      Region regionInScreenshot, double pixelRatio) {
+            this.stitchedImage = stitchedImage;
+            this.stitchedBuffer = stitchedBuffer;
+            this.scaledCutProvider = scaledCutProvider;
+            this.regionInScreenshot = regionInScreenshot;
+            this.pixelRatio = pixelRatio;
+        }
+
+        /**
+         * Adds a part to be stitched. Blocks while too many parts are pending, so only a few captured parts are held in
+         * memory at a time.
+         * @param partBytes      The encoded part, or {@code null} if {@code partImage} is given.
+         * @param partImage      The part, if it was not given encoded.
+         * @param partRegion     The region of the part.
+         * @param targetPosition The position of the part in the stitched image.
+         * @param positionName   The scroll position of the part, for naming debug screenshots.
+         */
+        void add(final byte[] partBytes, final BufferedImage partImage, final Region partRegion,
+                 final Location targetPosition, final String positionName) {
+            final Future<RectangleSize> previousPart = lastPart;
+            lastPart = executor.submit(new Callable<RectangleSize>() {
+                @Override
+                public RectangleSize call() throws Exception {
+                    if (aborted) {
+                        throw new CancellationException();
+                    }
+                    BufferedImage image = partImage != null ? partImage : DECODERS.get().decode(partBytes);
+                    image = processPart(image, partRegion, positionName);
+
+                    // Parts are stitched in order, since consecutive parts might overlap.
+                    if (previousPart != null) {
+                        previousPart.get();
+                    }
+                    if (aborted) {
+                        throw new CancellationException();
+                    }
+                    logger.verbose("Stitching part into the image container...");
+                    stitchPart(stitchedImage, stitchedBuffer, image, targetPosition.getX(), targetPosition.getY());
+                    logger.verbose("Done!");
+                    return new RectangleSize(image.getWidth(), image.getHeight());
+                }
+            });
+            pendingParts.add(lastPart);
+            while (pendingParts.size() > MAX_PENDING_PARTS) {
+                joinPart(pendingParts.poll());
+            }
+        }
+
+        /**
+         * Waits for all the added parts to be stitched.
+         * @return The size of the last part stitched, or {@code null} if no part was added.
+         */
+        RectangleSize join() {
+            while (!pendingParts.isEmpty()) {
+                joinPart(pendingParts.poll());
+            }
+            return lastPartSize;
+        }
+
+        /**
+         * Stops stitching the parts which weren't stitched yet, and waits for the ones being stitched.
+         */
+        void abort() {
+            aborted = true;
+            while (!pendingParts.isEmpty()) {
+                try {
+                    pendingParts.poll().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException | CancellationException ignored) {
+                }
+            }
+        }
+
+        private void joinPart(Future<RectangleSize> part) {
+            try {
+                lastPartSize = part.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EyesException("Interrupted while stitching screenshot parts!", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new EyesException("Failed to stitch screenshot part!", cause);
+            }
+        }
+
+        private BufferedImage processPart(BufferedImage partImage, Region partRegion, String positionName) {
+            debugScreenshotsProvider.save(partImage, "original-scrolled-" + positionName);
 
             // FIXME - cropping should be overlaid (see previous comment re cropping)
             if (!(scaledCutProvider instanceof NullCutProvider)) {
                 logger.verbose("cutting...");
                 partImage = scaledCutProvider.cut(partImage);
-                debugScreenshotsProvider.save(partImage,
-                        "original-scrolled-cut-" + positionProvider.getCurrentPosition().toStringForFilename());
+                debugScreenshotsProvider.save(partImage, "original-scrolled-cut-" + positionName);
             }
 
             if (!regionInScreenshot.isSizeEmpty()) {
                 logger.verbose("cropping...");
                 partImage = ImageUtils.getImagePart(partImage, regionInScreenshot);
-                saveDebugScreenshotPart(partImage, partRegion, "original-scrolled-"
-                        + positionProvider.getCurrentPosition().toStringForFilename());
+                saveDebugScreenshotPart(partImage, partRegion, "original-scrolled-" + positionName);
             }
 
             if (pixelRatio != 1.0) {
                 logger.verbose("scaling...");
                 // FIXME - scaling should be refactored
                 partImage = ImageUtils.scaleImage(partImage, 1.0 / pixelRatio);
-                saveDebugScreenshotPart(partImage, partRegion,
-                        "original-scrolled-" + positionProvider.getCurrentPosition().toStringForFilename() + "-scaled-");
+                saveDebugScreenshotPart(partImage, partRegion, "original-scrolled-" + positionName + "-scaled-");
             }
-
-            // Stitching the current part.
-            logger.verbose("Stitching part into the image container...");
-            stitchedImage.getRaster().setRect(targetPosition.getX(), targetPosition.getY(), partImage.getData());
-            logger.verbose("Done!");
-
-            lastSuccessfulLocation = originPosition;
+            return partImage;
         }
+    }
 
-        if (partImage != null) {
-            lastSuccessfulPartSize = new RectangleSize(partImage.getWidth(), partImage.getHeight());
-        }
-
-        logger.verbose("Stitching done!");
-        positionProvider.restoreState(originalStitchedState);
-        originProvider.restoreState(originalPosition);
-
-        // If the actual image size is smaller than the extracted size, we crop the image.
-        int actualImageWidth = lastSuccessfulLocation.getX() + lastSuccessfulPartSize.getWidth();
-        int actualImageHeight = lastSuccessfulLocation.getY() + lastSuccessfulPartSize.getHeight();
-        logger.verbose("Extracted entire size: " + fullArea.getSize());
-        logger.verbose("Actual stitched size: " + actualImageWidth + "x" + actualImageHeight);
-
-        debugScreenshotsProvider.save(stitchedImage,"_stitched_before_trim");
-
-        if (actualImageWidth < stitchedImage.getWidth() || actualImageHeight < stitchedImage.getHeight()) {
-            logger.verbose("Trimming unnecessary margins...");
-            stitchedImage = ImageUtils.getImagePart(stitchedImage,
-                    new Region(0, 0,
-                            Math.min(actualImageWidth, stitchedImage.getWidth()),
-                            Math.min(actualImageHeight, stitchedImage.getHeight())));
-            logger.verbose("Done!");
+    private static ExecutorService getStitchingExecutor() {
+        if (stitchingExecutor == null) {
+            synchronized (FullPageCaptureAlgorithm.class) {
+                if (stitchingExecutor == null) {
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(STITCHING_THREADS, STITCHING_THREADS, 60,
+                            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger threadNumber = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "eyes-stitching-" + threadNumber.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    pool.allowCoreThreadTimeOut(true);
+                    stitchingExecutor = pool;
+                }
+            }
         }
-
-        debugScreenshotsProvider.save(stitchedImage, "stitched");
-        return stitchedImage;
+        return stitchingExecutor;
     }
 
     private Region getRegionInScreenshot(Region region, BufferedImage image, double pixelRatio) {
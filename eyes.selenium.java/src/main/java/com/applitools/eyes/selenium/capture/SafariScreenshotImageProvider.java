@@ -8,8 +8,8 @@ import com.applitools.eyes.selenium.SeleniumJavaScriptExecutor;
 import com.applitools.eyes.selenium.frames.FrameChain;
 import com.applitools.eyes.selenium.positioning.ScrollPositionProvider;
 import com.applitools.eyes.selenium.wrappers.EyesWebDriver;
+import com.applitools.utils.ImageDecoder;
 import com.applitools.utils.ImageUtils;
-import org.openqa.selenium.By;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.Rectangle;
 import org.openqa.selenium.TakesScreenshot;
@@ -25,6 +25,7 @@ public class SafariScreenshotImageProvider implements ImageProvider {
     private final TakesScreenshot tsInstance;
     private final IEyesJsExecutor jsExecutor;
     private final UserAgent userAgent;
+    private final ImageDecoder imageDecoder = new ImageDecoder();
 
     private static Map<DeviceData, Region> devicesRegions = null;
 
@@ -38,10 +39,10 @@ public class SafariScreenshotImageProvider implements ImageProvider {
 
     @Override
     public BufferedImage getImage() {
-        logger.verbose("Getting screenshot as base64...");
-        String screenshot64 = tsInstance.getScreenshotAs(OutputType.BASE64);
-        logger.verbose("Done getting base64! Creating BufferedImage...");
-        BufferedImage image = ImageUtils.imageFromBase64(screenshot64);
+        logger.verbose("Getting screenshot as bytes...");
+        byte[] screenshotBytes = tsInstance.getScreenshotAs(OutputType.BYTES);
+        logger.verbose("Done getting bytes! Creating BufferedImage...");
+        BufferedImage image = imageDecoder.decode(screenshotBytes);
 
         eyes.getDebugScreenshotsProvider().save(image, "SAFARI");
 
@@ -80,10 +81,11 @@ public class SafariScreenshotImageProvider implements ImageProvider {
         } else if (!eyes.getForceFullPageScreenshot()) {
 
             Location loc;
-            FrameChain currentFrameChain = ((EyesWebDriver) eyes.getDriver()).getFrameChain();
+            EyesWebDriver eyesDriver = (EyesWebDriver) eyes.getDriver();
+            FrameChain currentFrameChain = eyesDriver.getFrameChain();
 
             if (currentFrameChain.size() == 0) {
-                PositionProvider positionProvider = new ScrollPositionProvider(logger, jsExecutor, eyes.getDriver().findElement(By.tagName("html")));
+                PositionProvider positionProvider = new ScrollPositionProvider(logger, jsExecutor, eyesDriver.getHtmlElement());
                 loc = positionProvider.getCurrentPosition();
             } else {
                 loc = currentFrameChain.getDefaultContentScrollPosition();
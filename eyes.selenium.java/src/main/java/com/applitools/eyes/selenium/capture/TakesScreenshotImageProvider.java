@@ -1,8 +1,8 @@
 package com.applitools.eyes.selenium.capture;
 
-import com.applitools.eyes.capture.ImageProvider;
+import com.applitools.eyes.capture.EncodedImageProvider;
 import com.applitools.eyes.Logger;
-import com.applitools.utils.ImageUtils;
+import com.applitools.utils.ImageDecoder;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
 
@@ -11,10 +11,11 @@ import java.awt.image.BufferedImage;
 /**
  * An image provider based on WebDriver's {@link TakesScreenshot} interface.
  */
-public class TakesScreenshotImageProvider implements ImageProvider {
+public class TakesScreenshotImageProvider implements EncodedImageProvider {
 
     private final Logger logger;
     private final TakesScreenshot tsInstance;
+    private final ImageDecoder imageDecoder = new ImageDecoder();
 
     public TakesScreenshotImageProvider(Logger logger, TakesScreenshot tsInstance) {
         this.logger = logger;
@@ -23,9 +24,14 @@ public class TakesScreenshotImageProvider implements ImageProvider {
 
     @Override
     public BufferedImage getImage() {
-        logger.verbose("Getting screenshot as base64...");
-        String screenshot64 = tsInstance.getScreenshotAs(OutputType.BASE64);
-        logger.verbose("Done getting base64! Creating BufferedImage...");
-        return ImageUtils.imageFromBase64(screenshot64);
+        byte[] screenshotBytes = getEncodedImage();
+        logger.verbose("Done getting bytes! Creating BufferedImage...");
+        return imageDecoder.decode(screenshotBytes);
+    }
+
+    @Override
+    public byte[] getEncodedImage() {
+        logger.verbose("Getting screenshot as bytes...");
+        return tsInstance.getScreenshotAs(OutputType.BYTES);
     }
 }
@@ -39,6 +39,17 @@ public class ScrollPositionProvider implements PositionProvider {
         return parseLocationString(position);
     }
 
+    /**
+     * @param executor The executor to use.
+     * @return The scroll position of the current frame's document element (i.e., its html element), read without
+     * looking the element up first.
+     */
+    public static Location getDocumentScrollPosition(IEyesJsExecutor executor) {
+        Object position = executor.executeScript(
+                "var e = document.documentElement; return e.scrollLeft+';'+e.scrollTop;");
+        return parseLocationString(position);
+    }
+
     /**
      * @return The scroll position of the current frame.
      */
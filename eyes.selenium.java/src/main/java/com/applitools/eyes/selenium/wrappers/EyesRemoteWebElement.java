@@ -2,6 +2,8 @@ package com.applitools.eyes.selenium.wrappers;
 
 import com.applitools.eyes.*;
 import com.applitools.eyes.positioning.PositionProvider;
+import com.applitools.eyes.selenium.Borders;
+import com.applitools.eyes.selenium.ElementGeometry;
 import com.applitools.eyes.selenium.SizeAndBorders;
 import com.applitools.eyes.triggers.MouseAction;
 import com.applitools.utils.ArgumentGuard;
@@ -34,18 +36,6 @@ public class EyesRemoteWebElement extends RemoteWebElement {
                     "return null;" +
                     "}";
 
-    private final String JS_GET_SCROLL_LEFT =
-            "return arguments[0].scrollLeft;";
-
-    private final String JS_GET_SCROLL_TOP =
-            "return arguments[0].scrollTop;";
-
-    private final String JS_GET_SCROLL_WIDTH =
-            "return arguments[0].scrollWidth;";
-
-    private final String JS_GET_SCROLL_HEIGHT =
-            "return arguments[0].scrollHeight;";
-
     private final String JS_SCROLL_TO_FORMATTED_STR =
             "arguments[0].scrollLeft = %d;" +
                     "arguments[0].scrollTop = %d;";
@@ -53,15 +43,9 @@ public class EyesRemoteWebElement extends RemoteWebElement {
     private final String JS_GET_SCROLL_POSITION =
             "return arguments[0].scrollLeft + ';' + arguments[0].scrollTop;";
 
-    private final String JS_GET_OVERFLOW =
-            "return arguments[0].style.overflow;";
-
     private final String JS_SET_OVERFLOW_FORMATTED_STR =
             "arguments[0].style.overflow = '%s'";
 
-    private final String JS_GET_CLIENT_WIDTH = "return arguments[0].clientWidth;";
-    private final String JS_GET_CLIENT_HEIGHT = "return arguments[0].clientHeight;";
-
     private final String JS_GET_CLIENT_SIZE = "return [arguments[0].clientWidth, arguments[0].clientHeight];";
 
     private final String JS_GET_BORDER_WIDTHS_ARR =
@@ -85,13 +69,24 @@ public class EyesRemoteWebElement extends RemoteWebElement {
     private final String JS_GET_BORDER_WIDTHS =
             JS_GET_BORDER_WIDTHS_ARR + "return retVal;";
 
-    private final String JS_GET_SIZE_AND_BORDER_WIDTHS =
+    private final String JS_GET_GEOMETRY =
             "var elem = arguments[0]; " +
-                    "var retVal = [elem.clientWidth, elem.clientHeight]; " +
+                    "var rect = elem.getBoundingClientRect(); " +
+                    "var scrollX = window.pageXOffset || document.documentElement.scrollLeft || 0; " +
+                    "var scrollY = window.pageYOffset || document.documentElement.scrollTop || 0; " +
+                    "var retVal = [rect.left + scrollX, rect.top + scrollY, rect.width, rect.height, " +
+                    "elem.scrollLeft, elem.scrollTop, elem.scrollWidth, elem.scrollHeight, " +
+                    "elem.clientWidth, elem.clientHeight]; " +
                     JS_GET_BORDER_WIDTHS_ARR +
+                    "for (var i = 10; i < 14; i++) { retVal[i] = parseFloat(retVal[i]) || 0; } " +
+                    "var display = window.getComputedStyle ? window.getComputedStyle(elem, null).display : " +
+                    "(elem.currentStyle ? elem.currentStyle.display : ''); " +
+                    "retVal.push(elem.style.overflow, display); " +
                     "return retVal;";
 
     private PositionProvider positionProvider;
+    private ElementGeometry geometry;
+    private int geometryVersion;
 
     public EyesRemoteWebElement(Logger logger, EyesWebDriver eyesDriver, WebElement webElement) {
         super();
@@ -124,7 +119,40 @@ public class EyesRemoteWebElement extends RemoteWebElement {
         }
     }
 
+    /**
+     * @return The element's geometry, read by a single script. Cached until the page might have changed (see
+     * {@link EyesWebDriver#invalidateElementGeometry()}).
+     */
+    public ElementGeometry getGeometry() {
+        if (geometry != null && geometryVersion == eyesDriver.getGeometryVersion()) {
+            return geometry;
+        }
+
+        Object retVal = eyesDriver.executeReadOnlyScript(JS_GET_GEOMETRY, this);
+        @SuppressWarnings("unchecked") List<Object> values = (List<Object>) retVal;
+        geometry = new ElementGeometry(
+                new Location(toInt(values.get(0)), toInt(values.get(1))),
+                new RectangleSize(toInt(values.get(2)), toInt(values.get(3))),
+                new Location(toCeilingInt(values.get(4)), toCeilingInt(values.get(5))),
+                new RectangleSize(toCeilingInt(values.get(6)), toCeilingInt(values.get(7))),
+                new RectangleSize(toCeilingInt(values.get(8)), toCeilingInt(values.get(9))),
+                new Borders(toRoundInt(values.get(10)), toRoundInt(values.get(11)),
+                        toRoundInt(values.get(12)), toRoundInt(values.get(13))),
+                String.valueOf(values.get(14)),
+                String.valueOf(values.get(15)));
+        geometryVersion = eyesDriver.getGeometryVersion();
+        logger.verbose("Element geometry: " + geometry);
+        return geometry;
+    }
+
     public Region getBounds() {
+        try {
+            return getGeometry().getBounds();
+        } catch (WebDriverException e) {
+            // E.g., native contexts, which don't run scripts.
+            logger.verbose("Failed to get the element's geometry: " + e.getMessage());
+        }
+
         Point weLocation = webElement.getLocation();
         int left = weLocation.getX();
         int top = weLocation.getY();
@@ -177,68 +205,64 @@ public class EyesRemoteWebElement extends RemoteWebElement {
      * @return The value of the scrollLeft property of the element.
      */
     public int getScrollLeft() {
-        return (int) Math.ceil(Double.parseDouble(eyesDriver.executeScript(JS_GET_SCROLL_LEFT,
-                this).toString()));
+        return getGeometry().getScrollPosition().getX();
     }
 
     /**
      * @return The value of the scrollTop property of the element.
      */
     public int getScrollTop() {
-        return (int) Math.ceil(Double.parseDouble(eyesDriver.executeScript(JS_GET_SCROLL_TOP,
-                this).toString()));
+        return getGeometry().getScrollPosition().getY();
     }
 
     /**
      * @return The value of the scrollWidth property of the element.
      */
     public int getScrollWidth() {
-        return (int) Math.ceil(Double.parseDouble(eyesDriver.executeScript(JS_GET_SCROLL_WIDTH,
-                this).toString()));
+        return getGeometry().getScrollSize().getWidth();
     }
 
     /**
      * @return The value of the scrollHeight property of the element.
      */
     public int getScrollHeight() {
-        return (int) Math.ceil(Double.parseDouble(eyesDriver.executeScript(JS_GET_SCROLL_HEIGHT,
-                this).toString()));
+        return getGeometry().getScrollSize().getHeight();
     }
 
     public int getClientWidth() {
-        return (int) Math.ceil(Double.parseDouble(eyesDriver.executeScript(JS_GET_CLIENT_WIDTH, this).toString()));
+        return getGeometry().getClientSize().getWidth();
     }
 
     public int getClientHeight() {
-        return (int) Math.ceil(Double.parseDouble(eyesDriver.executeScript(JS_GET_CLIENT_HEIGHT, this).toString()));
+        return getGeometry().getClientSize().getHeight();
     }
 
     /**
      * @return The width of the left border.
      */
     public int getBorderLeftWidth() {
-        return getComputedStyleInteger("border-left-width");
+        return getGeometry().getBorders().getLeft();
     }
 
     /**
      * @return The width of the right border.
      */
     public int getBorderRightWidth() {
-        return getComputedStyleInteger("border-right-width");
+        return getGeometry().getBorders().getRight();
     }
 
     /**
      * @return The width of the top border.
      */
     public int getBorderTopWidth() {
-        return getComputedStyleInteger("border-top-width");
+        return getGeometry().getBorders().getTop();
     }
 
     /**
      * @return The width of the bottom border.
      */
     public int getBorderBottomWidth() {
-        return getComputedStyleInteger("border-bottom-width");
+        return getGeometry().getBorders().getBottom();
     }
 
     /**
@@ -254,14 +278,21 @@ public class EyesRemoteWebElement extends RemoteWebElement {
         }
         float x = Float.parseFloat(xy[0]);
         float y = Float.parseFloat(xy[1]);
-        return new Location((int) Math.ceil(x), (int) Math.ceil(y));
+        Location scrollPosition = new Location((int) Math.ceil(x), (int) Math.ceil(y));
+
+        // Scrolling only changed the element's own scroll position (the script invalidated the rest of the page).
+        if (geometry != null && geometryVersion == eyesDriver.getGeometryVersion() - 1) {
+            geometry = geometry.withScrollPosition(scrollPosition);
+            geometryVersion = eyesDriver.getGeometryVersion();
+        }
+        return scrollPosition;
     }
 
     /**
      * @return The overflow of the element.
      */
     public String getOverflow() {
-        return eyesDriver.executeScript(JS_GET_OVERFLOW, this).toString();
+        return getGeometry().getOverflow();
     }
 
     /**
@@ -281,6 +312,7 @@ public class EyesRemoteWebElement extends RemoteWebElement {
         logger.verbose(String.format("click(%s)", currentControl));
 
         webElement.click();
+        eyesDriver.invalidateElementGeometry();
     }
 
     @Override
@@ -323,6 +355,7 @@ public class EyesRemoteWebElement extends RemoteWebElement {
     @Override
     public void submit() {
         webElement.submit();
+        eyesDriver.invalidateElementGeometry();
     }
 
     @Override
@@ -333,11 +366,13 @@ public class EyesRemoteWebElement extends RemoteWebElement {
         }
 
         webElement.sendKeys(keysToSend);
+        eyesDriver.invalidateElementGeometry();
     }
 
     @Override
     public void clear() {
         webElement.clear();
+        eyesDriver.invalidateElementGeometry();
     }
 
     @Override
@@ -582,15 +617,11 @@ public class EyesRemoteWebElement extends RemoteWebElement {
     }
 
     public SizeAndBorders getSizeAndBorders() {
-        Object retVal = eyesDriver.executeScript(JS_GET_SIZE_AND_BORDER_WIDTHS, this);
-        @SuppressWarnings("unchecked") List<Object> esAsList = (List<Object>) retVal;
-        return new SizeAndBorders(
-                ((Long) esAsList.get(0)).intValue(),
-                ((Long) esAsList.get(1)).intValue(),
-                Integer.parseInt(((String) esAsList.get(2)).replace("px", "")),
-                Integer.parseInt(((String) esAsList.get(3)).replace("px", "")),
-                Integer.parseInt(((String) esAsList.get(4)).replace("px", "")),
-                Integer.parseInt(((String) esAsList.get(5)).replace("px", "")));
+        ElementGeometry geometry = getGeometry();
+        RectangleSize clientSize = geometry.getClientSize();
+        Borders borders = geometry.getBorders();
+        return new SizeAndBorders(clientSize.getWidth(), clientSize.getHeight(),
+                borders.getLeft(), borders.getTop(), borders.getRight(), borders.getBottom());
     }
 
     public Rectangle getBoundingClientRect() {
@@ -604,4 +635,16 @@ public class EyesRemoteWebElement extends RemoteWebElement {
                 Math.round(Float.parseFloat(parts[3])));
         return rect;
     }
+
+    private static int toInt(Object value) {
+        return ((Number) value).intValue();
+    }
+
+    private static int toCeilingInt(Object value) {
+        return (int) Math.ceil(((Number) value).doubleValue());
+    }
+
+    private static int toRoundInt(Object value) {
+        return (int) Math.round(((Number) value).doubleValue());
+    }
 }
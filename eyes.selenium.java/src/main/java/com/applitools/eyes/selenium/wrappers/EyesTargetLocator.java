@@ -19,6 +19,7 @@ import com.applitools.utils.ArgumentGuard;
 import org.openqa.selenium.*;
 import org.openqa.selenium.remote.RemoteWebElement;
 
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -70,7 +71,7 @@ public class EyesTargetLocator implements WebDriver.TargetLocator {
         RectangleSize frameInnerSize = sizeAndBorders.getSize();
 
         Location contentLocation = new Location(pl.getX() + borders.getLeft(), pl.getY() + borders.getTop());
-        Location originalLocation = ScrollPositionProvider.getCurrentPosition(jsExecutor, driver.findElement(By.tagName("html")));
+        Location originalLocation = ScrollPositionProvider.getDocumentScrollPosition(jsExecutor);
 
         Frame frame = new Frame(logger, targetFrame,
                 contentLocation,
@@ -190,21 +191,93 @@ public class EyesTargetLocator implements WebDriver.TargetLocator {
     /**
      * Switches into every frame in the frame chain. This is used as way to
      * switch into nested frames (while considering scroll) in a single call.
+     * Only the frames in which the current frame chain differs from the given one are switched: the current frames
+     * which aren't in the given chain are left through their parents, and the rest of the given frames are switched
+     * into using the location and size they already hold.
      * @param frameChain The path to the frame to switch to.
      * @return The WebDriver with the switched context.
      */
     @SuppressWarnings("UnusedReturnValue")
     public WebDriver frames(FrameChain frameChain) {
         logger.verbose("enter");
-        this.defaultContent();
+        // The given chain might be the driver's own frame chain, which is changed while switching.
+        FrameChain targetChain = frameChain.clone();
+        FrameChain currentChain = driver.getFrameChain();
+        int commonFrames = getCommonFramesCount(currentChain, targetChain);
+        logger.verbose(String.format("current frames: %d, target frames: %d, common frames: %d",
+                currentChain.size(), targetChain.size(), commonFrames));
+        try {
+            parentFrames(currentChain.size() - commonFrames);
+            switchToFrames(targetChain, commonFrames);
+        } catch (WebDriverException e) {
+            logger.verbose("Failed switching from the current frame (" + e.getMessage() + "). Switching from the default content...");
+            this.defaultContent();
+            switchToFrames(targetChain, 0);
+        }
+        logger.verbose("Done switching into nested frames!");
+        return driver;
+    }
+
+    /**
+     * Switches to the frame the given number of levels above the current frame. Unlike {@link #parentFrame()}, the
+     * scroll positions of the frames being left aren't restored.
+     * @param levels The number of frames to leave.
+     * @return The WebDriver with the switched context.
+     */
+    @SuppressWarnings("UnusedReturnValue")
+    public WebDriver parentFrames(int levels) {
+        FrameChain frameChain = driver.getFrameChain();
+        ArgumentGuard.greaterThanOrEqualToZero(levels, "levels");
+        ArgumentGuard.isValidState(levels <= frameChain.size(), "Can't leave more frames than the current frames!");
+        if (levels > 1 && levels == frameChain.size()) {
+            // A single switch instead of a switch per frame.
+            this.defaultContent();
+            return driver;
+        }
+        for (int i = 0; i < levels; ++i) {
+            frameChain.pop();
+            parentFrame(logger, targetLocator, frameChain);
+        }
+        return driver;
+    }
+
+    /**
+     * Switches into the frames of the given chain, starting from the given frame (whose parent must be the current
+     * frame). The frames' location and size are taken from the chain, so only the parent's scroll position is read.
+     */
+    private void switchToFrames(FrameChain frameChain, int startIndex) {
+        int index = 0;
         for (Frame frame : frameChain) {
-            this.frame(frame.getReference());
+            if (index++ < startIndex) {
+                continue;
+            }
             logger.verbose(String.format("frame.Reference: %s ; frame.ScrollRootElement: %s", frame.getReference(), frame.getScrollRootElement()));
-            Frame newFrame = driver.getFrameChain().peek();
+            Location originalLocation = ScrollPositionProvider.getDocumentScrollPosition(jsExecutor);
+            Frame newFrame = new Frame(logger, frame.getReference(), frame.getLocation(), frame.getOuterSize(),
+                    frame.getInnerSize(), originalLocation, driver);
             newFrame.setScrollRootElement(frame.getScrollRootElement());
+            targetLocator.frame(frame.getReference());
+            driver.getFrameChain().push(newFrame);
         }
-        logger.verbose("Done switching into nested frames!");
-        return driver;
+    }
+
+    /**
+     * @return The number of leading frames which are the same in both chains.
+     */
+    private static int getCommonFramesCount(FrameChain c1, FrameChain c2) {
+        Iterator<Frame> c1Iterator = c1.iterator();
+        Iterator<Frame> c2Iterator = c2.iterator();
+        int count = 0;
+        while (c1Iterator.hasNext() && c2Iterator.hasNext()) {
+            Frame f1 = c1Iterator.next();
+            Frame f2 = c2Iterator.next();
+            // Frames are also kept with the scroll root element they were switched into with.
+            if (!f1.getReference().equals(f2.getReference()) || f1.getScrollRootElement() != f2.getScrollRootElement()) {
+                break;
+            }
+            ++count;
+        }
+        return count;
     }
 
     /**
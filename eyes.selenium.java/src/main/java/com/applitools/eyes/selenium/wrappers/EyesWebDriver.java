@@ -39,6 +39,17 @@ public class EyesWebDriver implements HasCapabilities, HasInputDevices,
 
     private ImageRotation rotation;
     private RectangleSize defaultContentViewportSize;
+    // Changes whenever the page might have changed, which invalidates the geometry cached by the elements.
+    private int geometryVersion;
+
+    // The state of the default content's document, kept while the same document is loaded (see validatePageState).
+    private String documentId;
+    private boolean isPageStateValid;
+    private WebElement htmlElement;
+
+    private static final String JS_GET_PAGE_STATE =
+            "var timing = window.performance && window.performance.timing; " +
+                    "return [timing ? String(timing.navigationStart) : null, document.location.href];";
 
     /**
      * Rotates the image as necessary. The rotation is either manually forced
@@ -145,6 +156,8 @@ public class EyesWebDriver implements HasCapabilities, HasInputDevices,
 
     public void get(String s) {
         frameChain.clear();
+        invalidateElementGeometry();
+        invalidatePageState();
         driver.get(s);
     }
 
@@ -318,6 +331,9 @@ public class EyesWebDriver implements HasCapabilities, HasInputDevices,
 
     public Object executeScript(String script, Object... args) {
 
+        // The script might scroll or change the page.
+        invalidateElementGeometry();
+
         // Appium commands are sometimes sent as Javascript
         if (AppiumJsCommandExtractor.isAppiumJsCommand(script)) {
             Trigger trigger =
@@ -340,6 +356,9 @@ public class EyesWebDriver implements HasCapabilities, HasInputDevices,
 
     public Object executeAsyncScript(String script, Object... args) {
 
+        // The script might scroll or change the page.
+        invalidateElementGeometry();
+
         // Appium commands are sometimes sent as Javascript
         if (AppiumJsCommandExtractor.isAppiumJsCommand(script)) {
             Trigger trigger =
@@ -359,6 +378,75 @@ public class EyesWebDriver implements HasCapabilities, HasInputDevices,
         return driver.executeAsyncScript(script, args);
     }
 
+    /**
+     * Checks whether the page's document is still the one whose state is cached (e.g., its html element), so the
+     * state can be used until the document changes. Should be called from the default content (e.g., when a check
+     * starts), since only the default content's state is cached.
+     * @return The URL of the page.
+     */
+    public String validatePageState() {
+        if (frameChain.size() > 0) {
+            invalidatePageState();
+            return driver.getCurrentUrl();
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object> pageState = (List<Object>) driver.executeScript(JS_GET_PAGE_STATE);
+        String currentDocumentId = (String) pageState.get(0);
+        if (currentDocumentId == null || !currentDocumentId.equals(documentId)) {
+            logger.verbose("Page state changed, document: " + currentDocumentId);
+            invalidatePageState();
+            documentId = currentDocumentId;
+        }
+        isPageStateValid = documentId != null;
+        return (String) pageState.get(1);
+    }
+
+    /**
+     * Clears the cached page state, e.g., after navigating or resizing the window.
+     */
+    public void invalidatePageState() {
+        documentId = null;
+        isPageStateValid = false;
+        htmlElement = null;
+    }
+
+    /**
+     * @return The html element of the current frame. The default content's html element is kept while the page
+     * state is valid (see {@link #validatePageState()}).
+     */
+    public WebElement getHtmlElement() {
+        if (frameChain.size() > 0 || !isPageStateValid) {
+            return findElement(By.tagName("html"));
+        }
+        if (htmlElement == null) {
+            htmlElement = findElement(By.tagName("html"));
+        }
+        return htmlElement;
+    }
+
+    /**
+     * Invalidates the geometry cached by the elements (see {@link EyesRemoteWebElement#getGeometry()}), e.g., when
+     * the page was scrolled or changed.
+     */
+    public void invalidateElementGeometry() {
+        geometryVersion++;
+    }
+
+    /**
+     * @return The current geometry version. Geometry read in a previous version might be stale.
+     */
+    int getGeometryVersion() {
+        return geometryVersion;
+    }
+
+    /**
+     * Executes a script which only reads from the page, so it doesn't invalidate the elements' geometry.
+     */
+    Object executeReadOnlyScript(String script, Object... args) {
+        return driver.executeScript(script, args);
+    }
+
     /**
      * @param forceQuery If true, we will perform the query even if we have a cached viewport size.
      * @return The viewport size of the default content (outer most frame).
@@ -411,13 +499,13 @@ public class EyesWebDriver implements HasCapabilities, HasInputDevices,
 
     public <X> X getScreenshotAs(OutputType<X> xOutputType)
             throws WebDriverException {
-        // Get the image as base64.
-        String screenshot64 = driver.getScreenshotAs(OutputType.BASE64);
-        BufferedImage screenshot = ImageUtils.imageFromBase64(screenshot64);
+        // Get the image as bytes.
+        byte[] screenshotBytes = driver.getScreenshotAs(OutputType.BYTES);
+        BufferedImage screenshot = ImageUtils.imageFromBytes(screenshotBytes);
         screenshot = normalizeRotation(logger, driver, screenshot, rotation);
 
         // Return the image in the requested format.
-        screenshot64 = ImageUtils.base64FromImage(screenshot);
+        String screenshot64 = ImageUtils.base64FromImage(screenshot);
         return xOutputType.convertFromBase64Png(screenshot64);
     }
 